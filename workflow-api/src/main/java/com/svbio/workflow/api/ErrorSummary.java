@@ -0,0 +1,136 @@
+package com.svbio.workflow.api;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Summary of a distinct error, identified by the fingerprint of its normalized execution trace.
+ *
+ * <p>Execution traces that differ only in volatile details (for instance, object identity hash codes or numbers in
+ * exception messages) have the same fingerprint.
+ */
+@XmlRootElement(name = "error-summary")
+@XmlType(propOrder = { "fingerprint", "summary", "occurrences", "firstSeenMillis", "lastSeenMillis" })
+public final class ErrorSummary implements Serializable {
+    private static final long serialVersionUID = 3264110389761843347L;
+
+    @Nullable private String fingerprint;
+    @Nullable private String summary;
+    private long occurrences;
+    @Nullable private Long firstSeenMillis;
+    @Nullable private Long lastSeenMillis;
+
+    /**
+     * Constructor for instance with default properties.
+     */
+    public ErrorSummary() { }
+
+    /**
+     * Copy constructor.
+     *
+     * @param original original instance that is to be copied
+     */
+    public ErrorSummary(ErrorSummary original) {
+        fingerprint = original.fingerprint;
+        summary = original.summary;
+        occurrences = original.occurrences;
+        firstSeenMillis = original.firstSeenMillis;
+        lastSeenMillis = original.lastSeenMillis;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        ErrorSummary other = (ErrorSummary) otherObject;
+        return Objects.equals(fingerprint, other.fingerprint)
+            && Objects.equals(summary, other.summary)
+            && occurrences == other.occurrences
+            && Objects.equals(firstSeenMillis, other.firstSeenMillis)
+            && Objects.equals(lastSeenMillis, other.lastSeenMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingerprint, summary, occurrences, firstSeenMillis, lastSeenMillis);
+    }
+
+    /**
+     * Returns the fingerprint (hexadecimal hash of the normalized execution trace).
+     */
+    @XmlElement
+    @Nullable
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public ErrorSummary setFingerprint(@Nullable String fingerprint) {
+        this.fingerprint = fingerprint;
+        return this;
+    }
+
+    /**
+     * Returns the first line of the execution trace (typically, the exception class and message).
+     */
+    @XmlElement
+    @Nullable
+    public String getSummary() {
+        return summary;
+    }
+
+    public ErrorSummary setSummary(@Nullable String summary) {
+        this.summary = summary;
+        return this;
+    }
+
+    /**
+     * Returns the number of times this error has been recorded.
+     */
+    @XmlElement
+    public long getOccurrences() {
+        return occurrences;
+    }
+
+    public ErrorSummary setOccurrences(long occurrences) {
+        this.occurrences = occurrences;
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) when this error was first recorded, or {@code null} if
+     * unknown.
+     */
+    @XmlElement(name = "first-seen-millis")
+    @Nullable
+    public Long getFirstSeenMillis() {
+        return firstSeenMillis;
+    }
+
+    public ErrorSummary setFirstSeenMillis(@Nullable Long firstSeenMillis) {
+        this.firstSeenMillis = firstSeenMillis;
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) when this error was last recorded, or {@code null} if
+     * unknown.
+     */
+    @XmlElement(name = "last-seen-millis")
+    @Nullable
+    public Long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+
+    public ErrorSummary setLastSeenMillis(@Nullable Long lastSeenMillis) {
+        this.lastSeenMillis = lastSeenMillis;
+        return this;
+    }
+}
@@ -0,0 +1,70 @@
+package com.svbio.workflow.api;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * List of distinct errors, ordered by decreasing number of occurrences.
+ *
+ * @see WorkflowService#getTopErrors(int)
+ */
+@XmlRootElement(name = "error-summary-list")
+public final class ErrorSummaryList implements Serializable {
+    private static final long serialVersionUID = -1402871064207914032L;
+
+    private final ArrayList<ErrorSummary> list = new ArrayList<>();
+
+    /**
+     * Constructor for instance with default properties.
+     */
+    public ErrorSummaryList() { }
+
+    /**
+     * Copy constructor.
+     *
+     * @param original original instance that is to be copied
+     */
+    public ErrorSummaryList(ErrorSummaryList original) {
+        original.getList().forEach(errorSummary -> list.add(new ErrorSummary(errorSummary)));
+    }
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        return list.equals(((ErrorSummaryList) otherObject).list);
+    }
+
+    @Override
+    public int hashCode() {
+        return list.hashCode();
+    }
+
+    /**
+     * Returns the list of error summaries, guaranteed not null.
+     */
+    public List<ErrorSummary> getList() {
+        return list;
+    }
+
+    /**
+     * Sets the list of error summaries.
+     *
+     * @param list list of error summaries
+     */
+    public ErrorSummaryList setList(List<ErrorSummary> list) {
+        Objects.requireNonNull(list);
+        List<ErrorSummary> backup = new ArrayList<>(list);
+        this.list.clear();
+        this.list.addAll(backup);
+        return this;
+    }
+}
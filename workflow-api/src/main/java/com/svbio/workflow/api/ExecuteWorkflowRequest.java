@@ -24,7 +24,7 @@ import java.util.stream.Collectors;
  * omitted from the XML (the previous design choice therefore allows for shorter XML).
  */
 @XmlRootElement(name = "execute-workflow-request")
-@XmlType(propOrder = { "module", "bundleIdentifiers", "overrides", "prefix", "cleaningRequested" })
+@XmlType(propOrder = { "module", "bundleIdentifiers", "overrides", "prefix", "cleaningRequested", "tenant" })
 public final class ExecuteWorkflowRequest implements Serializable {
     private static final long serialVersionUID = -8416721969279599586L;
 
@@ -33,6 +33,7 @@ public final class ExecuteWorkflowRequest implements Serializable {
     private final ArrayList<MutableOverride> overrides = new ArrayList<>();
     @Nullable private String prefix;
     private boolean cleaningRequested = true;
+    @Nullable private String tenant;
 
     /**
      * Constructor for instance with default properties.
@@ -53,6 +54,7 @@ public final class ExecuteWorkflowRequest implements Serializable {
         overrides.addAll(original.getOverrides().stream().map(MutableOverride::copyOf).collect(Collectors.toList()));
         prefix = original.prefix;
         cleaningRequested = original.cleaningRequested;
+        tenant = original.tenant;
     }
 
     @Override
@@ -68,12 +70,13 @@ public final class ExecuteWorkflowRequest implements Serializable {
             && bundleIdentifiers.equals(other.bundleIdentifiers)
             && overrides.equals(other.overrides)
             && Objects.equals(prefix, other.prefix)
-            && cleaningRequested == other.cleaningRequested;
+            && cleaningRequested == other.cleaningRequested
+            && Objects.equals(tenant, other.tenant);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(module, bundleIdentifiers, overrides, prefix, cleaningRequested);
+        return Objects.hash(module, bundleIdentifiers, overrides, prefix, cleaningRequested, tenant);
     }
 
     @XmlElementRef
@@ -151,4 +154,24 @@ public final class ExecuteWorkflowRequest implements Serializable {
         this.cleaningRequested = cleaningRequested;
         return this;
     }
+
+    /**
+     * Returns the tenant that submitted this request, or {@code null} if the tenant is to be identified by the prefix.
+     *
+     * <p>Tenants are the unit of fair-share scheduling: If workflow executions need to be queued because the service is
+     * at capacity, queued workflow executions are admitted so that each tenant receives a share of the capacity that is
+     * proportional to its configured weight.
+     *
+     * @see #getPrefix()
+     */
+    @XmlElement
+    @Nullable
+    public String getTenant() {
+        return tenant;
+    }
+
+    public ExecuteWorkflowRequest setTenant(@Nullable String tenant) {
+        this.tenant = tenant;
+        return this;
+    }
 }
@@ -0,0 +1,75 @@
+package com.svbio.workflow.api;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * List of requests to execute CloudKeeper workflows, submitted as one batch.
+ *
+ * @see WorkflowService#startExecutions(List)
+ */
+@XmlRootElement(name = "execute-workflow-request-list")
+public final class ExecuteWorkflowRequestList implements Serializable {
+    private static final long serialVersionUID = 4518250036207417791L;
+
+    private final ArrayList<ExecuteWorkflowRequest> list = new ArrayList<>();
+
+    /**
+     * Constructor for instance with default properties.
+     */
+    public ExecuteWorkflowRequestList() { }
+
+    /**
+     * Copy constructor.
+     *
+     * <p>The newly constructed instance is guaranteed to share no mutable state with the original instance (not even
+     * transitively through multiple object references).
+     *
+     * @param original original instance that is to be copied
+     */
+    public ExecuteWorkflowRequestList(ExecuteWorkflowRequestList original) {
+        original.getList().forEach(request -> list.add(new ExecuteWorkflowRequest(request)));
+    }
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        return list.equals(((ExecuteWorkflowRequestList) otherObject).list);
+    }
+
+    @Override
+    public int hashCode() {
+        return list.hashCode();
+    }
+
+    /**
+     * Returns the list of requests, guaranteed not null.
+     */
+    @XmlElement(name = "request")
+    public List<ExecuteWorkflowRequest> getList() {
+        return list;
+    }
+
+    /**
+     * Sets the list of requests.
+     *
+     * @param list list of requests
+     */
+    public ExecuteWorkflowRequestList setList(List<ExecuteWorkflowRequest> list) {
+        Objects.requireNonNull(list);
+        List<ExecuteWorkflowRequest> backup = new ArrayList<>(list);
+        this.list.clear();
+        this.list.addAll(backup);
+        return this;
+    }
+}
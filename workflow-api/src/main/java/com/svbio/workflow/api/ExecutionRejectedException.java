@@ -0,0 +1,72 @@
+package com.svbio.workflow.api;
+
+import java.util.Objects;
+
+/**
+ * Signals that a request to execute a workflow has been rejected because the service is at capacity.
+ *
+ * <p>Rejections are temporary. Clients may resubmit the request after the number of seconds returned by
+ * {@link #getRetryAfterSeconds()}.
+ */
+public class ExecutionRejectedException extends Exception {
+    private static final long serialVersionUID = -1385034591306785562L;
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    /**
+     * Reason for rejecting a request.
+     */
+    public enum Reason {
+        /**
+         * The service as a whole is at capacity.
+         */
+        SERVICE_AT_CAPACITY,
+
+        /**
+         * The tenant that submitted the request has exhausted its share of the capacity, while the service as a whole
+         * may still accept requests of other tenants.
+         *
+         * @see ExecuteWorkflowRequest#getTenant()
+         */
+        TENANT_AT_CAPACITY
+    }
+
+    /**
+     * Constructs a new exception with the specified detail message and reason
+     * {@link Reason#SERVICE_AT_CAPACITY}.
+     *
+     * @param message the detail message
+     * @param retryAfterSeconds number of seconds after which clients may resubmit the request
+     */
+    public ExecutionRejectedException(String message, long retryAfterSeconds) {
+        this(message, Reason.SERVICE_AT_CAPACITY, retryAfterSeconds);
+    }
+
+    /**
+     * Constructs a new exception with the specified detail message and reason.
+     *
+     * @param message the detail message
+     * @param reason reason for rejecting the request
+     * @param retryAfterSeconds number of seconds after which clients may resubmit the request
+     */
+    public ExecutionRejectedException(String message, Reason reason, long retryAfterSeconds) {
+        super(message);
+        this.reason = Objects.requireNonNull(reason);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns the reason for rejecting the request.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns the number of seconds after which clients may resubmit the request.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
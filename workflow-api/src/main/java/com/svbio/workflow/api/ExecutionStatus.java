@@ -11,7 +11,9 @@ import java.util.Objects;
  * Status of an active workflow execution.
  */
 @XmlRootElement(name = "execution-status")
-@XmlType(propOrder = { "executionId", "request", "status", "failureDescription" })
+@XmlType(propOrder = {
+    "executionId", "request", "status", "failureDescription", "startTimeMillis", "queueWaitMillis", "queueDepth"
+})
 public final class ExecutionStatus implements Serializable {
     private static final long serialVersionUID = 911345605836738649L;
 
@@ -19,11 +21,20 @@ public final class ExecutionStatus implements Serializable {
     @Nullable private ExecuteWorkflowRequest request;
     private Status status = Status.RUNNING;
     @Nullable private String failureDescription;
+    @Nullable private Long startTimeMillis;
+    @Nullable private Long queueWaitMillis;
+    @Nullable private Integer queueDepth;
 
     /**
      * Lifecycle status of a workflow execution.
      */
     public enum Status {
+        /**
+         * The request to execute a workflow has been accepted, but it is waiting for admission (because the service is
+         * at capacity). No execution id has been assigned yet.
+         */
+        QUEUED,
+
         /**
          * CloudKeeper has received the request to execute a workflow and has assigned an execution id.
          */
@@ -37,7 +48,14 @@ public final class ExecutionStatus implements Serializable {
         /**
          * The workflow execution has finished with an error.
          */
-        FAILED
+        FAILED;
+
+        /**
+         * Returns whether this status is terminal, that is, whether the workflow execution has finished.
+         */
+        public boolean isTerminal() {
+            return this == SUCCESSFUL || this == FAILED;
+        }
     }
 
     /**
@@ -60,6 +78,9 @@ public final class ExecutionStatus implements Serializable {
             : new ExecuteWorkflowRequest(original.request);
         status = original.status;
         failureDescription = original.failureDescription;
+        startTimeMillis = original.startTimeMillis;
+        queueWaitMillis = original.queueWaitMillis;
+        queueDepth = original.queueDepth;
     }
 
     @Override
@@ -74,14 +95,22 @@ public final class ExecutionStatus implements Serializable {
         return executionId == other.executionId
             && Objects.equals(request, other.request)
             && status == other.status
-            && Objects.equals(failureDescription, other.failureDescription);
+            && Objects.equals(failureDescription, other.failureDescription)
+            && Objects.equals(startTimeMillis, other.startTimeMillis)
+            && Objects.equals(queueWaitMillis, other.queueWaitMillis)
+            && Objects.equals(queueDepth, other.queueDepth);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(executionId, request, status, failureDescription);
+        return Objects.hash(executionId, request, status, failureDescription, startTimeMillis, queueWaitMillis,
+            queueDepth);
     }
 
+    /**
+     * Returns the execution id, or 0 if no execution id has been assigned yet (that is, if the status is
+     * {@link Status#QUEUED}).
+     */
     @XmlElement(name = "execution-id")
     public long getExecutionId() {
         return executionId;
@@ -124,4 +153,56 @@ public final class ExecutionStatus implements Serializable {
         this.failureDescription = failureDescription;
         return this;
     }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) when the workflow execution was started, or {@code null} if
+     * unknown.
+     */
+    @XmlElement(name = "start-time-millis")
+    @Nullable
+    public Long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public ExecutionStatus setStartTimeMillis(@Nullable Long startTimeMillis) {
+        this.startTimeMillis = startTimeMillis;
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds) that the workflow execution has been waiting for admission, or {@code null} if
+     * the execution was admitted immediately.
+     *
+     * <p>If the status is {@link Status#QUEUED}, this is the time waited so far.
+     */
+    @XmlElement(name = "queue-wait-millis")
+    @Nullable
+    public Long getQueueWaitMillis() {
+        return queueWaitMillis;
+    }
+
+    public ExecutionStatus setQueueWaitMillis(@Nullable Long queueWaitMillis) {
+        this.queueWaitMillis = queueWaitMillis;
+        return this;
+    }
+
+    /**
+     * Returns the number of workflow executions that were submitted before this execution and that are waiting for
+     * admission, or {@code null} if the execution was admitted immediately.
+     *
+     * <p>If the status is {@link Status#QUEUED}, this is the current number. Otherwise, it is the number at the time
+     * the execution was submitted. Since queued workflow executions are admitted by weighted fair queuing among
+     * tenants, this number is not necessarily the number of workflow executions that will be admitted before this
+     * execution.
+     */
+    @XmlElement(name = "queue-depth")
+    @Nullable
+    public Integer getQueueDepth() {
+        return queueDepth;
+    }
+
+    public ExecutionStatus setQueueDepth(@Nullable Integer queueDepth) {
+        this.queueDepth = queueDepth;
+        return this;
+    }
 }
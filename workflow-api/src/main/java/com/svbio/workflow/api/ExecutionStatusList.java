@@ -1,6 +1,7 @@
 package com.svbio.workflow.api;
 
 import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -9,12 +10,17 @@ import java.util.Objects;
 
 /**
  * List of active workflow executions.
+ *
+ * <p>If the list is the result of a query with a limit (see {@link ExecutionStatusQuery#getLimit()}), it may only be
+ * one page of the complete result. In that case, {@link #getNextCursor()} returns the cursor for retrieving the next
+ * page.
  */
 @XmlRootElement(name = "execution-status-list")
 public final class ExecutionStatusList implements Serializable {
     private static final long serialVersionUID = -3214966772656946291L;
 
     private final ArrayList<ExecutionStatus> list = new ArrayList<>();
+    @Nullable private Long nextCursor;
 
     /**
      * Constructor for instance with default properties.
@@ -31,6 +37,7 @@ public final class ExecutionStatusList implements Serializable {
      */
     public ExecutionStatusList(ExecutionStatusList original) {
         original.getList().forEach(executionStatus -> list.add(new ExecutionStatus(executionStatus)));
+        nextCursor = original.nextCursor;
     }
 
     @Override
@@ -41,12 +48,14 @@ public final class ExecutionStatusList implements Serializable {
             return false;
         }
 
-        return list.equals(((ExecutionStatusList) otherObject).list);
+        ExecutionStatusList other = (ExecutionStatusList) otherObject;
+        return list.equals(other.list)
+            && Objects.equals(nextCursor, other.nextCursor);
     }
 
     @Override
     public int hashCode() {
-        return list.hashCode();
+        return Objects.hash(list, nextCursor);
     }
 
     /**
@@ -68,4 +77,25 @@ public final class ExecutionStatusList implements Serializable {
         this.list.addAll(backup);
         return this;
     }
+
+    /**
+     * Returns the cursor for retrieving the next page of results, or {@code null} if there are no more results.
+     *
+     * <p>The cursor is to be passed to {@link ExecutionStatusQuery#setCursor(Long)}.
+     */
+    @XmlElement(name = "next-cursor")
+    @Nullable
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Sets the cursor for retrieving the next page of results.
+     *
+     * @param nextCursor cursor for retrieving the next page of results, or {@code null} if there are no more results
+     */
+    public ExecutionStatusList setNextCursor(@Nullable Long nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
 }
@@ -0,0 +1,22 @@
+package com.svbio.workflow.api;
+
+/**
+ * Listener that is notified of the status transitions of a workflow execution.
+ *
+ * @see WorkflowService#addExecutionStatusListener(long, ExecutionStatusListener)
+ */
+@FunctionalInterface
+public interface ExecutionStatusListener {
+    /**
+     * Called with the current status of the workflow execution when the listener is added, and subsequently with
+     * each new status.
+     *
+     * <p>This method is called at most once with a terminal status (see {@link ExecutionStatus.Status#isTerminal()}),
+     * and it is never called again after that. The given {@link ExecutionStatus} instance is subject to the same
+     * restrictions as the return value of {@link WorkflowService#getExecutionStatus(long)}: It must be treated as
+     * read-only. This method may be called from arbitrary threads, and it should return quickly.
+     *
+     * @param executionStatus the current execution status
+     */
+    void executionStatusChanged(ExecutionStatus executionStatus);
+}
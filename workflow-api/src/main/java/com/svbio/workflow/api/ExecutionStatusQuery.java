@@ -0,0 +1,253 @@
+package com.svbio.workflow.api;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Query for execution statuses.
+ *
+ * <p>A query consists of filters, pagination settings, and a projection. All filters are optional, and an execution
+ * status is matched if it is matched by each filter that is set (see {@link #matches(ExecutionStatus)}). Results are
+ * ordered by execution id. Pagination is cursor-based: The cursor is the largest execution id of the previous page, and
+ * only execution statuses with a larger execution id are returned.
+ */
+@XmlRootElement(name = "execution-status-query")
+@XmlType(propOrder = {
+    "cursor", "limit", "prefix", "statuses", "startedAfterMillis", "startedBeforeMillis", "projection"
+})
+public final class ExecutionStatusQuery implements Serializable {
+    private static final long serialVersionUID = -2419513296064838251L;
+
+    @Nullable private Long cursor;
+    private int limit = 0;
+    @Nullable private String prefix;
+    private final EnumSet<ExecutionStatus.Status> statuses = EnumSet.noneOf(ExecutionStatus.Status.class);
+    @Nullable private Long startedAfterMillis;
+    @Nullable private Long startedBeforeMillis;
+    private Projection projection = Projection.FULL;
+
+    /**
+     * Projection of execution statuses, that is, the subset of properties that is included in a query result.
+     */
+    public enum Projection {
+        /**
+         * All properties are included.
+         */
+        FULL,
+
+        /**
+         * The request is included only with its prefix, bundle identifiers, cleaning flag, and tenant. That is, the
+         * module and the overrides (which may be large) are omitted.
+         */
+        SUMMARY
+    }
+
+    /**
+     * Constructor for instance with default properties.
+     *
+     * <p>The default query matches all execution statuses, has no limit, and uses {@link Projection#FULL}.
+     */
+    public ExecutionStatusQuery() { }
+
+    /**
+     * Copy constructor.
+     *
+     * <p>The newly constructed instance is guaranteed to share no mutable state with the original instance (not even
+     * transitively through multiple object references).
+     *
+     * @param original original instance that is to be copied
+     */
+    public ExecutionStatusQuery(ExecutionStatusQuery original) {
+        cursor = original.cursor;
+        limit = original.limit;
+        prefix = original.prefix;
+        statuses.addAll(original.statuses);
+        startedAfterMillis = original.startedAfterMillis;
+        startedBeforeMillis = original.startedBeforeMillis;
+        projection = original.projection;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        ExecutionStatusQuery other = (ExecutionStatusQuery) otherObject;
+        return Objects.equals(cursor, other.cursor)
+            && limit == other.limit
+            && Objects.equals(prefix, other.prefix)
+            && statuses.equals(other.statuses)
+            && Objects.equals(startedAfterMillis, other.startedAfterMillis)
+            && Objects.equals(startedBeforeMillis, other.startedBeforeMillis)
+            && projection == other.projection;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cursor, limit, prefix, statuses, startedAfterMillis, startedBeforeMillis, projection);
+    }
+
+    /**
+     * Returns whether the given execution status is matched by the filters of this query.
+     *
+     * <p>Pagination settings and the projection are not taken into account by this method.
+     *
+     * @param executionStatus execution status
+     * @return whether the given execution status is matched by the filters of this query
+     */
+    public boolean matches(ExecutionStatus executionStatus) {
+        if (prefix != null) {
+            @Nullable ExecuteWorkflowRequest request = executionStatus.getRequest();
+            if (request == null || !prefix.equals(request.getPrefix())) {
+                return false;
+            }
+        }
+        if (!statuses.isEmpty() && !statuses.contains(executionStatus.getStatus())) {
+            return false;
+        }
+        if (startedAfterMillis != null || startedBeforeMillis != null) {
+            @Nullable Long startTimeMillis = executionStatus.getStartTimeMillis();
+            if (startTimeMillis == null
+                    || (startedAfterMillis != null && startTimeMillis < startedAfterMillis)
+                    || (startedBeforeMillis != null && startTimeMillis >= startedBeforeMillis)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cursor, or {@code null} if the first page of results is requested.
+     *
+     * <p>If a cursor is set, only execution statuses with an execution id greater than the cursor are returned. Queued
+     * workflow executions, which do not have an execution id yet, have negative cursors (see
+     * {@link WorkflowService#getActiveExecutions(ExecutionStatusQuery)}).
+     */
+    @XmlElement
+    @Nullable
+    public Long getCursor() {
+        return cursor;
+    }
+
+    public ExecutionStatusQuery setCursor(@Nullable Long cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of execution statuses in the result, or 0 if there is no limit.
+     */
+    @XmlElement
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of execution statuses in the result.
+     *
+     * @param limit maximum number of execution statuses in the result, or 0 if there is no limit
+     * @return this query
+     * @throws IllegalArgumentException if the given limit is negative
+     */
+    public ExecutionStatusQuery setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException(String.format("Expected non-negative limit, but got %d.", limit));
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Returns the staging-area prefix that matched execution statuses must have, or {@code null} if any prefix is
+     * matched.
+     *
+     * @see ExecuteWorkflowRequest#getPrefix()
+     */
+    @XmlElement
+    @Nullable
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public ExecutionStatusQuery setPrefix(@Nullable String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    /**
+     * Returns the set of statuses that matched execution statuses must have, guaranteed not null.
+     *
+     * <p>An empty set matches any status.
+     */
+    @XmlElementWrapper(name = "statuses")
+    @XmlElement(name = "status")
+    public Set<ExecutionStatus.Status> getStatuses() {
+        return statuses;
+    }
+
+    public ExecutionStatusQuery setStatuses(Set<ExecutionStatus.Status> statuses) {
+        Objects.requireNonNull(statuses);
+        Set<ExecutionStatus.Status> backup = EnumSet.noneOf(ExecutionStatus.Status.class);
+        backup.addAll(statuses);
+        this.statuses.clear();
+        this.statuses.addAll(backup);
+        return this;
+    }
+
+    /**
+     * Returns the inclusive lower bound (in milliseconds since the epoch) of the start time of matched execution
+     * statuses, or {@code null} if there is no lower bound.
+     *
+     * <p>If this property or {@link #getStartedBeforeMillis()} is non-null, execution statuses with an unknown start
+     * time are not matched.
+     */
+    @XmlElement(name = "started-after-millis")
+    @Nullable
+    public Long getStartedAfterMillis() {
+        return startedAfterMillis;
+    }
+
+    public ExecutionStatusQuery setStartedAfterMillis(@Nullable Long startedAfterMillis) {
+        this.startedAfterMillis = startedAfterMillis;
+        return this;
+    }
+
+    /**
+     * Returns the exclusive upper bound (in milliseconds since the epoch) of the start time of matched execution
+     * statuses, or {@code null} if there is no upper bound.
+     */
+    @XmlElement(name = "started-before-millis")
+    @Nullable
+    public Long getStartedBeforeMillis() {
+        return startedBeforeMillis;
+    }
+
+    public ExecutionStatusQuery setStartedBeforeMillis(@Nullable Long startedBeforeMillis) {
+        this.startedBeforeMillis = startedBeforeMillis;
+        return this;
+    }
+
+    /**
+     * Returns the projection of the execution statuses in the result.
+     */
+    @XmlElement
+    public Projection getProjection() {
+        return projection;
+    }
+
+    public ExecutionStatusQuery setProjection(Projection projection) {
+        Objects.requireNonNull(projection);
+        this.projection = projection;
+        return this;
+    }
+}
@@ -3,6 +3,7 @@ package com.svbio.workflow.api;
 import xyz.cloudkeeper.model.api.CloudKeeperEnvironment;
 import xyz.cloudkeeper.model.api.WorkflowExecution;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -34,6 +35,17 @@ public interface WorkflowService {
      *     setting bundle identifiers and overrides accordingly.
      * </li></ul>
      *
+     * <p>Implementations may limit the number of concurrently running workflow executions. In that case, the workflow
+     * execution may be queued before it is started, and its execution id will only be available once it has been
+     * started. If the service is at capacity and cannot queue the request, all futures of the returned
+     * {@link WorkflowExecution} instance are completed exceptionally with an {@link ExecutionRejectedException}.
+     *
+     * <p>Implementations may also deduplicate requests. In that case, a request that is equal to an earlier request
+     * (see {@link ExecuteWorkflowRequest#equals(Object)}) may be answered with the workflow execution of the earlier
+     * request, which may still be running or may have finished successfully already. Since the inputs are read from
+     * the staging area, they are not part of the request. Cancelling the returned {@link WorkflowExecution} instance
+     * does not cancel a workflow execution that still answers other requests.
+     *
      * @param request the workflow execution request
      * @return the {@link WorkflowExecution} instance returned by
      *     {@link xyz.cloudkeeper.model.api.WorkflowExecutionBuilder#start}
@@ -41,11 +53,28 @@ public interface WorkflowService {
      */
     WorkflowExecution startExecution(ExecuteWorkflowRequest request);
 
+    /**
+     * Requests the execution of multiple CloudKeeper workflows.
+     *
+     * <p>The effects of this method are equivalent to calling {@link #startExecution(ExecuteWorkflowRequest)} for each
+     * request, in list order, except that all requests are validated before any workflow execution is started. That
+     * is, if this method throws an exception, no workflow execution has been started. Implementations may share
+     * resources between requests with equal environment settings (prefix, cleaning flag, and tenant).
+     *
+     * @param requests the workflow execution requests
+     * @return list of {@link WorkflowExecution} instances, in the same order as the requests
+     * @throws IllegalArgumentException if the module or the prefix properties of any of the given requests are
+     *     {@code null}
+     */
+    List<WorkflowExecution> startExecutions(List<ExecuteWorkflowRequest> requests);
+
     /**
      * Returns the execution status of the given execution id.
      *
-     * <p>The returned {@link ExecutionStatus} instance is not backed by internal state. Workflow-execution updates are
-     * not reflected in the returned instance, or vice versa.
+     * <p>The returned {@link ExecutionStatus} instance is a snapshot that is not updated when the workflow execution
+     * progresses. Implementations may share the returned instance (and the objects reachable from it) with other
+     * callers, so it must be treated as read-only. Callers that need a modifiable instance should use
+     * {@link ExecutionStatus#ExecutionStatus(ExecutionStatus)} to create a copy.
      *
      * @param executionId execution id
      * @return a future that will be completed with the execution status on success, an
@@ -57,18 +86,117 @@ public interface WorkflowService {
     /**
      * Stops the execution with the given execution id.
      *
+     * <p>Implementations may answer several identical requests with the same workflow execution. In that case,
+     * stopping it only withdraws one of the requests, and the workflow execution keeps running (and this method
+     * returns {@code false}) as long as other requests have not been withdrawn.
+     *
      * @param executionId execution id
+     * @return whether the workflow execution has been cancelled; {@code false} if it keeps running because it answers
+     *     other requests that have not been withdrawn
      * @throws UnknownExecutionIdException if the given execution id does not belong to an active workflow execution
      */
-    void stopExecutionId(long executionId) throws UnknownExecutionIdException;
+    boolean stopExecutionId(long executionId) throws UnknownExecutionIdException;
+
+    /**
+     * Adds a listener that is notified of the status transitions of the workflow execution with the given execution
+     * id.
+     *
+     * <p>The listener is called with the current execution status first, and subsequently with each new execution
+     * status, until it has been called with a terminal status (see {@link ExecutionStatus.Status#isTerminal()}).
+     * Afterwards, the listener is removed automatically. If the workflow execution has already finished, the listener
+     * is called exactly once, with the terminal status.
+     *
+     * @param executionId execution id
+     * @param listener the listener
+     * @return a future that will be completed once the listener has been added (and called with the current execution
+     *     status), an {@link UnknownExecutionIdException} if the given execution id is not known, and
+     *     {@link Exception} in case of any other failure
+     */
+    CompletableFuture<Void> addExecutionStatusListener(long executionId, ExecutionStatusListener listener);
+
+    /**
+     * Removes a listener that was previously added with {@link #addExecutionStatusListener(long,
+     * ExecutionStatusListener)}.
+     *
+     * <p>This method has no effect if the listener is not registered for the given execution id (for instance,
+     * because it has been removed automatically). After this method returns, the listener may still receive at most
+     * one concurrent notification.
+     *
+     * @param executionId execution id
+     * @param listener the listener
+     */
+    void removeExecutionStatusListener(long executionId, ExecutionStatusListener listener);
 
     /**
      * Returns a list of currently active workflow executions.
      *
-     * <p>The returned object is not backed by internal state. Workflow-execution updates are not reflected in the
-     * returned object, or vice versa.
+     * <p>The returned list is not backed by internal state, and workflow-execution updates are not reflected in it.
+     * However, the {@link ExecutionStatus} elements of the list are subject to the same restrictions as the return
+     * value of {@link #getExecutionStatus(long)}: They must be treated as read-only.
      *
      * @return the list of currently active workflow executions
      */
     ExecutionStatusList getActiveExecutions();
+
+    /**
+     * Returns a list of currently active workflow executions that match the given query.
+     *
+     * <p>The result is ordered by execution id. If the query has a limit and there are more matching executions, then
+     * {@link ExecutionStatusList#getNextCursor()} of the returned list is the cursor for retrieving the next page. The
+     * returned list is subject to the same restrictions as the return value of {@link #getActiveExecutions()}.
+     *
+     * <p>Workflow executions that are waiting for admission (with status {@link ExecutionStatus.Status#QUEUED} and
+     * execution id 0) precede all other executions, in submission order. Their cursors are negative, so clients should
+     * treat cursors as opaque.
+     *
+     * @param query the query
+     * @return the list of currently active workflow executions that match the given query
+     */
+    ExecutionStatusList getActiveExecutions(ExecutionStatusQuery query);
+
+    /**
+     * Returns a list of finished workflow executions that match the given query.
+     *
+     * <p>Finished workflow executions are those whose execution status has been persisted by the status-keeping
+     * service after they finished. The result is ordered by execution id, and pagination and projection work as
+     * described for {@link #getActiveExecutions(ExecutionStatusQuery)}. The elements of the returned list are subject
+     * to the same restrictions as the return value of {@link #getExecutionStatus(long)}: They must be treated as
+     * read-only.
+     *
+     * @param query the query
+     * @return a future that will be completed with the list of finished workflow executions that match the given query
+     *     on success, an {@link UnsupportedOperationException} if the configured status-keeping service does not
+     *     support queries, and {@link Exception} in case of any other failure
+     */
+    CompletableFuture<ExecutionStatusList> getFinishedExecutions(ExecutionStatusQuery query);
+
+    /**
+     * Returns the execution statuses of the given execution ids.
+     *
+     * <p>The effects of this method are equivalent to calling {@link #getExecutionStatus(long)} for each execution id
+     * and omitting unknown execution ids. That is, the list in the completed future contains the known execution
+     * statuses in the order of the given execution ids, and it may be shorter than the list of execution ids.
+     * Implementations should load the execution statuses of finished workflow executions in bulk. The elements of the
+     * returned list are subject to the same restrictions as the return value of {@link #getExecutionStatus(long)}: They
+     * must be treated as read-only.
+     *
+     * @param executionIds execution ids
+     * @return a future that will be completed with the list of known execution statuses on success, and
+     *     {@link Exception} in case of any failure other than an unknown execution id
+     */
+    CompletableFuture<ExecutionStatusList> getExecutionStatuses(List<Long> executionIds);
+
+    /**
+     * Returns the most frequent errors of workflow executions.
+     *
+     * <p>Errors are identified by the fingerprint of their normalized execution trace, so that each distinct error is
+     * reported once, together with the number of times it occurred.
+     *
+     * @param limit maximum number of errors, must be positive
+     * @return a future that will be completed with the list of errors, ordered by decreasing number of occurrences,
+     *     on success, an {@link UnsupportedOperationException} if the configured status-keeping service does not record
+     *     errors, and {@link Exception} in case of any other failure
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    CompletableFuture<ErrorSummaryList> getTopErrors(int limit);
 }
@@ -0,0 +1,142 @@
+package com.svbio.workflow.entities;
+
+import javax.annotation.Nullable;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Distinct execution trace (stack trace) of an error, identified by the fingerprint of the normalized execution trace.
+ *
+ * <p>Instances of this class are shared by all {@link ExecutionFrameError} and {@link ExecutionResult} rows whose
+ * execution traces have the same fingerprint. The execution trace itself is stored only once, as compressed blob (the
+ * execution trace of the first occurrence). The time of the first and last occurrence is maintained as minimum and
+ * maximum, so recording the same occurrence again has no effect. The number of occurrences is not stored, but counted
+ * from the referencing rows (which are unique per execution or execution frame).
+ */
+@Entity
+public class ErrorTrace {
+    /**
+     * Length of a fingerprint (hexadecimal SHA-256 hash).
+     */
+    public static final int FINGERPRINT_LENGTH = 64;
+
+    /**
+     * Maximum length of the summary.
+     */
+    public static final int SUMMARY_LENGTH = 255;
+
+    @Nullable private String fingerprint;
+    @Nullable private String summary;
+    @Nullable private byte[] compressedTrace;
+    private long firstSeen;
+    private long lastSeen;
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        ErrorTrace other = (ErrorTrace) otherObject;
+        return Objects.equals(fingerprint, other.fingerprint)
+            && Objects.equals(summary, other.summary)
+            && Arrays.equals(compressedTrace, other.compressedTrace)
+            && firstSeen == other.firstSeen
+            && lastSeen == other.lastSeen;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingerprint, summary, firstSeen, lastSeen) + Arrays.hashCode(compressedTrace);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Error trace %s (summary: '%s')", fingerprint, summary);
+    }
+
+    /**
+     * Returns the fingerprint (hexadecimal SHA-256 hash) of the normalized execution trace.
+     */
+    @Id
+    @Column(length = FINGERPRINT_LENGTH)
+    @Nullable
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public ErrorTrace setFingerprint(@Nullable String fingerprint) {
+        this.fingerprint = fingerprint;
+        return this;
+    }
+
+    /**
+     * Returns the first line of the execution trace, truncated to {@link #SUMMARY_LENGTH} characters.
+     */
+    @Column(length = SUMMARY_LENGTH)
+    @Nullable
+    public String getSummary() {
+        return summary;
+    }
+
+    public ErrorTrace setSummary(@Nullable String summary) {
+        this.summary = summary;
+        return this;
+    }
+
+    /**
+     * Returns the deflate-compressed UTF-8 representation of the execution trace.
+     */
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Nullable
+    public byte[] getCompressedTrace() {
+        return compressedTrace;
+    }
+
+    public ErrorTrace setCompressedTrace(@Nullable byte[] compressedTrace) {
+        this.compressedTrace = compressedTrace;
+        return this;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Nullable
+    public Date getFirstSeen() {
+        return firstSeen == 0
+            ? null
+            : new Date(firstSeen);
+    }
+
+    public ErrorTrace setFirstSeen(@Nullable Date firstSeen) {
+        this.firstSeen = firstSeen == null
+            ? 0
+            : firstSeen.getTime();
+        return this;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Nullable
+    public Date getLastSeen() {
+        return lastSeen == 0
+            ? null
+            : new Date(lastSeen);
+    }
+
+    public ErrorTrace setLastSeen(@Nullable Date lastSeen) {
+        this.lastSeen = lastSeen == null
+            ? 0
+            : lastSeen.getTime();
+        return this;
+    }
+}
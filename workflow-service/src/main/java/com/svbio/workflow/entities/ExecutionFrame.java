@@ -10,8 +10,10 @@ import javax.persistence.IdClass;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Objects;
@@ -19,17 +21,42 @@ import java.util.Objects;
 /**
  * CloudKeeper execution frame in a workflow execution.
  *
- * <p>An execution frame represents one stack frame in the CloudKeeper call stack.
+ * <p>An execution frame represents one stack frame in the CloudKeeper call stack. It is identified by its execution
+ * and the id of its execution trace (see {@link FrameTrace}).
+ *
+ * <p>The trace id is not a counter assigned per execution, but a 64-bit id derived from the execution trace and shared
+ * by all executions (see {@code FrameTraceDictionary}). Any writer therefore arrives at the same id for the same
+ * execution trace without knowing what was written for the execution before. This matters because events are replayed
+ * idempotently from spools, possibly after a restart and by a different actor than the one that wrote the first events
+ * of the execution. A per-execution counter would have to be recovered from the database before the first write of
+ * each execution, and it would need a lookup per execution and execution trace. The shared id makes this a lookup per
+ * distinct execution trace, which is cached. The primary key is still two {@code BIGINT} columns. Repeated runs of the
+ * same workflow share their dictionary rows.
+ *
+ * <p>Before execution frames were identified by the id of their execution trace, they were stored in table
+ * {@link #LEGACY_TABLE_NAME}, identified by the string representation of their execution trace.
  */
 @Entity
+@Table(name = ExecutionFrame.TABLE_NAME)
 @IdClass(ExecutionFrame.ID.class)
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 public class ExecutionFrame {
+    /**
+     * Name of the table of execution frames.
+     */
+    public static final String TABLE_NAME = "EXECUTIONFRAME_V2";
+
+    /**
+     * Name of the table of execution frames that were identified by the string representation of their execution
+     * trace.
+     */
+    public static final String LEGACY_TABLE_NAME = "EXECUTIONFRAME";
+
     public static final class ID implements Serializable {
-        private static final long serialVersionUID = -6101351381044635658L;
+        private static final long serialVersionUID = 2318525012489561741L;
 
         private long execution;
-        @Nullable private String frame;
+        private long trace;
 
         @Override
         public boolean equals(@Nullable Object otherObject) {
@@ -40,12 +67,12 @@ public class ExecutionFrame {
             }
 
             ID other = (ID) otherObject;
-            return execution == other.execution && Objects.equals(frame, other.frame);
+            return execution == other.execution && trace == other.trace;
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(execution, frame);
+            return Objects.hash(execution, trace);
         }
 
         public long getExecution() {
@@ -57,13 +84,12 @@ public class ExecutionFrame {
             return this;
         }
 
-        @Nullable
-        public String getFrame() {
-            return frame;
+        public long getTrace() {
+            return trace;
         }
 
-        public ID setFrame(@Nullable String frame) {
-            this.frame = frame;
+        public ID setTrace(long trace) {
+            this.trace = trace;
             return this;
         }
     }
@@ -76,7 +102,7 @@ public class ExecutionFrame {
     }
 
     @Nullable private Execution execution;
-    @Nullable private String frame;
+    @Nullable private FrameTrace trace;
     @Nullable private ModuleKind moduleKind;
     private long startTime;
     private long finishTime;
@@ -92,7 +118,7 @@ public class ExecutionFrame {
 
         ExecutionFrame other = (ExecutionFrame) otherObject;
         return Objects.equals(execution, other.execution)
-            && Objects.equals(frame, other.frame)
+            && Objects.equals(trace, other.trace)
             && moduleKind == other.moduleKind
             && startTime == other.startTime
             && finishTime == other.finishTime
@@ -101,7 +127,7 @@ public class ExecutionFrame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(execution, frame, moduleKind, startTime, finishTime, successful);
+        return Objects.hash(execution, trace, moduleKind, startTime, finishTime, successful);
     }
 
     /**
@@ -120,23 +146,35 @@ public class ExecutionFrame {
     }
 
     /**
-     * Returns the identifier of this execution frame (also called execution trace).
+     * Returns the execution trace of this execution frame.
+     */
+    @Id
+    @ManyToOne(optional = false)
+    @Nullable
+    public FrameTrace getTrace() {
+        return trace;
+    }
+
+    public ExecutionFrame setTrace(@Nullable FrameTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+     * Returns the identifier of this execution frame (also called execution trace), or {@code null} if the execution
+     * trace has not been set.
      *
      * <p>This method returns an execution trace that is a valid string representation of a
      * {@link xyz.cloudkeeper.model.immutable.execution.ExecutionTrace} instance.
      *
      * @see xyz.cloudkeeper.model.immutable.execution.ExecutionTrace
      */
-    @Id
-    @Column(length = 1024)
+    @Transient
     @Nullable
     public String getFrame() {
-        return frame;
-    }
-
-    public ExecutionFrame setFrame(@Nullable String frame) {
-        this.frame = frame;
-        return this;
+        return trace == null
+            ? null
+            : trace.getTrace();
     }
 
     /**
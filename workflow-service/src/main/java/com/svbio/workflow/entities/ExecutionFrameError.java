@@ -1,18 +1,51 @@
 package com.svbio.workflow.entities;
 
 import javax.annotation.Nullable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import java.util.Arrays;
 import java.util.Objects;
 
+/**
+ * Error that occurred in an execution frame.
+ *
+ * <p>The execution trace of the error is stored once per distinct fingerprint as {@link ErrorTrace}, and referenced
+ * by {@link #getErrorFingerprint()}. If the execution trace differs from the one stored for the fingerprint (in the
+ * parts removed by normalization), {@link #getErrorMessageDelta()} contains the execution trace compressed with the
+ * stored one as preset dictionary. {@link #getErrorMessage()} contains the execution trace only if the row was written
+ * before error traces were deduplicated.
+ *
+ * <p>Errors of execution frames in table {@link ExecutionFrame#LEGACY_TABLE_NAME} were stored in table
+ * {@link #LEGACY_TABLE_NAME}.
+ */
 @Entity
+@Table(
+    name = ExecutionFrameError.TABLE_NAME,
+    indexes = @Index(name = "EXECUTIONFRAMEERROR_FINGERPRINT", columnList = "errorFingerprint")
+)
 @IdClass(ExecutionFrame.ID.class)
 public class ExecutionFrameError {
+    /**
+     * Name of the table of execution-frame errors.
+     */
+    public static final String TABLE_NAME = "EXECUTIONFRAMEERROR_V2";
+
+    /**
+     * Name of the table of execution-frame errors written before execution frames were identified by the id of their
+     * execution trace.
+     */
+    public static final String LEGACY_TABLE_NAME = "EXECUTIONFRAMEERROR";
+
     @Nullable private ExecutionFrame executionFrame;
     @Nullable private String errorMessage;
+    @Nullable private String errorFingerprint;
+    @Nullable private byte[] errorMessageDelta;
 
     @Override
     public boolean equals(@Nullable Object otherObject) {
@@ -24,12 +57,14 @@ public class ExecutionFrameError {
 
         ExecutionFrameError other = (ExecutionFrameError) otherObject;
         return Objects.equals(executionFrame, other.executionFrame)
-            && Objects.equals(errorMessage, other.errorMessage);
+            && Objects.equals(errorMessage, other.errorMessage)
+            && Objects.equals(errorFingerprint, other.errorFingerprint)
+            && Arrays.equals(errorMessageDelta, other.errorMessageDelta);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(executionFrame, errorMessage);
+        return Objects.hash(executionFrame, errorMessage, errorFingerprint) + Arrays.hashCode(errorMessageDelta);
     }
 
     @Id
@@ -54,4 +89,33 @@ public class ExecutionFrameError {
         this.errorMessage = errorMessage;
         return this;
     }
+
+    /**
+     * Returns the fingerprint of the execution trace of this error, which is the id of an {@link ErrorTrace}.
+     */
+    @Column(length = ErrorTrace.FINGERPRINT_LENGTH)
+    @Nullable
+    public String getErrorFingerprint() {
+        return errorFingerprint;
+    }
+
+    public ExecutionFrameError setErrorFingerprint(@Nullable String errorFingerprint) {
+        this.errorFingerprint = errorFingerprint;
+        return this;
+    }
+
+    /**
+     * Returns the deflate-compressed UTF-8 representation of the execution trace of this error, using the execution
+     * trace stored for the fingerprint as preset dictionary, or {@code null} if the two are equal.
+     */
+    @Lob
+    @Nullable
+    public byte[] getErrorMessageDelta() {
+        return errorMessageDelta;
+    }
+
+    public ExecutionFrameError setErrorMessageDelta(@Nullable byte[] errorMessageDelta) {
+        this.errorMessageDelta = errorMessageDelta;
+        return this;
+    }
 }
@@ -7,16 +7,35 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 import java.util.Date;
 import java.util.Objects;
 
+/**
+ * Properties of the execution frame of a simple module, which depend on the simple-module executor.
+ *
+ * <p>Properties of execution frames in table {@link ExecutionFrame#LEGACY_TABLE_NAME} were stored in table
+ * {@link #LEGACY_TABLE_NAME}.
+ */
 @Entity
+@Table(name = ExecutionFrameProperties.TABLE_NAME)
 @IdClass(ExecutionFrame.ID.class)
 @DiscriminatorColumn(name = "workerkind", discriminatorType = DiscriminatorType.STRING)
 public abstract class ExecutionFrameProperties<D extends ExecutionFrameProperties<D>> {
+    /**
+     * Name of the table of execution-frame properties.
+     */
+    public static final String TABLE_NAME = "EXECUTIONFRAMEPROPERTIES_V2";
+
+    /**
+     * Name of the table of execution-frame properties written before execution frames were identified by the id of
+     * their execution trace.
+     */
+    public static final String LEGACY_TABLE_NAME = "EXECUTIONFRAMEPROPERTIES";
+
     @Nullable private ExecutionFrame executionFrame;
     private long dispatchTime = 0;
     @Nullable private String workerName;
@@ -0,0 +1,224 @@
+package com.svbio.workflow.entities;
+
+import com.svbio.workflow.api.ExecutionStatus;
+
+import javax.annotation.Nullable;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Final status of a CloudKeeper workflow execution.
+ *
+ * <p>Instances of this class represent the {@link ExecutionStatus} of a workflow execution that has finished (either
+ * successfully or not). The workflow-execution request is stored as compressed blob, because it contains an arbitrary
+ * module tree. All other properties of {@link ExecutionStatus} are stored in individual columns. The failure
+ * description is stored once per distinct fingerprint as {@link ErrorTrace}, and referenced by
+ * {@link #getFailureFingerprint()}. If the failure description differs from the one stored for the fingerprint (in the
+ * parts removed by normalization), {@link #getFailureDescriptionDelta()} contains the failure description compressed
+ * with the stored one as preset dictionary. {@link #getFailureDescription()} contains the failure description only if
+ * the row was written before failure descriptions were deduplicated.
+ *
+ * <p>Unlike the other entities in this package, instances of this class are not written by the database logger, but by
+ * the status-keeping service. There is therefore no foreign-key relationship with {@link Execution}, even though the
+ * ids coincide.
+ *
+ * <p>The secondary indexes support the queries of {@link com.svbio.workflow.api.ExecutionStatusQuery}, whose results
+ * are ordered by id, and counting the occurrences of each failure fingerprint.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "EXECUTIONRESULT_PREFIX_ID", columnList = "keyPrefix, id"),
+    @Index(name = "EXECUTIONRESULT_STATUS_ID", columnList = "status, id"),
+    @Index(name = "EXECUTIONRESULT_STARTTIME", columnList = "startTime"),
+    @Index(name = "EXECUTIONRESULT_FAILUREFINGERPRINT", columnList = "failureFingerprint")
+})
+public class ExecutionResult {
+    private long id;
+    @Nullable private ExecutionStatus.Status status;
+    @Nullable private String keyPrefix;
+    @Nullable private String failureDescription;
+    @Nullable private String failureFingerprint;
+    @Nullable private byte[] failureDescriptionDelta;
+    private long startTime;
+    @Nullable private Long queueWaitMillis;
+    @Nullable private Integer queueDepth;
+    @Nullable private byte[] compressedRequest;
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        ExecutionResult other = (ExecutionResult) otherObject;
+        return id == other.id
+            && status == other.status
+            && Objects.equals(keyPrefix, other.keyPrefix)
+            && Objects.equals(failureDescription, other.failureDescription)
+            && Objects.equals(failureFingerprint, other.failureFingerprint)
+            && Arrays.equals(failureDescriptionDelta, other.failureDescriptionDelta)
+            && startTime == other.startTime
+            && Objects.equals(queueWaitMillis, other.queueWaitMillis)
+            && Objects.equals(queueDepth, other.queueDepth)
+            && Arrays.equals(compressedRequest, other.compressedRequest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, status, keyPrefix, failureDescription, failureFingerprint, startTime, queueWaitMillis,
+            queueDepth) + 31 * Arrays.hashCode(failureDescriptionDelta) + Arrays.hashCode(compressedRequest);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Execution result %d (status: %s, prefix: '%s')", id, status, keyPrefix);
+    }
+
+    /**
+     * Returns the CloudKeeper execution id of this workflow execution.
+     */
+    @Id
+    public long getId() {
+        return id;
+    }
+
+    public ExecutionResult setId(long id) {
+        this.id = id;
+        return this;
+    }
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    @Nullable
+    public ExecutionStatus.Status getStatus() {
+        return status;
+    }
+
+    public ExecutionResult setStatus(@Nullable ExecutionStatus.Status status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Returns the prefix of this workflow execution, which was part of the workflow-execution request.
+     *
+     * <p>The prefix is also contained in the compressed request. It is stored redundantly so that it can be queried.
+     */
+    @Nullable
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public ExecutionResult setKeyPrefix(@Nullable String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+        return this;
+    }
+
+    @Lob
+    @Nullable
+    public String getFailureDescription() {
+        return failureDescription;
+    }
+
+    public ExecutionResult setFailureDescription(@Nullable String failureDescription) {
+        this.failureDescription = failureDescription;
+        return this;
+    }
+
+    /**
+     * Returns the fingerprint of the failure description, which is the id of an {@link ErrorTrace}.
+     */
+    @Column(length = ErrorTrace.FINGERPRINT_LENGTH)
+    @Nullable
+    public String getFailureFingerprint() {
+        return failureFingerprint;
+    }
+
+    public ExecutionResult setFailureFingerprint(@Nullable String failureFingerprint) {
+        this.failureFingerprint = failureFingerprint;
+        return this;
+    }
+
+    /**
+     * Returns the deflate-compressed UTF-8 representation of the failure description, using the failure description
+     * stored for the fingerprint as preset dictionary, or {@code null} if the two are equal.
+     */
+    @Lob
+    @Nullable
+    public byte[] getFailureDescriptionDelta() {
+        return failureDescriptionDelta;
+    }
+
+    public ExecutionResult setFailureDescriptionDelta(@Nullable byte[] failureDescriptionDelta) {
+        this.failureDescriptionDelta = failureDescriptionDelta;
+        return this;
+    }
+
+    /**
+     * Returns the timestamp of when the workflow execution started.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Nullable
+    public Date getStartTime() {
+        return startTime == 0
+            ? null
+            : new Date(startTime);
+    }
+
+    public ExecutionResult setStartTime(@Nullable Date startTime) {
+        this.startTime = startTime == null
+            ? 0
+            : startTime.getTime();
+        return this;
+    }
+
+    @Nullable
+    public Long getQueueWaitMillis() {
+        return queueWaitMillis;
+    }
+
+    public ExecutionResult setQueueWaitMillis(@Nullable Long queueWaitMillis) {
+        this.queueWaitMillis = queueWaitMillis;
+        return this;
+    }
+
+    @Nullable
+    public Integer getQueueDepth() {
+        return queueDepth;
+    }
+
+    public ExecutionResult setQueueDepth(@Nullable Integer queueDepth) {
+        this.queueDepth = queueDepth;
+        return this;
+    }
+
+    /**
+     * Returns the deflate-compressed XML representation of the workflow-execution request.
+     */
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Nullable
+    public byte[] getCompressedRequest() {
+        return compressedRequest;
+    }
+
+    public ExecutionResult setCompressedRequest(@Nullable byte[] compressedRequest) {
+        this.compressedRequest = compressedRequest;
+        return this;
+    }
+}
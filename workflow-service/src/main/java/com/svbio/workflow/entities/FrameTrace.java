@@ -0,0 +1,78 @@
+package com.svbio.workflow.entities;
+
+import javax.annotation.Nullable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Objects;
+
+/**
+ * Distinct execution trace of execution frames, identified by a numeric id derived from the execution trace.
+ *
+ * <p>Instances of this class form a dictionary that is shared by all {@link ExecutionFrame} rows (of all executions)
+ * with the same execution trace. An execution frame (and its properties and error) therefore references its execution
+ * trace by id instead of repeating the string representation of the execution trace.
+ */
+@Entity
+public class FrameTrace {
+    /**
+     * Maximum length of the string representation of an execution trace.
+     */
+    public static final int TRACE_LENGTH = 1024;
+
+    private long id;
+    @Nullable private String trace;
+
+    @Override
+    public boolean equals(@Nullable Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject == null || getClass() != otherObject.getClass()) {
+            return false;
+        }
+
+        FrameTrace other = (FrameTrace) otherObject;
+        return id == other.id
+            && Objects.equals(trace, other.trace);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, trace);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Frame trace %d ('%s')", id, trace);
+    }
+
+    /**
+     * Returns the id of the execution trace, which usually consists of the first 64 bits of the SHA-256 hash of its
+     * string representation. If that id was taken by a different execution trace, the id is the next free one.
+     */
+    @Id
+    public long getId() {
+        return id;
+    }
+
+    public FrameTrace setId(long id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Returns the string representation of the execution trace.
+     *
+     * @see xyz.cloudkeeper.model.immutable.execution.ExecutionTrace
+     */
+    @Column(length = TRACE_LENGTH, nullable = false)
+    @Nullable
+    public String getTrace() {
+        return trace;
+    }
+
+    public FrameTrace setTrace(@Nullable String trace) {
+        this.trace = trace;
+        return this;
+    }
+}
@@ -0,0 +1,376 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionRejectedException;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Admission controller that limits the number of concurrently running workflow executions and queues the excess in
+ * bounded per-tenant first-in-first-out queues, which are served by weighted fair queuing.
+ *
+ * <p>A ticket is admissible if fewer than {@link AdmissionPolicy#getMaxConcurrent()} tickets are running, if fewer than
+ * {@link AdmissionPolicy.TenantPolicy#getMaxConcurrent()} tickets of the same tenant are running, and, if a heap
+ * high-water mark is configured, the heap usage is below the mark. In order to guarantee progress, the heap usage is
+ * not taken into account if no ticket is running. A ticket is admitted immediately if it is admissible and no other
+ * ticket of the same tenant is queued. Otherwise, it is queued, unless the queue of its tenant or the global queue is
+ * full, in which case submission fails with an {@link ExecutionRejectedException}.
+ *
+ * <p>Whenever a running ticket is released, queued tickets are admitted as far as the policy allows. The next ticket is
+ * always taken from the admissible tenant with the smallest <em>pass</em> (stride scheduling): Each admission advances
+ * the pass of the tenant by the reciprocal of its weight, and a tenant that starts queueing begins with the current
+ * global pass (so that idle periods cannot be saved up). Consequently, while several tenants have queued tickets, each
+ * of them receives a share of the admissions proportional to its weight, and the wait of a tenant with few queued
+ * tickets does not depend on how many tickets other tenants have queued.
+ *
+ * <p>If the policy is {@link AdmissionPolicy#isUnlimited() unlimited}, tickets are admitted immediately without
+ * acquiring any lock.
+ *
+ * @param <T> type of the tickets
+ */
+final class AdmissionController<T extends AdmissionTicket> {
+    private final AdmissionPolicy policy;
+    private final Clock clock;
+    private final DoubleSupplier heapUsage;
+    private final boolean unlimited;
+
+    /**
+     * Lock guarding all fields below except {@link #running}, and all modifications of {@link #running} if the policy
+     * is not unlimited.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Map from tenant names to tenant states. Only tenants with running or queued tickets are contained.
+     */
+    private final Map<String, TenantState<T>> tenants = new HashMap<>();
+    private int queued = 0;
+    private long nextSequenceNumber = 0;
+    private double globalPass = 0;
+
+    private final AtomicInteger running = new AtomicInteger(0);
+
+    private static final class TenantState<T> {
+        private final String name;
+        private final AdmissionPolicy.TenantPolicy policy;
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private int running = 0;
+        private double pass = 0;
+
+        private TenantState(String name, AdmissionPolicy.TenantPolicy policy) {
+            this.name = name;
+            this.policy = policy;
+        }
+
+        private boolean isBelowMaxConcurrent() {
+            return policy.getMaxConcurrent() == 0 || running < policy.getMaxConcurrent();
+        }
+
+        private boolean isIdle() {
+            return running == 0 && queue.isEmpty();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param policy admission policy
+     * @param clock clock used for measuring the time tickets spend in the queue
+     * @param heapUsage supplier of the current heap usage, as fraction of the maximum heap size
+     */
+    AdmissionController(AdmissionPolicy policy, Clock clock, DoubleSupplier heapUsage) {
+        this.policy = Objects.requireNonNull(policy);
+        this.clock = Objects.requireNonNull(clock);
+        this.heapUsage = Objects.requireNonNull(heapUsage);
+        unlimited = policy.isUnlimited();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("admission controller (%s, running = %d, queued = %d)",
+            policy, running.get(), getQueueDepth());
+    }
+
+    /**
+     * Returns the current heap usage of this JVM, as fraction of the maximum heap size.
+     */
+    static double currentHeapUsage() {
+        Runtime runtime = Runtime.getRuntime();
+        return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+
+    private long currentTimeMillis() {
+        return clock.getTimeUnit().toMillis(clock.getCurrentTime());
+    }
+
+    /**
+     * Returns whether the global limits allow admitting a further ticket. Must only be called while holding
+     * {@link #lock}.
+     */
+    private boolean isBelowGlobalLimits() {
+        int currentlyRunning = running.get();
+        int maxConcurrent = policy.getMaxConcurrent();
+        double heapHighWaterMark = policy.getHeapHighWaterMark();
+        return (maxConcurrent == 0 || currentlyRunning < maxConcurrent)
+            && (heapHighWaterMark == 0 || currentlyRunning == 0 || heapUsage.getAsDouble() < heapHighWaterMark);
+    }
+
+    /**
+     * Returns the state of the given tenant, which is created if necessary. Must only be called while holding
+     * {@link #lock}.
+     */
+    private TenantState<T> getTenantState(String tenant) {
+        @Nullable TenantState<T> tenantState = tenants.get(tenant);
+        if (tenantState == null) {
+            tenantState = new TenantState<>(tenant, policy.getTenantPolicy(tenant));
+            tenants.put(tenant, tenantState);
+        }
+        return tenantState;
+    }
+
+    /**
+     * Removes the given tenant state if it is idle. Must only be called while holding {@link #lock}.
+     */
+    private void removeIfIdle(TenantState<T> tenantState) {
+        if (tenantState.isIdle()) {
+            tenants.remove(tenantState.name);
+        }
+    }
+
+    /**
+     * Admits queued tickets as far as the policy allows. Must only be called while holding {@link #lock}.
+     *
+     * @return the admitted tickets, in the order of admission
+     */
+    private List<T> dispatch() {
+        List<T> admitted = Collections.emptyList();
+        while (queued > 0 && isBelowGlobalLimits()) {
+            @Nullable TenantState<T> next = null;
+            for (TenantState<T> tenantState: tenants.values()) {
+                @Nullable T head = tenantState.queue.peek();
+                if (head != null && tenantState.isBelowMaxConcurrent() && (next == null || tenantState.pass < next.pass
+                        || (tenantState.pass == next.pass
+                            && head.getSequenceNumber() < next.queue.element().getSequenceNumber()))) {
+                    next = tenantState;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+
+            if (admitted.isEmpty()) {
+                admitted = new ArrayList<>();
+            }
+            admitted.add(next.queue.remove());
+            --queued;
+            admit(next);
+        }
+        return admitted;
+    }
+
+    /**
+     * Updates the state when a ticket of the given tenant is admitted. Must only be called while holding
+     * {@link #lock}.
+     */
+    private void admit(TenantState<T> tenantState) {
+        globalPass = tenantState.pass;
+        tenantState.pass += 1 / tenantState.policy.getWeight();
+        ++tenantState.running;
+        running.incrementAndGet();
+    }
+
+    /**
+     * Calls {@link AdmissionTicket#admitted(Long, Integer)} for each of the given previously queued tickets. Must not
+     * be called while holding {@link #lock}.
+     */
+    private void notifyAdmitted(List<T> admitted) {
+        if (!admitted.isEmpty()) {
+            long nowMillis = currentTimeMillis();
+            for (T ticket: admitted) {
+                ticket.admitted(nowMillis - ticket.getSubmissionTimeMillis(), ticket.getQueueDepthAtSubmission());
+            }
+        }
+    }
+
+    /**
+     * Submits the given ticket.
+     *
+     * <p>If the ticket is admitted immediately, {@link AdmissionTicket#admitted(Long, Integer)} is called before this
+     * method returns. Otherwise, it will be called once the ticket is admitted, unless the ticket is withdrawn first.
+     *
+     * @param ticket ticket
+     * @throws ExecutionRejectedException if the ticket can neither be admitted nor queued
+     */
+    void submit(T ticket) throws ExecutionRejectedException {
+        Objects.requireNonNull(ticket);
+        if (unlimited) {
+            running.incrementAndGet();
+            ticket.admitted(null, null);
+            return;
+        }
+
+        @Nullable List<T> admitted;
+        lock.lock();
+        try {
+            TenantState<T> tenantState = getTenantState(ticket.getTenant());
+            if (tenantState.queue.isEmpty() && tenantState.isBelowMaxConcurrent() && isBelowGlobalLimits()) {
+                tenantState.pass = Math.max(tenantState.pass, globalPass);
+                admit(tenantState);
+                admitted = null;
+            } else {
+                int tenantQueueCapacity = tenantState.policy.getQueueCapacity();
+                if (tenantQueueCapacity > 0 && tenantState.queue.size() >= tenantQueueCapacity) {
+                    removeIfIdle(tenantState);
+                    throw new ExecutionRejectedException(
+                        String.format(
+                            "Cannot accept workflow execution because tenant '%s' has %d executions running and %d "
+                                + "queued.",
+                            tenantState.name, tenantState.running, tenantState.queue.size()
+                        ),
+                        ExecutionRejectedException.Reason.TENANT_AT_CAPACITY,
+                        policy.getRetryAfterSeconds()
+                    );
+                } else if (queued >= policy.getQueueCapacity()) {
+                    removeIfIdle(tenantState);
+                    throw new ExecutionRejectedException(
+                        String.format("Cannot accept workflow execution because %d executions are running and %d are "
+                            + "queued.", running.get(), queued),
+                        ExecutionRejectedException.Reason.SERVICE_AT_CAPACITY,
+                        policy.getRetryAfterSeconds()
+                    );
+                }
+
+                if (tenantState.queue.isEmpty()) {
+                    tenantState.pass = Math.max(tenantState.pass, globalPass);
+                }
+                ticket.setSequenceNumber(nextSequenceNumber++);
+                ticket.setQueueDepthAtSubmission(queued);
+                tenantState.queue.add(ticket);
+                ++queued;
+                admitted = dispatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (admitted == null) {
+            ticket.admitted(null, null);
+        } else {
+            notifyAdmitted(admitted);
+        }
+    }
+
+    /**
+     * Releases the given previously admitted ticket and admits queued tickets, as far as the policy allows.
+     *
+     * <p>This method must be called exactly once for every admitted ticket.
+     *
+     * @param ticket ticket
+     */
+    void release(T ticket) {
+        if (unlimited) {
+            running.decrementAndGet();
+            return;
+        }
+
+        List<T> admitted;
+        lock.lock();
+        try {
+            @Nullable TenantState<T> tenantState = tenants.get(ticket.getTenant());
+            assert tenantState != null && tenantState.running > 0 : "ticket must have been admitted";
+            running.decrementAndGet();
+            --tenantState.running;
+            admitted = dispatch();
+            removeIfIdle(tenantState);
+        } finally {
+            lock.unlock();
+        }
+        notifyAdmitted(admitted);
+    }
+
+    /**
+     * Withdraws the given ticket from the queue.
+     *
+     * @param ticket ticket
+     * @return whether the ticket was queued (and has now been removed from the queue); if {@code false}, the ticket
+     *     has already been admitted (or was never submitted)
+     */
+    boolean withdraw(T ticket) {
+        if (unlimited) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            @Nullable TenantState<T> tenantState = tenants.get(ticket.getTenant());
+            if (tenantState == null || !tenantState.queue.remove(ticket)) {
+                return false;
+            }
+            --queued;
+            removeIfIdle(tenantState);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the queue, in submission order.
+     *
+     * <p>Note that tickets of different tenants are not necessarily admitted in submission order.
+     */
+    List<T> getQueuedTickets() {
+        List<T> queuedTickets = new ArrayList<>();
+        if (unlimited) {
+            return queuedTickets;
+        }
+
+        lock.lock();
+        try {
+            for (TenantState<T> tenantState: tenants.values()) {
+                queuedTickets.addAll(tenantState.queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        queuedTickets.sort(Comparator.comparingLong(AdmissionTicket::getSequenceNumber));
+        return queuedTickets;
+    }
+
+    /**
+     * Returns the number of queued tickets.
+     */
+    int getQueueDepth() {
+        if (unlimited) {
+            return 0;
+        }
+
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of admitted tickets that have not yet been released.
+     */
+    int getRunning() {
+        return running.get();
+    }
+
+    AdmissionPolicy getPolicy() {
+        return policy;
+    }
+}
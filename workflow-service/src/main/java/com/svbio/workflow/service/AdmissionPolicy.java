@@ -0,0 +1,169 @@
+package com.svbio.workflow.service;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable settings of an {@link AdmissionController}.
+ */
+final class AdmissionPolicy {
+    /**
+     * Policy that admits every workflow execution immediately.
+     */
+    static final AdmissionPolicy UNLIMITED = new AdmissionPolicy(0, 0, 0, 0);
+
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final double heapHighWaterMark;
+    private final long retryAfterSeconds;
+    private final TenantPolicy defaultTenantPolicy;
+    private final Map<String, TenantPolicy> tenantPolicies;
+
+    /**
+     * Immutable per-tenant settings of an {@link AdmissionController}.
+     */
+    static final class TenantPolicy {
+        /**
+         * Policy with weight 1 and without per-tenant limits.
+         */
+        static final TenantPolicy DEFAULT = new TenantPolicy(1, 0, 0);
+
+        private final double weight;
+        private final int maxConcurrent;
+        private final int queueCapacity;
+
+        /**
+         * Constructor.
+         *
+         * @param weight weight of the tenant, which determines its share of the capacity relative to other tenants
+         * @param maxConcurrent maximum number of concurrently running workflow executions of the tenant, or 0 if only
+         *     the global limit applies
+         * @param queueCapacity maximum number of workflow executions of the tenant waiting for admission, or 0 if only
+         *     the global limit applies
+         * @throws IllegalArgumentException if an argument is out of range
+         */
+        TenantPolicy(double weight, int maxConcurrent, int queueCapacity) {
+            if (!(weight > 0) || Double.isInfinite(weight) || maxConcurrent < 0 || queueCapacity < 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid tenant policy (weight = %f, maximum concurrent executions = %d, queue capacity = %d).",
+                    weight, maxConcurrent, queueCapacity
+                ));
+            }
+            this.weight = weight;
+            this.maxConcurrent = maxConcurrent;
+            this.queueCapacity = queueCapacity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("tenant policy (weight = %.2f, maximum concurrent executions = %d, "
+                + "queue capacity = %d)", weight, maxConcurrent, queueCapacity);
+        }
+
+        double getWeight() {
+            return weight;
+        }
+
+        int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        int getQueueCapacity() {
+            return queueCapacity;
+        }
+    }
+
+    /**
+     * Constructor for a policy that treats all tenants equally.
+     *
+     * @param maxConcurrent maximum number of concurrently running workflow executions, or 0 if unlimited
+     * @param queueCapacity maximum number of workflow executions waiting for admission
+     * @param heapHighWaterMark fraction of the maximum heap size above which no further workflow executions are
+     *     admitted (unless no workflow execution is running), or 0 if the heap usage is not to be taken into account
+     * @param retryAfterSeconds number of seconds after which clients may resubmit rejected requests
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    AdmissionPolicy(int maxConcurrent, int queueCapacity, double heapHighWaterMark, long retryAfterSeconds) {
+        this(maxConcurrent, queueCapacity, heapHighWaterMark, retryAfterSeconds, TenantPolicy.DEFAULT,
+            Collections.emptyMap());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxConcurrent maximum number of concurrently running workflow executions, or 0 if unlimited
+     * @param queueCapacity maximum number of workflow executions waiting for admission
+     * @param heapHighWaterMark fraction of the maximum heap size above which no further workflow executions are
+     *     admitted (unless no workflow execution is running), or 0 if the heap usage is not to be taken into account
+     * @param retryAfterSeconds number of seconds after which clients may resubmit rejected requests
+     * @param defaultTenantPolicy policy for tenants that are not contained in {@code tenantPolicies}
+     * @param tenantPolicies map from tenant names to tenant policies
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    AdmissionPolicy(int maxConcurrent, int queueCapacity, double heapHighWaterMark, long retryAfterSeconds,
+            TenantPolicy defaultTenantPolicy, Map<String, TenantPolicy> tenantPolicies) {
+        if (maxConcurrent < 0 || queueCapacity < 0 || heapHighWaterMark < 0 || heapHighWaterMark > 1
+                || retryAfterSeconds < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid admission policy (maximum concurrent executions = %d, queue capacity = %d, heap high-water "
+                    + "mark = %f, retry after = %d s).",
+                maxConcurrent, queueCapacity, heapHighWaterMark, retryAfterSeconds
+            ));
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.heapHighWaterMark = heapHighWaterMark;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.defaultTenantPolicy = Objects.requireNonNull(defaultTenantPolicy);
+        this.tenantPolicies = Collections.unmodifiableMap(new HashMap<>(tenantPolicies));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "admission policy (maximum concurrent executions = %d, queue capacity = %d, heap high-water mark = %.2f, "
+                + "%d tenant policies)",
+            maxConcurrent, queueCapacity, heapHighWaterMark, tenantPolicies.size()
+        );
+    }
+
+    /**
+     * Returns whether this policy admits every workflow execution immediately.
+     */
+    boolean isUnlimited() {
+        return maxConcurrent == 0 && heapHighWaterMark == 0 && defaultTenantPolicy.getMaxConcurrent() == 0
+            && tenantPolicies.values().stream().allMatch(tenantPolicy -> tenantPolicy.getMaxConcurrent() == 0);
+    }
+
+    int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    double getHeapHighWaterMark() {
+        return heapHighWaterMark;
+    }
+
+    long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Returns the policy for the given tenant.
+     *
+     * @param tenant name of the tenant
+     * @return the policy for the given tenant, guaranteed non-null
+     */
+    TenantPolicy getTenantPolicy(String tenant) {
+        @Nullable TenantPolicy tenantPolicy = tenantPolicies.get(tenant);
+        return tenantPolicy == null
+            ? defaultTenantPolicy
+            : tenantPolicy;
+    }
+}
@@ -0,0 +1,75 @@
+package com.svbio.workflow.service;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * Submission of a workflow execution to an {@link AdmissionController}.
+ */
+abstract class AdmissionTicket {
+    private final String tenant;
+    private final long submissionTimeMillis;
+
+    /**
+     * Sequence number assigned by the admission controller upon submission. Only written while holding the lock of the
+     * admission controller, before the ticket is queued, and never changed afterwards. Tickets returned by
+     * {@link AdmissionController#getQueuedTickets()} may therefore be read without holding the lock.
+     */
+    private long sequenceNumber;
+
+    /**
+     * Number of tickets queued ahead of this ticket at submission time. Only accessed while holding the lock of the
+     * admission controller.
+     */
+    private int queueDepthAtSubmission;
+
+    /**
+     * Constructor.
+     *
+     * @param tenant name of the tenant that submitted the workflow execution
+     * @param submissionTimeMillis time (in milliseconds since the epoch) when the workflow execution was submitted
+     */
+    AdmissionTicket(String tenant, long submissionTimeMillis) {
+        this.tenant = Objects.requireNonNull(tenant);
+        this.submissionTimeMillis = submissionTimeMillis;
+    }
+
+    final String getTenant() {
+        return tenant;
+    }
+
+    final long getSubmissionTimeMillis() {
+        return submissionTimeMillis;
+    }
+
+    final long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    final void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    final int getQueueDepthAtSubmission() {
+        return queueDepthAtSubmission;
+    }
+
+    final void setQueueDepthAtSubmission(int queueDepthAtSubmission) {
+        this.queueDepthAtSubmission = queueDepthAtSubmission;
+    }
+
+    /**
+     * Called when the workflow execution has been admitted.
+     *
+     * <p>This method is called without holding any lock of the admission controller, either in the thread that
+     * submitted this ticket (if it was admitted immediately) or in the thread that released a previously admitted
+     * ticket. Implementations must not throw exceptions. Once the workflow execution finishes, implementations must
+     * call {@link AdmissionController#release(AdmissionTicket)}.
+     *
+     * @param queueWaitMillis time (in milliseconds) this ticket was waiting in the queue, or {@code null} if it was
+     *     admitted immediately
+     * @param queueDepth number of tickets queued ahead of this ticket at submission time, or {@code null} if it was
+     *     admitted immediately
+     */
+    abstract void admitted(@Nullable Long queueWaitMillis, @Nullable Integer queueDepth);
+}
@@ -0,0 +1,567 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import com.typesafe.config.Config;
+import scala.Option;
+import xyz.cloudkeeper.interpreter.event.BeginExecutionTraceEvent;
+import xyz.cloudkeeper.interpreter.event.EndExecutionTraceEvent;
+import xyz.cloudkeeper.interpreter.event.ExecutionTraceEvent;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Akka mailbox for {@link DatabaseLoggingActor} that holds at most a fixed number of interpreter events.
+ *
+ * <p>If the database is slow or unavailable, the database logging actor cannot keep up with the interpreter events
+ * sent to it. An unbounded mailbox would then grow until the JVM runs out of memory. This mailbox instead applies an
+ * {@link OverflowPolicy} once it contains {@code mailbox-capacity} {@link ExecutionTraceEvent} messages. Unlike
+ * {@link akka.dispatch.BoundedMailbox}, enqueueing never blocks the sender, so the interpreter is never slowed down by
+ * the database logger.
+ *
+ * <p>Only {@link ExecutionTraceEvent} messages count towards the capacity and are ever dropped, with the exception of
+ * {@link EndExecutionTraceEvent} messages for the root execution trace. The latter and all other messages (such as
+ * {@link StartExecutionEvent} and {@link StopExecutionEvent}) are always enqueued, because the acknowledgement of a
+ * {@link StopExecutionEvent} depends on them. There are only few such messages per execution.
+ *
+ * <p>Dropped messages are sent to the dead-letter actor (as {@link akka.dispatch.BoundedMailbox} does), and counted
+ * in {@link EventOverflowCounters}.
+ *
+ * <p>With {@link OverflowPolicy#SPILL}, events that do not fit into the mailbox are appended to an {@link EventSpool}
+ * instead, and moved back into the mailbox as the actor dequeues messages. The spill spool only extends the capacity of
+ * the mailbox; it is not meant to survive the JVM (this is what the spool of {@link DatabaseLoggingActor} is for), so
+ * records left behind in a spill spool are discarded when it is opened.
+ *
+ * <p>This mailbox is configured as follows (see {@code reference.conf}):
+ * <ul><li>
+ *     {@code mailbox-capacity}: maximum number of droppable messages, must be positive
+ * </li><li>
+ *     {@code overflow-policy}: one of {@code drop-oldest}, {@code drop-newest}, {@code coalesce}, and {@code spill}
+ * </li><li>
+ *     {@code spill-path}: base directory of the spill spools, must not be empty if the overflow policy is
+ *     {@code spill}
+ * </li><li>
+ *     {@code spill-segment-size}: size of the segment files of the spill spools
+ * </li></ul>
+ */
+final class BoundedEventMailbox implements MailboxType, ProducesMessageQueue<BoundedEventMailbox.EventQueue> {
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    @Nullable private final Path spillDirectory;
+    private final int spillSegmentSize;
+
+    /**
+     * Policy that determines which message is dropped once a {@link BoundedEventMailbox} is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * The oldest droppable message in the mailbox is dropped in favor of the new message.
+         */
+        DROP_OLDEST("drop-oldest"),
+
+        /**
+         * The new message is dropped.
+         */
+        DROP_NEWEST("drop-newest"),
+
+        /**
+         * A new {@link EndExecutionTraceEvent} replaces the {@link BeginExecutionTraceEvent} of the same execution
+         * trace in the mailbox, and both are delivered together as one {@link CoalescedEvents} message (at the
+         * position of the new message). Since the database logger writes the same information for the two events
+         * whether they are delivered separately or together, nothing is lost. If there is no matching
+         * {@link BeginExecutionTraceEvent} in the mailbox, the new message is dropped.
+         */
+        COALESCE("coalesce"),
+
+        /**
+         * The new message is appended to a spill spool on disk. While the spill spool is not empty, all
+         * {@link ExecutionTraceEvent} messages (including the {@link EndExecutionTraceEvent} of the root execution
+         * trace) are appended to it, so that the events of an execution stay in order. Spilled messages are moved back
+         * into the mailbox once there is room again. A message is only dropped if it cannot be appended to the spill
+         * spool.
+         */
+        SPILL("spill");
+
+        private final String configValue;
+
+        OverflowPolicy(String configValue) {
+            this.configValue = configValue;
+        }
+
+        @Override
+        public String toString() {
+            return configValue;
+        }
+
+        /**
+         * Returns the overflow policy with the given configuration value.
+         *
+         * @throws IllegalArgumentException if there is no overflow policy with the given configuration value
+         */
+        static OverflowPolicy fromConfigValue(String configValue) {
+            for (OverflowPolicy overflowPolicy: values()) {
+                if (overflowPolicy.configValue.equals(configValue)) {
+                    return overflowPolicy;
+                }
+            }
+            throw new IllegalArgumentException(String.format(
+                "Expected 'drop-oldest', 'drop-newest', 'coalesce', or 'spill' as overflow policy, but got '%s'.",
+                configValue
+            ));
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of droppable messages in each message queue, must be positive
+     * @param overflowPolicy policy applied if a message queue is full
+     * @param spillDirectory base directory of the spill spools (one per message queue), or {@code null} if the
+     *     overflow policy is not {@link OverflowPolicy#SPILL}
+     * @param spillSegmentSize size (in bytes) of the segment files of the spill spools, must be within the bounds
+     *     documented in {@link EventSpool#openUnclaimed(Path, int)}
+     * @throws IllegalArgumentException if the capacity is not positive, if the spill directory is missing for
+     *     {@link OverflowPolicy#SPILL}, or if the segment size is out of bounds
+     */
+    BoundedEventMailbox(int capacity, OverflowPolicy overflowPolicy, @Nullable Path spillDirectory,
+            int spillSegmentSize) {
+        Objects.requireNonNull(overflowPolicy);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive mailbox capacity, but got %d.", capacity
+            ));
+        } else if (overflowPolicy == OverflowPolicy.SPILL && spillDirectory == null) {
+            throw new IllegalArgumentException(String.format(
+                "Expected spill directory for overflow policy '%s'.", overflowPolicy
+            ));
+        } else if (spillSegmentSize < EventSpool.MIN_SEGMENT_SIZE || spillSegmentSize > EventSpool.MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                "Expected spill segment size between %d and %d bytes, but got %d.", EventSpool.MIN_SEGMENT_SIZE,
+                EventSpool.MAX_SEGMENT_SIZE, spillSegmentSize
+            ));
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillDirectory = spillDirectory;
+        this.spillSegmentSize = spillSegmentSize;
+    }
+
+    /**
+     * Constructor for a mailbox whose overflow policy is not {@link OverflowPolicy#SPILL}.
+     *
+     * @param capacity maximum number of droppable messages in each message queue, must be positive
+     * @param overflowPolicy policy applied if a message queue is full
+     * @throws IllegalArgumentException if the capacity is not positive, or if the overflow policy is
+     *     {@link OverflowPolicy#SPILL}
+     */
+    BoundedEventMailbox(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, null, EventSpool.MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a mailbox from the given mailbox configuration.
+     *
+     * @param config mailbox configuration
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    BoundedEventMailbox(Config config) {
+        this(
+            config.getInt("mailbox-capacity"),
+            OverflowPolicy.fromConfigValue(config.getString("overflow-policy")),
+            config.getString("spill-path").isEmpty()
+                ? null
+                : Paths.get(config.getString("spill-path")),
+            (int) Math.min(config.getBytes("spill-segment-size"), Integer.MAX_VALUE)
+        );
+    }
+
+    /**
+     * Constructor called (reflectively) by Akka.
+     */
+    BoundedEventMailbox(ActorSystem.Settings settings, Config config) {
+        this(config);
+    }
+
+    @Override
+    public String toString() {
+        return overflowPolicy == OverflowPolicy.SPILL
+            ? String.format("bounded event mailbox (capacity = %d, overflow policy = %s, spill directory = %s)",
+                capacity, overflowPolicy, spillDirectory)
+            : String.format("bounded event mailbox (capacity = %d, overflow policy = %s)", capacity, overflowPolicy);
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        if (system.isEmpty()) {
+            throw new IllegalArgumentException(String.format("%s requires an actor system.", this));
+        }
+        return new EventQueue(capacity, overflowPolicy, spillDirectory, spillSegmentSize, system.get());
+    }
+
+    private static boolean isDroppable(Object message) {
+        return message instanceof ExecutionTraceEvent
+            && !(message instanceof EndExecutionTraceEvent
+                && ((ExecutionTraceEvent) message).getExecutionTrace().isEmpty());
+    }
+
+    /**
+     * {@link BeginExecutionTraceEvent} message followed by the {@link EndExecutionTraceEvent} message of the same
+     * execution trace, created by {@link OverflowPolicy#COALESCE}.
+     */
+    static final class CoalescedEvents {
+        private final BeginExecutionTraceEvent beginEvent;
+        private final EndExecutionTraceEvent endEvent;
+
+        CoalescedEvents(BeginExecutionTraceEvent beginEvent, EndExecutionTraceEvent endEvent) {
+            this.beginEvent = Objects.requireNonNull(beginEvent);
+            this.endEvent = Objects.requireNonNull(endEvent);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("coalesced events (%s, %s)", beginEvent, endEvent);
+        }
+
+        BeginExecutionTraceEvent getBeginEvent() {
+            return beginEvent;
+        }
+
+        EndExecutionTraceEvent getEndEvent() {
+            return endEvent;
+        }
+    }
+
+    /**
+     * Key of a {@link BeginExecutionTraceEvent} message in {@link EventQueue#beginNodes}.
+     */
+    private static final class TraceKey {
+        private final long executionId;
+        private final Object executionTrace;
+
+        private TraceKey(ExecutionTraceEvent event) {
+            executionId = event.getExecutionId();
+            executionTrace = event.getExecutionTrace();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object otherObject) {
+            if (this == otherObject) {
+                return true;
+            } else if (otherObject == null || getClass() != otherObject.getClass()) {
+                return false;
+            }
+
+            TraceKey other = (TraceKey) otherObject;
+            return executionId == other.executionId
+                && executionTrace.equals(other.executionTrace);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(executionId) + executionTrace.hashCode();
+        }
+    }
+
+    private static final class Node {
+        private final Envelope envelope;
+        private final boolean droppable;
+        @Nullable private Node previous;
+        @Nullable private Node next;
+
+        private Node(Envelope envelope, boolean droppable) {
+            this.envelope = envelope;
+            this.droppable = droppable;
+        }
+    }
+
+    /**
+     * Message queue created by {@link BoundedEventMailbox}.
+     *
+     * <p>The queue is a doubly-linked list, so that dropping the oldest droppable message and coalescing events take
+     * constant time (except for skipping the few non-droppable messages at the head of the queue). All methods are
+     * synchronized on {@link #lock}; the critical sections are short.
+     */
+    static final class EventQueue implements MessageQueue {
+        private final int capacity;
+        private final OverflowPolicy overflowPolicy;
+        @Nullable private final Path spillDirectory;
+        private final int spillSegmentSize;
+        private final ActorSystem system;
+        private final EventOverflowCounters overflowCounters;
+        private final Object lock = new Object();
+
+        /**
+         * Nodes of the {@link BeginExecutionTraceEvent} messages in this queue, only maintained for
+         * {@link OverflowPolicy#COALESCE}. Guarded by {@link #lock}.
+         */
+        private final Map<TraceKey, Node> beginNodes = new HashMap<>();
+
+        @Nullable private Node head = null;
+        @Nullable private Node tail = null;
+        private int size = 0;
+        private int droppableSize = 0;
+
+        /**
+         * Spool of the spilled messages, only used for {@link OverflowPolicy#SPILL} and opened lazily. Guarded by
+         * {@link #lock}.
+         */
+        @Nullable private EventSpool spill = null;
+
+        EventQueue(int capacity, OverflowPolicy overflowPolicy, @Nullable Path spillDirectory, int spillSegmentSize,
+                ActorSystem system) {
+            this.capacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            this.spillDirectory = spillDirectory;
+            this.spillSegmentSize = spillSegmentSize;
+            this.system = system;
+            overflowCounters = EventOverflowCounters.get(system);
+        }
+
+        private boolean isSpilling() {
+            assert Thread.holdsLock(lock);
+            return spill != null && !spill.isEmpty();
+        }
+
+        /**
+         * Appends the given message to the spill spool, and returns whether that succeeded.
+         */
+        private boolean spill(Object message) {
+            assert Thread.holdsLock(lock);
+            try {
+                if (spill == null) {
+                    assert spillDirectory != null : "spill directory is validated by constructor of mailbox";
+                    EventSpool newSpill = EventSpool.openUnclaimed(spillDirectory, spillSegmentSize);
+                    if (!newSpill.isEmpty()) {
+                        // Left behind by a previous JVM. The executions of these events no longer exist.
+                        system.log().warning("Discarding {} messages left behind in {}.", newSpill.size(), newSpill);
+                        while (!newSpill.isEmpty()) {
+                            newSpill.consume((int) Math.min(newSpill.size(), Integer.MAX_VALUE));
+                        }
+                    }
+                    spill = newSpill;
+                }
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+                    objectOutputStream.writeObject(message);
+                }
+                spill.append(outputStream.toByteArray());
+                return true;
+            } catch (IOException exception) {
+                system.log().error(exception, "Failed to spill {} in {}.", message, spillDirectory);
+                return false;
+            }
+        }
+
+        /**
+         * Moves spilled messages back into this queue while there is room.
+         */
+        private void unspill() {
+            assert Thread.holdsLock(lock);
+            @Nullable EventSpool currentSpill = spill;
+            // Messages that cannot be read are dropped, so the queue might still have room afterwards.
+            while (currentSpill != null && !currentSpill.isEmpty() && droppableSize < capacity) {
+                List<byte[]> payloads = currentSpill.peek(capacity - droppableSize);
+                if (payloads.isEmpty()) {
+                    break;
+                }
+                for (byte[] payload: payloads) {
+                    try (ObjectInputStream objectInputStream
+                            = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                        Object message = objectInputStream.readObject();
+                        append(new Node(Envelope.apply(message, ActorRef.noSender(), system), isDroppable(message)));
+                    } catch (IOException | ClassNotFoundException exception) {
+                        overflowCounters.incrementDroppedCount();
+                        system.log().error(exception, "Discarding spilled message in {} that cannot be read.",
+                            currentSpill);
+                    }
+                }
+                try {
+                    currentSpill.consume(payloads.size());
+                } catch (IOException exception) {
+                    system.log().warning("Failed to remove consumed segment of {}. Cause: {}", currentSpill,
+                        exception);
+                }
+            }
+        }
+
+        private void append(Node node) {
+            assert Thread.holdsLock(lock);
+            node.previous = tail;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            ++size;
+            if (node.droppable) {
+                ++droppableSize;
+            }
+            Object message = node.envelope.message();
+            if (overflowPolicy == OverflowPolicy.COALESCE && message instanceof BeginExecutionTraceEvent) {
+                beginNodes.put(new TraceKey((ExecutionTraceEvent) message), node);
+            }
+        }
+
+        private void unlink(Node node) {
+            assert Thread.holdsLock(lock);
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            --size;
+            if (node.droppable) {
+                --droppableSize;
+            }
+            Object message = node.envelope.message();
+            if (overflowPolicy == OverflowPolicy.COALESCE && message instanceof BeginExecutionTraceEvent) {
+                beginNodes.remove(new TraceKey((ExecutionTraceEvent) message), node);
+            }
+        }
+
+        @Nullable
+        private Node firstDroppable() {
+            assert Thread.holdsLock(lock);
+            @Nullable Node node = head;
+            while (node != null && !node.droppable) {
+                node = node.next;
+            }
+            return node;
+        }
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            Object message = handle.message();
+            boolean droppable = isDroppable(message);
+            Envelope enqueued = handle;
+            @Nullable Envelope dropped = null;
+            boolean spilled = false;
+            synchronized (lock) {
+                if (overflowPolicy == OverflowPolicy.SPILL && message instanceof ExecutionTraceEvent
+                        && ((droppable && droppableSize >= capacity) || isSpilling())) {
+                    if (spill(message)) {
+                        spilled = true;
+                    } else if (droppable) {
+                        dropped = handle;
+                    }
+                } else if (droppable && droppableSize >= capacity) {
+                    switch (overflowPolicy) {
+                        case DROP_OLDEST:
+                            @Nullable Node oldest = firstDroppable();
+                            assert oldest != null : "queue contains capacity > 0 droppable messages";
+                            unlink(oldest);
+                            dropped = oldest.envelope;
+                            break;
+                        case DROP_NEWEST:
+                            dropped = handle;
+                            break;
+                        case COALESCE:
+                            @Nullable Node beginNode = message instanceof EndExecutionTraceEvent
+                                ? beginNodes.get(new TraceKey((ExecutionTraceEvent) message))
+                                : null;
+                            if (beginNode != null) {
+                                unlink(beginNode);
+                                enqueued = Envelope.apply(
+                                    new CoalescedEvents(
+                                        (BeginExecutionTraceEvent) beginNode.envelope.message(),
+                                        (EndExecutionTraceEvent) message
+                                    ),
+                                    handle.sender(),
+                                    system
+                                );
+                            } else {
+                                dropped = handle;
+                            }
+                            break;
+                        default:
+                            throw new AssertionError(String.format("unknown overflow policy %s", overflowPolicy));
+                    }
+                }
+                if (dropped != handle && !spilled) {
+                    append(new Node(enqueued, droppable));
+                }
+            }
+
+            if (spilled) {
+                overflowCounters.incrementSpilledCount();
+            } else if (dropped != null) {
+                overflowCounters.incrementDroppedCount();
+                system.deadLetters().tell(new DeadLetter(dropped.message(), dropped.sender(), receiver),
+                    dropped.sender());
+            } else if (enqueued != handle) {
+                overflowCounters.incrementCoalescedCount();
+            }
+        }
+
+        @Override
+        @Nullable
+        public Envelope dequeue() {
+            synchronized (lock) {
+                @Nullable Node node = head;
+                if (node == null) {
+                    return null;
+                }
+                unlink(node);
+                unspill();
+                return node.envelope;
+            }
+        }
+
+        @Override
+        public int numberOfMessages() {
+            synchronized (lock) {
+                return size;
+            }
+        }
+
+        @Override
+        public boolean hasMessages() {
+            synchronized (lock) {
+                return head != null;
+            }
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            @Nullable Envelope envelope = dequeue();
+            while (envelope != null) {
+                deadLetters.enqueue(owner, envelope);
+                envelope = dequeue();
+            }
+            synchronized (lock) {
+                if (spill != null) {
+                    try {
+                        spill.close();
+                    } catch (IOException exception) {
+                        system.log().warning("Failed to close {}. Cause: {}", spill, exception);
+                    }
+                    spill = null;
+                }
+            }
+        }
+    }
+}
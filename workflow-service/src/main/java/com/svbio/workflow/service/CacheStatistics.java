@@ -0,0 +1,44 @@
+package com.svbio.workflow.service;
+
+/**
+ * Immutable snapshot of the statistics of a cache.
+ */
+final class CacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    CacheStatistics(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache statistics (hits = %d, misses = %d, evictions = %d, hit ratio = %.3f)",
+            hitCount, missCount, evictionCount, getHitRatio());
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or 1 if there have not been any lookups.
+     */
+    double getHitRatio() {
+        long lookupCount = hitCount + missCount;
+        return lookupCount == 0
+            ? 1
+            : (double) hitCount / lookupCount;
+    }
+}
@@ -0,0 +1,255 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Decorator for a {@link StatusKeepingService} that caches the execution statuses of finished workflow executions.
+ *
+ * <p>Most status queries for a workflow execution arrive within minutes after it has finished. This decorator
+ * therefore keeps terminal execution statuses (see {@link ExecutionStatus.Status#isTerminal()}) in a cache that is
+ * bounded both in size and in time. Execution statuses are added to the cache when they have been persisted
+ * successfully (write-through) and when they have been loaded from the underlying service (read-through).
+ *
+ * <p>Entries are kept in insertion order. Since all entries have the same time-to-live, the eldest entry is always the
+ * first to expire, so that expired entries can be purged from the head of the cache in amortized constant time. If the
+ * underlying service does not keep execution statuses at all (see {@link NoStatusKeepingService}), this cache provides
+ * short-term visibility of finished workflow executions.
+ */
+final class CachingStatusKeepingService implements StatusKeepingService {
+    private final StatusKeepingService delegate;
+    private final Clock clock;
+    private final int maxSize;
+    private final long timeToLive;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Cache of execution statuses in insertion order. Guarded by the map's monitor.
+     */
+    private final LinkedHashMap<Long, CacheEntry> cache = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate underlying status-keeping service
+     * @param clock clock used for determining expiration
+     * @param maxSize maximum number of cached execution statuses, must be positive
+     * @param timeToLiveMillis time (in milliseconds) after which a cached execution status expires, must be positive
+     * @throws IllegalArgumentException if the maximum size or the time-to-live is not positive
+     */
+    CachingStatusKeepingService(StatusKeepingService delegate, Clock clock, int maxSize, long timeToLiveMillis) {
+        if (maxSize <= 0 || timeToLiveMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive maximum size and time-to-live, but got %d and %d ms.", maxSize, timeToLiveMillis
+            ));
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.clock = Objects.requireNonNull(clock);
+        this.maxSize = maxSize;
+        timeToLive = clock.getTimeUnit().convert(timeToLiveMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class CacheEntry {
+        private final ExecutionStatus executionStatus;
+        private final long expirationTime;
+
+        private CacheEntry(ExecutionStatus executionStatus, long expirationTime) {
+            this.executionStatus = executionStatus;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /**
+     * Removes expired entries from the head of the cache. Must be called while holding the monitor of {@link #cache}.
+     */
+    private void purgeExpired(long currentTime) {
+        assert Thread.holdsLock(cache);
+        Iterator<CacheEntry> iterator = cache.values().iterator();
+        while (iterator.hasNext() && iterator.next().expirationTime - currentTime <= 0) {
+            iterator.remove();
+            evictionCount.increment();
+        }
+    }
+
+    private void cache(ExecutionStatus executionStatus) {
+        if (!executionStatus.getStatus().isTerminal()) {
+            return;
+        }
+
+        long currentTime = clock.getCurrentTime();
+        synchronized (cache) {
+            purgeExpired(currentTime);
+            // Remove first, so that the new entry is moved to the tail.
+            cache.remove(executionStatus.getExecutionId());
+            cache.put(executionStatus.getExecutionId(), new CacheEntry(executionStatus, currentTime + timeToLive));
+            if (cache.size() > maxSize) {
+                Iterator<CacheEntry> iterator = cache.values().iterator();
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    @Nullable
+    private ExecutionStatus lookup(long executionId) {
+        long currentTime = clock.getCurrentTime();
+        synchronized (cache) {
+            purgeExpired(currentTime);
+            @Nullable CacheEntry entry = cache.get(executionId);
+            return entry == null
+                ? null
+                : entry.executionStatus;
+        }
+    }
+
+    /**
+     * Returns a future that is completed like the given future, but only after the given action has been performed
+     * with its result.
+     *
+     * <p>Unlike {@link CompletableFuture#whenComplete}, this method does not wrap exceptions in a
+     * {@link java.util.concurrent.CompletionException}.
+     */
+    private static <T> CompletableFuture<T> afterSuccess(CompletableFuture<T> future, Consumer<T> action) {
+        CompletableFuture<T> newFuture = new CompletableFuture<>();
+        future.whenComplete((@Nullable T result, @Nullable Throwable throwable) -> {
+            if (throwable != null) {
+                newFuture.completeExceptionally(throwable);
+            } else {
+                action.accept(result);
+                newFuture.complete(result);
+            }
+        });
+        return newFuture;
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+        return afterSuccess(delegate.persistExecutionStatus(executionStatus), ignored -> cache(executionStatus));
+    }
+
+    @Override
+    public CompletableFuture<Void> persistExecutionStatuses(List<ExecutionStatus> executionStatuses, boolean sync) {
+        return afterSuccess(delegate.persistExecutionStatuses(executionStatuses, sync),
+            ignored -> executionStatuses.forEach(this::cache));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned instance may be shared with other callers (and the caller of
+     * {@link #persistExecutionStatus(ExecutionStatus)}) and therefore must not be modified.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+        @Nullable ExecutionStatus cachedStatus = lookup(executionId);
+        if (cachedStatus != null) {
+            hitCount.increment();
+            return CompletableFuture.completedFuture(cachedStatus);
+        }
+
+        missCount.increment();
+        return afterSuccess(delegate.loadExecutionStatus(executionId), this::cache);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Cached execution statuses are served from the cache, and only the remaining execution statuses are loaded
+     * from the underlying service (with a single call).
+     */
+    @Override
+    public CompletableFuture<List<ExecutionStatus>> loadExecutionStatuses(List<Long> executionIds) {
+        Map<Long, ExecutionStatus> executionStatuses = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (long executionId: executionIds) {
+            @Nullable ExecutionStatus cachedStatus = lookup(executionId);
+            if (cachedStatus != null) {
+                hitCount.increment();
+                executionStatuses.put(executionId, cachedStatus);
+            } else {
+                missCount.increment();
+                missingIds.add(executionId);
+            }
+        }
+        List<Long> executionIdsCopy = new ArrayList<>(executionIds);
+        CompletableFuture<List<ExecutionStatus>> loadedFuture = missingIds.isEmpty()
+            ? CompletableFuture.completedFuture(Collections.emptyList())
+            : delegate.loadExecutionStatuses(missingIds);
+        CompletableFuture<List<ExecutionStatus>> future = new CompletableFuture<>();
+        loadedFuture.whenComplete((@Nullable List<ExecutionStatus> loadedStatuses, @Nullable Throwable throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            assert loadedStatuses != null;
+            for (ExecutionStatus loadedStatus: loadedStatuses) {
+                cache(loadedStatus);
+                executionStatuses.put(loadedStatus.getExecutionId(), loadedStatus);
+            }
+            List<ExecutionStatus> list = new ArrayList<>(executionStatuses.size());
+            for (long executionId: executionIdsCopy) {
+                @Nullable ExecutionStatus executionStatus = executionStatuses.get(executionId);
+                if (executionStatus != null) {
+                    list.add(executionStatus);
+                }
+            }
+            future.complete(list);
+        });
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Queries are always passed to the underlying service, because the cache only contains a subset of the
+     * execution statuses.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        return delegate.queryExecutionStatuses(query);
+    }
+
+    @Override
+    public CompletableFuture<List<ErrorSummary>> getTopErrors(int limit) {
+        return delegate.getTopErrors(limit);
+    }
+
+    /**
+     * Returns the number of currently cached execution statuses (including expired ones that have not been purged
+     * yet).
+     */
+    int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics. Evictions include both expired entries and entries removed because
+     * of the size bound.
+     */
+    CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+}
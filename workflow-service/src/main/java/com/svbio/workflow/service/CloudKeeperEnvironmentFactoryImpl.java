@@ -7,9 +7,22 @@ import xyz.cloudkeeper.model.api.CloudKeeperEnvironment;
 import xyz.cloudkeeper.model.api.staging.InstanceProvider;
 import xyz.cloudkeeper.model.util.ImmutableList;
 
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Factory of {@link CloudKeeperEnvironment} instances that caches the created instances.
+ *
+ * <p>{@link CloudKeeperEnvironment} instances are thread-safe and may be used for an arbitrary number of workflow
+ * executions. This factory therefore keeps the most recently used environments in a bounded cache with least-recently
+ * used eviction, keyed by prefix and cleaning flag. Environments are created without holding the lock of the cache, so
+ * concurrent cache misses for the same key may create more than one environment (only one of which is retained).
+ */
 final class CloudKeeperEnvironmentFactoryImpl implements CloudKeeperEnvironmentFactory {
     private final Executor executor;
     private final ActorRef administratorActor;
@@ -19,11 +32,31 @@ final class CloudKeeperEnvironmentFactoryImpl implements CloudKeeperEnvironmentF
     private final InstanceProvider instanceProvider;
     private final StagingAreaService stagingAreaService;
     private final List<EventSubscription> interpreterEventSubscriptions;
+    private final int maxCachedEnvironments;
 
+    /**
+     * Cache of environments in access order. Guarded by the map's monitor.
+     */
+    private final LinkedHashMap<EnvironmentKey, CloudKeeperEnvironment> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxCachedEnvironments maximum number of cached environments, or 0 if environments are not to be cached
+     */
     CloudKeeperEnvironmentFactoryImpl(Executor executor, ActorRef administratorActor,
             ActorRef masterInterpreterActor, ActorRef executorActor, ActorRef instanceProviderActor,
             InstanceProvider instanceProvider, StagingAreaService stagingAreaService,
-            List<EventSubscription> interpreterEventSubscriptions) {
+            List<EventSubscription> interpreterEventSubscriptions, int maxCachedEnvironments) {
+        if (maxCachedEnvironments < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected non-negative maximum number of cached environments, but got %d.", maxCachedEnvironments
+            ));
+        }
+
         this.executor = executor;
         this.administratorActor = administratorActor;
         this.masterInterpreterActor = masterInterpreterActor;
@@ -32,18 +65,85 @@ final class CloudKeeperEnvironmentFactoryImpl implements CloudKeeperEnvironmentF
         this.instanceProvider = instanceProvider;
         this.stagingAreaService = stagingAreaService;
         this.interpreterEventSubscriptions = ImmutableList.copyOf(interpreterEventSubscriptions);
+        this.maxCachedEnvironments = maxCachedEnvironments;
+        cache = new LinkedHashMap<EnvironmentKey, CloudKeeperEnvironment>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4307187553520436528L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EnvironmentKey, CloudKeeperEnvironment> eldest) {
+                boolean evict = size() > CloudKeeperEnvironmentFactoryImpl.this.maxCachedEnvironments;
+                if (evict) {
+                    evictionCount.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    private static final class EnvironmentKey {
+        private final String prefix;
+        private final boolean cleaningRequested;
+
+        private EnvironmentKey(String prefix, boolean cleaningRequested) {
+            this.prefix = Objects.requireNonNull(prefix);
+            this.cleaningRequested = cleaningRequested;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object otherObject) {
+            if (this == otherObject) {
+                return true;
+            } else if (otherObject == null || getClass() != otherObject.getClass()) {
+                return false;
+            }
+
+            EnvironmentKey other = (EnvironmentKey) otherObject;
+            return prefix.equals(other.prefix)
+                && cleaningRequested == other.cleaningRequested;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * prefix.hashCode() + Boolean.hashCode(cleaningRequested);
+        }
     }
 
     /**
-     * Creates and returns a {@link CloudKeeperEnvironment}.
+     * Returns a {@link CloudKeeperEnvironment}, which is either taken from the cache or newly created.
      *
      * @param prefix prefix for the staging area, the meaning of prefix depends on the configured staging-area service
      * @param cleaningRequested whether intermediate results should be removed from the staging area as soon as they are
      *     no longer needed
-     * @return the new {@link CloudKeeperEnvironment}
+     * @return the {@link CloudKeeperEnvironment}
      */
     @Override
     public CloudKeeperEnvironment create(String prefix, boolean cleaningRequested) {
+        if (maxCachedEnvironments == 0) {
+            missCount.increment();
+            return newEnvironment(prefix, cleaningRequested);
+        }
+
+        EnvironmentKey key = new EnvironmentKey(prefix, cleaningRequested);
+        @Nullable CloudKeeperEnvironment environment;
+        synchronized (cache) {
+            environment = cache.get(key);
+        }
+        if (environment != null) {
+            hitCount.increment();
+            return environment;
+        }
+
+        missCount.increment();
+        CloudKeeperEnvironment newEnvironment = newEnvironment(prefix, cleaningRequested);
+        synchronized (cache) {
+            @Nullable CloudKeeperEnvironment existingEnvironment = cache.putIfAbsent(key, newEnvironment);
+            return existingEnvironment == null
+                ? newEnvironment
+                : existingEnvironment;
+        }
+    }
+
+    private CloudKeeperEnvironment newEnvironment(String prefix, boolean cleaningRequested) {
         return new CloudKeeperEnvironmentBuilder(executor,
                 administratorActor, masterInterpreterActor, executorActor, instanceProvider,
                 stagingAreaService.provideInitialStagingAreaProvider(prefix))
@@ -52,4 +152,20 @@ final class CloudKeeperEnvironmentFactoryImpl implements CloudKeeperEnvironmentF
             .setEventListeners(interpreterEventSubscriptions)
             .build();
     }
+
+    /**
+     * Returns the number of currently cached environments.
+     */
+    int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     */
+    CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
 }
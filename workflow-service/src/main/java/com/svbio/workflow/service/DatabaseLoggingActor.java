@@ -8,15 +8,18 @@ import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.japi.Creator;
 import akka.japi.Option;
+import akka.routing.ConsistentHashingRouter;
 import com.svbio.workflow.entities.DRMAAProperties;
 import com.svbio.workflow.entities.Execution;
 import com.svbio.workflow.entities.ExecutionFrame;
 import com.svbio.workflow.entities.ExecutionFrameError;
 import com.svbio.workflow.entities.ExecutionFrameProperties;
+import com.svbio.workflow.entities.FrameTrace;
 import com.svbio.workflow.entities.ProcessLauncherProperties;
 import com.svbio.workflow.entities.SimpleProperties;
 import com.svbio.workflow.entities.UnknownProperties;
 import com.svbio.workflow.util.Throwables;
+import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 import xyz.cloudkeeper.drm.DrmaaSimpleModuleExecutor;
 import xyz.cloudkeeper.executors.ForkedExecutors;
@@ -35,7 +38,6 @@ import xyz.cloudkeeper.model.runtime.element.module.RuntimeCompositeModule;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeCompositeModuleDeclaration;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeInputModule;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeLoopModule;
-import xyz.cloudkeeper.model.runtime.element.module.RuntimeModule;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeModuleDeclarationVisitor;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeModuleVisitor;
 import xyz.cloudkeeper.model.runtime.element.module.RuntimeProxyModule;
@@ -47,16 +49,23 @@ import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -85,7 +94,51 @@ import java.util.concurrent.TimeUnit;
  * information provided by the {@link StartExecutionEvent} messages. Since no timing assumptions can be made (messages
  * from different sources may arrive in non-deterministic order), this actor queues {@link ExecutionTraceEvent} messages
  * until a corresponding {@link StartExecutionEvent} is received, or until the {@link ExecutionTraceEvent} message times
- * out. In case of a timeout, the {@link ExecutionTraceEvent} message will be discarded.
+ * out. In case of a timeout, the {@link ExecutionTraceEvent} message will be discarded. At most {@code maxQueuedEvents}
+ * events are queued; further events of unknown executions are discarded (and counted in
+ * {@link EventOverflowCounters}) until there is room again.
+ *
+ * <p>Events are written in batches (group commit): Events that are ready to be written are collected, and a batch is
+ * written in a single transaction once it contains {@code maxBatchSize} events, once the first event in the batch has
+ * been waiting for {@code flushInterval}, or once a {@link StopExecutionEvent} is acknowledged, whichever comes first.
+ * If writing a batch fails, its events are written again one transaction per event, so that a single bad event does
+ * not cause the other events of the batch to be lost. Events that cannot be written individually are logged and
+ * discarded.
+ *
+ * <p>Batches are written either through JPA ({@link Backend#JPA}) or with batched JDBC statements
+ * ({@link Backend#JDBC}). With JPA, the {@link Execution} and {@link ExecutionFrame} entities written by this actor are
+ * kept in an {@link ExecutionLogCache} until the execution is removed. Subsequent events of the same execution
+ * therefore update these entities without looking them up first, and new execution frames are inserted without a
+ * lookup.
+ *
+ * <p>Execution frames are identified by their execution and the id of their execution trace (see {@link FrameTrace}).
+ * Before a batch is written, the execution traces of its events are resolved with a {@link FrameTraceDictionary},
+ * which stores the execution traces that are not in the dictionary yet.
+ *
+ * <p>If a {@link SpoolPolicy} is enabled, each batch is first appended to an {@link EventSpool}, and it is consumed
+ * from the spool once it has been written to the database. If the database is not available, the events stay in the
+ * spool (which also survives a restart of the actor or the JVM), and they are replayed in batches once the database
+ * is available again (see {@link #replaySpool()}). An event that fails to be written while the database is available
+ * is logged and discarded, so that it cannot block the events behind it. Events are written in the order in which
+ * they were spooled, so while there are spooled events, new batches are only appended to the spool. Replaying is
+ * idempotent (see {@link ExecutionLogBatch}), because an event may be replayed although it has been written before,
+ * for instance, if the JVM crashed right after writing it. Each actor claims the first spool directory that is not
+ * claimed by another actor (see {@link EventSpool#openUnclaimed(java.nio.file.Path, int)}). The spools left behind by
+ * a previous run are not replayed by these actors: Before the actors are created, they are moved into a single recovery
+ * spool that is replayed by a separate instance of this actor (see {@link DatabaseLoggingModule}), so that the events
+ * of an execution are only ever written by one actor, and no events are lost if the number of actors changes.
+ *
+ * <p>The execution trace (stack trace) of a {@link FailedExecutionTraceEvent} is recorded in an
+ * {@link ErrorTraceStore}, and the {@link ExecutionFrameError} references it by fingerprint. Only the differences to
+ * the execution trace stored for the fingerprint are stored with the error (see {@link ErrorTraceStore.Reference}).
+ * Like the {@link FrameTrace} entities, the execution traces of all errors in a batch are resolved with a single call
+ * before the batch transaction, and the occurrences are recorded within the batch transaction.
+ *
+ * <p>Since each actor writes one transaction at a time, the database logger is usually a router over several instances
+ * of this actor (see {@link ExecutionIdHashMapper}). All messages pertaining to the same execution are then routed to
+ * the same instance, so the above holds for each execution. Writing blocks, so the instances should run on a dedicated
+ * dispatcher and a {@link BoundedEventMailbox}, which bounds the number of events waiting for this actor if the
+ * database is slow.
  *
  * <p>Note that responding to messages may trigger (runtime) exceptions. How these are handled is not determined by this
  * actor, but is controlled by the parent actor's supervision strategy.
@@ -93,43 +146,205 @@ import java.util.concurrent.TimeUnit;
  * @see Event
  */
 final class DatabaseLoggingActor extends UntypedActor {
+    /**
+     * Number of buckets of {@link #queuedEventDeadlines}. A tick is this fraction of the eviction duration.
+     */
+    private static final int TIMING_WHEEL_BUCKETS = 64;
+
+    /**
+     * Number of seconds to wait for the database when checking whether it is available.
+     */
+    private static final int DATABASE_PROBE_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Minimum time between two warnings about events that were discarded because too many events are queued.
+     */
+    private static final long DISCARD_WARNING_INTERVAL_MILLIS = 60_000;
+
     private final LoggingAdapter log = Logging.getLogger(getContext().system(), (UntypedActor) this);
     private final EntityManagerFactory entityManagerFactory;
+    private final ErrorTraceStore errorTraceStore;
     private final Clock clock;
     private final FiniteDuration evictionDuration;
+    private final int maxBatchSize;
+    private final FiniteDuration flushInterval;
+    private final ExecutionLogCache executionLogCache;
+    private final FrameTraceDictionary frameTraceDictionary;
+    private final int maxQueuedEvents;
+    private final SpoolPolicy spoolPolicy;
+    private final Backend backend;
+    private final EventOverflowCounters overflowCounters = EventOverflowCounters.get(getContext().system());
     private final Map<Long, StartExecutionEvent> startExecutionEventMap = new HashMap<>();
     private final Set<Long> endExecutionTraceEventSet = new HashSet<>();
     private final Map<Long, ActorRef> stopExecutionEventMap = new HashMap<>();
-    private final LinkedList<QueuedEvent> queuedEvents = new LinkedList<>();
+
+    /**
+     * Queued events by execution id. Each deque is sorted by {@link QueuedEvent#timestamp}.
+     */
+    private final Map<Long, ArrayDeque<QueuedEvent>> queuedEvents = new HashMap<>();
+
+    /**
+     * Total number of events in {@link #queuedEvents}.
+     */
+    private int numQueuedEvents = 0;
+
+    /**
+     * Timing wheel that contains the execution id of each queued event, with the time after which the event is
+     * discarded as deadline. Entries of events that have been processed in the meantime are ignored once they expire.
+     */
+    private final TimingWheel<Long> queuedEventDeadlines;
+    private final long evictionDurationInClockUnits;
+    private final long discardWarningIntervalInClockUnits;
+
+    /**
+     * Time of the last warning about discarded events, or {@code null} if there has not been a warning yet.
+     */
+    @Nullable private Long lastDiscardWarningTimestamp = null;
+
+    /**
+     * Number of events discarded (because too many events are queued) since the last warning.
+     */
+    private long numDiscardedSinceWarning = 0;
 
     @Nullable private Cancellable scheduledQueueCleaning = null;
 
+    /**
+     * Events that are ready to be written in the next batch, in the order in which they were received.
+     */
+    private List<PendingEvent> batch = new ArrayList<>();
+
+    @Nullable private Cancellable scheduledFlush = null;
+
+    /**
+     * Spool of the events that have not been written to the database yet, or {@code null} if spooling is disabled or
+     * the spool could not be opened.
+     */
+    @Nullable private EventSpool spool = null;
+
+    /**
+     * Whether a {@link LocalMessages#REPLAY_SPOOL} message has been sent or scheduled. This is always the case while
+     * the spool is not empty.
+     */
+    private boolean replayPending = false;
+
+    @Nullable private Cancellable scheduledReplay = null;
+
+    /**
+     * Writer for {@link Backend#JDBC}, created lazily so that reading the mapping metadata does not happen during
+     * actor creation.
+     */
+    @Nullable private JdbcExecutionLogWriter jdbcExecutionLogWriter = null;
+
     private DatabaseLoggingActor(Factory factory) {
         entityManagerFactory = factory.entityManagerFactory;
+        errorTraceStore = factory.errorTraceStore;
         clock = factory.clock;
         evictionDuration = factory.evictionDuration;
+        maxBatchSize = factory.maxBatchSize;
+        flushInterval = factory.flushInterval;
+        executionLogCache = new ExecutionLogCache(factory.maxCachedExecutions);
+        frameTraceDictionary = new FrameTraceDictionary(factory.entityManagerFactory, factory.maxCachedTraces);
+        maxQueuedEvents = factory.maxQueuedEvents;
+        spoolPolicy = factory.spoolPolicy;
+        backend = factory.backend;
+        evictionDurationInClockUnits = clock.getTimeUnit().convert(evictionDuration.toNanos(), TimeUnit.NANOSECONDS);
+        discardWarningIntervalInClockUnits
+            = clock.getTimeUnit().convert(DISCARD_WARNING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        queuedEventDeadlines = new TimingWheel<>(
+            Math.max(1, evictionDurationInClockUnits / TIMING_WHEEL_BUCKETS),
+            TIMING_WHEEL_BUCKETS,
+            clock.getCurrentTime()
+        );
+    }
+
+    /**
+     * Mechanism used for writing batches of events.
+     */
+    enum Backend {
+        /**
+         * Entities are written through a JPA persistence context, using the {@link ExecutionLogCache}.
+         */
+        JPA,
+
+        /**
+         * Entities are written with batched JDBC statements, see {@link JdbcExecutionLogWriter}.
+         */
+        JDBC
     }
 
     static class Factory implements Creator<Actor> {
         private static final long serialVersionUID = -1225496895460018463L;
 
         private final EntityManagerFactory entityManagerFactory;
+        private final ErrorTraceStore errorTraceStore;
         private final Clock clock;
         private final FiniteDuration evictionDuration;
+        private final int maxBatchSize;
+        private final FiniteDuration flushInterval;
+        private final int maxCachedExecutions;
+        private final int maxCachedTraces;
+        private final int maxQueuedEvents;
+        private final SpoolPolicy spoolPolicy;
+        private final Backend backend;
 
         /**
          * Constructs a new creator of database logging actors.
          *
          * @param entityManagerFactory JPA entity manager factory
+         * @param errorTraceStore store for the execution traces of errors
          * @param evictionDuration duration before
+         * @param maxBatchSize maximum number of events written in a single transaction
+         * @param flushInterval maximum time that an event waits for further events before its batch is written
+         * @param maxCachedExecutions maximum number of executions in the {@link ExecutionLogCache}; 0 disables the
+         *     cache
+         * @param maxCachedTraces maximum number of execution traces cached by the {@link FrameTraceDictionary}; 0
+         *     disables the cache
+         * @param maxQueuedEvents maximum number of events that wait for the {@link StartExecutionEvent} of their
+         *     execution
+         * @param spoolPolicy settings of the spool of events that have not been written to the database yet
+         * @param backend mechanism used for writing batches of events
+         * @throws IllegalArgumentException if the maximum batch size or the maximum number of queued events is not
+         *     positive, or if the maximum number of cached executions or execution traces is negative
          */
-        Factory(EntityManagerFactory entityManagerFactory, Clock clock, FiniteDuration evictionDuration) {
+        Factory(EntityManagerFactory entityManagerFactory, ErrorTraceStore errorTraceStore, Clock clock,
+                FiniteDuration evictionDuration, int maxBatchSize, FiniteDuration flushInterval,
+                int maxCachedExecutions, int maxCachedTraces, int maxQueuedEvents, SpoolPolicy spoolPolicy,
+                Backend backend) {
             Objects.requireNonNull(entityManagerFactory);
+            Objects.requireNonNull(errorTraceStore);
             Objects.requireNonNull(clock);
             Objects.requireNonNull(evictionDuration);
+            Objects.requireNonNull(flushInterval);
+            Objects.requireNonNull(spoolPolicy);
+            Objects.requireNonNull(backend);
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected positive maximum batch size, but got %d.", maxBatchSize
+                ));
+            } else if (maxCachedExecutions < 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected non-negative maximum number of cached executions, but got %d.", maxCachedExecutions
+                ));
+            } else if (maxCachedTraces < 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected non-negative maximum number of cached execution traces, but got %d.", maxCachedTraces
+                ));
+            } else if (maxQueuedEvents <= 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected positive maximum number of queued events, but got %d.", maxQueuedEvents
+                ));
+            }
             this.entityManagerFactory = entityManagerFactory;
+            this.errorTraceStore = errorTraceStore;
             this.clock = clock;
             this.evictionDuration = evictionDuration;
+            this.maxBatchSize = maxBatchSize;
+            this.flushInterval = flushInterval;
+            this.maxCachedExecutions = maxCachedExecutions;
+            this.maxCachedTraces = maxCachedTraces;
+            this.maxQueuedEvents = maxQueuedEvents;
+            this.spoolPolicy = spoolPolicy;
+            this.backend = backend;
         }
 
         private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -146,6 +361,28 @@ final class DatabaseLoggingActor extends UntypedActor {
         }
     }
 
+    /**
+     * Hash mapper for a consistent-hashing router over database logging actors that maps each message to the id of
+     * the execution that it pertains to.
+     *
+     * <p>The mapped key is a string, because Akka would otherwise have to serialize the key in order to hash it.
+     */
+    enum ExecutionIdHashMapper implements ConsistentHashingRouter.ConsistentHashMapper {
+        INSTANCE;
+
+        @Override
+        public Object hashKey(Object message) {
+            if (message instanceof ExecutionTraceEvent) {
+                return Long.toString(((ExecutionTraceEvent) message).getExecutionId());
+            } else if (message instanceof ExecutionEvent) {
+                return Long.toString(((ExecutionEvent) message).getExecutionId());
+            } else {
+                // Messages not pertaining to an execution are not expected, so any routee will do.
+                return "";
+            }
+        }
+    }
+
     enum ProxyModuleVisitor implements RuntimeModuleDeclarationVisitor<ExecutionFrame.ModuleKind, Void> {
         INSTANCE;
 
@@ -205,8 +442,8 @@ final class DatabaseLoggingActor extends UntypedActor {
             : (int) (long) number;
     }
 
-    private static void processEndExecutionTraceEvent(ExecutionFrame executionFrame,
-            EntityManager entityManager, SimpleModuleExecutorResult result) {
+    private static void processEndExecutionTraceEvent(ExecutionFrame executionFrame, ExecutionLogBatch batch,
+            SimpleModuleExecutorResult result) {
         @Nullable ProcessLauncherProperties<?> processLauncherProperties = null;
         Name executorName = result.getExecutorName();
         if (executorName.contentEquals(DrmaaSimpleModuleExecutor.class.getName())) {
@@ -245,35 +482,110 @@ final class DatabaseLoggingActor extends UntypedActor {
             .setWorkerStartTime(time(result, executorName, SimpleModuleExecutor.SUBMISSION_TIME_MILLIS))
             .setWorkerFinishTime(time(result, executorName, SimpleModuleExecutor.COMPLETION_TIME_MILLIS));
 
-        entityManager.persist(executionFrameProperties);
+        batch.insert(executionFrameProperties);
     }
 
-    private static void processEvent(ExecutionTraceEvent event, EntityManager entityManager, String prefix,
-            RuntimeModule module) {
-        Date timestamp = new Date(event.getTimestamp());
-        @Nullable Execution execution = entityManager.find(Execution.class, event.getExecutionId());
-        if (execution == null) {
-            execution = new Execution()
-                .setId(event.getExecutionId())
-                .setKeyPrefix(prefix);
-            entityManager.persist(execution);
-        }
-
-        String executionTraceString = event.getExecutionTrace().toString();
-        @Nullable ExecutionFrame executionFrame = entityManager.find(
-            ExecutionFrame.class,
-            new ExecutionFrame.ID()
-                .setExecution(execution.getId())
-                .setFrame(executionTraceString)
-        );
-        if (executionFrame == null) {
-            executionFrame = new ExecutionFrame()
-                .setExecution(execution)
-                .setFrame(executionTraceString)
-                .setModuleKind(module.accept(ModuleVisitor.INSTANCE, null));
-            entityManager.persist(executionFrame);
+    /**
+     * Batch of entities written through a JPA persistence context.
+     *
+     * <p>A cached execution (or execution frame) is merged into the persistence context (unless it is already
+     * managed), so that no lookup by primary key is necessary. An execution frame that is known not to exist (see
+     * {@link ExecutionLogCache#isKnownToBeNew(long, long)}) is inserted without a prior lookup, unless the batch is
+     * idempotent.
+     */
+    private final class JpaExecutionLogBatch implements ExecutionLogBatch {
+        private final EntityManager entityManager;
+        private final boolean idempotent;
+        private final ErrorTraceStore.Occurrences errorOccurrences = new ErrorTraceStore.Occurrences();
+
+        private JpaExecutionLogBatch(EntityManager entityManager, boolean idempotent) {
+            this.entityManager = entityManager;
+            this.idempotent = idempotent;
         }
 
+        @Override
+        public Execution getExecution(long executionId, String keyPrefix) {
+            @Nullable Execution execution = executionLogCache.getExecution(executionId);
+            boolean created = false;
+            if (execution != null) {
+                if (!entityManager.contains(execution)) {
+                    execution = entityManager.merge(execution);
+                }
+            } else {
+                execution = entityManager.find(Execution.class, executionId);
+                if (execution == null) {
+                    execution = new Execution()
+                        .setId(executionId)
+                        .setKeyPrefix(keyPrefix);
+                    entityManager.persist(execution);
+                    created = true;
+                }
+            }
+            executionLogCache.putExecution(execution, created);
+            return execution;
+        }
+
+        @Override
+        public ExecutionFrame getExecutionFrame(Execution execution, FrameTrace trace,
+                ExecutionFrame.ModuleKind moduleKind) {
+            long executionId = execution.getId();
+            long traceId = trace.getId();
+            @Nullable ExecutionFrame executionFrame = executionLogCache.getFrame(executionId, traceId);
+            if (executionFrame != null) {
+                if (!entityManager.contains(executionFrame)) {
+                    executionFrame = entityManager.merge(executionFrame.setExecution(execution));
+                }
+            } else {
+                if (idempotent || !executionLogCache.isKnownToBeNew(executionId, traceId)) {
+                    executionFrame = entityManager.find(
+                        ExecutionFrame.class,
+                        new ExecutionFrame.ID()
+                            .setExecution(executionId)
+                            .setTrace(traceId)
+                    );
+                }
+                if (executionFrame == null) {
+                    // The frame trace has been stored by the FrameTraceDictionary, so merging does not insert it.
+                    executionFrame = new ExecutionFrame()
+                        .setExecution(execution)
+                        .setTrace(entityManager.merge(trace))
+                        .setModuleKind(moduleKind);
+                    entityManager.persist(executionFrame);
+                }
+            }
+            executionLogCache.putFrame(executionId, executionFrame);
+            return executionFrame;
+        }
+
+        @Override
+        public void insert(Object entity) {
+            if (idempotent) {
+                entityManager.merge(entity);
+            } else {
+                entityManager.persist(entity);
+            }
+        }
+
+        @Override
+        public void recordErrorOccurrence(String fingerprint, long timeMillis) {
+            errorOccurrences.add(fingerprint, timeMillis);
+        }
+
+        /**
+         * Writes the recorded error occurrences. Must be called right before the transaction is committed.
+         */
+        private void recordErrorOccurrences() {
+            ErrorTraceStore.recordOccurrences(entityManager, errorOccurrences);
+        }
+    }
+
+    private static void processEvent(ExecutionTraceEvent event, FrameTrace frameTrace,
+            Map<String, ErrorTraceStore.Reference> errorReferences, ExecutionLogBatch batch, String prefix,
+            ExecutionFrame.ModuleKind moduleKind) {
+        Date timestamp = new Date(event.getTimestamp());
+        Execution execution = batch.getExecution(event.getExecutionId(), prefix);
+        ExecutionFrame executionFrame = batch.getExecutionFrame(execution, frameTrace, moduleKind);
+
         if (event instanceof BeginExecutionTraceEvent) {
             if (event.getExecutionTrace().isEmpty()) {
                 execution.setStartTime(timestamp);
@@ -292,29 +604,330 @@ final class DatabaseLoggingActor extends UntypedActor {
                 Option<SimpleModuleExecutorResult> optionalResult
                     = ((EndSimpleModuleTraceEvent) event).getModuleExecutorResult();
                 if (optionalResult.isDefined()) {
-                    processEndExecutionTraceEvent(executionFrame, entityManager, optionalResult.get());
+                    processEndExecutionTraceEvent(executionFrame, batch, optionalResult.get());
                 }
             }
         } else if (event instanceof FailedExecutionTraceEvent) {
             FailedExecutionTraceEvent failedExecutionTraceEvent = (FailedExecutionTraceEvent) event;
-            entityManager.persist(
+            ErrorTraceStore.Reference errorReference = errorReferences.get(
+                Throwables.executionTraceToString(failedExecutionTraceEvent.getException()));
+            batch.insert(
                 new ExecutionFrameError()
                     .setExecutionFrame(executionFrame)
-                    .setErrorMessage(Throwables.executionTraceToString(failedExecutionTraceEvent.getException()))
+                    .setErrorFingerprint(errorReference.getFingerprint())
+                    .setErrorMessageDelta(errorReference.getDelta())
             );
+            batch.recordErrorOccurrence(errorReference.getFingerprint(), event.getTimestamp());
         }
     }
 
+    /**
+     * Adds the given event to the current batch, and writes the batch if it is full.
+     */
     private void processEventImmediately(ExecutionTraceEvent event, StartExecutionEvent startExecutionEvent) {
         RuntimeAnnotatedExecutionTrace annotatedTrace
             = startExecutionEvent.getRootTrace().resolveExecutionTrace(event.getExecutionTrace());
+        batch.add(new PendingEvent(
+            event, startExecutionEvent.getPrefix(), annotatedTrace.getModule().accept(ModuleVisitor.INSTANCE, null)));
+        if (batch.size() >= maxBatchSize) {
+            flushBatch();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = getContext().system().scheduler().scheduleOnce(
+                flushInterval,
+                getSelf(),
+                LocalMessages.FLUSH_BATCH,
+                getContext().dispatcher(),
+                getSelf()
+            );
+        }
+    }
+
+    /**
+     * Writes all events of the current batch.
+     *
+     * <p>If there is a spool, the events are appended to it first. They are then written in a single transaction
+     * (unless earlier events are still waiting in the spool), and consumed from the spool if that succeeds. Otherwise,
+     * the events are written as described in {@link #writeEventsWithoutSpool(List)}.
+     */
+    private void flushBatch() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel();
+            scheduledFlush = null;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<PendingEvent> events = batch;
+        batch = new ArrayList<>();
+        @Nullable EventSpool currentSpool = spool;
+        if (currentSpool == null || !appendToSpool(currentSpool, events)) {
+            writeEventsWithoutSpool(events);
+            return;
+        }
+
+        if (currentSpool.size() > events.size()) {
+            // Earlier events are still waiting in the spool, and events are written in order.
+            scheduleReplay(false);
+            return;
+        }
+        try {
+            writeEvents(events, false);
+        } catch (RuntimeException exception) {
+            log.warning("Failed to write batch of {} events, keeping them in the spool. Cause: {}",
+                events.size(), exception);
+            // If the database is available, the batch contains an event that cannot be written. Replaying the spool
+            // right away isolates it.
+            scheduleReplay(isDatabaseAvailable());
+            return;
+        }
+        consumeFromSpool(currentSpool, events.size());
+    }
+
+    /**
+     * Appends the given events to the given spool, and returns whether that succeeded.
+     */
+    private boolean appendToSpool(EventSpool currentSpool, List<PendingEvent> events) {
+        try {
+            List<byte[]> payloads = new ArrayList<>(events.size());
+            for (PendingEvent pendingEvent: events) {
+                payloads.add(pendingEvent.toBytes());
+            }
+            for (byte[] payload: payloads) {
+                currentSpool.append(payload);
+            }
+            if (spoolPolicy.isForce()) {
+                currentSpool.force();
+            }
+            return true;
+        } catch (IOException exception) {
+            log.error(exception, "Failed to append batch of {} events to {}. Writing them without spool.",
+                events.size(), currentSpool);
+            if (!currentSpool.isEmpty()) {
+                // Some of the events may have been appended. Writing them again is idempotent.
+                scheduleReplay(false);
+            }
+            return false;
+        }
+    }
+
+    private void consumeFromSpool(EventSpool currentSpool, int numEvents) {
+        try {
+            currentSpool.consume(numEvents);
+        } catch (IOException exception) {
+            log.warning("Failed to remove consumed segment of {}. Cause: {}", currentSpool, exception);
+        }
+    }
+
+    /**
+     * Writes the given events in a single transaction, or one transaction per event if that fails. Events that cannot
+     * be written individually are logged and discarded.
+     */
+    private void writeEventsWithoutSpool(List<PendingEvent> events) {
+        try {
+            writeEvents(events, false);
+            return;
+        } catch (RuntimeException exception) {
+            if (events.size() == 1) {
+                log.error(exception, "Failed to write {}. Discarding event.", events.get(0).event);
+                return;
+            }
+            log.warning("Failed to write batch of {} events, writing them individually. Cause: {}",
+                events.size(), exception);
+        }
+        for (PendingEvent pendingEvent: events) {
+            try {
+                writeEvents(Collections.singletonList(pendingEvent), false);
+            } catch (RuntimeException exception) {
+                log.error(exception, "Failed to write {}. Discarding event.", pendingEvent.event);
+            }
+        }
+    }
+
+    /**
+     * Sends or schedules a {@link LocalMessages#REPLAY_SPOOL} message, or does nothing if one is pending already.
+     *
+     * @param immediately whether the message is sent immediately (or only after the retry interval)
+     */
+    private void scheduleReplay(boolean immediately) {
+        if (replayPending) {
+            return;
+        }
+
+        replayPending = true;
+        if (immediately) {
+            getSelf().tell(LocalMessages.REPLAY_SPOOL, getSelf());
+        } else {
+            scheduledReplay = getContext().system().scheduler().scheduleOnce(
+                Duration.create(spoolPolicy.getRetryIntervalMillis(), TimeUnit.MILLISECONDS),
+                getSelf(),
+                LocalMessages.REPLAY_SPOOL,
+                getContext().dispatcher(),
+                getSelf()
+            );
+        }
+    }
+
+    /**
+     * Handles replay message ({@link LocalMessages#REPLAY_SPOOL}).
+     *
+     * <p>Writes (at most) one batch of events from the head of the spool, and consumes them from the spool if the
+     * database is available. If there are further events in the spool, the next batch is replayed after all messages
+     * that are currently in the mailbox, so that replaying does not delay new events. Otherwise, replaying is retried
+     * after the retry interval.
+     */
+    private void replaySpool() {
+        replayPending = false;
+        scheduledReplay = null;
+        @Nullable EventSpool currentSpool = spool;
+        if (currentSpool == null || currentSpool.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> payloads = currentSpool.peek(maxBatchSize);
+        List<PendingEvent> events = new ArrayList<>(payloads.size());
+        for (byte[] payload: payloads) {
+            try {
+                events.add(PendingEvent.fromBytes(payload));
+            } catch (IOException | ClassNotFoundException exception) {
+                log.error(exception, "Discarding event in {} that cannot be read.", currentSpool);
+            }
+        }
+        if (!writeSpooledEvents(events)) {
+            log.warning("Failed to write {} spooled events. Retrying in {} ms.", currentSpool.size(),
+                spoolPolicy.getRetryIntervalMillis());
+            scheduleReplay(false);
+            return;
+        }
+
+        consumeFromSpool(currentSpool, payloads.size());
+        if (!currentSpool.isEmpty()) {
+            scheduleReplay(true);
+        }
+    }
+
+    /**
+     * Writes the given spooled events, and returns whether they have been dealt with (written or discarded).
+     *
+     * <p>The events are written in a single transaction, or one transaction per event if that fails. A failure is only
+     * attributed to an event if the database is still available afterwards (see {@link #isDatabaseAvailable()}), in
+     * which case the event is logged and discarded (as in {@link #writeEventsWithoutSpool(List)}). Otherwise, the
+     * database is considered unavailable, and all events are kept. A single event that can never be written therefore
+     * does not prevent the events behind it in the spool from being replayed.
+     */
+    private boolean writeSpooledEvents(List<PendingEvent> events) {
+        if (events.isEmpty()) {
+            return true;
+        }
+
+        try {
+            writeEvents(events, true);
+            return true;
+        } catch (RuntimeException exception) {
+            if (!isDatabaseAvailable()) {
+                return false;
+            }
+        }
+
+        for (PendingEvent pendingEvent: events) {
+            try {
+                writeEvents(Collections.singletonList(pendingEvent), true);
+            } catch (RuntimeException exception) {
+                if (!isDatabaseAvailable()) {
+                    // Events written so far are written again on the next replay, which is idempotent.
+                    return false;
+                }
+                log.error(exception, "Failed to write spooled {}. Discarding event.", pendingEvent.event);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a connection to the database can be obtained and is valid.
+     */
+    private boolean isDatabaseAvailable() {
+        EntityManager entityManager;
+        try {
+            entityManager = entityManagerFactory.createEntityManager();
+        } catch (RuntimeException exception) {
+            return false;
+        }
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            return entityManager.unwrap(Connection.class).isValid(DATABASE_PROBE_TIMEOUT_SECONDS);
+        } catch (RuntimeException | SQLException exception) {
+            return false;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Writes the given events in a single transaction, after their execution traces have been resolved with the
+     * {@link FrameTraceDictionary}.
+     *
+     * @param events events
+     * @param idempotent whether the events may have been written before, see {@link ExecutionLogBatch}
+     */
+    private void writeEvents(List<PendingEvent> events, boolean idempotent) {
+        List<String> traces = new ArrayList<>(events.size());
+        for (PendingEvent pendingEvent: events) {
+            traces.add(pendingEvent.event.getExecutionTrace().toString());
+        }
+        Map<String, FrameTrace> frameTraces = frameTraceDictionary.resolve(traces);
+        Map<String, Long> errorTraces = new HashMap<>();
+        for (PendingEvent pendingEvent: events) {
+            if (pendingEvent.event instanceof FailedExecutionTraceEvent) {
+                errorTraces.merge(
+                    Throwables.executionTraceToString(((FailedExecutionTraceEvent) pendingEvent.event).getException()),
+                    pendingEvent.event.getTimestamp(),
+                    Math::min
+                );
+            }
+        }
+        Map<String, ErrorTraceStore.Reference> errorReferences = errorTraces.isEmpty()
+            ? Collections.emptyMap()
+            : errorTraceStore.resolve(errorTraces);
+
+        if (backend == Backend.JDBC) {
+            if (jdbcExecutionLogWriter == null) {
+                jdbcExecutionLogWriter = new JdbcExecutionLogWriter(entityManagerFactory);
+            }
+            JdbcExecutionLogWriter.Batch jdbcBatch = jdbcExecutionLogWriter.newBatch(idempotent);
+            for (PendingEvent pendingEvent: events) {
+                processEvent(pendingEvent.event, frameTraces.get(pendingEvent.event.getExecutionTrace().toString()),
+                    errorReferences, jdbcBatch, pendingEvent.prefix, pendingEvent.moduleKind);
+            }
+            jdbcBatch.write();
+            return;
+        }
+
         EntityManager entityManager = entityManagerFactory.createEntityManager();
         EntityTransaction transaction = entityManager.getTransaction();
         try {
             transaction.begin();
-            processEvent(event, entityManager, startExecutionEvent.getPrefix(), annotatedTrace.getModule());
+            JpaExecutionLogBatch jpaBatch = new JpaExecutionLogBatch(entityManager, idempotent);
+            for (PendingEvent pendingEvent: events) {
+                processEvent(pendingEvent.event, frameTraces.get(pendingEvent.event.getExecutionTrace().toString()),
+                    errorReferences, jpaBatch, pendingEvent.prefix, pendingEvent.moduleKind);
+            }
+            jpaBatch.recordErrorOccurrences();
             transaction.commit();
+        } catch (RuntimeException exception) {
+            // The cached state of the executions in this batch is now ahead of the database.
+            for (PendingEvent pendingEvent: events) {
+                executionLogCache.evict(pendingEvent.event.getExecutionId());
+            }
+            throw exception;
         } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
             entityManager.close();
         }
     }
@@ -334,70 +947,79 @@ final class DatabaseLoggingActor extends UntypedActor {
         }
     }
 
-    private void discardCurrentQueuedEvent(QueuedEvent event, Iterator<QueuedEvent> iterator) {
+    private boolean isExpired(QueuedEvent queuedEvent, long currentTimestamp) {
+        return currentTimestamp - queuedEvent.timestamp > evictionDurationInClockUnits;
+    }
+
+    private void discardQueuedEvent(QueuedEvent event) {
         log.debug(
             "Discarding {} because a corresponding {} message was not received within {} ms.",
             event.event, StartExecutionEvent.class.getSimpleName(), evictionDuration.toMillis()
         );
-        iterator.remove();
     }
 
     /**
-     * Process events that are queued in {@link #queuedEvents}.
+     * Process the events in {@link #queuedEvents} that pertain to the given execution.
      *
-     * <p>While going through the list of queued events, this method also cleans them (in the same fashion as
-     * {@link #cleanQueue}). If the queue is not empty, another queue cleaning is scheduled.
+     * <p>Only the events of the given execution are touched. Those that are expired are discarded (in the same
+     * fashion as {@link #cleanQueue}).
      */
-    private void processQueuedEvents() {
-        if (scheduledQueueCleaning != null) {
-            scheduledQueueCleaning.cancel();
-            scheduledQueueCleaning = null;
+    private void processQueuedEvents(StartExecutionEvent startExecutionEvent) {
+        @Nullable ArrayDeque<QueuedEvent> executionQueue = queuedEvents.remove(startExecutionEvent.getExecutionId());
+        if (executionQueue == null) {
+            return;
         }
 
+        numQueuedEvents -= executionQueue.size();
         long currentTimestamp = clock.getCurrentTime();
-        TimeUnit timeUnit = clock.getTimeUnit();
-        Iterator<QueuedEvent> it = queuedEvents.iterator();
-        while (it.hasNext()) {
-            QueuedEvent queuedEvent = it.next();
-            if (timeUnit.toNanos(currentTimestamp - queuedEvent.timestamp) > evictionDuration.toNanos()) {
-                discardCurrentQueuedEvent(queuedEvent, it);
+        for (QueuedEvent queuedEvent: executionQueue) {
+            if (isExpired(queuedEvent, currentTimestamp)) {
+                discardQueuedEvent(queuedEvent);
             } else {
-                @Nullable StartExecutionEvent startExecutionEvent
-                    = startExecutionEventMap.get(queuedEvent.event.getExecutionId());
-                if (startExecutionEvent == null) {
-                    // The queue is not empty, so make sure another queue cleaning is scheduled.
-                    scheduleQueueCleaning();
-                } else {
-                    processEventImmediately(queuedEvent.event, startExecutionEvent);
-                    it.remove();
-                }
+                processEventImmediately(queuedEvent.event, startExecutionEvent);
             }
         }
+        // The entries in queuedEventDeadlines are left in place. They are ignored once they expire.
+    }
+
+    /**
+     * Discards the expired events at the head of the queue of the given execution.
+     *
+     * <p>This method is called for each expired entry in {@link #queuedEventDeadlines}. Since the queue of each
+     * execution is sorted by timestamp, all expired events of an execution are at the head of its queue. If there are
+     * none, the entry belonged to an event that was discarded already or that has been processed in the meantime.
+     */
+    private void discardExpiredEvents(long executionId, long currentTimestamp) {
+        @Nullable ArrayDeque<QueuedEvent> executionQueue = queuedEvents.get(executionId);
+        if (executionQueue == null) {
+            return;
+        }
+
+        while (!executionQueue.isEmpty() && isExpired(executionQueue.peekFirst(), currentTimestamp)) {
+            discardQueuedEvent(executionQueue.removeFirst());
+            --numQueuedEvents;
+        }
+        if (executionQueue.isEmpty()) {
+            queuedEvents.remove(executionId);
+        }
     }
 
     /**
      * Handles scheduled queue-cleaning event ({@link LocalMessages#CLEAN_QUEUE}).
      *
-     * <p>If the queue is not empty after the cleaning, another queue cleaning is scheduled.
+     * <p>Only the entries of {@link #queuedEventDeadlines} that have expired since the previous cleaning are examined,
+     * so the cost of a cleaning is amortized constant per queued event. If the timing wheel is not empty after the
+     * cleaning, another queue cleaning is scheduled.
      */
     private void cleanQueue() {
         scheduledQueueCleaning = null;
 
         long currentTimestamp = clock.getCurrentTime();
-        TimeUnit timeUnit = clock.getTimeUnit();
-        Iterator<QueuedEvent> it = queuedEvents.iterator();
-        while (it.hasNext()) {
-            QueuedEvent queuedEvent = it.next();
-            if (timeUnit.toNanos(currentTimestamp - queuedEvent.timestamp) > evictionDuration.toNanos()) {
-                discardCurrentQueuedEvent(queuedEvent, it);
-            } else {
-                // The queue is not empty, so make sure another queue cleaning is scheduled.
-                scheduleQueueCleaning();
-                // queuedEvents is sorted by timestamp, so we can stop here
-                break;
-            }
+        queuedEventDeadlines.expire(
+            currentTimestamp, executionId -> discardExpiredEvents(executionId, currentTimestamp));
+        if (!queuedEventDeadlines.isEmpty()) {
+            scheduleQueueCleaning();
         }
-        // Queue is now empty, no need to schedule another cleaning
     }
 
     /**
@@ -415,6 +1037,22 @@ final class DatabaseLoggingActor extends UntypedActor {
         }
     }
 
+    /**
+     * Counts a discarded event, and logs a warning unless there has been one within
+     * {@link #DISCARD_WARNING_INTERVAL_MILLIS}.
+     */
+    private void warnAboutDiscardedEvent() {
+        ++numDiscardedSinceWarning;
+        long currentTimestamp = clock.getCurrentTime();
+        if (lastDiscardWarningTimestamp == null
+                || currentTimestamp - lastDiscardWarningTimestamp >= discardWarningIntervalInClockUnits) {
+            log.warning("Discarded {} events of unknown executions because {} events are queued already (setting "
+                + "database.logger.queuecapacity). {}", numDiscardedSinceWarning, numQueuedEvents, overflowCounters);
+            lastDiscardWarningTimestamp = currentTimestamp;
+            numDiscardedSinceWarning = 0;
+        }
+    }
+
     /**
      * Handles CloudKeeper interpreter event pertaining to an execution trace.
      *
@@ -424,8 +1062,20 @@ final class DatabaseLoggingActor extends UntypedActor {
         long executionId = event.getExecutionId();
         @Nullable StartExecutionEvent startExecutionEvent = startExecutionEventMap.get(executionId);
         if (startExecutionEvent == null) {
+            if (numQueuedEvents >= maxQueuedEvents) {
+                overflowCounters.incrementDroppedCount();
+                log.debug("Discarding {} because execution id {} is currently unknown and {} events are queued "
+                    + "already.", event, executionId, numQueuedEvents);
+                warnAboutDiscardedEvent();
+                return;
+            }
+
             log.debug("Queuing {} because execution id {} is currently unknown.", event, executionId);
-            queuedEvents.add(new QueuedEvent(clock.getCurrentTime(), event));
+            long currentTimestamp = clock.getCurrentTime();
+            queuedEvents.computeIfAbsent(executionId, ignored -> new ArrayDeque<>())
+                .addLast(new QueuedEvent(currentTimestamp, event));
+            ++numQueuedEvents;
+            queuedEventDeadlines.add(executionId, currentTimestamp + evictionDurationInClockUnits);
             scheduleQueueCleaning();
         } else {
             processEventImmediately(event, startExecutionEvent);
@@ -440,7 +1090,7 @@ final class DatabaseLoggingActor extends UntypedActor {
      */
     private void handleStartWorkflowExecutionEvent(StartExecutionEvent startExecutionEvent) {
         startExecutionEventMap.put(startExecutionEvent.getExecutionId(), startExecutionEvent);
-        processQueuedEvents();
+        processQueuedEvents(startExecutionEvent);
     }
 
     /**
@@ -484,16 +1134,64 @@ final class DatabaseLoggingActor extends UntypedActor {
         endExecutionTraceEventSet.remove(executionId);
         @Nullable ActorRef stopExecutionEventSender = stopExecutionEventMap.remove(executionId);
         if (stopExecutionEventSender != null) {
+            // The acknowledgement promises that all events of the execution have been written (to the database or,
+            // if it is not available, to the spool).
+            flushBatch();
+            executionLogCache.evict(executionId);
             stopExecutionEventSender.tell(executionId, getSelf());
         }
     }
 
+    @Override
+    public void preStart() {
+        if (!spoolPolicy.isEnabled()) {
+            return;
+        }
+
+        try {
+            spool = EventSpool.openUnclaimed(spoolPolicy.getDirectory(), spoolPolicy.getSegmentSize());
+        } catch (IOException exception) {
+            log.error(exception, "Failed to open spool in {}. Writing events without spool.",
+                spoolPolicy.getDirectory());
+            return;
+        }
+        if (!spool.isEmpty()) {
+            log.info("Replaying {} events from {}.", spool.size(), spool);
+            scheduleReplay(true);
+        }
+    }
+
+    @Override
+    public void postStop() {
+        flushBatch();
+        if (scheduledQueueCleaning != null) {
+            scheduledQueueCleaning.cancel();
+            scheduledQueueCleaning = null;
+        }
+        if (scheduledReplay != null) {
+            scheduledReplay.cancel();
+            scheduledReplay = null;
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException exception) {
+                log.warning("Failed to close {}. Cause: {}", spool, exception);
+            }
+            spool = null;
+        }
+    }
+
     @Override
     public void onReceive(Object message) {
         if (message instanceof EndExecutionTraceEvent) {
             handleEndExecutionTraceEvent((EndExecutionTraceEvent) message);
         } else if (message instanceof ExecutionTraceEvent) {
             handleExecutionTraceEvent((ExecutionTraceEvent) message);
+        } else if (message instanceof BoundedEventMailbox.CoalescedEvents) {
+            BoundedEventMailbox.CoalescedEvents coalescedEvents = (BoundedEventMailbox.CoalescedEvents) message;
+            handleExecutionTraceEvent(coalescedEvents.getBeginEvent());
+            handleEndExecutionTraceEvent(coalescedEvents.getEndEvent());
         } else if (message instanceof Event) {
             log.debug("Ignoring unexpected {}", message);
         } else if (message instanceof StartExecutionEvent) {
@@ -504,18 +1202,63 @@ final class DatabaseLoggingActor extends UntypedActor {
             removeExecutionId(((RemoveExecutionId) message).executionId);
         } else if (message == LocalMessages.CLEAN_QUEUE) {
             cleanQueue();
+        } else if (message == LocalMessages.FLUSH_BATCH) {
+            flushBatch();
+        } else if (message == LocalMessages.REPLAY_SPOOL) {
+            replaySpool();
         } else {
             unhandled(message);
         }
     }
 
     /**
-     * Returns the list of queued events.
+     * Returns a snapshot of the queued events, sorted by the time they were queued.
      *
      * <p>This method only exists for unit-testing purposes. It should never be called elsewhere.
      */
     List<QueuedEvent> getQueuedEvents() {
-        return Collections.unmodifiableList(queuedEvents);
+        List<QueuedEvent> snapshot = new ArrayList<>();
+        queuedEvents.values().forEach(snapshot::addAll);
+        snapshot.sort(Comparator.comparingLong(queuedEvent -> queuedEvent.timestamp));
+        return Collections.unmodifiableList(snapshot);
+    }
+
+    /**
+     * Returns the number of events in the current batch.
+     *
+     * <p>This method only exists for unit-testing purposes. It should never be called elsewhere.
+     */
+    int getBatchSize() {
+        return batch.size();
+    }
+
+    /**
+     * Returns the statistics of the {@link ExecutionLogCache}.
+     *
+     * <p>This method only exists for unit-testing and benchmarking purposes. It should never be called elsewhere.
+     */
+    CacheStatistics getExecutionLogCacheStatistics() {
+        return executionLogCache.getStatistics();
+    }
+
+    /**
+     * Returns the statistics of the cache of the {@link FrameTraceDictionary}.
+     *
+     * <p>This method only exists for unit-testing and benchmarking purposes. It should never be called elsewhere.
+     */
+    CacheStatistics getFrameTraceCacheStatistics() {
+        return frameTraceDictionary.getStatistics();
+    }
+
+    /**
+     * Returns the number of events in the spool, or 0 if there is no spool.
+     *
+     * <p>This method only exists for unit-testing purposes. It should never be called elsewhere.
+     */
+    long getSpooledEventCount() {
+        return spool == null
+            ? 0
+            : spool.size();
     }
 
     /**
@@ -555,11 +1298,58 @@ final class DatabaseLoggingActor extends UntypedActor {
         }
     }
 
+    /**
+     * Event that is ready to be written, together with the information from its {@link StartExecutionEvent}.
+     *
+     * <p>Pending events are serialized into the {@link EventSpool} using Java serialization.
+     */
+    private static final class PendingEvent implements Serializable {
+        private static final long serialVersionUID = 4417393915206536862L;
+
+        private final ExecutionTraceEvent event;
+        private final String prefix;
+        private final ExecutionFrame.ModuleKind moduleKind;
+
+        private PendingEvent(ExecutionTraceEvent event, String prefix, ExecutionFrame.ModuleKind moduleKind) {
+            this.event = event;
+            this.prefix = prefix;
+            this.moduleKind = moduleKind;
+        }
+
+        private byte[] toBytes() throws IOException {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+                objectOutputStream.writeObject(this);
+            }
+            return outputStream.toByteArray();
+        }
+
+        private static PendingEvent fromBytes(byte[] bytes) throws IOException, ClassNotFoundException {
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                Object object = objectInputStream.readObject();
+                if (!(object instanceof PendingEvent)) {
+                    throw new InvalidObjectException(String.format("Expected pending event, but got %s.", object));
+                }
+                return (PendingEvent) object;
+            }
+        }
+    }
+
     private enum LocalMessages {
         /**
          * Message to trigger {@link #cleanQueue()}.
          */
-        CLEAN_QUEUE
+        CLEAN_QUEUE,
+
+        /**
+         * Message to trigger {@link #flushBatch()}.
+         */
+        FLUSH_BATCH,
+
+        /**
+         * Message to trigger {@link #replaySpool()}.
+         */
+        REPLAY_SPOOL
     }
 
     private static final class RemoveExecutionId {
@@ -3,6 +3,9 @@ package com.svbio.workflow.service;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.routing.ConsistentHashingPool;
+import com.svbio.workflow.base.LifecycleException;
 import com.svbio.workflow.base.LifecycleManager;
 import com.svbio.workflow.base.LifecyclePhase;
 import com.svbio.workflow.base.LifecyclePhaseListener;
@@ -24,7 +27,6 @@ import org.eclipse.persistence.sessions.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.duration.Duration;
-import scala.concurrent.duration.FiniteDuration;
 import xyz.cloudkeeper.interpreter.EventSubscription;
 import xyz.cloudkeeper.interpreter.event.ExecutionTraceEvent;
 
@@ -34,12 +36,18 @@ import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.xml.bind.JAXBContext;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -70,6 +78,22 @@ final class DatabaseLoggingModule {
      */
     private static final long EVICTION_DURATION_SECONDS = 30;
 
+    /**
+     * Configuration path of the dispatcher that the database writers run on. Akka looks up dispatchers by path in the
+     * configuration of the actor system.
+     */
+    static final String WRITER_DISPATCHER = "com.svbio.workflow.database.logger.dispatcher";
+
+    /**
+     * Configuration path of the {@link BoundedEventMailbox} of each database writer.
+     */
+    static final String WRITER_MAILBOX = "com.svbio.workflow.database.logger.mailbox";
+
+    /**
+     * Name of the subdirectory of the spool directory that the spools left behind by a previous run are moved into.
+     */
+    static final String RECOVERY_SPOOL_DIRECTORY = "recovery";
+
     @Override
     public String toString() {
         return String.format("Dagger module '%s'", getClass().getSimpleName());
@@ -81,6 +105,16 @@ final class DatabaseLoggingModule {
             LifecycleManager lifecycleManager) {
         final EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory(
             Execution.class.getPackage().getName(), databaseConfiguration.properties);
+        if (databaseConfiguration.migrateLegacyFrames) {
+            try {
+                long numFrames = ExecutionFrameMigration.migrate(entityManagerFactory);
+                LoggerFactory.getLogger(DatabaseLoggingModule.class)
+                    .info("Migrated {} legacy execution frames.", numFrames);
+            } catch (PersistenceException exception) {
+                entityManagerFactory.close();
+                throw new LifecycleException("Failed to migrate legacy execution frames.", exception);
+            }
+        }
         lifecycleManager.addLifecyclePhaseListener(
             new LifecyclePhaseListener("JPA Entity Manager Factory", LifecyclePhase.STARTED) {
                 @Override
@@ -110,23 +144,89 @@ final class DatabaseLoggingModule {
         }
     }
 
+    @Provides
+    @WorkflowServiceScope
+    static ErrorTraceStore provideErrorTraceStore(EntityManagerFactory entityManagerFactory,
+            DatabaseConfiguration databaseConfiguration) {
+        return new ErrorTraceStore(entityManagerFactory, databaseConfiguration.errorTraceCacheSize);
+    }
+
+    private static DatabaseLoggingActor.Factory newWriterFactory(EntityManagerFactory entityManagerFactory,
+            ErrorTraceStore errorTraceStore, DatabaseConfiguration databaseConfiguration, SpoolPolicy spoolPolicy) {
+        return new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, SystemClock.NANO,
+            Duration.create(EVICTION_DURATION_SECONDS, TimeUnit.SECONDS), databaseConfiguration.loggerBatchSize,
+            Duration.create(databaseConfiguration.loggerFlushIntervalMillis, TimeUnit.MILLISECONDS),
+            databaseConfiguration.loggerCachedExecutions, databaseConfiguration.loggerCachedTraces,
+            databaseConfiguration.loggerQueueCapacity, spoolPolicy, databaseConfiguration.loggerBackend);
+    }
+
+    /**
+     * Moves the spools left behind by a previous run into a single recovery spool, and starts a database writer
+     * outside of the router that replays it.
+     *
+     * <p>This happens before the router over the database writers is created. The spool directories of the writers
+     * are therefore empty when the writers claim them, and a writer never replays events of an execution that the
+     * router assigns to a different writer. Since the recovery spool is independent of the number of writers, no
+     * spooled events are lost if the number of writers is reduced between runs. The recovery writer only writes
+     * events of executions of a previous run, which receive no further events.
+     */
+    private static void recoverSpools(ActorSystem actorSystem, EntityManagerFactory entityManagerFactory,
+            ErrorTraceStore errorTraceStore, DatabaseConfiguration databaseConfiguration) {
+        SpoolPolicy spoolPolicy = databaseConfiguration.loggerSpoolPolicy;
+        if (!spoolPolicy.isEnabled()) {
+            return;
+        }
+
+        Path recoveryDirectory = spoolPolicy.getDirectory().resolve(RECOVERY_SPOOL_DIRECTORY);
+        int numSegments;
+        try {
+            numSegments = EventSpool.moveUnclaimed(spoolPolicy.getDirectory(), recoveryDirectory);
+        } catch (IOException exception) {
+            throw new LifecycleException(String.format(
+                "Failed to move spools in %s for recovery.", spoolPolicy.getDirectory()
+            ), exception);
+        }
+        if (numSegments > 0) {
+            actorSystem.actorOf(
+                Props
+                    .create(newWriterFactory(entityManagerFactory, errorTraceStore, databaseConfiguration,
+                        spoolPolicy.withDirectory(recoveryDirectory)))
+                    .withDispatcher(WRITER_DISPATCHER),
+                DATABASE_LOGGER_NAME + '-' + RECOVERY_SPOOL_DIRECTORY
+            );
+        }
+    }
+
     @Provides
     @Named(DATABASE_LOGGER_NAME)
     @WorkflowServiceScope
-    static ActorRef provideDatabaseLoggingActor(ActorSystem actorSystem, EntityManagerFactory entityManagerFactory) {
-        FiniteDuration evictionDuration = Duration.create(EVICTION_DURATION_SECONDS, TimeUnit.SECONDS);
+    static ActorRef provideDatabaseLoggingActor(ActorSystem actorSystem, EntityManagerFactory entityManagerFactory,
+            ErrorTraceStore errorTraceStore, DatabaseConfiguration databaseConfiguration,
+            StatisticsReporter statisticsReporter) {
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        statisticsReporter.addWarningSource("Database logger", () -> overflowCounters);
+        recoverSpools(actorSystem, entityManagerFactory, errorTraceStore, databaseConfiguration);
+        Props writerProps = Props
+            .create(newWriterFactory(entityManagerFactory, errorTraceStore, databaseConfiguration,
+                databaseConfiguration.loggerSpoolPolicy))
+            .withDispatcher(WRITER_DISPATCHER)
+            .withMailbox(WRITER_MAILBOX);
+        // Each writer is restarted individually (as was the single database logger before), instead of the default
+        // router behavior of escalating failures and thus restarting all writers.
         return actorSystem.actorOf(
-            Props.create(
-                new DatabaseLoggingActor.Factory(entityManagerFactory, SystemClock.NANO, evictionDuration)
-            ),
+            new ConsistentHashingPool(databaseConfiguration.loggerWriters)
+                .withHashMapper(DatabaseLoggingActor.ExecutionIdHashMapper.INSTANCE)
+                .withSupervisorStrategy(SupervisorStrategy.defaultStrategy())
+                .props(writerProps),
             DATABASE_LOGGER_NAME
         );
     }
 
     @Provides(type = Provides.Type.SET)
     @ExecutionEventQualifier
-    static ActorRef provideEventListener(@Named(DATABASE_LOGGER_NAME) ActorRef databaseLoggingActor) {
-        return databaseLoggingActor;
+    static ExecutionObserver provideEventListener(@Named(DATABASE_LOGGER_NAME) ActorRef databaseLoggingActor,
+            WorkflowServiceModule.ObserverConfiguration observerConfiguration) {
+        return observerConfiguration.newExecutionObserver(DATABASE_LOGGER_NAME, databaseLoggingActor);
     }
 
     @Provides(type = Provides.Type.SET)
@@ -135,8 +235,36 @@ final class DatabaseLoggingModule {
         return new EventSubscription(databaseLoggingActor, ExecutionTraceEvent.class);
     }
 
+    @Provides(type = Provides.Type.MAP)
+    @StatusKeepingServiceQualifier
+    @StatusKeepingServiceKey("database")
+    @WorkflowServiceScope
+    static StatusKeepingService provideDatabaseStatusKeepingService(EntityManagerFactory entityManagerFactory,
+            ErrorTraceStore errorTraceStore, Executor shortLivedExecutor, JAXBContext jaxbContext,
+            DatabaseStatusConfiguration statusConfiguration) {
+        return new DatabaseStatusKeepingService(entityManagerFactory, errorTraceStore, SystemClock.MILLIS,
+            shortLivedExecutor, jaxbContext, statusConfiguration.maxBatchSize);
+    }
+
+    @Provides(type = Provides.Type.SET)
+    @RetentionTargetQualifier
+    static RetentionTarget provideExecutionLogRetentionTarget(EntityManagerFactory entityManagerFactory,
+            DatabaseStatusConfiguration statusConfiguration) {
+        return new ExecutionLogRetentionTarget(entityManagerFactory, statusConfiguration.maxBatchSize);
+    }
+
     static final class DatabaseConfiguration {
         private final Map<String, String> properties;
+        private final boolean migrateLegacyFrames;
+        private final int errorTraceCacheSize;
+        private final int loggerBatchSize;
+        private final long loggerFlushIntervalMillis;
+        private final int loggerCachedExecutions;
+        private final int loggerCachedTraces;
+        private final int loggerWriters;
+        private final int loggerQueueCapacity;
+        private final SpoolPolicy loggerSpoolPolicy;
+        private final DatabaseLoggingActor.Backend loggerBackend;
 
         private static void toMap(String keyPrefix, ConfigObject configObject, Map<String, String> map) {
             for (Map.Entry<String, ConfigValue> entry: configObject.entrySet()) {
@@ -167,6 +295,93 @@ final class DatabaseLoggingModule {
             newMap.put(PersistenceUnitProperties.LOGGING_LOGGER, SLF4JSessionLog.class.getName());
             newMap.put(PersistenceUnitProperties.TARGET_SERVER, TargetServer.None);
             properties = Collections.unmodifiableMap(newMap);
+            migrateLegacyFrames = dbConfig.getBoolean("migratelegacyframes");
+
+            errorTraceCacheSize = dbConfig.getInt("errortraces.cachesize");
+            if (errorTraceCacheSize < 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative cache size for error traces, but got %d.", errorTraceCacheSize
+                ));
+            }
+
+            loggerBatchSize = dbConfig.getInt("logger.batchsize");
+            if (loggerBatchSize <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected positive batch size for database logging, but got %d.", loggerBatchSize
+                ));
+            }
+            loggerFlushIntervalMillis = dbConfig.getDuration("logger.flushinterval", TimeUnit.MILLISECONDS);
+            if (loggerFlushIntervalMillis < 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative flush interval for database logging, but got %d ms.",
+                    loggerFlushIntervalMillis
+                ));
+            }
+            loggerCachedExecutions = dbConfig.getInt("logger.cachedexecutions");
+            if (loggerCachedExecutions < 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative number of cached executions for database logging, but got %d.",
+                    loggerCachedExecutions
+                ));
+            }
+            loggerCachedTraces = dbConfig.getInt("logger.cachedtraces");
+            if (loggerCachedTraces < 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative number of cached execution traces for database logging, but got %d.",
+                    loggerCachedTraces
+                ));
+            }
+            loggerWriters = dbConfig.getInt("logger.writers");
+            if (loggerWriters <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected positive number of writers for database logging, but got %d.", loggerWriters
+                ));
+            }
+            loggerQueueCapacity = dbConfig.getInt("logger.queuecapacity");
+            if (loggerQueueCapacity <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected positive queue capacity for database logging, but got %d.", loggerQueueCapacity
+                ));
+            }
+            try {
+                // The mailbox is created by Akka. Creating it here merely validates its settings at startup.
+                new BoundedEventMailbox(dbConfig.getConfig("logger.mailbox"));
+            } catch (IllegalArgumentException exception) {
+                throw new LifecycleException("Invalid mailbox settings for database logging.", exception);
+            }
+            String spoolPath = dbConfig.getString("logger.spool.path");
+            long spoolSegmentSize = dbConfig.getBytes("logger.spool.segmentsize");
+            if (spoolSegmentSize > EventSpool.MAX_SEGMENT_SIZE) {
+                throw new LifecycleException(String.format(
+                    "Expected spool segment size of at most %d bytes for database logging, but got %d.",
+                    EventSpool.MAX_SEGMENT_SIZE, spoolSegmentSize
+                ));
+            }
+            try {
+                loggerSpoolPolicy = new SpoolPolicy(
+                    spoolPath.isEmpty()
+                        ? null
+                        : Paths.get(spoolPath),
+                    (int) spoolSegmentSize,
+                    dbConfig.getBoolean("logger.spool.force"),
+                    dbConfig.getDuration("logger.spool.retryinterval", TimeUnit.MILLISECONDS)
+                );
+            } catch (IllegalArgumentException exception) {
+                throw new LifecycleException("Invalid spool settings for database logging.", exception);
+            }
+            String backend = dbConfig.getString("logger.backend");
+            switch (backend) {
+                case "jpa":
+                    loggerBackend = DatabaseLoggingActor.Backend.JPA;
+                    break;
+                case "jdbc":
+                    loggerBackend = DatabaseLoggingActor.Backend.JDBC;
+                    break;
+                default:
+                    throw new LifecycleException(String.format(
+                        "Expected 'jpa' or 'jdbc' as backend for database logging, but got '%s'.", backend
+                    ));
+            }
         }
     }
 
@@ -181,4 +396,19 @@ final class DatabaseLoggingModule {
             log.debug("Setting schema for logging tables in database to '{}'.", schema);
         }
     }
+
+    static final class DatabaseStatusConfiguration {
+        private final int maxBatchSize;
+
+        @Inject
+        DatabaseStatusConfiguration(Config config) {
+            Config statusConfig = config.getConfig("com.svbio.workflow.databasestatus");
+            maxBatchSize = statusConfig.getInt("batchsize");
+            if (maxBatchSize <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected positive batch size for database status keeping, but got %d.", maxBatchSize
+                ));
+            }
+        }
+    }
 }
@@ -0,0 +1,514 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import com.svbio.workflow.entities.ExecutionResult;
+import com.svbio.workflow.entities.ExecutionResult_;
+import net.florianschoppmann.java.futures.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Implementation of {@link StatusKeepingService} that stores the execution status in the database that is also used
+ * for database logging.
+ *
+ * <p>Execution statuses are stored as {@link ExecutionResult} entities. Multiple instances of the workflow service may
+ * therefore share execution statuses without a shared file system.
+ *
+ * <p>Writes are batched: Calls of {@link #persistExecutionStatus(ExecutionStatus)} enqueue the execution status, and a
+ * single task (run by the executor) drains the queue and writes up to {@code maxBatchSize} execution statuses in a
+ * single transaction. While a batch is written, new execution statuses accumulate in the queue, so that the batch size
+ * adapts to the load. Loading an execution status is a primary-key lookup, and queries are translated into database
+ * queries.
+ *
+ * <p>Failure descriptions are recorded in an {@link ErrorTraceStore}, and the {@link ExecutionResult} row stores the
+ * fingerprint. If the failure description differs from the execution trace stored for the fingerprint (which is
+ * possible, because fingerprints are computed from normalized failure descriptions), the row also stores the
+ * differences, typically a few dozen bytes (see {@link ErrorTraceStore.Reference}). The failure descriptions of a batch
+ * are resolved with a single call before the batch transaction, and their occurrences are recorded (with the time
+ * given by the clock) within the batch transaction.
+ * Recurring failures (for instance, the same exception thrown by many executions of the same workflow) therefore
+ * occupy space only once, and the most frequent failures can be queried with {@link #getTopErrors(int)}.
+ *
+ * <p>When sweeping (see {@link RetentionTarget}), the age of an execution status is measured from its start time.
+ * Execution statuses are removed in transactions of at most {@code maxBatchSize} rows.
+ */
+final class DatabaseStatusKeepingService implements StatusKeepingService, RetentionTarget {
+    /**
+     * Maximum number of execution ids in a single IN predicate. Some databases (for instance, Oracle) limit the number
+     * of expressions in a list.
+     */
+    static final int MAX_IDS_PER_QUERY = 500;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final EntityManagerFactory entityManagerFactory;
+    private final ErrorTraceStore errorTraceStore;
+    private final Clock clock;
+    private final Executor executor;
+    private final JAXBContext jaxbContext;
+    private final int maxBatchSize;
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * Constructor.
+     *
+     * @param entityManagerFactory JPA entity manager factory
+     * @param errorTraceStore store for failure descriptions
+     * @param clock wall clock that provides the time of occurrence of failures
+     * @param executor executor for serialization and database access
+     * @param jaxbContext JAXB context for {@link ExecutionStatus} (and therefore also {@link ExecuteWorkflowRequest})
+     * @param maxBatchSize maximum number of execution statuses written in a single transaction
+     * @throws IllegalArgumentException if the maximum batch size is not positive
+     */
+    DatabaseStatusKeepingService(EntityManagerFactory entityManagerFactory, ErrorTraceStore errorTraceStore,
+            Clock clock, Executor executor, JAXBContext jaxbContext, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive maximum batch size, but got %d.", maxBatchSize
+            ));
+        }
+
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory);
+        this.errorTraceStore = Objects.requireNonNull(errorTraceStore);
+        this.clock = Objects.requireNonNull(clock);
+        this.executor = Objects.requireNonNull(executor);
+        this.jaxbContext = Objects.requireNonNull(jaxbContext);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    private static final class PendingWrite {
+        private final ExecutionStatus executionStatus;
+        private final CompletableFuture<ExecutionStatus> future = new CompletableFuture<>();
+
+        private PendingWrite(ExecutionStatus executionStatus) {
+            this.executionStatus = executionStatus;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+        long executionId = executionStatus.getExecutionId();
+        if (executionId <= 0) {
+            throw new IllegalArgumentException(String.format("Expected execution id, but got %d.", executionId));
+        }
+
+        // No need to copy executionStatus: The contract of StatusKeepingService guarantees that it is not modified.
+        PendingWrite pendingWrite = new PendingWrite(executionStatus);
+        pendingWrites.add(pendingWrite);
+        scheduleFlush();
+        return pendingWrite.future;
+    }
+
+    private void scheduleFlush() {
+        if (!pendingWrites.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes the next batch of pending execution statuses, and then reschedules itself if there are more.
+     */
+    private void flush() {
+        try {
+            List<PendingWrite> batch = new ArrayList<>();
+            @Nullable PendingWrite pendingWrite;
+            while (batch.size() < maxBatchSize && (pendingWrite = pendingWrites.poll()) != null) {
+                batch.add(pendingWrite);
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } finally {
+            flushScheduled.set(false);
+            // Execution statuses enqueued after the queue was drained but before the flag was reset would otherwise
+            // not be written.
+            scheduleFlush();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        long currentTimeMillis = clock.getTimeUnit().toMillis(clock.getCurrentTime());
+        Map<String, Long> failureDescriptions = new HashMap<>();
+        for (PendingWrite pendingWrite: batch) {
+            @Nullable String failureDescription = pendingWrite.executionStatus.getFailureDescription();
+            if (failureDescription != null) {
+                failureDescriptions.put(failureDescription, currentTimeMillis);
+            }
+        }
+        Map<String, ErrorTraceStore.Reference> failureReferences;
+        try {
+            failureReferences = failureDescriptions.isEmpty()
+                ? Collections.emptyMap()
+                : errorTraceStore.resolve(failureDescriptions);
+        } catch (RuntimeException exception) {
+            log.error(String.format("Failed to store failure descriptions of batch of %d execution statuses.",
+                batch.size()), exception);
+            batch.forEach(pendingWrite -> pendingWrite.future.completeExceptionally(exception));
+            return;
+        }
+
+        List<PendingWrite> serialized = new ArrayList<>(batch.size());
+        List<ExecutionResult> entities = new ArrayList<>(batch.size());
+        ErrorTraceStore.Occurrences failureOccurrences = new ErrorTraceStore.Occurrences();
+        for (PendingWrite pendingWrite: batch) {
+            try {
+                ExecutionResult entity = toEntity(pendingWrite.executionStatus, failureReferences);
+                entities.add(entity);
+                serialized.add(pendingWrite);
+                @Nullable String fingerprint = entity.getFailureFingerprint();
+                if (fingerprint != null) {
+                    failureOccurrences.add(fingerprint, currentTimeMillis);
+                }
+            } catch (IOException | JAXBException | RuntimeException exception) {
+                pendingWrite.future.completeExceptionally(exception);
+            }
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            // merge() instead of persist(), because the same execution id may be persisted more than once.
+            entities.forEach(entityManager::merge);
+            ErrorTraceStore.recordOccurrences(entityManager, failureOccurrences);
+            transaction.commit();
+        } catch (RuntimeException exception) {
+            log.error(String.format("Failed to write batch of %d execution statuses.", entities.size()), exception);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            serialized.forEach(pendingWrite -> pendingWrite.future.completeExceptionally(exception));
+            return;
+        } finally {
+            entityManager.close();
+        }
+        serialized.forEach(pendingWrite -> pendingWrite.future.complete(pendingWrite.executionStatus));
+    }
+
+    private ExecutionResult toEntity(ExecutionStatus executionStatus,
+            Map<String, ErrorTraceStore.Reference> failureReferences) throws IOException, JAXBException {
+        @Nullable ExecuteWorkflowRequest request = executionStatus.getRequest();
+        @Nullable Long startTimeMillis = executionStatus.getStartTimeMillis();
+        @Nullable String failureDescription = executionStatus.getFailureDescription();
+        @Nullable String fingerprint = null;
+        @Nullable byte[] failureDescriptionDelta = null;
+        if (failureDescription != null) {
+            ErrorTraceStore.Reference failureReference = failureReferences.get(failureDescription);
+            fingerprint = failureReference.getFingerprint();
+            failureDescriptionDelta = failureReference.getDelta();
+        }
+        return new ExecutionResult()
+            .setId(executionStatus.getExecutionId())
+            .setStatus(executionStatus.getStatus())
+            .setKeyPrefix(request == null ? null : request.getPrefix())
+            .setFailureFingerprint(fingerprint)
+            .setFailureDescriptionDelta(failureDescriptionDelta)
+            .setStartTime(startTimeMillis == null ? null : new Date(startTimeMillis))
+            .setQueueWaitMillis(executionStatus.getQueueWaitMillis())
+            .setQueueDepth(executionStatus.getQueueDepth())
+            .setCompressedRequest(request == null ? null : compress(request));
+    }
+
+    /**
+     * Converts the given entities into execution statuses, resolving all failure fingerprints with a single call of
+     * {@link ErrorTraceStore#load(java.util.Collection)}.
+     */
+    private List<ExecutionStatus> fromEntities(List<ExecutionResult> executionResults)
+            throws IOException, JAXBException {
+        Set<String> fingerprints = new LinkedHashSet<>();
+        for (ExecutionResult executionResult: executionResults) {
+            @Nullable String fingerprint = executionResult.getFailureFingerprint();
+            if (fingerprint != null && executionResult.getFailureDescription() == null) {
+                fingerprints.add(fingerprint);
+            }
+        }
+        Map<String, String> failureDescriptions = fingerprints.isEmpty()
+            ? new HashMap<>()
+            : errorTraceStore.load(fingerprints);
+        List<ExecutionStatus> executionStatuses = new ArrayList<>(executionResults.size());
+        for (ExecutionResult executionResult: executionResults) {
+            executionStatuses.add(fromEntity(executionResult, failureDescriptions));
+        }
+        return executionStatuses;
+    }
+
+    private ExecutionStatus fromEntity(ExecutionResult executionResult, Map<String, String> failureDescriptions)
+            throws IOException, JAXBException {
+        @Nullable byte[] compressedRequest = executionResult.getCompressedRequest();
+        @Nullable Date startTime = executionResult.getStartTime();
+        @Nullable String fingerprint = executionResult.getFailureFingerprint();
+        @Nullable String failureDescription = executionResult.getFailureDescription();
+        if (failureDescription == null && fingerprint != null) {
+            @Nullable String storedFailureDescription = failureDescriptions.get(fingerprint);
+            @Nullable byte[] failureDescriptionDelta = executionResult.getFailureDescriptionDelta();
+            failureDescription = failureDescriptionDelta == null
+                ? storedFailureDescription
+                : ErrorTraces.decompress(failureDescriptionDelta, storedFailureDescription);
+        }
+        return new ExecutionStatus()
+            .setExecutionId(executionResult.getId())
+            .setStatus(Objects.requireNonNull(executionResult.getStatus()))
+            .setRequest(compressedRequest == null ? null : decompress(compressedRequest))
+            .setFailureDescription(failureDescription)
+            .setStartTimeMillis(startTime == null ? null : startTime.getTime())
+            .setQueueWaitMillis(executionResult.getQueueWaitMillis())
+            .setQueueDepth(executionResult.getQueueDepth());
+    }
+
+    private byte[] compress(ExecuteWorkflowRequest request) throws IOException, JAXBException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream)) {
+            jaxbContext.createMarshaller().marshal(request, outputStream);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private ExecuteWorkflowRequest decompress(byte[] compressedRequest) throws IOException, JAXBException {
+        try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(compressedRequest))) {
+            return (ExecuteWorkflowRequest) jaxbContext.createUnmarshaller().unmarshal(inputStream);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+        return Futures.supplyAsync(() -> {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                @Nullable ExecutionResult executionResult = entityManager.find(ExecutionResult.class, executionId);
+                if (executionResult == null) {
+                    throw new UnknownExecutionIdException(executionId);
+                }
+                return fromEntities(Collections.singletonList(executionResult)).get(0);
+            } finally {
+                entityManager.close();
+            }
+        }, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation loads the execution statuses with one query per {@link #MAX_IDS_PER_QUERY} execution
+     * ids.
+     */
+    @Override
+    public CompletableFuture<List<ExecutionStatus>> loadExecutionStatuses(List<Long> executionIds) {
+        List<Long> executionIdsCopy = new ArrayList<>(executionIds);
+        return Futures.supplyAsync(() -> {
+            Map<Long, ExecutionResult> executionResults = new HashMap<>();
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+                for (int from = 0; from < executionIdsCopy.size(); from += MAX_IDS_PER_QUERY) {
+                    List<Long> chunk
+                        = executionIdsCopy.subList(from, Math.min(from + MAX_IDS_PER_QUERY, executionIdsCopy.size()));
+                    CriteriaQuery<ExecutionResult> criteriaQuery = criteriaBuilder.createQuery(ExecutionResult.class);
+                    Root<ExecutionResult> root = criteriaQuery.from(ExecutionResult.class);
+                    criteriaQuery.select(root).where(root.get(ExecutionResult_.id).in(chunk));
+                    for (ExecutionResult executionResult: entityManager.createQuery(criteriaQuery).getResultList()) {
+                        executionResults.put(executionResult.getId(), executionResult);
+                    }
+                }
+            } finally {
+                entityManager.close();
+            }
+
+            List<ExecutionResult> orderedResults = new ArrayList<>(executionResults.size());
+            for (long executionId: executionIdsCopy) {
+                @Nullable ExecutionResult executionResult = executionResults.get(executionId);
+                if (executionResult != null) {
+                    orderedResults.add(executionResult);
+                }
+            }
+            return fromEntities(orderedResults);
+        }, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation translates the query into a single database query, which is supported by the secondary
+     * indexes of {@link ExecutionResult}.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        ExecutionStatusQuery queryCopy = new ExecutionStatusQuery(query);
+        return Futures.supplyAsync(() -> {
+            int limit = queryCopy.getLimit();
+            List<ExecutionResult> executionResults;
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+                CriteriaQuery<ExecutionResult> criteriaQuery = criteriaBuilder.createQuery(ExecutionResult.class);
+                Root<ExecutionResult> root = criteriaQuery.from(ExecutionResult.class);
+                List<Predicate> predicates = new ArrayList<>();
+                if (queryCopy.getCursor() != null) {
+                    predicates.add(criteriaBuilder.greaterThan(root.get(ExecutionResult_.id), queryCopy.getCursor()));
+                }
+                if (queryCopy.getPrefix() != null) {
+                    predicates.add(criteriaBuilder.equal(root.get(ExecutionResult_.keyPrefix), queryCopy.getPrefix()));
+                }
+                if (!queryCopy.getStatuses().isEmpty()) {
+                    predicates.add(root.get(ExecutionResult_.status).in(queryCopy.getStatuses()));
+                }
+                if (queryCopy.getStartedAfterMillis() != null) {
+                    predicates.add(criteriaBuilder.greaterThanOrEqualTo(
+                        root.get(ExecutionResult_.startTime), new Date(queryCopy.getStartedAfterMillis())));
+                }
+                if (queryCopy.getStartedBeforeMillis() != null) {
+                    predicates.add(criteriaBuilder.lessThan(
+                        root.get(ExecutionResult_.startTime), new Date(queryCopy.getStartedBeforeMillis())));
+                }
+                criteriaQuery
+                    .select(root)
+                    .where(predicates.toArray(new Predicate[predicates.size()]))
+                    .orderBy(criteriaBuilder.asc(root.get(ExecutionResult_.id)));
+                TypedQuery<ExecutionResult> typedQuery = entityManager.createQuery(criteriaQuery);
+                if (limit > 0) {
+                    // One more than the limit, in order to determine whether there is a next page.
+                    typedQuery.setMaxResults(limit + 1);
+                }
+                executionResults = typedQuery.getResultList();
+            } finally {
+                entityManager.close();
+            }
+
+            @Nullable Long nextCursor = null;
+            if (limit > 0 && executionResults.size() > limit) {
+                executionResults = executionResults.subList(0, limit);
+                nextCursor = executionResults.get(limit - 1).getId();
+            }
+            return new ExecutionStatusList()
+                .setList(fromEntities(executionResults))
+                .setNextCursor(nextCursor);
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<ErrorSummary>> getTopErrors(int limit) {
+        return Futures.supplyAsync(() -> errorTraceStore.getTopErrors(limit), executor);
+    }
+
+    /**
+     * Returns the next batch of ids of execution statuses with the given status that exceed the given limit.
+     */
+    private List<Long> nextExpiredBatch(EntityManager entityManager, ExecutionStatus.Status status,
+            RetentionPolicy.Limit limit, long currentTimeMillis, boolean byCount) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<ExecutionResult> root = criteriaQuery.from(ExecutionResult.class);
+        Predicate statusPredicate = criteriaBuilder.equal(root.get(ExecutionResult_.status), status);
+        criteriaQuery.select(root.get(ExecutionResult_.id));
+        if (byCount) {
+            criteriaQuery
+                .where(statusPredicate)
+                .orderBy(criteriaBuilder.desc(root.get(ExecutionResult_.id)));
+        } else {
+            criteriaQuery
+                .where(statusPredicate, criteriaBuilder.lessThan(
+                    root.get(ExecutionResult_.startTime), new Date(currentTimeMillis - limit.getMaxAgeMillis())))
+                .orderBy(criteriaBuilder.asc(root.get(ExecutionResult_.id)));
+        }
+        TypedQuery<Long> typedQuery = entityManager.createQuery(criteriaQuery);
+        if (byCount) {
+            typedQuery.setFirstResult(limit.getMaxCount());
+        }
+        return typedQuery.setMaxResults(maxBatchSize).getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation removes execution statuses in batches, acquiring one permit per removed execution status
+     * before each batch. For each status, execution statuses that exceed the maximum age are removed first, then those
+     * that exceed the maximum count.
+     */
+    @Override
+    public long sweep(RetentionPolicy policy, long currentTimeMillis, RateLimiter rateLimiter)
+            throws InterruptedException {
+        long removed = 0;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            for (ExecutionStatus.Status status: ExecutionStatus.Status.values()) {
+                RetentionPolicy.Limit limit = policy.getLimit(status);
+                for (boolean byCount: new boolean[] { false, true }) {
+                    if (byCount ? limit.getMaxCount() == 0 : limit.getMaxAgeMillis() == 0) {
+                        continue;
+                    }
+                    List<Long> executionIds;
+                    while (!(executionIds = nextExpiredBatch(entityManager, status, limit, currentTimeMillis, byCount))
+                            .isEmpty()) {
+                        rateLimiter.acquire(executionIds.size());
+                        CriteriaDelete<ExecutionResult> criteriaDelete
+                            = criteriaBuilder.createCriteriaDelete(ExecutionResult.class);
+                        Root<ExecutionResult> root = criteriaDelete.from(ExecutionResult.class);
+                        criteriaDelete.where(root.get(ExecutionResult_.id).in(executionIds));
+                        EntityTransaction transaction = entityManager.getTransaction();
+                        try {
+                            transaction.begin();
+                            entityManager.createQuery(criteriaDelete).executeUpdate();
+                            transaction.commit();
+                        } finally {
+                            if (transaction.isActive()) {
+                                transaction.rollback();
+                            }
+                        }
+                        entityManager.clear();
+                        removed += executionIds.size();
+                    }
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return "database status store";
+    }
+}
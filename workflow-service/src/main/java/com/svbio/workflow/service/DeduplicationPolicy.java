@@ -0,0 +1,50 @@
+package com.svbio.workflow.service;
+
+/**
+ * Immutable settings of a {@link SubmissionDeduplicator}.
+ */
+final class DeduplicationPolicy {
+    /**
+     * Policy that disables deduplication, that is, every request starts a new workflow execution.
+     */
+    static final DeduplicationPolicy DISABLED = new DeduplicationPolicy(0, 0);
+
+    private final long windowMillis;
+    private final int maxSize;
+
+    /**
+     * Constructor.
+     *
+     * @param windowMillis time (in milliseconds) after the successful completion of a workflow execution during which
+     *     identical requests are answered with the finished workflow execution; 0 means that only running (or queued)
+     *     workflow executions are reused
+     * @param maxSize maximum number of remembered requests, or 0 if deduplication is disabled
+     * @throws IllegalArgumentException if an argument is negative
+     */
+    DeduplicationPolicy(long windowMillis, int maxSize) {
+        if (windowMillis < 0 || maxSize < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid deduplication policy (window = %d ms, maximum size = %d).", windowMillis, maxSize
+            ));
+        }
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("deduplication policy (window = %d ms, maximum size = %d)", windowMillis, maxSize);
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    long getWindowMillis() {
+        return windowMillis;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+}
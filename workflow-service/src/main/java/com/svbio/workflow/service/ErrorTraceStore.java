@@ -0,0 +1,477 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.entities.ErrorTrace;
+import com.svbio.workflow.entities.ErrorTrace_;
+import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.ExecutionFrameError_;
+import com.svbio.workflow.entities.ExecutionResult;
+import com.svbio.workflow.entities.ExecutionResult_;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Store of distinct execution traces, keyed by fingerprint (see {@link ErrorTraces#fingerprint(String)}).
+ *
+ * <p>Each distinct execution trace is stored once, as compressed {@link ErrorTrace} entity. Entities that refer to an
+ * execution trace (for instance, {@link com.svbio.workflow.entities.ExecutionResult} and
+ * {@link com.svbio.workflow.entities.ExecutionFrameError}) only store the fingerprint, and possibly the differences to
+ * the stored execution trace (see {@link Reference}).
+ *
+ * <p>Writers of referencing entities resolve all execution traces of a batch with a single call of
+ * {@link #resolve(Map)} before the batch transaction, and then record the occurrences with
+ * {@link #recordOccurrences(EntityManager, Occurrences)} within the batch transaction. Recording an occurrence of an
+ * execution trace is a single-row update of the time of the first and last occurrence, which is therefore rolled back
+ * along with the batch. This update is idempotent, so recording the same occurrence more than once (for instance, when
+ * a write is retried or replayed) has no effect. For the same reason, the number of occurrences is not maintained by
+ * this class, but counted from the referencing rows by {@link #getTopErrors(int)}.
+ *
+ * <p>Loaded execution traces are kept in a bounded LRU cache. Since the execution trace stored for a fingerprint never
+ * changes, the cache never needs to be invalidated.
+ *
+ * <p>This class is thread-safe.
+ */
+final class ErrorTraceStore {
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<String, String> cache;
+
+    /**
+     * Constructor.
+     *
+     * @param entityManagerFactory JPA entity manager factory
+     * @param maxCachedTraces maximum number of execution traces kept in memory, may be 0
+     * @throws IllegalArgumentException if the maximum number of cached execution traces is negative
+     */
+    ErrorTraceStore(EntityManagerFactory entityManagerFactory, int maxCachedTraces) {
+        if (maxCachedTraces < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected non-negative cache size, but got %d.", maxCachedTraces
+            ));
+        }
+
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory);
+        cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 3418021384658412398L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxCachedTraces;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "database error-trace store";
+    }
+
+    /**
+     * Reference to a stored execution trace, as stored by an entity that refers to it.
+     */
+    static final class Reference {
+        private final String fingerprint;
+        @Nullable private final byte[] delta;
+
+        private Reference(String fingerprint, @Nullable byte[] delta) {
+            this.fingerprint = fingerprint;
+            this.delta = delta;
+        }
+
+        /**
+         * Returns the fingerprint of the execution trace.
+         */
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the differences between the execution trace and the one stored for the fingerprint, or {@code null}
+         * if the two are equal.
+         *
+         * <p>Execution traces with the same fingerprint may still differ in the parts removed by normalization (for
+         * instance, numbers in messages). Entities that need to reproduce an execution trace exactly should therefore
+         * store the returned bytes, which are the execution trace compressed with the stored one as preset dictionary
+         * (see {@link ErrorTraces#compress(String, String)}). These are typically a few dozen bytes. The execution
+         * trace is reproduced by {@link ErrorTraces#decompress(byte[], String)}, given the execution trace returned by
+         * {@link #load(Collection)}. If the stored execution trace could not be loaded, the returned bytes are the
+         * execution trace compressed without dictionary.
+         */
+        @Nullable
+        byte[] getDelta() {
+            return delta;
+        }
+    }
+
+    /**
+     * Time ranges of the occurrences of execution traces (by fingerprint) that are written along with a batch of
+     * referencing entities.
+     *
+     * <p>Instances of this class are not thread-safe.
+     */
+    static final class Occurrences {
+        private final Map<String, long[]> timeRanges = new LinkedHashMap<>();
+
+        /**
+         * Adds an occurrence of the execution trace with the given fingerprint.
+         *
+         * @param fingerprint fingerprint of the execution trace
+         * @param timeMillis time of the occurrence, in milliseconds since the epoch
+         */
+        void add(String fingerprint, long timeMillis) {
+            @Nullable long[] timeRange = timeRanges.get(fingerprint);
+            if (timeRange == null) {
+                timeRanges.put(fingerprint, new long[] { timeMillis, timeMillis });
+            } else {
+                timeRange[0] = Math.min(timeRange[0], timeMillis);
+                timeRange[1] = Math.max(timeRange[1], timeMillis);
+            }
+        }
+
+        /**
+         * Returns whether no occurrences have been added.
+         */
+        boolean isEmpty() {
+            return timeRanges.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the references to the given execution traces, storing those whose fingerprint is not known yet.
+     *
+     * <p>Fingerprints that are not cached are looked up and, if necessary, inserted in a single (short) transaction, so
+     * that the rows of frequent errors are not locked for the duration of a longer transaction. Under concurrent first
+     * occurrences of the same fingerprint, the insert of one writer fails, and that writer retries once. This method
+     * should therefore be called once per batch, before the transaction that writes the referencing entities (as
+     * {@link FrameTraceDictionary#resolve(Collection)}).
+     *
+     * <p>Apart from the initial time range of a newly stored execution trace, this method does not record the
+     * occurrences of the given execution traces. This is left to
+     * {@link #recordOccurrences(EntityManager, Occurrences)}, within the transaction that writes the referencing
+     * entities.
+     *
+     * @param traces map from execution traces to the time of their occurrence, in milliseconds since the epoch
+     * @return map from each of the given execution traces to its reference
+     * @throws PersistenceException if a database error occurs
+     */
+    Map<String, Reference> resolve(Map<String, Long> traces) {
+        Map<String, String> storedTraces = new HashMap<>();
+        Map<String, String> missing = new LinkedHashMap<>();
+        Map<String, Long> firstOccurrences = new HashMap<>();
+        synchronized (cache) {
+            for (Map.Entry<String, Long> entry: traces.entrySet()) {
+                String fingerprint = ErrorTraces.fingerprint(entry.getKey());
+                @Nullable String storedTrace = cache.get(fingerprint);
+                if (storedTrace != null) {
+                    storedTraces.put(fingerprint, storedTrace);
+                } else {
+                    missing.putIfAbsent(fingerprint, entry.getKey());
+                    firstOccurrences.merge(fingerprint, entry.getValue(), Math::min);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, String> resolved;
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                try {
+                    resolved = store(entityManager, missing, firstOccurrences);
+                } catch (PersistenceException exception) {
+                    entityManager.clear();
+                    resolved = store(entityManager, missing, firstOccurrences);
+                }
+            } finally {
+                entityManager.close();
+            }
+            // The execution trace stored for a fingerprint never changes, so it may be cached.
+            synchronized (cache) {
+                cache.putAll(resolved);
+            }
+            storedTraces.putAll(resolved);
+        }
+
+        Map<String, Reference> references = new HashMap<>();
+        for (String trace: traces.keySet()) {
+            String fingerprint = ErrorTraces.fingerprint(trace);
+            @Nullable String storedTrace = storedTraces.get(fingerprint);
+            references.put(
+                trace,
+                new Reference(
+                    fingerprint,
+                    trace.equals(storedTrace)
+                        ? null
+                        : ErrorTraces.compress(trace, storedTrace)
+                )
+            );
+        }
+        return references;
+    }
+
+    /**
+     * Looks up the given fingerprints, inserts those that are not stored yet, and returns the stored execution traces.
+     *
+     * <p>Stored execution traces that cannot be decompressed are omitted from the returned map.
+     *
+     * @param entityManager entity manager
+     * @param traces map from fingerprints to execution traces
+     * @param firstOccurrences map from fingerprints to the time of the first occurrence
+     */
+    private static Map<String, String> store(EntityManager entityManager, Map<String, String> traces,
+            Map<String, Long> firstOccurrences) {
+        Map<String, byte[]> compressedTraces = new HashMap<>();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            List<String> fingerprints = new ArrayList<>(traces.keySet());
+            int maxIds = DatabaseStatusKeepingService.MAX_IDS_PER_QUERY;
+            for (int from = 0; from < fingerprints.size(); from += maxIds) {
+                List<String> chunk = fingerprints.subList(from, Math.min(from + maxIds, fingerprints.size()));
+                CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+                Root<ErrorTrace> root = criteriaQuery.from(ErrorTrace.class);
+                criteriaQuery
+                    .multiselect(root.get(ErrorTrace_.fingerprint), root.get(ErrorTrace_.compressedTrace))
+                    .where(root.get(ErrorTrace_.fingerprint).in(chunk));
+                for (Tuple tuple: entityManager.createQuery(criteriaQuery).getResultList()) {
+                    @Nullable byte[] compressedTrace = tuple.get(1, byte[].class);
+                    if (compressedTrace != null) {
+                        compressedTraces.put(tuple.get(0, String.class), compressedTrace);
+                    }
+                }
+            }
+
+            Map<String, String> storedTraces = new HashMap<>();
+            for (Map.Entry<String, String> entry: traces.entrySet()) {
+                String fingerprint = entry.getKey();
+                String trace = entry.getValue();
+                if (!compressedTraces.containsKey(fingerprint)) {
+                    Date date = new Date(firstOccurrences.get(fingerprint));
+                    entityManager.persist(
+                        new ErrorTrace()
+                            .setFingerprint(fingerprint)
+                            .setSummary(ErrorTraces.summary(trace))
+                            .setCompressedTrace(ErrorTraces.compress(trace))
+                            .setFirstSeen(date)
+                            .setLastSeen(date)
+                    );
+                    storedTraces.put(fingerprint, trace);
+                }
+            }
+            transaction.commit();
+
+            for (Map.Entry<String, byte[]> entry: compressedTraces.entrySet()) {
+                try {
+                    storedTraces.put(entry.getKey(), ErrorTraces.decompress(entry.getValue()));
+                } catch (IOException ignored) {
+                    // The references to this fingerprint store their execution trace compressed without dictionary.
+                }
+            }
+            return storedTraces;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+
+    /**
+     * Extends the time range of the stored occurrences of each fingerprint to include the given occurrences.
+     *
+     * <p>This method must be called within the transaction that writes the entities referencing the execution traces,
+     * so that the time ranges are only extended if that transaction commits. It executes one single-row update per
+     * fingerprint. Since the updated rows stay locked until the transaction ends, this method should be called right
+     * before committing. The update is idempotent, so recording the same occurrences more than once (for instance, when
+     * a write is retried or replayed) has no effect.
+     *
+     * @param entityManager entity manager with an active transaction
+     * @param occurrences occurrences of execution traces, each of which has been stored by
+     *     {@link #resolve(Map)}
+     * @throws PersistenceException if a database error occurs
+     */
+    static void recordOccurrences(EntityManager entityManager, Occurrences occurrences) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        for (Map.Entry<String, long[]> entry: occurrences.timeRanges.entrySet()) {
+            Date first = new Date(entry.getValue()[0]);
+            Date last = new Date(entry.getValue()[1]);
+            CriteriaUpdate<ErrorTrace> criteriaUpdate = criteriaBuilder.createCriteriaUpdate(ErrorTrace.class);
+            Root<ErrorTrace> root = criteriaUpdate.from(ErrorTrace.class);
+            Path<Date> firstSeen = root.get(ErrorTrace_.firstSeen);
+            Path<Date> lastSeen = root.get(ErrorTrace_.lastSeen);
+            criteriaUpdate
+                .set(firstSeen, criteriaBuilder.<Date>selectCase()
+                    .when(criteriaBuilder.greaterThan(firstSeen, first), first)
+                    .otherwise(firstSeen))
+                .set(lastSeen, criteriaBuilder.<Date>selectCase()
+                    .when(criteriaBuilder.lessThan(lastSeen, last), last)
+                    .otherwise(lastSeen))
+                .where(criteriaBuilder.equal(root.get(ErrorTrace_.fingerprint), entry.getKey()));
+            entityManager.createQuery(criteriaUpdate).executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the execution traces for the given fingerprints.
+     *
+     * <p>Fingerprints that are not cached are loaded with one query per
+     * {@link DatabaseStatusKeepingService#MAX_IDS_PER_QUERY} fingerprints. Unknown fingerprints are omitted from the
+     * returned map.
+     *
+     * @param fingerprints fingerprints
+     * @return map from fingerprints to execution traces
+     * @throws IOException if a stored execution trace cannot be decompressed
+     * @throws PersistenceException if a database error occurs
+     */
+    Map<String, String> load(Collection<String> fingerprints) throws IOException {
+        Map<String, String> traces = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (String fingerprint: new LinkedHashSet<>(fingerprints)) {
+                @Nullable String trace = cache.get(fingerprint);
+                if (trace != null) {
+                    traces.put(fingerprint, trace);
+                } else {
+                    missing.add(fingerprint);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return traces;
+        }
+
+        Map<String, String> loaded = new HashMap<>();
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            int maxIds = DatabaseStatusKeepingService.MAX_IDS_PER_QUERY;
+            for (int from = 0; from < missing.size(); from += maxIds) {
+                Set<String> chunk = new LinkedHashSet<>(missing.subList(from, Math.min(from + maxIds, missing.size())));
+                CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+                Root<ErrorTrace> root = criteriaQuery.from(ErrorTrace.class);
+                criteriaQuery
+                    .multiselect(root.get(ErrorTrace_.fingerprint), root.get(ErrorTrace_.compressedTrace))
+                    .where(root.get(ErrorTrace_.fingerprint).in(chunk));
+                for (Tuple tuple: entityManager.createQuery(criteriaQuery).getResultList()) {
+                    @Nullable byte[] compressedTrace = tuple.get(1, byte[].class);
+                    if (compressedTrace != null) {
+                        loaded.put(tuple.get(0, String.class), ErrorTraces.decompress(compressedTrace));
+                    }
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        synchronized (cache) {
+            cache.putAll(loaded);
+        }
+        traces.putAll(loaded);
+        return traces;
+    }
+
+    /**
+     * Returns the most frequent errors, ordered by decreasing number of occurrences.
+     *
+     * <p>The number of occurrences of a fingerprint is the number of execution-frame errors and execution results that
+     * reference it. These are counted with one aggregate query per referencing table (supported by the index on the
+     * fingerprint column), so that the counts are exact even if occurrences were recorded more than once. The
+     * compressed execution traces are not loaded by this method.
+     *
+     * @param limit maximum number of errors, must be positive
+     * @return the list of errors
+     * @throws PersistenceException if a database error occurs
+     */
+    List<ErrorSummary> getTopErrors(int limit) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Map<String, Long> occurrences = new HashMap<>();
+            countOccurrences(entityManager, ExecutionFrameError.class, ExecutionFrameError_.errorFingerprint,
+                occurrences);
+            countOccurrences(entityManager, ExecutionResult.class, ExecutionResult_.failureFingerprint, occurrences);
+            List<String> topFingerprints = occurrences.entrySet().stream()
+                .sorted(
+                    Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<String, Long>comparingByKey())
+                )
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+            Map<String, ErrorSummary> errorSummaries = new HashMap<>();
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            int maxIds = DatabaseStatusKeepingService.MAX_IDS_PER_QUERY;
+            for (int from = 0; from < topFingerprints.size(); from += maxIds) {
+                List<String> chunk = topFingerprints.subList(from, Math.min(from + maxIds, topFingerprints.size()));
+                CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+                Root<ErrorTrace> root = criteriaQuery.from(ErrorTrace.class);
+                criteriaQuery
+                    .multiselect(
+                        root.get(ErrorTrace_.fingerprint),
+                        root.get(ErrorTrace_.summary),
+                        root.get(ErrorTrace_.firstSeen),
+                        root.get(ErrorTrace_.lastSeen)
+                    )
+                    .where(root.get(ErrorTrace_.fingerprint).in(chunk));
+                for (Tuple tuple: entityManager.createQuery(criteriaQuery).getResultList()) {
+                    String fingerprint = tuple.get(0, String.class);
+                    @Nullable Date firstSeen = tuple.get(2, Date.class);
+                    @Nullable Date lastSeen = tuple.get(3, Date.class);
+                    errorSummaries.put(
+                        fingerprint,
+                        new ErrorSummary()
+                            .setFingerprint(fingerprint)
+                            .setSummary(tuple.get(1, String.class))
+                            .setOccurrences(occurrences.get(fingerprint))
+                            .setFirstSeenMillis(firstSeen == null ? null : firstSeen.getTime())
+                            .setLastSeenMillis(lastSeen == null ? null : lastSeen.getTime())
+                    );
+                }
+            }
+            return topFingerprints.stream()
+                .map(errorSummaries::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Adds the number of entities of the given class that reference each fingerprint to the given map.
+     */
+    private static <T> void countOccurrences(EntityManager entityManager, Class<T> entityClass,
+            SingularAttribute<? super T, String> fingerprintAttribute, Map<String, Long> occurrences) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(entityClass);
+        Path<String> fingerprint = root.get(fingerprintAttribute);
+        criteriaQuery
+            .multiselect(fingerprint, criteriaBuilder.count(fingerprint))
+            .where(criteriaBuilder.isNotNull(fingerprint))
+            .groupBy(fingerprint);
+        for (Tuple tuple: entityManager.createQuery(criteriaQuery).getResultList()) {
+            occurrences.merge(tuple.get(0, String.class), tuple.get(1, Long.class), Long::sum);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.ErrorTrace;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * This class consists exclusively of static utility methods for fingerprinting and compressing execution traces (as
+ * returned by {@link com.svbio.workflow.util.Throwables#executionTraceToString(Throwable)}).
+ *
+ * <p>Two execution traces have the same fingerprint if they are equal after normalization. Normalization removes the
+ * parts of an execution trace that typically differ between occurrences of the same error:
+ * <ul><li>
+ *     line separators and trailing whitespace,
+ * </li><li>
+ *     identity hash codes (as in {@code Object@1b6d3586}),
+ * </li><li>
+ *     the names of generated classes (lambdas, reflection accessors),
+ * </li><li>
+ *     numbers in messages (as in {@code "Execution 42 failed"}); line numbers in stack frames are retained.
+ * </li></ul>
+ */
+final class ErrorTraces {
+    private static final Pattern LINE_SEPARATOR = Pattern.compile("\r\n?");
+    private static final Pattern TRAILING_WHITESPACE = Pattern.compile("[ \t]+$", Pattern.MULTILINE);
+    private static final Pattern IDENTITY_HASH_CODE = Pattern.compile("@[0-9a-f]{4,}\\b");
+    private static final Pattern LAMBDA = Pattern.compile("\\$\\$Lambda\\$\\d+/\\d+");
+    private static final Pattern ACCESSOR = Pattern.compile("Generated(Method|Constructor)Accessor\\d+");
+    private static final Pattern STACK_FRAME = Pattern.compile("^\\s+(at |\\.\\.\\. )");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ErrorTraces() {
+        throw new AssertionError(String.format("No %s instances for you!", getClass().getName()));
+    }
+
+    /**
+     * Returns the normalized representation of the given execution trace.
+     *
+     * @param trace execution trace
+     * @return the normalized execution trace
+     */
+    static String normalize(String trace) {
+        String withoutHashCodes = IDENTITY_HASH_CODE.matcher(
+            TRAILING_WHITESPACE.matcher(LINE_SEPARATOR.matcher(trace).replaceAll("\n")).replaceAll("")
+        ).replaceAll("@");
+        String withoutGeneratedNames = ACCESSOR.matcher(LAMBDA.matcher(withoutHashCodes).replaceAll("\\$\\$Lambda"))
+            .replaceAll("Generated$1Accessor");
+
+        StringBuilder stringBuilder = new StringBuilder(withoutGeneratedNames.length());
+        for (String line: withoutGeneratedNames.split("\n")) {
+            if (STACK_FRAME.matcher(line).find()) {
+                stringBuilder.append(line);
+            } else {
+                stringBuilder.append(NUMBER.matcher(line).replaceAll("#"));
+            }
+            stringBuilder.append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Returns the fingerprint of the given execution trace, which is the hexadecimal SHA-256 hash of its normalized
+     * representation.
+     *
+     * @param trace execution trace
+     * @return the fingerprint, a string of length {@link ErrorTrace#FINGERPRINT_LENGTH}
+     */
+    static String fingerprint(String trace) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(normalize(trace).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is a required algorithm of every Java platform.", exception);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; ++i) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns the summary of the given execution trace, which is its first line, truncated to
+     * {@link ErrorTrace#SUMMARY_LENGTH} characters.
+     *
+     * @param trace execution trace
+     * @return the summary
+     */
+    static String summary(String trace) {
+        int endOfLine = trace.indexOf('\n');
+        String firstLine = (endOfLine >= 0 ? trace.substring(0, endOfLine) : trace).trim();
+        return firstLine.length() > ErrorTrace.SUMMARY_LENGTH
+            ? firstLine.substring(0, ErrorTrace.SUMMARY_LENGTH)
+            : firstLine;
+    }
+
+    /**
+     * Returns the deflate-compressed UTF-8 representation of the given execution trace.
+     */
+    static byte[] compress(String trace) {
+        return compress(trace, null);
+    }
+
+    /**
+     * Returns the deflate-compressed UTF-8 representation of the given execution trace, using the given other execution
+     * trace as preset dictionary.
+     *
+     * <p>If the two execution traces differ only in a few places (for instance, if they have the same fingerprint),
+     * the result is typically a few dozen bytes, because the compressed stream mostly consists of back-references into
+     * the dictionary. Only the last 32 KiB of the dictionary are used.
+     *
+     * @param trace execution trace
+     * @param dictionary execution trace used as preset dictionary, or {@code null} if no dictionary is to be used
+     * @return the compressed bytes, which can only be decompressed given the same dictionary
+     */
+    static byte[] compress(String trace, @Nullable String dictionary) {
+        Deflater deflater = new Deflater();
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary.getBytes(StandardCharsets.UTF_8));
+            }
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            try (OutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream, deflater)) {
+                outputStream.write(trace.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException exception) {
+                throw new IllegalStateException("Unexpected IOException from ByteArrayOutputStream", exception);
+            }
+            return byteArrayOutputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the execution trace represented by the given compressed bytes.
+     *
+     * @param compressedTrace deflate-compressed UTF-8 representation, as returned by {@link #compress(String)}
+     * @return the execution trace
+     * @throws IOException if the given bytes are not a valid deflate stream
+     */
+    static String decompress(byte[] compressedTrace) throws IOException {
+        return decompress(compressedTrace, null);
+    }
+
+    /**
+     * Returns the execution trace represented by the given compressed bytes, using the given preset dictionary if the
+     * compressed bytes require one.
+     *
+     * @param compressedTrace deflate-compressed UTF-8 representation, as returned by
+     *     {@link #compress(String, String)}
+     * @param dictionary execution trace that was used as preset dictionary, may be {@code null} if none was used
+     * @return the execution trace
+     * @throws IOException if the given bytes are not a valid deflate stream, or if they require a dictionary other than
+     *     the given one
+     */
+    static String decompress(byte[] compressedTrace, @Nullable String dictionary) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedTrace);
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length > 0) {
+                    byteArrayOutputStream.write(buffer, 0, length);
+                } else if (inflater.needsDictionary()) {
+                    if (dictionary == null) {
+                        throw new IOException("Compressed execution trace requires a preset dictionary.");
+                    }
+                    inflater.setDictionary(dictionary.getBytes(StandardCharsets.UTF_8));
+                } else if (inflater.needsInput()) {
+                    throw new IOException("Unexpected end of compressed execution trace.");
+                }
+            }
+            return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException | IllegalArgumentException exception) {
+            throw new IOException("Invalid compressed execution trace.", exception);
+        } finally {
+            inflater.end();
+        }
+    }
+}
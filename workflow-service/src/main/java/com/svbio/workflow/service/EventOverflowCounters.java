@@ -0,0 +1,87 @@
+package com.svbio.workflow.service;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the interpreter events that the database logger dropped, coalesced, or spilled because it could not keep
+ * up.
+ *
+ * <p>There is one instance per actor system (this class is an Akka extension), which is shared by all
+ * {@link BoundedEventMailbox} message queues and all {@link DatabaseLoggingActor} instances of that actor system.
+ * Mailboxes are created by Akka, so an extension is the only way to share state between them and the rest of the
+ * service.
+ *
+ * <p>The counters are reported by the {@link StatisticsReporter} (at level warning, whenever they changed), so that
+ * degraded database logging is visible to operators.
+ *
+ * <p>This class is thread-safe.
+ */
+final class EventOverflowCounters implements Extension {
+    private static final Id ID = new Id();
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+
+    private EventOverflowCounters() { }
+
+    private static final class Id extends AbstractExtensionId<EventOverflowCounters> {
+        @Override
+        public EventOverflowCounters createExtension(ExtendedActorSystem system) {
+            return new EventOverflowCounters();
+        }
+    }
+
+    /**
+     * Returns the counters of the given actor system.
+     */
+    static EventOverflowCounters get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("event overflow counters (dropped = %d, coalesced = %d, spilled = %d)",
+            getDroppedCount(), getCoalescedCount(), getSpilledCount());
+    }
+
+    void incrementDroppedCount() {
+        droppedCount.increment();
+    }
+
+    void incrementCoalescedCount() {
+        coalescedCount.increment();
+    }
+
+    void incrementSpilledCount() {
+        spilledCount.increment();
+    }
+
+    /**
+     * Returns the total number of interpreter events that were discarded without being written to the database.
+     */
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Returns the total number of {@link BoundedEventMailbox.CoalescedEvents} messages, each of which replaced two
+     * messages.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Returns the total number of messages that were appended to the spill spool of a {@link BoundedEventMailbox}.
+     * Spilled messages are not lost; they are delivered once there is room in the mailbox again.
+     */
+    long getSpilledCount() {
+        return spilledCount.sum();
+    }
+}
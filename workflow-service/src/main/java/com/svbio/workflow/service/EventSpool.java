@@ -0,0 +1,556 @@
+package com.svbio.workflow.service;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped queue of records in segment files, used by {@link DatabaseLoggingActor} for keeping
+ * events until they have been written to the database.
+ *
+ * <p>All segment files reside in a single directory and are named {@code segment-<number>.spool}. Each segment file
+ * has a fixed size and is memory-mapped in its entirety. It starts with a header of {@link #SEGMENT_MAGIC} (4 bytes),
+ * 4 reserved bytes, and the offset of the first record that has not been consumed yet (8 bytes), followed by records
+ * of the following form (all integers are big-endian):
+ * <ul><li>
+ *     payload length, must be positive (4 bytes),
+ * </li><li>
+ *     CRC-32 checksum of the payload (4 bytes),
+ * </li><li>
+ *     payload.
+ * </li></ul>
+ * The records of a segment end at the first record whose length is 0 (the file is zero-filled initially), or whose
+ * length or checksum is invalid (a torn record, for instance, after a crash). The length of a record is written last,
+ * so a record is never visible before its payload.
+ *
+ * <p>Records are appended to the active (last) segment. Once a record does not fit into the active segment anymore, a
+ * new active segment is started. Records are consumed from the head of the queue with {@link #peek(int)} and
+ * {@link #consume(int)}; consuming a record merely updates the header of its segment, and segments are deleted once all
+ * of their records have been consumed. On startup, the records that have not been consumed are recovered from the
+ * segment files. Since the header is updated through the memory mapping (and not forced to the storage device), a
+ * record may be recovered even though it was consumed before; consumers therefore need to be idempotent. A new active
+ * segment is always started on startup, so that the recovered segments are never written to again.
+ *
+ * <p>Each spool directory belongs to a single process and actor at a time, which is enforced with a file lock (see
+ * {@link #openUnclaimed(Path, int)}). The segment files of spool directories that are not claimed can be moved into a
+ * single spool directory with {@link #moveUnclaimed(Path, Path)}, so that the records left behind by a previous process
+ * are recovered regardless of which and how many spools are opened afterwards.
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to a single actor.
+ */
+final class EventSpool implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String SPOOL_PREFIX = "writer-";
+    private static final String LOCK_FILE = "lock";
+    private static final int SEGMENT_MAGIC = 0x53504f4c;
+    private static final int HEADER_SIZE = 16;
+    private static final int CONSUMED_OFFSET_POSITION = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Maximum number of spool directories in a base directory, see {@link #openUnclaimed(Path, int)}.
+     */
+    private static final int MAX_SPOOLS = 1024;
+
+    /**
+     * Minimum segment size, so that a segment fits at least one record.
+     */
+    static final int MIN_SEGMENT_SIZE = HEADER_SIZE + RECORD_HEADER_SIZE + 1;
+
+    /**
+     * Maximum segment size (1 GiB). A segment has to fit into a single {@link MappedByteBuffer}.
+     */
+    static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Claim claim;
+
+    /**
+     * Segments that contain records that have not been consumed yet, followed by the active segment.
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * Number of records that have not been consumed yet.
+     */
+    private long size = 0;
+
+    private boolean closed = false;
+
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Offset of the first record that has not been consumed yet.
+         */
+        private int readOffset = HEADER_SIZE;
+
+        /**
+         * Offset after the last record.
+         */
+        private int endOffset = HEADER_SIZE;
+
+        private Segment(long number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private EventSpool(Path directory, int segmentSize, Claim claim) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.claim = claim;
+    }
+
+    /**
+     * Opens the spool in the first subdirectory {@code writer-<n>} of the given base directory that is not claimed by
+     * another spool (in this or any other process), and recovers its records.
+     *
+     * <p>The subdirectory is claimed until the spool is closed. Records left behind by a previous process are
+     * recovered by whichever spool claims their subdirectory first, unless they have been moved away with
+     * {@link #moveUnclaimed(Path, Path)} before.
+     *
+     * @param baseDirectory base directory, will be created if it does not exist
+     * @param segmentSize size (in bytes) of new segment files, must be between {@link #MIN_SEGMENT_SIZE} and
+     *     {@link #MAX_SEGMENT_SIZE}; larger segment files are created for records that would not fit otherwise
+     * @return the new spool
+     * @throws IOException if an I/O error occurs, or if all subdirectories are claimed
+     */
+    static EventSpool openUnclaimed(Path baseDirectory, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                "Expected segment size between %d and %d bytes, but got %d.", MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE,
+                segmentSize
+            ));
+        }
+
+        for (int i = 0; i < MAX_SPOOLS; ++i) {
+            Path directory = baseDirectory.resolve(SPOOL_PREFIX + i);
+            Files.createDirectories(directory);
+            @Nullable Claim claim = Claim.tryClaim(directory);
+            if (claim != null) {
+                EventSpool spool = new EventSpool(directory, segmentSize, claim);
+                try {
+                    spool.recover();
+                } catch (IOException | RuntimeException exception) {
+                    spool.close();
+                    throw exception;
+                }
+                return spool;
+            }
+        }
+        throw new IOException(String.format("All %d spool directories in %s are in use.", MAX_SPOOLS, baseDirectory));
+    }
+
+    /**
+     * File lock on the lock file of a spool directory.
+     */
+    private static final class Claim implements AutoCloseable {
+        private final FileChannel lockChannel;
+        private final FileLock lock;
+
+        private Claim(FileChannel lockChannel, FileLock lock) {
+            this.lockChannel = lockChannel;
+            this.lock = lock;
+        }
+
+        /**
+         * Claims the given (existing) spool directory, or returns {@code null} if it is claimed by another spool (in
+         * this or any other process).
+         */
+        @Nullable
+        private static Claim tryClaim(Path directory) throws IOException {
+            FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+            @Nullable FileLock lock = null;
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException ignored) {
+                // Claimed by another spool in this process
+            } finally {
+                if (lock == null) {
+                    lockChannel.close();
+                }
+            }
+            return lock == null
+                ? null
+                : new Claim(lockChannel, lock);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                lockChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Moves the segment files of all subdirectories {@code writer-<n>} of the given base directory that are not claimed
+     * by a spool (in this or any other process) into the first subdirectory {@code writer-0} of the given target base
+     * directory.
+     *
+     * <p>The segment files are renumbered so that they follow the segment files already in the target directory, and
+     * so that the order of the segment files of each subdirectory is preserved. A spool subsequently opened in the
+     * target base directory with {@link #openUnclaimed(Path, int)} therefore recovers all records left behind in the
+     * moved subdirectories (and those left behind in the target directory).
+     *
+     * @param baseDirectory base directory of the spools whose records are moved; nothing is moved if it does not exist
+     * @param targetBaseDirectory base directory of the target spool, will be created if it does not exist; must not be
+     *     one of the subdirectories of {@code baseDirectory}
+     * @return the number of segment files in the target directory
+     * @throws IOException if an I/O error occurs, or if the target directory is claimed by a spool
+     */
+    static int moveUnclaimed(Path baseDirectory, Path targetBaseDirectory) throws IOException {
+        Path targetDirectory = targetBaseDirectory.resolve(SPOOL_PREFIX + 0);
+        Files.createDirectories(targetDirectory);
+        try (@Nullable Claim targetClaim = Claim.tryClaim(targetDirectory)) {
+            if (targetClaim == null) {
+                throw new IOException(String.format("Spool directory %s is in use.", targetDirectory));
+            }
+
+            List<Long> targetSegmentNumbers = segmentNumbers(targetDirectory);
+            long nextSegmentNumber = targetSegmentNumbers.isEmpty()
+                ? 0
+                : targetSegmentNumbers.get(targetSegmentNumbers.size() - 1) + 1;
+            int numSegments = targetSegmentNumbers.size();
+            for (int i = 0; i < MAX_SPOOLS; ++i) {
+                Path directory = baseDirectory.resolve(SPOOL_PREFIX + i);
+                if (!Files.isDirectory(directory)) {
+                    continue;
+                }
+                try (@Nullable Claim claim = Claim.tryClaim(directory)) {
+                    if (claim == null) {
+                        continue;
+                    }
+                    for (long segmentNumber: segmentNumbers(directory)) {
+                        Files.move(
+                            segmentPath(directory, segmentNumber),
+                            segmentPath(targetDirectory, nextSegmentNumber),
+                            StandardCopyOption.ATOMIC_MOVE
+                        );
+                        ++nextSegmentNumber;
+                        ++numSegments;
+                    }
+                }
+            }
+            return numSegments;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("event spool in %s (%d records)", directory, size);
+    }
+
+    private static Path segmentPath(Path directory, long segmentNumber) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    }
+
+    private Path segmentPath(long segmentNumber) {
+        return segmentPath(directory, segmentNumber);
+    }
+
+    /**
+     * Returns the numbers of the segment files in the given directory, in ascending order.
+     */
+    private static List<Long> segmentNumbers(Path directory) throws IOException {
+        List<Long> segmentNumbers = new ArrayList<>();
+        String glob = SEGMENT_PREFIX + '*' + SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path: stream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    segmentNumbers.add(Long.parseLong(
+                        fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // Not a segment file
+                }
+            }
+        }
+        Collections.sort(segmentNumbers);
+        return segmentNumbers;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * Recovers the segments in the spool directory, and starts a new active segment.
+     */
+    private void recover() throws IOException {
+        List<Long> segmentNumbers = segmentNumbers(directory);
+        for (long segmentNumber: segmentNumbers) {
+            Path path = segmentPath(segmentNumber);
+            @Nullable Segment segment = null;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long fileSize = channel.size();
+                if (fileSize > MAX_SEGMENT_SIZE) {
+                    throw new IOException(String.format("Corrupt spool segment %s of %d bytes.", path, fileSize));
+                } else if (fileSize >= HEADER_SIZE) {
+                    segment
+                        = new Segment(segmentNumber, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize));
+                }
+            }
+            if (segment == null || (segment.buffer.getInt(0) == 0 && hasNoRecords(segment))) {
+                // The process crashed while starting this segment.
+                Files.delete(path);
+                continue;
+            } else if (segment.buffer.getInt(0) != SEGMENT_MAGIC) {
+                throw new IOException(String.format("Expected spool segment, but got %s.", path));
+            }
+            scanRecords(segment);
+            if (segment.readOffset == segment.endOffset) {
+                Files.delete(path);
+            } else {
+                segments.addLast(segment);
+            }
+        }
+
+        startSegment(segmentNumbers.isEmpty()
+            ? 0
+            : segmentNumbers.get(segmentNumbers.size() - 1) + 1, segmentSize);
+    }
+
+    /**
+     * Returns whether the given segment does not contain a record (judging by the length of the first record only).
+     */
+    private static boolean hasNoRecords(Segment segment) {
+        return segment.buffer.capacity() < HEADER_SIZE + RECORD_HEADER_SIZE || segment.buffer.getInt(HEADER_SIZE) == 0;
+    }
+
+    /**
+     * Determines the end of the records of the given recovered segment, and the number of records that have not been
+     * consumed yet.
+     *
+     * <p>If the consumed offset in the header is not the offset of a record (or the end), all records of the segment
+     * are considered unconsumed.
+     */
+    private void scanRecords(Segment segment) {
+        RecordReader reader = new RecordReader(segment.buffer, HEADER_SIZE);
+        long consumedOffset = segment.buffer.getLong(CONSUMED_OFFSET_POSITION);
+        long records = 0;
+        long consumedRecords = -1;
+        while (true) {
+            if (reader.offset == consumedOffset) {
+                consumedRecords = records;
+            }
+            if (reader.next() == null) {
+                break;
+            }
+            ++records;
+        }
+        segment.endOffset = reader.offset;
+        if (consumedRecords >= 0) {
+            segment.readOffset = (int) consumedOffset;
+            size += records - consumedRecords;
+        } else {
+            size += records;
+        }
+    }
+
+    /**
+     * Reader of the records of a segment, starting at a given offset.
+     */
+    private static final class RecordReader {
+        private final ByteBuffer buffer;
+        private int offset;
+
+        private RecordReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the payload of the next record and advances the offset, or returns {@code null} if there are no
+         * further (valid) records.
+         */
+        @Nullable
+        private byte[] next() {
+            if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+                return null;
+            }
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_SIZE) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(offset + RECORD_HEADER_SIZE);
+            duplicate.get(payload);
+            if (checksum(payload) != buffer.getInt(offset + 4)) {
+                return null;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+            return payload;
+        }
+    }
+
+    private void startSegment(long segmentNumber, int size) throws IOException {
+        Path path = segmentPath(segmentNumber);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE_NEW)) {
+            // Mapping a region beyond the end of the file extends the file (with zeros).
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, SEGMENT_MAGIC);
+        buffer.putLong(CONSUMED_OFFSET_POSITION, HEADER_SIZE);
+        segments.addLast(new Segment(segmentNumber, path, buffer));
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException(String.format("%s has been closed.", this));
+        }
+    }
+
+    /**
+     * Appends a record with the given payload.
+     *
+     * @param payload payload, must not be empty
+     * @throws IOException if an I/O error occurs
+     */
+    void append(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Expected non-empty payload.");
+        }
+        ensureOpen();
+
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        Segment active = segments.getLast();
+        if (active.endOffset + recordSize > active.buffer.capacity()) {
+            if (HEADER_SIZE + recordSize > MAX_SEGMENT_SIZE) {
+                throw new IOException(String.format(
+                    "Record of %d bytes exceeds the maximum segment size.", payload.length
+                ));
+            }
+            startSegment(active.number + 1, Math.max(segmentSize, HEADER_SIZE + recordSize));
+            deleteConsumedSegments();
+            active = segments.getLast();
+        }
+
+        ByteBuffer duplicate = active.buffer.duplicate();
+        duplicate.position(active.endOffset + RECORD_HEADER_SIZE);
+        duplicate.put(payload);
+        active.buffer.putInt(active.endOffset + 4, checksum(payload));
+        active.buffer.putInt(active.endOffset, payload.length);
+        active.endOffset += recordSize;
+        ++size;
+    }
+
+    /**
+     * Forces the active segment to the storage device.
+     */
+    void force() {
+        segments.getLast().buffer.force();
+    }
+
+    /**
+     * Returns the payloads of (at most) the given number of records at the head of the queue, without consuming them.
+     */
+    List<byte[]> peek(int maxRecords) {
+        List<byte[]> payloads = new ArrayList<>(Math.min(maxRecords, (int) Math.min(size, Integer.MAX_VALUE)));
+        Iterator<Segment> iterator = segments.iterator();
+        while (payloads.size() < maxRecords && iterator.hasNext()) {
+            Segment segment = iterator.next();
+            RecordReader reader = new RecordReader(segment.buffer, segment.readOffset);
+            while (payloads.size() < maxRecords && reader.offset < segment.endOffset) {
+                payloads.add(Objects.requireNonNull(reader.next()));
+            }
+        }
+        return payloads;
+    }
+
+    /**
+     * Consumes the given number of records at the head of the queue.
+     *
+     * @throws IllegalArgumentException if the queue contains fewer records
+     * @throws IOException if an I/O error occurs while deleting segment files
+     */
+    void consume(int numRecords) throws IOException {
+        if (numRecords < 0 || numRecords > size) {
+            throw new IllegalArgumentException(String.format(
+                "Expected number of records between 0 and %d, but got %d.", size, numRecords
+            ));
+        }
+        ensureOpen();
+
+        int remaining = numRecords;
+        Iterator<Segment> iterator = segments.iterator();
+        while (remaining > 0) {
+            Segment segment = iterator.next();
+            RecordReader reader = new RecordReader(segment.buffer, segment.readOffset);
+            while (remaining > 0 && reader.offset < segment.endOffset) {
+                reader.next();
+                --remaining;
+            }
+            segment.readOffset = reader.offset;
+            segment.buffer.putLong(CONSUMED_OFFSET_POSITION, segment.readOffset);
+        }
+        size -= numRecords;
+        deleteConsumedSegments();
+    }
+
+    /**
+     * Deletes the segments at the head of the queue whose records have all been consumed, except for the active
+     * segment.
+     */
+    private void deleteConsumedSegments() throws IOException {
+        while (segments.size() > 1 && segments.getFirst().readOffset == segments.getFirst().endOffset) {
+            Files.delete(segments.removeFirst().path);
+        }
+    }
+
+    /**
+     * Returns the number of records that have not been consumed yet.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns whether all records have been consumed.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Releases the spool directory. The memory mappings stay valid until they are garbage-collected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        claim.close();
+    }
+}
@@ -3,7 +3,7 @@ package com.svbio.workflow.service;
 import javax.inject.Qualifier;
 
 /**
- * Qualifier for the set of {@link akka.actor.ActorRef} instances that will be subscribed to events of type
+ * Qualifier for the set of {@link ExecutionObserver} instances that will be subscribed to events of type
  * {@link ExecutionEvent}.
  */
 @Qualifier
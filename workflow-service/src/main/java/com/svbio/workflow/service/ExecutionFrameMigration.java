@@ -0,0 +1,292 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.ExecutionFrame;
+import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.ExecutionFrameProperties;
+import com.svbio.workflow.entities.FrameTrace;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.helper.DatabaseTable;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * This class consists exclusively of static utility methods for migrating execution frames from the legacy tables,
+ * which identify execution frames by the string representation of their execution trace, to the current tables, which
+ * identify execution frames by the id of their execution trace (see {@link FrameTrace}).
+ *
+ * <p>Schema generation creates the current tables alongside the legacy tables. The migration then copies all rows of
+ * the legacy tables to the current tables, replacing each execution-trace column by the corresponding id column, and
+ * finally deletes the copied rows from the legacy tables. The legacy tables can be dropped once the migration has
+ * completed. Since the migration runs in a single transaction, it is either performed completely or not at all, and
+ * running it again is a no-op.
+ */
+final class ExecutionFrameMigration {
+    /**
+     * Name of the execution-trace column in the legacy tables. Columns of the legacy tables that reference an execution
+     * frame end in {@code "_" + LEGACY_TRACE_COLUMN}.
+     */
+    private static final String LEGACY_TRACE_COLUMN = "FRAME";
+
+    /**
+     * Name of the execution-trace id column in the current tables, with the same convention as
+     * {@link #LEGACY_TRACE_COLUMN}.
+     */
+    private static final String TRACE_ID_COLUMN = "TRACE_ID";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private ExecutionFrameMigration() {
+        throw new AssertionError(String.format("No %s instances for you!", getClass().getName()));
+    }
+
+    /**
+     * Migrates the execution frames (together with their properties and errors) in the legacy tables.
+     *
+     * <p>The tables of the current schema must exist. Entities cached by the given entity manager factory are evicted
+     * once the migration has completed.
+     *
+     * @param entityManagerFactory JPA entity manager factory, must be backed by EclipseLink
+     * @return the number of migrated execution frames; 0 if the legacy tables do not exist or are empty
+     * @throws PersistenceException if a database error occurs
+     */
+    static long migrate(EntityManagerFactory entityManagerFactory) {
+        ServerSession session = JpaHelper.getServerSession(entityManagerFactory);
+        DatabaseTable frameTraceTable = defaultTable(session, FrameTrace.class);
+        DatabaseTable frameTable = defaultTable(session, ExecutionFrame.class);
+        DatabaseTable propertiesTable = defaultTable(session, ExecutionFrameProperties.class);
+        DatabaseTable errorTable = defaultTable(session, ExecutionFrameError.class);
+
+        long numFrames;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+            String qualifier = frameTable.getTableQualifier();
+            if (!tableExists(connection, qualifier, ExecutionFrame.LEGACY_TABLE_NAME)) {
+                return 0;
+            }
+
+            String legacyFrameTable = qualifiedName(qualifier, ExecutionFrame.LEGACY_TABLE_NAME);
+            Map<String, Long> traceIds
+                = insertFrameTraces(connection, legacyFrameTable, frameTraceTable.getQualifiedName());
+            numFrames = copyRows(connection, legacyFrameTable, frameTable.getQualifiedName(), traceIds);
+            List<String> legacyTables = new ArrayList<>();
+            if (tableExists(connection, qualifier, ExecutionFrameProperties.LEGACY_TABLE_NAME)) {
+                String legacyPropertiesTable = qualifiedName(qualifier, ExecutionFrameProperties.LEGACY_TABLE_NAME);
+                copyRows(connection, legacyPropertiesTable, propertiesTable.getQualifiedName(), traceIds);
+                legacyTables.add(legacyPropertiesTable);
+            }
+            if (tableExists(connection, qualifier, ExecutionFrameError.LEGACY_TABLE_NAME)) {
+                String legacyErrorTable = qualifiedName(qualifier, ExecutionFrameError.LEGACY_TABLE_NAME);
+                copyRows(connection, legacyErrorTable, errorTable.getQualifiedName(), traceIds);
+                legacyTables.add(legacyErrorTable);
+            }
+            // Rows referencing execution frames need to be deleted first.
+            legacyTables.add(legacyFrameTable);
+            try (Statement statement = connection.createStatement()) {
+                for (String legacyTable: legacyTables) {
+                    statement.executeUpdate("DELETE FROM " + legacyTable);
+                }
+            }
+            transaction.commit();
+        } catch (SQLException exception) {
+            throw new PersistenceException("Failed to migrate legacy execution frames.", exception);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+
+        entityManagerFactory.getCache().evictAll();
+        return numFrames;
+    }
+
+    private static DatabaseTable defaultTable(ServerSession session, Class<?> entityClass) {
+        @Nullable ClassDescriptor descriptor = session.getClassDescriptor(entityClass);
+        if (descriptor == null) {
+            throw new IllegalStateException(String.format("Expected mapping metadata for %s.", entityClass));
+        }
+        return descriptor.getDefaultTable();
+    }
+
+    private static String qualifiedName(String qualifier, String tableName) {
+        return qualifier.isEmpty()
+            ? tableName
+            : qualifier + '.' + tableName;
+    }
+
+    /**
+     * Returns whether the given table exists. Names are compared case-insensitively, because databases differ in how
+     * they store unquoted identifiers.
+     */
+    private static boolean tableExists(Connection connection, String qualifier, String tableName) throws SQLException {
+        try (ResultSet resultSet = connection.getMetaData().getTables(null, null, "%", new String[] { "TABLE" })) {
+            while (resultSet.next()) {
+                if (tableName.equalsIgnoreCase(resultSet.getString("TABLE_NAME"))
+                        && (qualifier.isEmpty() || qualifier.equalsIgnoreCase(resultSet.getString("TABLE_SCHEM")))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the distinct execution traces of the legacy execution frames that are not in the dictionary yet, and
+     * returns the id of each of these execution traces.
+     *
+     * <p>Ids are assigned as by {@link FrameTraceDictionary}: If the preferred id of an execution trace is taken by a
+     * different execution trace, the next ids are probed. The returned map has one entry per distinct execution trace
+     * of the legacy execution frames.
+     */
+    private static Map<String, Long> insertFrameTraces(Connection connection, String legacyFrameTable,
+            String frameTraceTable) throws SQLException {
+        Map<String, Long> traceIds = new HashMap<>();
+        // Ids inserted by this migration, which are not visible to lookups until their batch has been executed
+        Map<Long, String> insertedTraces = new HashMap<>();
+        try (
+            Statement selectStatement = connection.createStatement();
+            ResultSet resultSet = selectStatement.executeQuery(
+                String.format("SELECT DISTINCT %s FROM %s", LEGACY_TRACE_COLUMN, legacyFrameTable));
+            PreparedStatement lookupStatement = connection.prepareStatement(
+                String.format("SELECT TRACE FROM %s WHERE ID = ?", frameTraceTable));
+            PreparedStatement insertStatement = connection.prepareStatement(
+                String.format("INSERT INTO %s (ID, TRACE) VALUES (?, ?)", frameTraceTable))
+        ) {
+            int batchSize = 0;
+            while (resultSet.next()) {
+                String trace = resultSet.getString(1);
+                long id = FrameTraceDictionary.id(trace);
+                while (true) {
+                    @Nullable String storedTrace = insertedTraces.get(id);
+                    if (storedTrace == null) {
+                        lookupStatement.setLong(1, id);
+                        try (ResultSet lookupResultSet = lookupStatement.executeQuery()) {
+                            if (lookupResultSet.next()) {
+                                storedTrace = lookupResultSet.getString(1);
+                            }
+                        }
+                    }
+                    if (storedTrace == null) {
+                        insertStatement.setLong(1, id);
+                        insertStatement.setString(2, trace);
+                        insertStatement.addBatch();
+                        insertedTraces.put(id, trace);
+                        ++batchSize;
+                        if (batchSize == BATCH_SIZE) {
+                            insertStatement.executeBatch();
+                            batchSize = 0;
+                        }
+                        break;
+                    } else if (storedTrace.equals(trace)) {
+                        break;
+                    }
+                    id = FrameTraceDictionary.nextId(id);
+                }
+                traceIds.put(trace, id);
+            }
+            if (batchSize > 0) {
+                insertStatement.executeBatch();
+            }
+        }
+        return traceIds;
+    }
+
+    /**
+     * Returns the name of the column in the current table that corresponds to the given column in the legacy table.
+     */
+    private static String targetColumnName(String columnName) {
+        if (columnName.equalsIgnoreCase(LEGACY_TRACE_COLUMN)) {
+            return TRACE_ID_COLUMN;
+        } else if (columnName.toUpperCase().endsWith('_' + LEGACY_TRACE_COLUMN)) {
+            return columnName.substring(0, columnName.length() - LEGACY_TRACE_COLUMN.length()) + TRACE_ID_COLUMN;
+        } else {
+            return columnName;
+        }
+    }
+
+    private static boolean isTraceColumn(String columnName) {
+        return !targetColumnName(columnName).equals(columnName);
+    }
+
+    /**
+     * Copies all rows of the given legacy table to the given current table, and returns the number of copied rows.
+     *
+     * <p>Columns are matched by name, except that each execution-trace column is replaced by the corresponding id
+     * column (see {@link #targetColumnName(String)}), with the id taken from the given map.
+     *
+     * @throws PersistenceException if a row references an execution trace that is not in the given map
+     */
+    private static long copyRows(Connection connection, String legacyTable, String table,
+            Map<String, Long> traceIds) throws SQLException {
+        long numRows = 0;
+        try (
+            Statement selectStatement = connection.createStatement();
+            ResultSet resultSet = selectStatement.executeQuery("SELECT * FROM " + legacyTable)
+        ) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columnNames = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+                columnNames.add(metaData.getColumnName(i));
+            }
+            String insertSql = String.format(
+                "INSERT INTO %s (%s) VALUES (%s)",
+                table,
+                columnNames.stream().map(ExecutionFrameMigration::targetColumnName).collect(Collectors.joining(", ")),
+                columnNames.stream().map(name -> "?").collect(Collectors.joining(", "))
+            );
+            try (PreparedStatement insertStatement = connection.prepareStatement(insertSql)) {
+                int batchSize = 0;
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columnNames.size(); ++i) {
+                        @Nullable Object value = resultSet.getObject(i);
+                        if (value == null) {
+                            insertStatement.setNull(i, metaData.getColumnType(i));
+                        } else if (isTraceColumn(columnNames.get(i - 1))) {
+                            @Nullable Long traceId = traceIds.get(value.toString());
+                            if (traceId == null) {
+                                throw new PersistenceException(String.format(
+                                    "Row of %s references execution trace '%s' without legacy execution frame.",
+                                    legacyTable, value
+                                ));
+                            }
+                            insertStatement.setLong(i, traceId);
+                        } else {
+                            insertStatement.setObject(i, value);
+                        }
+                    }
+                    insertStatement.addBatch();
+                    ++batchSize;
+                    ++numRows;
+                    if (batchSize == BATCH_SIZE) {
+                        insertStatement.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+                if (batchSize > 0) {
+                    insertStatement.executeBatch();
+                }
+            }
+        }
+        return numRows;
+    }
+}
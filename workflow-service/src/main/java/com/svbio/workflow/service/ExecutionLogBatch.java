@@ -0,0 +1,58 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+import com.svbio.workflow.entities.FrameTrace;
+
+/**
+ * Entities written by a {@link DatabaseLoggingActor} for one batch of events.
+ *
+ * <p>The entities returned by {@link #getExecution(long, String)} and
+ * {@link #getExecutionFrame(Execution, FrameTrace, ExecutionFrame.ModuleKind)} may be modified until the batch is
+ * written; the modifications are then written along with the batch. Attributes that are {@code null} (or 0 for
+ * timestamps) in an entity returned by this interface do not necessarily reflect the current state in the database.
+ *
+ * <p>A batch may be idempotent, which is necessary when replaying events that may have been written before (see
+ * {@link EventSpool}). In that case, {@link #insert(Object)} replaces an existing entity with the same primary key, so
+ * that writing the same events twice has the same effect as writing them once.
+ */
+interface ExecutionLogBatch {
+    /**
+     * Returns the execution with the given id, which is created if it does not exist yet.
+     *
+     * @param executionId execution id
+     * @param keyPrefix key prefix of the execution, only used if the execution is created
+     * @return the execution
+     */
+    Execution getExecution(long executionId, String keyPrefix);
+
+    /**
+     * Returns the execution frame of the given execution, which is created if it does not exist yet.
+     *
+     * @param execution execution previously returned by {@link #getExecution(long, String)}
+     * @param trace execution trace of the execution frame, which must have been stored before the batch is written
+     *     (see {@link FrameTraceDictionary#resolve(java.util.Collection)})
+     * @param moduleKind kind of module of the execution frame, only used if the execution frame is created
+     * @return the execution frame
+     */
+    ExecutionFrame getExecutionFrame(Execution execution, FrameTrace trace, ExecutionFrame.ModuleKind moduleKind);
+
+    /**
+     * Inserts (or, if this batch is idempotent, inserts or replaces) the given entity, which references an execution
+     * frame previously returned by {@link #getExecutionFrame(Execution, FrameTrace, ExecutionFrame.ModuleKind)}.
+     *
+     * @param entity instance of {@link com.svbio.workflow.entities.ExecutionFrameProperties} or
+     *     {@link com.svbio.workflow.entities.ExecutionFrameError}
+     */
+    void insert(Object entity);
+
+    /**
+     * Records an occurrence of the execution trace with the given fingerprint, which is written along with this batch
+     * (see {@link ErrorTraceStore#recordOccurrences(javax.persistence.EntityManager, ErrorTraceStore.Occurrences)}).
+     *
+     * @param fingerprint fingerprint of an execution trace that has been stored before the batch is written (see
+     *     {@link ErrorTraceStore#resolve(java.util.Map)})
+     * @param timeMillis time of the occurrence, in milliseconds since the epoch
+     */
+    void recordErrorOccurrence(String fingerprint, long timeMillis);
+}
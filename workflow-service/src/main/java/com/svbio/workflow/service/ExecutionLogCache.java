@@ -0,0 +1,178 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Write-through cache of the {@link Execution} and {@link ExecutionFrame} entities written by a
+ * {@link DatabaseLoggingActor}.
+ *
+ * <p>The cache contains, per execution id, the last written state of the execution and of its execution frames (keyed
+ * by the id of their execution trace, see {@link com.svbio.workflow.entities.FrameTrace}). If
+ * the execution was created by the owner of this cache (as opposed to found in the database), the cached execution is
+ * <em>complete</em>: Every execution frame of the execution is then known to the cache, so an execution frame that is
+ * not in the cache does not exist in the database either, and it can be inserted without a prior lookup.
+ *
+ * <p>The owner must evict an execution once its log is complete (see {@link #evict(long)}), and it must evict all
+ * executions touched by a transaction that failed, because the cached state is then ahead of the database. The number
+ * of cached executions is bounded as a safeguard against executions that are never evicted; the least recently used
+ * execution is evicted first.
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to a single actor.
+ */
+final class ExecutionLogCache {
+    private final int maxExecutions;
+    private final LinkedHashMap<Long, CachedExecution> executions;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    private static final class CachedExecution {
+        private Execution execution;
+        private final boolean complete;
+        private final Map<Long, ExecutionFrame> frames = new HashMap<>();
+
+        private CachedExecution(Execution execution, boolean complete) {
+            this.execution = execution;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxExecutions maximum number of cached executions; 0 disables the cache
+     * @throws IllegalArgumentException if the maximum number of executions is negative
+     */
+    ExecutionLogCache(int maxExecutions) {
+        if (maxExecutions < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected non-negative maximum number of executions, but got %d.", maxExecutions
+            ));
+        }
+
+        this.maxExecutions = maxExecutions;
+        executions = new LinkedHashMap<Long, CachedExecution>(16, 0.75f, true) {
+            private static final long serialVersionUID = -3526420617043155307L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedExecution> eldest) {
+                if (size() > maxExecutions) {
+                    ++evictionCount;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("execution-log cache (%d of at most %d executions)", executions.size(), maxExecutions);
+    }
+
+    /**
+     * Returns the cached execution with the given id, or {@code null} if the execution is not cached.
+     */
+    @Nullable
+    Execution getExecution(long executionId) {
+        @Nullable CachedExecution cachedExecution = executions.get(executionId);
+        if (cachedExecution == null) {
+            ++missCount;
+            return null;
+        }
+        ++hitCount;
+        return cachedExecution.execution;
+    }
+
+    /**
+     * Adds or replaces the given execution.
+     *
+     * @param execution the execution
+     * @param created whether the execution was created by the owner of this cache (and is therefore complete); ignored
+     *     if the execution is already cached
+     */
+    void putExecution(Execution execution, boolean created) {
+        if (maxExecutions == 0) {
+            return;
+        }
+
+        long executionId = execution.getId();
+        @Nullable CachedExecution cachedExecution = executions.get(executionId);
+        if (cachedExecution == null) {
+            executions.put(executionId, new CachedExecution(execution, created));
+        } else {
+            cachedExecution.execution = execution;
+        }
+    }
+
+    /**
+     * Returns whether the given execution frame is known not to exist in the database.
+     *
+     * @return {@code true} if the execution is complete and the execution frame is not cached, {@code false}
+     *     otherwise (in which case a lookup is necessary if the execution frame is not cached)
+     */
+    boolean isKnownToBeNew(long executionId, long traceId) {
+        @Nullable CachedExecution cachedExecution = executions.get(executionId);
+        return cachedExecution != null && cachedExecution.complete && !cachedExecution.frames.containsKey(traceId);
+    }
+
+    /**
+     * Returns the cached execution frame, or {@code null} if the execution frame is not cached.
+     *
+     * <p>A lookup counts as hit if the execution frame is cached or known not to exist (see
+     * {@link #isKnownToBeNew(long, long)}).
+     */
+    @Nullable
+    ExecutionFrame getFrame(long executionId, long traceId) {
+        @Nullable CachedExecution cachedExecution = executions.get(executionId);
+        @Nullable ExecutionFrame executionFrame = cachedExecution == null
+            ? null
+            : cachedExecution.frames.get(traceId);
+        if (executionFrame != null || (cachedExecution != null && cachedExecution.complete)) {
+            ++hitCount;
+        } else {
+            ++missCount;
+        }
+        return executionFrame;
+    }
+
+    /**
+     * Adds or replaces the given execution frame. Does nothing if the execution of the frame is not cached.
+     */
+    void putFrame(long executionId, ExecutionFrame executionFrame) {
+        @Nullable CachedExecution cachedExecution = executions.get(executionId);
+        if (cachedExecution != null) {
+            cachedExecution.frames.put(Objects.requireNonNull(executionFrame.getTrace()).getId(), executionFrame);
+        }
+    }
+
+    /**
+     * Removes the given execution and its execution frames from the cache.
+     */
+    void evict(long executionId) {
+        if (executions.remove(executionId) != null) {
+            ++evictionCount;
+        }
+    }
+
+    /**
+     * Returns the number of cached executions.
+     */
+    int size() {
+        return executions.size();
+    }
+
+    /**
+     * Returns the statistics of this cache. Each hit is a database lookup that was avoided.
+     */
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount, missCount, evictionCount);
+    }
+}
@@ -0,0 +1,154 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.ExecutionFrameError_;
+import com.svbio.workflow.entities.ExecutionFrameProperties;
+import com.svbio.workflow.entities.ExecutionFrameProperties_;
+import com.svbio.workflow.entities.ExecutionFrame_;
+import com.svbio.workflow.entities.Execution_;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Retention target for the executions recorded by the database logger (see {@link DatabaseLoggingActor}).
+ *
+ * <p>The age of an execution is measured from its finish time, so executions that have not finished are only subject
+ * to the maximum count. An execution is removed together with its execution frames, errors, and properties, in a
+ * single transaction per batch of executions.
+ */
+final class ExecutionLogRetentionTarget implements RetentionTarget {
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param entityManagerFactory JPA entity manager factory
+     * @param batchSize maximum number of executions removed in a single transaction
+     * @throws IllegalArgumentException if the batch size is not positive
+     */
+    ExecutionLogRetentionTarget(EntityManagerFactory entityManagerFactory, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(String.format("Expected positive batch size, but got %d.", batchSize));
+        }
+
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "database execution log";
+    }
+
+    /**
+     * Returns the next batch of execution ids that exceed the given limit.
+     */
+    private List<Long> nextBatch(EntityManager entityManager, RetentionPolicy.Limit limit, long currentTimeMillis,
+            boolean byCount) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<Execution> root = criteriaQuery.from(Execution.class);
+        criteriaQuery.select(root.get(Execution_.id));
+        if (byCount) {
+            criteriaQuery.orderBy(criteriaBuilder.desc(root.get(Execution_.id)));
+        } else {
+            criteriaQuery
+                .where(criteriaBuilder.lessThan(
+                    root.get(Execution_.finishTime), new Date(currentTimeMillis - limit.getMaxAgeMillis())))
+                .orderBy(criteriaBuilder.asc(root.get(Execution_.id)));
+        }
+        TypedQuery<Long> typedQuery = entityManager.createQuery(criteriaQuery);
+        if (byCount) {
+            typedQuery.setFirstResult(limit.getMaxCount());
+        }
+        return typedQuery.setMaxResults(batchSize).getResultList();
+    }
+
+    private static void delete(EntityManager entityManager, List<Long> executionIds) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+
+        @SuppressWarnings("unchecked")
+        Class<ExecutionFrameProperties<?>> propertiesClass
+            = (Class<ExecutionFrameProperties<?>>) (Class<?>) ExecutionFrameProperties.class;
+        CriteriaDelete<ExecutionFrameProperties<?>> propertiesDelete
+            = criteriaBuilder.createCriteriaDelete(propertiesClass);
+        Root<ExecutionFrameProperties<?>> propertiesRoot = propertiesDelete.from(propertiesClass);
+        propertiesDelete.where(
+            propertiesRoot.get(ExecutionFrameProperties_.executionFrame)
+                .get(ExecutionFrame_.execution).get(Execution_.id).in(executionIds)
+        );
+        entityManager.createQuery(propertiesDelete).executeUpdate();
+
+        CriteriaDelete<ExecutionFrameError> errorDelete
+            = criteriaBuilder.createCriteriaDelete(ExecutionFrameError.class);
+        Root<ExecutionFrameError> errorRoot = errorDelete.from(ExecutionFrameError.class);
+        errorDelete.where(
+            errorRoot.get(ExecutionFrameError_.executionFrame)
+                .get(ExecutionFrame_.execution).get(Execution_.id).in(executionIds)
+        );
+        entityManager.createQuery(errorDelete).executeUpdate();
+
+        CriteriaDelete<ExecutionFrame> frameDelete = criteriaBuilder.createCriteriaDelete(ExecutionFrame.class);
+        Root<ExecutionFrame> frameRoot = frameDelete.from(ExecutionFrame.class);
+        frameDelete.where(frameRoot.get(ExecutionFrame_.execution).get(Execution_.id).in(executionIds));
+        entityManager.createQuery(frameDelete).executeUpdate();
+
+        CriteriaDelete<Execution> executionDelete = criteriaBuilder.createCriteriaDelete(Execution.class);
+        Root<Execution> executionRoot = executionDelete.from(Execution.class);
+        executionDelete.where(executionRoot.get(Execution_.id).in(executionIds));
+        entityManager.createQuery(executionDelete).executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation removes executions in batches, acquiring one permit per removed execution before each
+     * batch. Executions that exceed the maximum age are removed first, then those that exceed the maximum count.
+     */
+    @Override
+    public long sweep(RetentionPolicy policy, long currentTimeMillis, RateLimiter rateLimiter)
+            throws InterruptedException {
+        RetentionPolicy.Limit limit = policy.getExecutionLogLimit();
+        long removed = 0;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (boolean byCount: new boolean[] { false, true }) {
+                if (byCount ? limit.getMaxCount() == 0 : limit.getMaxAgeMillis() == 0) {
+                    continue;
+                }
+                List<Long> executionIds;
+                while (!(executionIds = nextBatch(entityManager, limit, currentTimeMillis, byCount)).isEmpty()) {
+                    rateLimiter.acquire(executionIds.size());
+                    EntityTransaction transaction = entityManager.getTransaction();
+                    try {
+                        transaction.begin();
+                        delete(entityManager, executionIds);
+                        transaction.commit();
+                    } finally {
+                        if (transaction.isActive()) {
+                            transaction.rollback();
+                        }
+                    }
+                    entityManager.clear();
+                    removed += executionIds.size();
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,93 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorRef;
+
+import java.util.Objects;
+
+/**
+ * Actor that is notified of {@link ExecutionEvent} messages, together with the protocol used for notifying it.
+ *
+ * <p>Every observer receives a {@link StartExecutionEvent} and a {@link StopExecutionEvent} message for each workflow
+ * execution. A blocking observer is expected to respond to the {@link StopExecutionEvent} message (see there), and the
+ * workflow execution is not considered finished before all blocking observers have responded or timed out. A
+ * fire-and-forget observer is merely told the {@link StopExecutionEvent} message; its response (if any) is ignored.
+ *
+ * <p>Instances of this class are immutable.
+ */
+final class ExecutionObserver {
+    private final String name;
+    private final ActorRef actor;
+    private final boolean blocking;
+    private final long timeoutMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param name name of the observer, used in log messages and statistics
+     * @param actor actor that is notified of {@link ExecutionEvent} messages
+     * @param blocking whether the workflow execution finishes only after the observer has responded to the
+     *     {@link StopExecutionEvent} message
+     * @param timeoutMillis time (in milliseconds) the observer has for responding to the {@link StopExecutionEvent}
+     *     message; only relevant if {@code blocking} is {@code true}
+     * @throws IllegalArgumentException if {@code blocking} is {@code true} and {@code timeoutMillis} is not positive
+     */
+    ExecutionObserver(String name, ActorRef actor, boolean blocking, long timeoutMillis) {
+        if (blocking && timeoutMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive timeout for blocking observer '%s', but got %d ms.", name, timeoutMillis
+            ));
+        }
+
+        this.name = Objects.requireNonNull(name);
+        this.actor = Objects.requireNonNull(actor);
+        this.blocking = blocking;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns a new blocking observer.
+     *
+     * @param name name of the observer, used in log messages and statistics
+     * @param actor actor that is notified of {@link ExecutionEvent} messages
+     * @param timeoutMillis time (in milliseconds) the observer has for responding to the {@link StopExecutionEvent}
+     *     message
+     * @return the new observer
+     */
+    static ExecutionObserver blocking(String name, ActorRef actor, long timeoutMillis) {
+        return new ExecutionObserver(name, actor, true, timeoutMillis);
+    }
+
+    /**
+     * Returns a new fire-and-forget observer.
+     *
+     * @param name name of the observer, used in log messages and statistics
+     * @param actor actor that is notified of {@link ExecutionEvent} messages
+     * @return the new observer
+     */
+    static ExecutionObserver fireAndForget(String name, ActorRef actor) {
+        return new ExecutionObserver(name, actor, false, 0);
+    }
+
+    @Override
+    public String toString() {
+        return blocking
+            ? String.format("blocking execution observer '%s' (timeout %d ms)", name, timeoutMillis)
+            : String.format("fire-and-forget execution observer '%s'", name);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ActorRef getActor() {
+        return actor;
+    }
+
+    boolean isBlocking() {
+        return blocking;
+    }
+
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,247 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-memory secondary indexes of execution statuses, for answering {@link ExecutionStatusQuery} queries.
+ *
+ * <p>For each execution id, this index keeps the properties that can be filtered by a query (prefix, status, and start
+ * time). There is one secondary index per property, mapping each property value to the sorted set of execution ids.
+ * All indexes are maintained incrementally by {@link #put}. A query is answered from the most selective index that
+ * applies to it, and only the candidate execution ids in that index are matched against the remaining filters.
+ *
+ * <p>This class is not thread-safe. Its owner is responsible for synchronization.
+ */
+final class ExecutionStatusIndex {
+    private final NavigableMap<Long, Entry> entries = new TreeMap<>();
+    private final Map<String, NavigableSet<Long>> byPrefix = new HashMap<>();
+    private final Map<ExecutionStatus.Status, NavigableSet<Long>> byStatus
+        = new EnumMap<>(ExecutionStatus.Status.class);
+    private final NavigableMap<Long, NavigableSet<Long>> byStartTime = new TreeMap<>();
+
+    private static final class Entry {
+        @Nullable private final String prefix;
+        private final ExecutionStatus.Status status;
+        @Nullable private final Long startTimeMillis;
+
+        private Entry(@Nullable String prefix, ExecutionStatus.Status status, @Nullable Long startTimeMillis) {
+            this.prefix = prefix;
+            this.status = Objects.requireNonNull(status);
+            this.startTimeMillis = startTimeMillis;
+        }
+
+        /**
+         * Returns whether this entry is matched by the filters of the given query.
+         *
+         * @see ExecutionStatusQuery#matches(ExecutionStatus)
+         */
+        private boolean matches(ExecutionStatusQuery query) {
+            @Nullable String queryPrefix = query.getPrefix();
+            if (queryPrefix != null && !queryPrefix.equals(prefix)) {
+                return false;
+            }
+            Set<ExecutionStatus.Status> statuses = query.getStatuses();
+            if (!statuses.isEmpty() && !statuses.contains(status)) {
+                return false;
+            }
+            @Nullable Long startedAfterMillis = query.getStartedAfterMillis();
+            @Nullable Long startedBeforeMillis = query.getStartedBeforeMillis();
+            if (startedAfterMillis != null || startedBeforeMillis != null) {
+                if (startTimeMillis == null
+                        || (startedAfterMillis != null && startTimeMillis < startedAfterMillis)
+                        || (startedBeforeMillis != null && startTimeMillis >= startedBeforeMillis)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, NavigableSet<Long>> index, K key, long executionId) {
+        index.computeIfAbsent(key, ignored -> new TreeSet<>()).add(executionId);
+    }
+
+    private static <K> void removeFromIndex(Map<K, NavigableSet<Long>> index, K key, long executionId) {
+        @Nullable NavigableSet<Long> executionIds = index.get(key);
+        if (executionIds != null) {
+            executionIds.remove(executionId);
+            if (executionIds.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private void removeFromIndexes(long executionId, Entry entry) {
+        if (entry.prefix != null) {
+            removeFromIndex(byPrefix, entry.prefix, executionId);
+        }
+        removeFromIndex(byStatus, entry.status, executionId);
+        if (entry.startTimeMillis != null) {
+            removeFromIndex(byStartTime, entry.startTimeMillis, executionId);
+        }
+    }
+
+    /**
+     * Adds or replaces the index entry for the given execution id.
+     *
+     * @param executionId execution id
+     * @param prefix staging-area prefix, or {@code null} if unknown
+     * @param status status
+     * @param startTimeMillis start time (in milliseconds since the epoch), or {@code null} if unknown
+     */
+    void put(long executionId, @Nullable String prefix, ExecutionStatus.Status status,
+            @Nullable Long startTimeMillis) {
+        Entry newEntry = new Entry(prefix, status, startTimeMillis);
+        @Nullable Entry oldEntry = entries.put(executionId, newEntry);
+        if (oldEntry != null) {
+            removeFromIndexes(executionId, oldEntry);
+        }
+        if (prefix != null) {
+            addToIndex(byPrefix, prefix, executionId);
+        }
+        addToIndex(byStatus, status, executionId);
+        if (startTimeMillis != null) {
+            addToIndex(byStartTime, startTimeMillis, executionId);
+        }
+    }
+
+    /**
+     * Removes the index entry for the given execution id, if any.
+     */
+    void remove(long executionId) {
+        @Nullable Entry entry = entries.remove(executionId);
+        if (entry != null) {
+            removeFromIndexes(executionId, entry);
+        }
+    }
+
+    /**
+     * Returns the execution ids that exceed the limits of the given retention policy.
+     *
+     * <p>The age of an entry is measured from its start time. Entries with unknown start time are therefore only
+     * subject to the maximum count.
+     *
+     * @param policy retention policy
+     * @param currentTimeMillis current time in milliseconds since the epoch
+     * @return the set of expired execution ids
+     */
+    Set<Long> expired(RetentionPolicy policy, long currentTimeMillis) {
+        Set<Long> expired = new HashSet<>();
+        for (Map.Entry<ExecutionStatus.Status, NavigableSet<Long>> indexEntry: byStatus.entrySet()) {
+            ExecutionStatus.Status status = indexEntry.getKey();
+            RetentionPolicy.Limit limit = policy.getLimit(status);
+            if (!status.isTerminal() || limit.isUnlimited()) {
+                continue;
+            }
+
+            int rank = 0;
+            for (long executionId: indexEntry.getValue().descendingSet()) {
+                ++rank;
+                @Nullable Long startTimeMillis = entries.get(executionId).startTimeMillis;
+                if ((limit.getMaxCount() > 0 && rank > limit.getMaxCount())
+                        || (startTimeMillis != null && limit.isExpired(startTimeMillis, currentTimeMillis))) {
+                    expired.add(executionId);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of indexed execution ids.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the matching execution ids in ascending order, up to the given maximum number.
+     *
+     * <p>Only execution ids greater than the cursor of the query are returned. The limit of the query is ignored in
+     * favor of the {@code maxResults} argument, so that callers can request one more result than the limit in order to
+     * determine whether there is a next page.
+     *
+     * @param query query
+     * @param maxResults maximum number of execution ids to return, or 0 if there is no maximum
+     * @return the matching execution ids
+     */
+    List<Long> query(ExecutionStatusQuery query, int maxResults) {
+        long cursor = query.getCursor() == null
+            ? Long.MIN_VALUE
+            : query.getCursor();
+        int limit = maxResults == 0
+            ? Integer.MAX_VALUE
+            : maxResults;
+
+        @Nullable String prefix = query.getPrefix();
+        Set<ExecutionStatus.Status> statuses = query.getStatuses();
+        if (prefix != null) {
+            // A prefix is typically the most selective filter.
+            @Nullable NavigableSet<Long> executionIds = byPrefix.get(prefix);
+            return executionIds == null
+                ? Collections.emptyList()
+                : matching(executionIds.tailSet(cursor, false).iterator(), query, limit);
+        } else if (!statuses.isEmpty()) {
+            // The first matches in the union of the status indexes are among the first matches in each index.
+            TreeSet<Long> union = new TreeSet<>();
+            for (ExecutionStatus.Status status: statuses) {
+                @Nullable NavigableSet<Long> executionIds = byStatus.get(status);
+                if (executionIds != null) {
+                    union.addAll(matching(executionIds.tailSet(cursor, false).iterator(), query, limit));
+                }
+            }
+            return firstElements(union, limit);
+        } else if (query.getStartedAfterMillis() != null || query.getStartedBeforeMillis() != null) {
+            // The start-time index is not ordered by execution id, so all candidates have to be sorted.
+            NavigableMap<Long, NavigableSet<Long>> range = byStartTime;
+            if (query.getStartedAfterMillis() != null) {
+                range = range.tailMap(query.getStartedAfterMillis(), true);
+            }
+            if (query.getStartedBeforeMillis() != null) {
+                range = range.headMap(query.getStartedBeforeMillis(), false);
+            }
+            TreeSet<Long> candidates = new TreeSet<>();
+            range.values().forEach(candidates::addAll);
+            return firstElements(candidates.tailSet(cursor, false), limit);
+        } else {
+            return matching(entries.tailMap(cursor, false).keySet().iterator(), query, limit);
+        }
+    }
+
+    private List<Long> matching(Iterator<Long> candidates, ExecutionStatusQuery query, int limit) {
+        List<Long> executionIds = new ArrayList<>();
+        while (candidates.hasNext() && executionIds.size() < limit) {
+            long executionId = candidates.next();
+            if (entries.get(executionId).matches(query)) {
+                executionIds.add(executionId);
+            }
+        }
+        return executionIds;
+    }
+
+    private static List<Long> firstElements(Set<Long> set, int limit) {
+        List<Long> list = new ArrayList<>(Math.min(set.size(), limit));
+        Iterator<Long> iterator = set.iterator();
+        while (iterator.hasNext() && list.size() < limit) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+}
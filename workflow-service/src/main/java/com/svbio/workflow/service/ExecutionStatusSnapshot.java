@@ -0,0 +1,237 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the status of a workflow execution.
+ *
+ * <p>Instances of this class may be shared between threads without synchronization. Status transitions create new
+ * instances that structurally share the {@link ExecuteWorkflowRequest} with the previous snapshot. The request is
+ * owned by this class (or the snapshots derived from it): It is never modified after construction, and it must not be
+ * modified by anyone else.
+ *
+ * <p>The JAXB representations ({@link ExecutionStatus}), both the full and the summary one, are views that are created
+ * anew for each call. A view is a shallow copy: Its top-level {@link ExecutionStatus} and
+ * {@link ExecuteWorkflowRequest} instances (including the lists of bundle identifiers and overrides) are not shared, so
+ * modifying them affects neither this snapshot nor any other view. The module and the individual overrides, however,
+ * are shared with this snapshot and must be treated as read-only (see
+ * {@link com.svbio.workflow.api.WorkflowService#getExecutionStatus(long)}). Obtaining the current status of an
+ * execution therefore does not require any allocations proportional to the size of the module.
+ */
+final class ExecutionStatusSnapshot {
+    private final long executionId;
+    private final ExecuteWorkflowRequest request;
+    private final ExecutionStatus.Status status;
+    @Nullable private final String failureDescription;
+    @Nullable private final Long startTimeMillis;
+    @Nullable private final Long queueWaitMillis;
+    @Nullable private final Integer queueDepth;
+
+    private ExecutionStatusSnapshot(long executionId, ExecuteWorkflowRequest request, ExecutionStatus.Status status,
+            @Nullable String failureDescription, @Nullable Long startTimeMillis, @Nullable Long queueWaitMillis,
+            @Nullable Integer queueDepth) {
+        this.executionId = executionId;
+        this.request = Objects.requireNonNull(request);
+        this.status = Objects.requireNonNull(status);
+        this.failureDescription = failureDescription;
+        this.startTimeMillis = startTimeMillis;
+        this.queueWaitMillis = queueWaitMillis;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Returns a new snapshot for an execution that is waiting for admission.
+     *
+     * <p>The returned snapshot has execution id 0 and no start time.
+     *
+     * @param request the request, which is from now on owned by the returned snapshot (and must therefore not be
+     *     modified any more)
+     * @param queueWaitMillis time (in milliseconds) the execution has been waiting so far
+     * @param queueDepth number of executions queued ahead of the execution
+     * @return the new snapshot
+     */
+    static ExecutionStatusSnapshot queued(ExecuteWorkflowRequest request, long queueWaitMillis, int queueDepth) {
+        return new ExecutionStatusSnapshot(0, request, ExecutionStatus.Status.QUEUED, null, null, queueWaitMillis,
+            queueDepth);
+    }
+
+    /**
+     * Returns a new snapshot for a running execution.
+     *
+     * @param executionId execution id
+     * @param request the request, which is from now on owned by the returned snapshot (and must therefore not be
+     *     modified any more)
+     * @param startTimeMillis time (in milliseconds since the epoch) when the execution was started
+     * @param queueWaitMillis time (in milliseconds) the execution was waiting for admission, or {@code null} if it was
+     *     admitted immediately
+     * @param queueDepth number of executions queued ahead of the execution when it was submitted, or {@code null} if
+     *     it was admitted immediately
+     * @return the new snapshot
+     */
+    static ExecutionStatusSnapshot running(long executionId, ExecuteWorkflowRequest request, long startTimeMillis,
+            @Nullable Long queueWaitMillis, @Nullable Integer queueDepth) {
+        return new ExecutionStatusSnapshot(executionId, request, ExecutionStatus.Status.RUNNING, null, startTimeMillis,
+            queueWaitMillis, queueDepth);
+    }
+
+    /**
+     * Returns a new snapshot that differs from this snapshot only in the status and the failure description.
+     *
+     * @param newStatus the new status
+     * @param newFailureDescription the new failure description
+     * @return the new snapshot
+     */
+    ExecutionStatusSnapshot withStatus(ExecutionStatus.Status newStatus, @Nullable String newFailureDescription) {
+        return new ExecutionStatusSnapshot(executionId, request, newStatus, newFailureDescription, startTimeMillis,
+            queueWaitMillis, queueDepth);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("execution status %s for execution id %d", status, executionId);
+    }
+
+    long getExecutionId() {
+        return executionId;
+    }
+
+    /**
+     * Returns the request, which must be treated as read-only.
+     */
+    ExecuteWorkflowRequest getRequest() {
+        return request;
+    }
+
+    ExecutionStatus.Status getStatus() {
+        return status;
+    }
+
+    @Nullable
+    String getFailureDescription() {
+        return failureDescription;
+    }
+
+    @Nullable
+    Long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    @Nullable
+    Long getQueueWaitMillis() {
+        return queueWaitMillis;
+    }
+
+    @Nullable
+    Integer getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns whether this snapshot is matched by the filters of the given query.
+     *
+     * <p>This method is equivalent to {@code query.matches(toExecutionStatus())}, but it does not create a view.
+     *
+     * @param query the query
+     * @return whether this snapshot is matched by the filters of the given query
+     * @see ExecutionStatusQuery#matches(ExecutionStatus)
+     */
+    boolean matches(ExecutionStatusQuery query) {
+        @Nullable String prefix = query.getPrefix();
+        if (prefix != null && !prefix.equals(request.getPrefix())) {
+            return false;
+        }
+        Set<ExecutionStatus.Status> statuses = query.getStatuses();
+        if (!statuses.isEmpty() && !statuses.contains(status)) {
+            return false;
+        }
+        @Nullable Long startedAfterMillis = query.getStartedAfterMillis();
+        @Nullable Long startedBeforeMillis = query.getStartedBeforeMillis();
+        if (startedAfterMillis != null || startedBeforeMillis != null) {
+            if (startTimeMillis == null
+                    || (startedAfterMillis != null && startTimeMillis < startedAfterMillis)
+                    || (startedBeforeMillis != null && startTimeMillis >= startedBeforeMillis)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a new JAXB view of this snapshot.
+     *
+     * <p>The returned instance is a shallow copy, see the class documentation. The module and the overrides of its
+     * request are shared with this snapshot and must not be modified.
+     *
+     * @return the JAXB view of this snapshot
+     */
+    ExecutionStatus toExecutionStatus() {
+        return toExecutionStatus(
+            new ExecuteWorkflowRequest()
+                .setModule(request.getModule())
+                .setBundleIdentifiers(request.getBundleIdentifiers())
+                .setOverrides(request.getOverrides())
+                .setPrefix(request.getPrefix())
+                .setCleaningRequested(request.isCleaningRequested())
+                .setTenant(request.getTenant())
+        );
+    }
+
+    /**
+     * Returns a new summary JAXB view of this snapshot.
+     *
+     * <p>The summary view differs from {@link #toExecutionStatus()} in that the request contains neither the module nor
+     * the overrides. It therefore does not share any mutable state with this snapshot.
+     *
+     * @return the summary JAXB view of this snapshot
+     * @see ExecutionStatusQuery.Projection#SUMMARY
+     */
+    ExecutionStatus toSummaryExecutionStatus() {
+        return toExecutionStatus(summarize(request));
+    }
+
+    private ExecutionStatus toExecutionStatus(ExecuteWorkflowRequest requestView) {
+        return new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setRequest(requestView)
+            .setStatus(status)
+            .setFailureDescription(failureDescription)
+            .setStartTimeMillis(startTimeMillis)
+            .setQueueWaitMillis(queueWaitMillis)
+            .setQueueDepth(queueDepth);
+    }
+
+    private static ExecuteWorkflowRequest summarize(ExecuteWorkflowRequest request) {
+        return new ExecuteWorkflowRequest()
+            .setPrefix(request.getPrefix())
+            .setBundleIdentifiers(request.getBundleIdentifiers())
+            .setCleaningRequested(request.isCleaningRequested())
+            .setTenant(request.getTenant());
+    }
+
+    /**
+     * Returns the summary representation of the given execution status, see {@link #toSummaryExecutionStatus()}.
+     *
+     * <p>This method is used for execution statuses that have been loaded from a status-keeping service, for which no
+     * snapshot exists. The returned instance shares no mutable state with the given instance.
+     *
+     * @param executionStatus execution status, which is not modified
+     * @return the summary representation of the given execution status
+     */
+    static ExecutionStatus summarize(ExecutionStatus executionStatus) {
+        @Nullable ExecuteWorkflowRequest request = executionStatus.getRequest();
+        return new ExecutionStatus()
+            .setExecutionId(executionStatus.getExecutionId())
+            .setRequest(request == null ? null : summarize(request))
+            .setStatus(executionStatus.getStatus())
+            .setFailureDescription(executionStatus.getFailureDescription())
+            .setStartTimeMillis(executionStatus.getStartTimeMillis())
+            .setQueueWaitMillis(executionStatus.getQueueWaitMillis())
+            .setQueueDepth(executionStatus.getQueueDepth());
+    }
+}
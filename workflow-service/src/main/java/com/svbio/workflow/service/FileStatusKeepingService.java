@@ -4,26 +4,51 @@ import com.svbio.workflow.api.ExecutionStatus;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 import net.florianschoppmann.java.futures.Futures;
 
+import javax.annotation.Nullable;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 /**
  * Implementation of {@link StatusKeepingService} that stores the execution status in the file system.
+ *
+ * <p>When sweeping (see {@link RetentionTarget}), the age of an execution status is measured from the last-modified
+ * time of its file; that is, from the time the execution status was last persisted.
  */
-final class FileStatusKeepingService implements StatusKeepingService {
+final class FileStatusKeepingService implements StatusKeepingService, RetentionTarget {
+    private static final String SUFFIX = ".xml";
+    private static final int NAMES_PER_PERMIT = 100;
+
     private final Path executionStatusPath;
     private final Executor executor;
     private final JAXBContext jaxbContext;
 
+    /**
+     * Statuses of the execution statuses that have been persisted or loaded by this instance.
+     *
+     * <p>This map saves the sweeper from parsing files just to determine the status.
+     */
+    private final Map<Long, ExecutionStatus.Status> knownStatuses = new ConcurrentHashMap<>();
+
     FileStatusKeepingService(Path executionStatusPath, Executor executor, JAXBContext jaxbContext) {
         Objects.requireNonNull(executionStatusPath);
         Objects.requireNonNull(executor);
@@ -35,33 +60,153 @@ final class FileStatusKeepingService implements StatusKeepingService {
     }
 
     private Path executionStatusPath(long executionId) {
-        return executionStatusPath.resolve(executionId + ".xml");
+        return executionStatusPath.resolve(executionId + SUFFIX);
+    }
+
+    private void write(ExecutionStatus executionStatus, boolean sync) throws IOException, JAXBException {
+        long executionId = executionStatus.getExecutionId();
+        try (FileChannel channel = FileChannel.open(executionStatusPath(executionId), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            marshaller.marshal(executionStatus, Channels.newOutputStream(channel));
+            if (sync) {
+                channel.force(true);
+            }
+        }
+        knownStatuses.put(executionId, executionStatus.getStatus());
+    }
+
+    private ExecutionStatus read(long executionId) throws IOException, JAXBException {
+        try (InputStream inputStream = Files.newInputStream(executionStatusPath(executionId))) {
+            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            ExecutionStatus executionStatus = (ExecutionStatus) unmarshaller.unmarshal(inputStream);
+            knownStatuses.put(executionId, executionStatus.getStatus());
+            return executionStatus;
+        }
     }
 
     @Override
     public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
-        // Careful not to close over mutable state that may be modified before future is completed
-        ExecutionStatus copiedExecutionStatus = new ExecutionStatus(executionStatus);
+        // No need to copy executionStatus: The contract of StatusKeepingService guarantees that it is not modified.
         return Futures.supplyAsync(() -> {
-            long executionId = executionStatus.getExecutionId();
-            try (OutputStream outputStream = Files.newOutputStream(executionStatusPath(executionId))) {
-                Marshaller marshaller = jaxbContext.createMarshaller();
-                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-                marshaller.marshal(copiedExecutionStatus, outputStream);
-            }
+            write(executionStatus, false);
             return executionStatus;
         }, executor);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation writes all execution statuses in a single task (instead of one task per execution
+     * status). If {@code sync} is {@code true}, each file is forced to the storage device.
+     */
+    @Override
+    public CompletableFuture<Void> persistExecutionStatuses(List<ExecutionStatus> executionStatuses, boolean sync) {
+        return Futures.supplyAsync(() -> {
+            for (ExecutionStatus executionStatus: executionStatuses) {
+                write(executionStatus, sync);
+            }
+            return null;
+        }, executor);
+    }
+
     @Override
     public CompletableFuture<ExecutionStatus> loadExecutionStatus(final long executionId) {
         return Futures.supplyAsync(() -> {
-            try (InputStream inputStream = Files.newInputStream(executionStatusPath(executionId))) {
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                return (ExecutionStatus) unmarshaller.unmarshal(inputStream);
+            try {
+                return read(executionId);
             } catch (NoSuchFileException ignore) {
                 throw new UnknownExecutionIdException(executionId);
             }
         }, executor);
     }
+
+    /**
+     * Returns the execution id encoded in the given file name, or -1 if the file name does not belong to an execution
+     * status.
+     */
+    private static long executionId(Path fileName) {
+        String name = fileName.toString();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException ignore) {
+            return -1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation lists the directory (one permit per {@value #NAMES_PER_PERMIT} file names) and visits the
+     * files in descending order of execution ids, so that the most recent execution statuses of each status are
+     * counted first. Determining the status of a file costs one permit unless it is already known to this instance,
+     * and deleting a file costs one permit.
+     */
+    @Override
+    public long sweep(RetentionPolicy policy, long currentTimeMillis, RateLimiter rateLimiter)
+            throws IOException, InterruptedException {
+        List<Long> executionIds = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(executionStatusPath, "*" + SUFFIX)) {
+            int numNames = 0;
+            for (Path path: stream) {
+                if (++numNames % NAMES_PER_PERMIT == 0) {
+                    rateLimiter.acquire(1);
+                }
+                long executionId = executionId(path.getFileName());
+                if (executionId > 0) {
+                    executionIds.add(executionId);
+                }
+            }
+        }
+        Collections.sort(executionIds, Collections.reverseOrder());
+
+        Map<ExecutionStatus.Status, Integer> ranks = new EnumMap<>(ExecutionStatus.Status.class);
+        long removed = 0;
+        for (long executionId: executionIds) {
+            @Nullable ExecutionStatus.Status status = knownStatuses.get(executionId);
+            if (status == null) {
+                rateLimiter.acquire(1);
+                try {
+                    status = read(executionId).getStatus();
+                } catch (NoSuchFileException ignore) {
+                    continue;
+                } catch (JAXBException exception) {
+                    throw new IOException(String.format(
+                        "Could not read execution status of execution %d.", executionId), exception);
+                }
+            }
+            RetentionPolicy.Limit limit = policy.getLimit(status);
+            if (!status.isTerminal() || limit.isUnlimited()) {
+                continue;
+            }
+
+            int rank = ranks.merge(status, 1, Integer::sum);
+            Path path = executionStatusPath(executionId);
+            boolean expired = limit.getMaxCount() > 0 && rank > limit.getMaxCount();
+            if (!expired && limit.getMaxAgeMillis() > 0) {
+                try {
+                    expired = limit.isExpired(Files.getLastModifiedTime(path).toMillis(), currentTimeMillis);
+                } catch (NoSuchFileException ignore) {
+                    continue;
+                }
+            }
+            if (expired) {
+                rateLimiter.acquire(1);
+                if (Files.deleteIfExists(path)) {
+                    ++removed;
+                }
+                knownStatuses.remove(executionId);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("file status store (%s)", executionStatusPath);
+    }
 }
@@ -0,0 +1,250 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.FrameTrace;
+import com.svbio.workflow.entities.FrameTrace_;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Dictionary of the {@link FrameTrace} entities referenced by the execution frames written by a
+ * {@link DatabaseLoggingActor}.
+ *
+ * <p>The id of an execution trace is derived from its string representation (see {@link #id(String)}), so all writers
+ * agree on the id without coordination, and the id of an execution trace never changes. Resolving an execution trace
+ * therefore only needs to make sure that the dictionary row exists. Resolved execution traces are kept in a bounded LRU
+ * cache, so the dictionary is only accessed the first time (since the last eviction) that an execution trace is seen.
+ *
+ * <p>If the id is already taken by a different execution trace (a collision of the 64-bit ids), the next ids are
+ * probed in ascending order (see {@link #nextId(long)}), and the execution trace is stored with the first id that is
+ * either free or already taken by the same execution trace. Since dictionary rows are never deleted, every writer
+ * probes the same sequence of ids and thus arrives at the same id.
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to a single actor.
+ */
+final class FrameTraceDictionary {
+    private final EntityManagerFactory entityManagerFactory;
+    private final int maxCachedTraces;
+    private final LinkedHashMap<String, FrameTrace> cache;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param entityManagerFactory JPA entity manager factory
+     * @param maxCachedTraces maximum number of execution traces kept in memory, may be 0
+     * @throws IllegalArgumentException if the maximum number of cached execution traces is negative
+     */
+    FrameTraceDictionary(EntityManagerFactory entityManagerFactory, int maxCachedTraces) {
+        if (maxCachedTraces < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected non-negative cache size, but got %d.", maxCachedTraces
+            ));
+        }
+
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory);
+        this.maxCachedTraces = maxCachedTraces;
+        cache = new LinkedHashMap<String, FrameTrace>(16, 0.75f, true) {
+            private static final long serialVersionUID = 6012470135946584279L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FrameTrace> eldest) {
+                if (size() > maxCachedTraces) {
+                    ++evictionCount;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("frame-trace dictionary (%d of at most %d execution traces cached)", cache.size(),
+            maxCachedTraces);
+    }
+
+    /**
+     * Returns the preferred id of the given execution trace, which consists of the first 64 bits of the SHA-256 hash of
+     * its UTF-8 representation.
+     *
+     * <p>The execution trace is stored with this id unless the id is taken by a different execution trace.
+     *
+     * @param trace string representation of the execution trace
+     * @return the preferred id
+     */
+    static long id(String trace) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(trace.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is a required algorithm of every Java platform.", exception);
+        }
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * Returns the id that is probed after the given id if that is taken by a different execution trace.
+     */
+    static long nextId(long id) {
+        return id + 1;
+    }
+
+    /**
+     * Returns a new (transient) {@link FrameTrace} entity for the given execution trace, with its preferred id.
+     *
+     * @param trace string representation of the execution trace
+     * @return the new entity
+     */
+    static FrameTrace newFrameTrace(String trace) {
+        return new FrameTrace().setId(id(trace)).setTrace(trace);
+    }
+
+    /**
+     * Returns the {@link FrameTrace} entities for the given execution traces, storing those that are not in the
+     * dictionary yet.
+     *
+     * <p>Execution traces that are not cached are looked up and, if necessary, inserted in a single (short)
+     * transaction, so that the dictionary rows are not locked for the duration of a longer transaction. Under
+     * concurrent first occurrences of the same execution trace (or of execution traces with the same id), the insert
+     * of one writer fails, and that writer retries once.
+     *
+     * @param traces string representations of execution traces
+     * @return map from the string representation of each execution trace to its entity
+     * @throws PersistenceException if a database error occurs
+     */
+    Map<String, FrameTrace> resolve(Collection<String> traces) {
+        Map<String, FrameTrace> frameTraces = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String trace: new LinkedHashSet<>(traces)) {
+            @Nullable FrameTrace frameTrace = cache.get(trace);
+            if (frameTrace != null) {
+                ++hitCount;
+                frameTraces.put(trace, frameTrace);
+            } else {
+                ++missCount;
+                missing.add(trace);
+            }
+        }
+        if (missing.isEmpty()) {
+            return frameTraces;
+        }
+
+        List<FrameTrace> resolved;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            try {
+                resolved = store(entityManager, missing);
+            } catch (PersistenceException exception) {
+                entityManager.clear();
+                resolved = store(entityManager, missing);
+            }
+        } finally {
+            entityManager.close();
+        }
+        for (FrameTrace frameTrace: resolved) {
+            String trace = Objects.requireNonNull(frameTrace.getTrace());
+            if (maxCachedTraces > 0) {
+                cache.put(trace, frameTrace);
+            }
+            frameTraces.put(trace, frameTrace);
+        }
+        return frameTraces;
+    }
+
+    /**
+     * Looks up the given execution traces, inserts those that are not stored yet, and returns their entities.
+     *
+     * <p>Each round looks up the ids that have not been looked up before. An execution trace whose id is taken by a
+     * different execution trace (stored before or claimed by another execution trace in this transaction) proceeds to
+     * its next id in the next round.
+     */
+    private static List<FrameTrace> store(EntityManager entityManager, List<String> traces) {
+        List<FrameTrace> resolved = new ArrayList<>(traces.size());
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            Map<Long, String> stored = new HashMap<>();
+            List<FrameTrace> unresolved = new ArrayList<>(traces.size());
+            for (String trace: traces) {
+                unresolved.add(newFrameTrace(trace));
+            }
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            int maxIds = DatabaseStatusKeepingService.MAX_IDS_PER_QUERY;
+            while (!unresolved.isEmpty()) {
+                Set<Long> newIds = new LinkedHashSet<>();
+                for (FrameTrace frameTrace: unresolved) {
+                    if (!stored.containsKey(frameTrace.getId())) {
+                        newIds.add(frameTrace.getId());
+                    }
+                }
+                List<Long> ids = new ArrayList<>(newIds);
+                for (int from = 0; from < ids.size(); from += maxIds) {
+                    CriteriaQuery<FrameTrace> criteriaQuery = criteriaBuilder.createQuery(FrameTrace.class);
+                    Root<FrameTrace> root = criteriaQuery.from(FrameTrace.class);
+                    criteriaQuery.where(
+                        root.get(FrameTrace_.id).in(ids.subList(from, Math.min(from + maxIds, ids.size()))));
+                    for (FrameTrace frameTrace: entityManager.createQuery(criteriaQuery).getResultList()) {
+                        stored.put(frameTrace.getId(), frameTrace.getTrace());
+                    }
+                }
+
+                List<FrameTrace> collided = new ArrayList<>();
+                for (FrameTrace frameTrace: unresolved) {
+                    String trace = Objects.requireNonNull(frameTrace.getTrace());
+                    @Nullable String storedTrace = stored.putIfAbsent(frameTrace.getId(), trace);
+                    if (storedTrace == null) {
+                        entityManager.persist(new FrameTrace().setId(frameTrace.getId()).setTrace(trace));
+                        resolved.add(frameTrace);
+                    } else if (storedTrace.equals(trace)) {
+                        resolved.add(frameTrace);
+                    } else {
+                        collided.add(frameTrace.setId(nextId(frameTrace.getId())));
+                    }
+                }
+                unresolved = collided;
+            }
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the number of cached execution traces.
+     */
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the statistics of the cache of this dictionary. Each hit is a database lookup that was avoided.
+     */
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount, missCount, evictionCount);
+    }
+}
@@ -0,0 +1,406 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.DRMAAProperties;
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.FrameTrace;
+import com.svbio.workflow.entities.SimpleProperties;
+import com.svbio.workflow.entities.UnknownProperties;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.helper.DatabaseField;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.mappings.DatabaseMapping;
+import org.eclipse.persistence.mappings.OneToOneMapping;
+import org.eclipse.persistence.mappings.foundation.AbstractDirectMapping;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import javax.annotation.Nullable;
+import javax.persistence.Cache;
+import javax.persistence.DiscriminatorValue;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writer of {@link ExecutionLogBatch} instances that uses batched JDBC statements instead of a JPA persistence
+ * context.
+ *
+ * <p>The SQL statements are derived from the mapping metadata of the JPA provider, so they match the schema created
+ * by it (including the table qualifier). Executions and execution frames are upserted: All of them are first updated
+ * with a single batched {@code UPDATE} statement, and those that did not exist are then inserted with a single batched
+ * {@code INSERT} statement. Columns whose new value is {@code NULL} keep their current value. Execution-frame
+ * properties and errors are inserted with one batched {@code INSERT} statement per entity class, or upserted in the
+ * same way if the batch is idempotent. No further locking is necessary, because all events of an execution are written
+ * by the same {@link DatabaseLoggingActor}. The {@link FrameTrace} entities referenced by execution frames are not
+ * written by this class; they must have been stored before (see {@link FrameTraceDictionary}). The same holds for the
+ * execution traces of errors, of which only the time range of the occurrences is updated within the transaction of the
+ * batch (see {@link ErrorTraceStore}).
+ *
+ * <p>The connection and transaction are obtained from an {@link EntityManager}, so the connection pool and settings of
+ * the persistence unit apply. Since the persistence context is bypassed, the written executions and execution frames
+ * are evicted from the shared cache of the entity manager factory once a batch has been committed.
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to a single actor.
+ */
+final class JdbcExecutionLogWriter {
+    /**
+     * Entity classes passed to {@link ExecutionLogBatch#insert(Object)}, in the order in which they are written.
+     */
+    private static final List<Class<?>> INSERTED_CLASSES = Collections.unmodifiableList(Arrays.asList(
+        DRMAAProperties.class, SimpleProperties.class, UnknownProperties.class, ExecutionFrameError.class
+    ));
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ServerSession session;
+    private final Map<Class<?>, EntityTable> tables = new HashMap<>();
+    private final EntityTable executionTable;
+    private final EntityTable executionFrameTable;
+
+    /**
+     * Constructor.
+     *
+     * @param entityManagerFactory JPA entity manager factory, must be backed by EclipseLink
+     * @throws IllegalStateException if the mapping metadata of an entity is not supported
+     */
+    JdbcExecutionLogWriter(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory);
+        session = JpaHelper.getServerSession(entityManagerFactory);
+        executionTable = newTable(Execution.class);
+        newTable(FrameTrace.class);
+        executionFrameTable = newTable(ExecutionFrame.class);
+        for (Class<?> clazz: INSERTED_CLASSES) {
+            newTable(clazz);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JDBC writer for %d tables", tables.size());
+    }
+
+    /**
+     * Column of a table, together with the function that extracts the column value from an entity.
+     */
+    private static final class Column {
+        private final String name;
+        private final int sqlType;
+        private final Function<Object, Object> extractor;
+
+        private Column(DatabaseField field, Function<Object, Object> extractor) {
+            name = field.getName();
+            sqlType = sqlType(field.getType());
+            this.extractor = extractor;
+        }
+
+        private void bind(PreparedStatement statement, int index, Object entity) throws SQLException {
+            @Nullable Object value = extractor.apply(entity);
+            if (value == null) {
+                statement.setNull(index, sqlType);
+            } else {
+                statement.setObject(index, value);
+            }
+        }
+    }
+
+    private static int sqlType(@Nullable Class<?> type) {
+        if (type == null || String.class.equals(type)) {
+            return Types.VARCHAR;
+        } else if (java.util.Date.class.isAssignableFrom(type)) {
+            return Types.TIMESTAMP;
+        } else if (Boolean.class.equals(type)) {
+            return Types.BOOLEAN;
+        } else if (Integer.class.equals(type)) {
+            return Types.INTEGER;
+        } else if (Long.class.equals(type)) {
+            return Types.BIGINT;
+        } else {
+            return Types.OTHER;
+        }
+    }
+
+    /**
+     * Table of an entity class, together with the SQL statements for writing entities.
+     */
+    private static final class EntityTable {
+        private final Map<String, Column> columns;
+        private final List<Column> keyColumns;
+        private final List<Column> valueColumns;
+        private final String insertSql;
+        private final String updateSql;
+
+        private EntityTable(String tableName, Map<String, Column> columns, Set<String> keyColumnNames) {
+            this.columns = columns;
+            keyColumns = columns.values().stream()
+                .filter(column -> keyColumnNames.contains(column.name))
+                .collect(Collectors.toList());
+            valueColumns = columns.values().stream()
+                .filter(column -> !keyColumnNames.contains(column.name))
+                .collect(Collectors.toList());
+            insertSql = String.format(
+                "INSERT INTO %s (%s) VALUES (%s)",
+                tableName,
+                columns.keySet().stream().collect(Collectors.joining(", ")),
+                columns.keySet().stream().map(name -> "?").collect(Collectors.joining(", "))
+            );
+            updateSql = String.format(
+                "UPDATE %s SET %s WHERE %s",
+                tableName,
+                valueColumns.stream()
+                    .map(column -> String.format("%1$s = COALESCE(?, %1$s)", column.name))
+                    .collect(Collectors.joining(", ")),
+                keyColumns.stream().map(column -> column.name + " = ?").collect(Collectors.joining(" AND "))
+            );
+        }
+
+        private Column getColumn(String name) {
+            @Nullable Column column = columns.get(name);
+            if (column == null) {
+                throw new IllegalStateException(String.format("Expected column %s in %s.", name, insertSql));
+            }
+            return column;
+        }
+
+        private void bindInsert(PreparedStatement statement, Object entity) throws SQLException {
+            int index = 1;
+            for (Column column: columns.values()) {
+                column.bind(statement, index, entity);
+                ++index;
+            }
+        }
+
+        private void bindUpdate(PreparedStatement statement, Object entity) throws SQLException {
+            int index = 1;
+            for (Column column: valueColumns) {
+                column.bind(statement, index, entity);
+                ++index;
+            }
+            for (Column column: keyColumns) {
+                column.bind(statement, index, entity);
+                ++index;
+            }
+        }
+    }
+
+    /**
+     * Creates the table of the given entity class from the mapping metadata.
+     *
+     * <p>The tables of entities referenced by the given entity class must have been created before.
+     */
+    private EntityTable newTable(Class<?> entityClass) {
+        @Nullable ClassDescriptor descriptor = session.getClassDescriptor(entityClass);
+        if (descriptor == null) {
+            throw new IllegalStateException(String.format("Expected mapping metadata for %s.", entityClass));
+        }
+
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (DatabaseMapping mapping: descriptor.getMappings()) {
+            if (mapping.isAbstractDirectMapping()) {
+                AbstractDirectMapping directMapping = (AbstractDirectMapping) mapping;
+                columns.putIfAbsent(directMapping.getField().getName(), new Column(
+                    directMapping.getField(),
+                    entity -> directMapping.getFieldValue(
+                        directMapping.getRealAttributeValueFromObject(entity, session), session)
+                ));
+            } else if (mapping.isOneToOneMapping()) {
+                OneToOneMapping oneToOneMapping = (OneToOneMapping) mapping;
+                @Nullable EntityTable targetTable = tables.get(oneToOneMapping.getReferenceClass());
+                if (targetTable == null) {
+                    throw new IllegalStateException(String.format(
+                        "Expected table for %s (referenced by %s).", oneToOneMapping.getReferenceClass(), entityClass
+                    ));
+                }
+                for (Map.Entry<DatabaseField, DatabaseField> entry
+                        : oneToOneMapping.getSourceToTargetKeyFields().entrySet()) {
+                    Column targetColumn = targetTable.getColumn(entry.getValue().getName());
+                    columns.putIfAbsent(entry.getKey().getName(), new Column(entry.getKey(), entity -> {
+                        @Nullable Object target = oneToOneMapping.getRealAttributeValueFromObject(entity, session);
+                        return target == null
+                            ? null
+                            : targetColumn.extractor.apply(target);
+                    }));
+                }
+            } else {
+                throw new IllegalStateException(String.format(
+                    "Unsupported mapping %s of %s.", mapping.getAttributeName(), entityClass
+                ));
+            }
+        }
+        if (descriptor.hasInheritance()) {
+            // JPA 2.1 §11.1.10: The default discriminator value of a string discriminator column is the entity name.
+            @Nullable DiscriminatorValue discriminatorValue = entityClass.getAnnotation(DiscriminatorValue.class);
+            String classIndicator = discriminatorValue == null
+                ? descriptor.getAlias()
+                : discriminatorValue.value();
+            DatabaseField classIndicatorField = descriptor.getInheritancePolicy().getClassIndicatorField();
+            columns.putIfAbsent(
+                classIndicatorField.getName(), new Column(classIndicatorField, entity -> classIndicator));
+        }
+
+        Set<String> keyColumnNames = new HashSet<>();
+        for (DatabaseField keyField: descriptor.getPrimaryKeyFields()) {
+            keyColumnNames.add(keyField.getName());
+        }
+        EntityTable table = new EntityTable(descriptor.getDefaultTable().getQualifiedName(), columns, keyColumnNames);
+        tables.put(entityClass, table);
+        return table;
+    }
+
+    /**
+     * Returns a new (empty) batch.
+     *
+     * @param idempotent whether entities passed to {@link ExecutionLogBatch#insert(Object)} are upserted instead of
+     *     inserted, see {@link ExecutionLogBatch}
+     */
+    Batch newBatch(boolean idempotent) {
+        return new Batch(idempotent);
+    }
+
+    /**
+     * Batch of entities that is written by {@link #write()}.
+     *
+     * <p>Executions and execution frames are kept in memory only once per batch. All events of the batch that pertain
+     * to the same execution frame therefore result in a single row update or insert.
+     */
+    final class Batch implements ExecutionLogBatch {
+        private final Map<Long, Execution> executions = new LinkedHashMap<>();
+        private final Map<ExecutionFrame.ID, ExecutionFrame> executionFrames = new LinkedHashMap<>();
+        private final Map<Class<?>, List<Object>> insertedEntities = new HashMap<>();
+        private final ErrorTraceStore.Occurrences errorOccurrences = new ErrorTraceStore.Occurrences();
+        private final boolean idempotent;
+
+        private Batch(boolean idempotent) {
+            this.idempotent = idempotent;
+        }
+
+        @Override
+        public Execution getExecution(long executionId, String keyPrefix) {
+            return executions.computeIfAbsent(executionId, id -> new Execution().setId(id).setKeyPrefix(keyPrefix));
+        }
+
+        @Override
+        public ExecutionFrame getExecutionFrame(Execution execution, FrameTrace trace,
+                ExecutionFrame.ModuleKind moduleKind) {
+            return executionFrames.computeIfAbsent(
+                new ExecutionFrame.ID().setExecution(execution.getId()).setTrace(trace.getId()),
+                id -> new ExecutionFrame().setExecution(execution).setTrace(trace).setModuleKind(moduleKind)
+            );
+        }
+
+        @Override
+        public void insert(Object entity) {
+            if (!tables.containsKey(entity.getClass())) {
+                throw new IllegalArgumentException(String.format("Unexpected entity %s.", entity));
+            }
+            insertedEntities.computeIfAbsent(entity.getClass(), clazz -> new ArrayList<>()).add(entity);
+        }
+
+        @Override
+        public void recordErrorOccurrence(String fingerprint, long timeMillis) {
+            errorOccurrences.add(fingerprint, timeMillis);
+        }
+
+        /**
+         * Writes this batch in a single transaction.
+         *
+         * @throws PersistenceException if writing fails
+         */
+        void write() {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            EntityTransaction transaction = entityManager.getTransaction();
+            try {
+                transaction.begin();
+                Connection connection = entityManager.unwrap(Connection.class);
+                upsert(connection, executionTable, executions.values());
+                upsert(connection, executionFrameTable, executionFrames.values());
+                for (Class<?> clazz: INSERTED_CLASSES) {
+                    List<Object> entities = insertedEntities.getOrDefault(clazz, Collections.emptyList());
+                    if (idempotent) {
+                        upsert(connection, tables.get(clazz), entities);
+                    } else {
+                        insert(connection, tables.get(clazz), entities);
+                    }
+                }
+                ErrorTraceStore.recordOccurrences(entityManager, errorOccurrences);
+                transaction.commit();
+            } catch (SQLException exception) {
+                throw new PersistenceException(
+                    String.format("Failed to write batch of %d execution frames.", executionFrames.size()), exception);
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                entityManager.close();
+            }
+
+            Cache cache = entityManagerFactory.getCache();
+            for (long executionId: executions.keySet()) {
+                cache.evict(Execution.class, executionId);
+            }
+            for (ExecutionFrame.ID id: executionFrames.keySet()) {
+                cache.evict(ExecutionFrame.class, id);
+            }
+        }
+    }
+
+    private static void upsert(Connection connection, EntityTable table, Collection<?> entities) throws SQLException {
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        List<Object> entityList = new ArrayList<>(entities);
+        List<Object> missingEntities = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(table.updateSql)) {
+            for (Object entity: entityList) {
+                table.bindUpdate(statement, entity);
+                statement.addBatch();
+            }
+            int[] updateCounts = statement.executeBatch();
+            for (int i = 0; i < updateCounts.length; ++i) {
+                int updateCount = updateCounts[i];
+                if (updateCount == Statement.SUCCESS_NO_INFO) {
+                    // The driver does not report update counts for batches. The update is idempotent, so repeat it.
+                    table.bindUpdate(statement, entityList.get(i));
+                    updateCount = statement.executeUpdate();
+                }
+                if (updateCount == 0) {
+                    missingEntities.add(entityList.get(i));
+                }
+            }
+        }
+        insert(connection, table, missingEntities);
+    }
+
+    private static void insert(Connection connection, EntityTable table, List<?> entities) throws SQLException {
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(table.insertSql)) {
+            for (Object entity: entities) {
+                table.bindInsert(statement, entity);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
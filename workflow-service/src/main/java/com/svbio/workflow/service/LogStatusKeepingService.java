@@ -0,0 +1,886 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import net.florianschoppmann.java.futures.Futures;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Implementation of {@link StatusKeepingService} that appends execution statuses to a log of segment files.
+ *
+ * <p>All segment files reside in a single directory and are named {@code segment-<number>.log}. Execution statuses are
+ * appended to the active (last) segment as records of the following form (all integers are big-endian):
+ * <ul><li>
+ *     body length (4 bytes),
+ * </li><li>
+ *     CRC-32 checksum of the body (4 bytes),
+ * </li><li>
+ *     execution id (8 bytes),
+ * </li><li>
+ *     body, consisting of a summary and the payload:
+ *     <ul><li>
+ *         code of the {@link ExecutionStatus.Status} (1 byte, see {@link #statusCode(ExecutionStatus.Status)}),
+ *     </li><li>
+ *         start time in milliseconds since the epoch, or {@link Long#MIN_VALUE} if unknown (8 bytes),
+ *     </li><li>
+ *         length of the UTF-8 encoded staging-area prefix, or -1 if unknown (4 bytes), followed by the prefix,
+ *     </li><li>
+ *         payload: the JAXB representation of the execution status, compressed with the deflate algorithm.
+ *     </li></ul>
+ * </li></ul>
+ *
+ * <p>Once the active segment exceeds the maximum segment size, it is sealed by appending a footer, and a new active
+ * segment is started. The footer consists of one entry (execution id and record offset, 8 bytes each) per record,
+ * followed by a trailer of the number of entries (4 bytes), the offset of the footer (8 bytes), and
+ * {@link #FOOTER_MAGIC} (4 bytes). Sealed segments are immutable and are read through memory-mapped buffers.
+ *
+ * <p>An in-memory index maps each execution id to its segment and record offset, so that loading an execution status
+ * takes a single lookup and a single read. On startup, the index is rebuilt from the footers of the sealed segments;
+ * only the active segment (which does not have a footer yet) needs to be scanned record by record. A torn record at
+ * the end of the active segment (for instance, after a crash) is discarded. If the same execution id is persisted
+ * more than once, the last record wins.
+ *
+ * <p>The index is kept on the heap (see {@link LongToLongIndex}) rather than in a memory-mapped file. The footers of
+ * the sealed segments already are its persistent form, so a mapped index file would duplicate them and would need its
+ * own crash recovery. The index holds one entry per retained execution id (compaction removes the entries of swept
+ * records), and an entry takes between 32 and 64 bytes, that is, at most 64 MiB per million retained executions. The
+ * arrays are not shrunk after compaction. Heap usage is therefore bounded by the retention policy, as is the larger
+ * {@link ExecutionStatusIndex}, which is kept on the heap anyway.
+ *
+ * <p>In addition, an {@link ExecutionStatusIndex} with secondary indexes (by prefix, status, and start time) is
+ * maintained for answering queries. It is rebuilt on startup from the record summaries, which (unlike the payloads)
+ * do not need to be decompressed or unmarshalled.
+ *
+ * <p>Records are removed by compaction (see {@link #sweep(RetentionPolicy, long, RateLimiter)}): The retained records
+ * of the oldest sealed segment are copied to the active segment, and the oldest segment is then deleted. Since only
+ * the oldest segment is ever deleted, there is never an older record that could resurrect a removed execution id
+ * when the index is rebuilt.
+ */
+final class LogStatusKeepingService implements StatusKeepingService, RetentionTarget {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int SUMMARY_FIXED_SIZE = 13;
+    private static final long UNKNOWN_START_TIME = Long.MIN_VALUE;
+    private static final int FOOTER_ENTRY_SIZE = 16;
+    private static final int TRAILER_SIZE = 16;
+    private static final int FOOTER_MAGIC = 0x53544c47;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final long NO_ENTRY = -1;
+    private static final int COMPACTION_CHUNK_SIZE = 64;
+
+    /**
+     * Maximum segment size (1 GiB). Together with the last record and the footer, a sealed segment has to fit into a
+     * single {@link MappedByteBuffer}.
+     */
+    static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final Executor executor;
+    private final JAXBContext jaxbContext;
+
+    /**
+     * Lock that guards all of the following fields. Appending requires the write lock, loading the read lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index from execution ids to (segment number, record offset), packed into a single long. See the class
+     * documentation for its size.
+     */
+    private final LongToLongIndex index = new LongToLongIndex();
+    private final ExecutionStatusIndex statusIndex = new ExecutionStatusIndex();
+    private final Map<Integer, MappedByteBuffer> sealedSegments = new HashMap<>();
+    private int activeSegmentNumber;
+    @Nullable private FileChannel activeChannel;
+    private long activeSize;
+    private final ByteArrayOutputStream activeFooter = new ByteArrayOutputStream();
+    private int activeFooterEntries;
+
+    private LogStatusKeepingService(Path directory, long maxSegmentSize, Executor executor, JAXBContext jaxbContext) {
+        this.directory = Objects.requireNonNull(directory);
+        this.maxSegmentSize = maxSegmentSize;
+        this.executor = Objects.requireNonNull(executor);
+        this.jaxbContext = Objects.requireNonNull(jaxbContext);
+    }
+
+    /**
+     * Opens the log in the given directory and rebuilds the index.
+     *
+     * @param directory directory containing the segment files, will be created if it does not exist
+     * @param maxSegmentSize size (in bytes) above which the active segment is sealed, must be positive and at most
+     *     {@link #MAX_SEGMENT_SIZE}
+     * @param executor executor for serialization and I/O
+     * @param jaxbContext JAXB context for {@link ExecutionStatus}
+     * @return the new status-keeping service
+     * @throws IOException if an I/O error occurs
+     */
+    static LogStatusKeepingService open(Path directory, long maxSegmentSize, Executor executor,
+            JAXBContext jaxbContext) throws IOException {
+        if (maxSegmentSize <= 0 || maxSegmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                "Expected maximum segment size between 1 and %d bytes, but got %d.", MAX_SEGMENT_SIZE, maxSegmentSize
+            ));
+        }
+
+        LogStatusKeepingService service = new LogStatusKeepingService(directory, maxSegmentSize, executor, jaxbContext);
+        service.lock.writeLock().lock();
+        try {
+            service.recover();
+        } catch (IOException | RuntimeException exception) {
+            service.closeQuietly();
+            throw exception;
+        } finally {
+            service.lock.writeLock().unlock();
+        }
+        return service;
+    }
+
+    private static long pack(int segmentNumber, long offset) {
+        return ((long) segmentNumber << OFFSET_BITS) | offset;
+    }
+
+    private Path segmentPath(int segmentNumber) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return (int) crc32.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, currentPosition);
+            if (read < 0) {
+                throw new IOException(String.format("Unexpected end of file at position %d.", currentPosition));
+            }
+            currentPosition += read;
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            currentPosition += channel.write(buffer, currentPosition);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the segment files, and opens (or creates) the active segment.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> segmentNumbers = new ArrayList<>();
+        String glob = SEGMENT_PREFIX + '*' + SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path: stream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    segmentNumbers.add(Integer.parseInt(
+                        fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // Not a segment file
+                }
+            }
+        }
+        Collections.sort(segmentNumbers);
+
+        @Nullable Integer lastUnsealed = null;
+        for (int segmentNumber: segmentNumbers) {
+            if (lastUnsealed != null) {
+                // An unsealed segment that is followed by other segments (which can only happen if the process
+                // crashed while rotating). Seal it now.
+                sealActive();
+                lastUnsealed = null;
+            }
+            FileChannel channel = FileChannel.open(segmentPath(segmentNumber), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            long footerOffset = footerOffset(channel);
+            if (footerOffset >= 0) {
+                try {
+                    readFooter(segmentNumber, channel, footerOffset);
+                } finally {
+                    channel.close();
+                }
+            } else {
+                activeSegmentNumber = segmentNumber;
+                activeChannel = channel;
+                activeFooter.reset();
+                activeFooterEntries = 0;
+                activeSize = scanRecords(segmentNumber, channel);
+                channel.truncate(activeSize);
+                lastUnsealed = segmentNumber;
+            }
+        }
+
+        if (lastUnsealed == null) {
+            openActive(segmentNumbers.isEmpty()
+                ? 0
+                : segmentNumbers.get(segmentNumbers.size() - 1) + 1);
+        }
+    }
+
+    /**
+     * Returns the offset of the footer of the given segment, or -1 if the segment is not sealed.
+     */
+    private static long footerOffset(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < TRAILER_SIZE) {
+            return -1;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(channel, trailer, size - TRAILER_SIZE);
+        int numEntries = trailer.getInt();
+        long footerOffset = trailer.getLong();
+        int magic = trailer.getInt();
+        return magic == FOOTER_MAGIC && numEntries >= 0
+                && footerOffset + (long) numEntries * FOOTER_ENTRY_SIZE + TRAILER_SIZE == size
+            ? footerOffset
+            : -1;
+    }
+
+    /**
+     * Adds the footer entries of a sealed segment to the index, and maps the segment into memory.
+     */
+    private void readFooter(int segmentNumber, FileChannel channel, long footerOffset) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        ByteBuffer footer = buffer.duplicate();
+        footer.position((int) footerOffset);
+        footer.limit(footer.capacity() - TRAILER_SIZE);
+        while (footer.hasRemaining()) {
+            long executionId = footer.getLong();
+            long offset = footer.getLong();
+            index.put(executionId, pack(segmentNumber, offset));
+            indexSummary(executionId, buffer, (int) offset + RECORD_HEADER_SIZE);
+        }
+        sealedSegments.put(segmentNumber, buffer);
+    }
+
+    /**
+     * Scans the records of an unsealed segment, adds them to the index and to the footer of the active segment, and
+     * returns the size of the valid prefix of the segment.
+     */
+    private long scanRecords(int segmentNumber, FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            long executionId = header.getLong();
+            if (length < 0 || executionId <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + RECORD_HEADER_SIZE);
+            if (length < SUMMARY_FIXED_SIZE || checksum(body.array()) != checksum) {
+                break;
+            }
+            addToIndex(segmentNumber, executionId, position, body, 0);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Adds the summary starting at the given position of the given buffer to the secondary indexes.
+     */
+    private void indexSummary(long executionId, ByteBuffer buffer, int summaryPosition) throws IOException {
+        @Nullable ExecutionStatus.Status status = statusFromCode(buffer.get(summaryPosition));
+        long startTimeMillis = buffer.getLong(summaryPosition + 1);
+        int prefixLength = buffer.getInt(summaryPosition + 9);
+        if (status == null || prefixLength < -1) {
+            throw new IOException(String.format("Corrupt record summary for execution id %d.", executionId));
+        }
+        @Nullable String prefix = null;
+        if (prefixLength >= 0) {
+            byte[] prefixBytes = new byte[prefixLength];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(summaryPosition + SUMMARY_FIXED_SIZE);
+            duplicate.get(prefixBytes);
+            prefix = new String(prefixBytes, StandardCharsets.UTF_8);
+        }
+        statusIndex.put(executionId, prefix, status,
+            startTimeMillis == UNKNOWN_START_TIME ? null : startTimeMillis);
+    }
+
+    private void addToIndex(int segmentNumber, long executionId, long offset, ByteBuffer buffer, int summaryPosition)
+            throws IOException {
+        index.put(executionId, pack(segmentNumber, offset));
+        indexSummary(executionId, buffer, summaryPosition);
+        DataOutputStream footer = new DataOutputStream(activeFooter);
+        footer.writeLong(executionId);
+        footer.writeLong(offset);
+        ++activeFooterEntries;
+    }
+
+    private void openActive(int segmentNumber) throws IOException {
+        activeSegmentNumber = segmentNumber;
+        activeChannel = FileChannel.open(segmentPath(segmentNumber), StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+        activeSize = 0;
+        activeFooter.reset();
+        activeFooterEntries = 0;
+    }
+
+    /**
+     * Appends the footer to the active segment, forces it to the storage device, and maps it into memory.
+     */
+    private void sealActive() throws IOException {
+        FileChannel channel = Objects.requireNonNull(activeChannel);
+        ByteBuffer footer = ByteBuffer.allocate(activeFooter.size() + TRAILER_SIZE);
+        footer.put(activeFooter.toByteArray());
+        footer.putInt(activeFooterEntries);
+        footer.putLong(activeSize);
+        footer.putInt(FOOTER_MAGIC);
+        footer.flip();
+        writeFully(channel, footer, activeSize);
+        channel.force(true);
+        sealedSegments.put(activeSegmentNumber, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        channel.close();
+        activeChannel = null;
+    }
+
+    /**
+     * Returns the code that represents the given status in record summaries.
+     *
+     * <p>Codes are part of the file format and must never change or be reused, independent of the order of the
+     * constants in {@link ExecutionStatus.Status}.
+     */
+    private static byte statusCode(ExecutionStatus.Status status) {
+        switch (status) {
+            case QUEUED:
+                return 0;
+            case RUNNING:
+                return 1;
+            case SUCCESSFUL:
+                return 2;
+            case FAILED:
+                return 3;
+            default:
+                throw new AssertionError(String.format("unknown status %s", status));
+        }
+    }
+
+    /**
+     * Returns the status represented by the given code, or {@code null} if the code is unknown.
+     *
+     * @see #statusCode(ExecutionStatus.Status)
+     */
+    @Nullable
+    private static ExecutionStatus.Status statusFromCode(byte code) {
+        switch (code) {
+            case 0:
+                return ExecutionStatus.Status.QUEUED;
+            case 1:
+                return ExecutionStatus.Status.RUNNING;
+            case 2:
+                return ExecutionStatus.Status.SUCCESSFUL;
+            case 3:
+                return ExecutionStatus.Status.FAILED;
+            default:
+                return null;
+        }
+    }
+
+    private static ByteBuffer record(ExecutionStatus executionStatus, byte[] payload) {
+        @Nullable ExecuteWorkflowRequest request = executionStatus.getRequest();
+        @Nullable String prefix = request == null
+            ? null
+            : request.getPrefix();
+        @Nullable byte[] prefixBytes = prefix == null
+            ? null
+            : prefix.getBytes(StandardCharsets.UTF_8);
+        @Nullable Long startTimeMillis = executionStatus.getStartTimeMillis();
+
+        ByteBuffer body = ByteBuffer.allocate(
+            SUMMARY_FIXED_SIZE + (prefixBytes == null ? 0 : prefixBytes.length) + payload.length);
+        body.put(statusCode(executionStatus.getStatus()));
+        body.putLong(startTimeMillis == null ? UNKNOWN_START_TIME : startTimeMillis);
+        if (prefixBytes == null) {
+            body.putInt(-1);
+        } else {
+            body.putInt(prefixBytes.length);
+            body.put(prefixBytes);
+        }
+        body.put(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.capacity());
+        record.putInt(body.capacity());
+        record.putInt(checksum(body.array()));
+        record.putLong(executionStatus.getExecutionId());
+        record.put(body.array());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Appends the given record to the active segment, rotating segments as necessary. Must be called while holding
+     * the write lock.
+     */
+    private void appendRecord(long executionId, ByteBuffer record) throws IOException {
+        @Nullable FileChannel channel = activeChannel;
+        if (channel == null) {
+            throw new IOException(String.format("Status log in %s has been closed.", directory));
+        }
+        long offset = activeSize;
+        writeFully(channel, record, offset);
+        activeSize += record.limit();
+        addToIndex(activeSegmentNumber, executionId, offset, record, RECORD_HEADER_SIZE);
+        if (activeSize >= maxSegmentSize) {
+            // Sealing forces the segment to the storage device.
+            sealActive();
+            openActive(activeSegmentNumber + 1);
+        }
+    }
+
+    /**
+     * Appends the given records to the active segment, rotating segments as necessary.
+     *
+     * @param executionIds execution ids of the records
+     * @param records records as returned by {@link #record(ExecutionStatus, byte[])}
+     * @param sync whether the active segment is to be forced to the storage device after appending
+     */
+    private void append(long[] executionIds, List<ByteBuffer> records, boolean sync) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < executionIds.length; ++i) {
+                appendRecord(executionIds[i], records.get(i));
+            }
+            if (sync && activeChannel != null) {
+                activeChannel.force(false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the body of the record for the given execution id, or {@code null} if the execution id is unknown. Must
+     * be called while holding the read lock.
+     */
+    @Nullable
+    private byte[] readBody(long executionId) throws IOException {
+        long packed = index.get(executionId, NO_ENTRY);
+        if (packed == NO_ENTRY) {
+            return null;
+        }
+        int segmentNumber = (int) (packed >>> OFFSET_BITS);
+        long offset = packed & OFFSET_MASK;
+
+        ByteBuffer buffer;
+        @Nullable MappedByteBuffer sealedSegment = sealedSegments.get(segmentNumber);
+        if (sealedSegment != null) {
+            buffer = sealedSegment.duplicate();
+            buffer.position((int) offset);
+        } else if (segmentNumber == activeSegmentNumber && activeChannel != null) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            readFully(activeChannel, header, offset);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + header.getInt(0));
+            readFully(activeChannel, record, offset);
+            buffer = record;
+        } else {
+            throw new IOException(String.format("Status log in %s has been closed.", directory));
+        }
+
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        long recordExecutionId = buffer.getLong();
+        byte[] body = new byte[length];
+        buffer.get(body);
+        if (recordExecutionId != executionId || checksum(body) != checksum) {
+            throw new IOException(String.format(
+                "Corrupt record for execution id %d in segment %d at offset %d.", executionId, segmentNumber, offset
+            ));
+        }
+        return body;
+    }
+
+    /**
+     * Returns the bodies of the records for the given execution ids, omitting unknown execution ids.
+     */
+    private List<byte[]> readBodies(List<Long> executionIds) throws IOException {
+        List<byte[]> bodies = new ArrayList<>(executionIds.size());
+        lock.readLock().lock();
+        try {
+            for (long executionId: executionIds) {
+                @Nullable byte[] body = readBody(executionId);
+                if (body != null) {
+                    bodies.add(body);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bodies;
+    }
+
+    private byte[] serialize(ExecutionStatus executionStatus) throws IOException, JAXBException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream)) {
+            jaxbContext.createMarshaller().marshal(executionStatus, outputStream);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private ExecutionStatus deserialize(byte[] body) throws IOException, JAXBException {
+        int prefixLength = ByteBuffer.wrap(body).getInt(9);
+        int payloadOffset = SUMMARY_FIXED_SIZE + Math.max(prefixLength, 0);
+        try (InflaterInputStream inputStream = new InflaterInputStream(
+                new ByteArrayInputStream(body, payloadOffset, body.length - payloadOffset))) {
+            return (ExecutionStatus) jaxbContext.createUnmarshaller().unmarshal(inputStream);
+        }
+    }
+
+    private List<ExecutionStatus> deserializeAll(List<byte[]> bodies) throws IOException, JAXBException {
+        List<ExecutionStatus> executionStatuses = new ArrayList<>(bodies.size());
+        for (byte[] body: bodies) {
+            executionStatuses.add(deserialize(body));
+        }
+        return executionStatuses;
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+        long executionId = executionStatus.getExecutionId();
+        if (executionId <= 0) {
+            throw new IllegalArgumentException(String.format("Expected execution id, but got %d.", executionId));
+        }
+
+        // No need to copy executionStatus: The contract of StatusKeepingService guarantees that it is not modified.
+        return Futures.supplyAsync(() -> {
+            ByteBuffer record = record(executionStatus, serialize(executionStatus));
+            append(new long[] { executionId }, Collections.singletonList(record), false);
+            return executionStatus;
+        }, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation serializes the execution statuses outside of any lock and then appends all records while
+     * holding the lock only once. If {@code sync} is {@code true}, the active segment is forced to the storage device
+     * once for the entire batch.
+     */
+    @Override
+    public CompletableFuture<Void> persistExecutionStatuses(List<ExecutionStatus> executionStatuses, boolean sync) {
+        long[] executionIds = new long[executionStatuses.size()];
+        for (int i = 0; i < executionIds.length; ++i) {
+            executionIds[i] = executionStatuses.get(i).getExecutionId();
+            if (executionIds[i] <= 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected execution id, but got %d.", executionIds[i]
+                ));
+            }
+        }
+
+        return Futures.supplyAsync(() -> {
+            List<ByteBuffer> records = new ArrayList<>(executionIds.length);
+            for (int i = 0; i < executionIds.length; ++i) {
+                ExecutionStatus executionStatus = executionStatuses.get(i);
+                records.add(record(executionStatus, serialize(executionStatus)));
+            }
+            append(executionIds, records, sync);
+            return null;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+        return Futures.supplyAsync(() -> {
+            @Nullable byte[] body;
+            lock.readLock().lock();
+            try {
+                body = readBody(executionId);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (body == null) {
+                throw new UnknownExecutionIdException(executionId);
+            }
+            return deserialize(body);
+        }, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation reads all records while holding the lock only once.
+     */
+    @Override
+    public CompletableFuture<List<ExecutionStatus>> loadExecutionStatuses(List<Long> executionIds) {
+        List<Long> executionIdsCopy = new ArrayList<>(executionIds);
+        return Futures.supplyAsync(() -> deserializeAll(readBodies(executionIdsCopy)), executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation determines the matching execution ids from the in-memory secondary indexes, so that
+     * only the records in the result need to be read.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        ExecutionStatusQuery queryCopy = new ExecutionStatusQuery(query);
+        return Futures.supplyAsync(() -> {
+            int limit = queryCopy.getLimit();
+            List<Long> executionIds;
+            lock.readLock().lock();
+            try {
+                executionIds = statusIndex.query(queryCopy, limit == 0 ? 0 : limit + 1);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            @Nullable Long nextCursor = null;
+            if (limit > 0 && executionIds.size() > limit) {
+                executionIds = executionIds.subList(0, limit);
+                nextCursor = executionIds.get(limit - 1);
+            }
+            // A record may have been replaced after the index was queried. Its new version is only returned if it
+            // still matches.
+            List<ExecutionStatus> executionStatuses = deserializeAll(readBodies(executionIds));
+            executionStatuses.removeIf(executionStatus -> !queryCopy.matches(executionStatus));
+            return new ExecutionStatusList()
+                .setList(executionStatuses)
+                .setNextCursor(nextCursor);
+        }, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation compacts sealed segments, starting with the oldest one, as long as the oldest sealed
+     * segment contains an expired record, or at least half of its records have been superseded by newer records of the
+     * same execution id. Entries are therefore removed in log order: An expired record is only removed once all older
+     * segments have been compacted. The active segment is never compacted.
+     *
+     * <p>Each segment is processed in chunks of {@value #COMPACTION_CHUNK_SIZE} footer entries, and the write lock is
+     * only held while processing a chunk. Examining a chunk costs one permit, and compacting costs one permit per
+     * footer entry.
+     */
+    @Override
+    public long sweep(RetentionPolicy policy, long currentTimeMillis, RateLimiter rateLimiter)
+            throws IOException, InterruptedException {
+        Set<Long> expired;
+        lock.readLock().lock();
+        try {
+            expired = statusIndex.expired(policy, currentTimeMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long removed = 0;
+        while (true) {
+            int segmentNumber;
+            ByteBuffer segment;
+            lock.readLock().lock();
+            try {
+                if (sealedSegments.isEmpty()) {
+                    break;
+                }
+                segmentNumber = Collections.min(sealedSegments.keySet());
+                segment = sealedSegments.get(segmentNumber).duplicate();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (!needsCompaction(segmentNumber, segment, expired, rateLimiter)) {
+                break;
+            }
+            removed += compact(segmentNumber, segment, expired, rateLimiter);
+        }
+        return removed;
+    }
+
+    private static int numFooterEntries(ByteBuffer segment) {
+        return segment.getInt(segment.capacity() - TRAILER_SIZE);
+    }
+
+    private static int footerEntryPosition(ByteBuffer segment, int entry) {
+        int footerOffset = (int) segment.getLong(segment.capacity() - TRAILER_SIZE + 4);
+        return footerOffset + entry * FOOTER_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns whether the given sealed segment contains an expired record, or whether at least half of its records
+     * have been superseded.
+     */
+    private boolean needsCompaction(int segmentNumber, ByteBuffer segment, Set<Long> expired,
+            RateLimiter rateLimiter) throws InterruptedException {
+        int numEntries = numFooterEntries(segment);
+        int numSuperseded = 0;
+        for (int first = 0; first < numEntries; first += COMPACTION_CHUNK_SIZE) {
+            rateLimiter.acquire(1);
+            int last = Math.min(first + COMPACTION_CHUNK_SIZE, numEntries);
+            lock.readLock().lock();
+            try {
+                for (int entry = first; entry < last; ++entry) {
+                    int position = footerEntryPosition(segment, entry);
+                    long executionId = segment.getLong(position);
+                    long offset = segment.getLong(position + 8);
+                    if (index.get(executionId, NO_ENTRY) != pack(segmentNumber, offset)) {
+                        ++numSuperseded;
+                    } else if (expired.contains(executionId)) {
+                        return true;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return 2 * numSuperseded >= numEntries;
+    }
+
+    /**
+     * Removes the expired records of the given sealed segment from the index, copies the remaining current records to
+     * the active segment, and deletes the sealed segment.
+     */
+    private long compact(int segmentNumber, ByteBuffer segment, Set<Long> expired, RateLimiter rateLimiter)
+            throws IOException, InterruptedException {
+        int numEntries = numFooterEntries(segment);
+        long removed = 0;
+        for (int first = 0; first < numEntries; first += COMPACTION_CHUNK_SIZE) {
+            int last = Math.min(first + COMPACTION_CHUNK_SIZE, numEntries);
+            rateLimiter.acquire(last - first);
+            lock.writeLock().lock();
+            try {
+                if (!sealedSegments.containsKey(segmentNumber)) {
+                    throw new IOException(String.format("Status log in %s has been closed.", directory));
+                }
+                for (int entry = first; entry < last; ++entry) {
+                    int position = footerEntryPosition(segment, entry);
+                    long executionId = segment.getLong(position);
+                    int offset = (int) segment.getLong(position + 8);
+                    if (index.get(executionId, NO_ENTRY) != pack(segmentNumber, offset)) {
+                        continue;
+                    }
+                    if (expired.contains(executionId)) {
+                        index.remove(executionId);
+                        statusIndex.remove(executionId);
+                        ++removed;
+                    } else {
+                        ByteBuffer record = segment.duplicate();
+                        record.position(offset);
+                        record.limit(offset + RECORD_HEADER_SIZE + segment.getInt(offset));
+                        appendRecord(executionId, record.slice());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // The copied records must be durable before the segment is deleted.
+            if (activeChannel == null) {
+                throw new IOException(String.format("Status log in %s has been closed.", directory));
+            }
+            activeChannel.force(false);
+            sealedSegments.remove(segmentNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.deleteIfExists(segmentPath(segmentNumber));
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("status log (%s)", directory);
+    }
+
+    /**
+     * Returns the number of indexed execution ids.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of sealed segments.
+     */
+    int getNumberOfSealedSegments() {
+        lock.readLock().lock();
+        try {
+            return sealedSegments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) { }
+    }
+
+    /**
+     * Closes the active segment. Any subsequent operation fails.
+     *
+     * <p>The active segment is not sealed, so that no (small) sealed segment is created each time the service is
+     * stopped. Instead, the active segment is scanned when the log is opened the next time.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            sealedSegments.clear();
+            if (activeChannel != null) {
+                activeChannel.force(true);
+                activeChannel.close();
+                activeChannel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.svbio.workflow.service;
+
+/**
+ * Compact hash map from positive {@code long} keys to {@code long} values.
+ *
+ * <p>Keys and values are stored in primitive arrays (open addressing with linear probing), so that an entry takes 16
+ * bytes (at the maximum load factor of 0.5, 32 bytes of array space) instead of the more than 80 bytes needed by a
+ * {@code HashMap<Long, Long>} entry. The arrays are doubled when the load factor would exceed 0.5, and they are never
+ * shrunk. Entries are removed with backward-shift deletion, so that no tombstones are left behind. This class is not
+ * thread-safe.
+ */
+final class LongToLongIndex {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long EMPTY_KEY = 0;
+
+    private long[] keys;
+    private long[] values;
+    private int size = 0;
+
+    LongToLongIndex() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the slot where a probe for the given key starts.
+     */
+    private static int home(long key, int mask) {
+        // Execution ids are mostly sequential, so spread the bits (Murmur3 finalizer) before masking.
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    /**
+     * Returns the slot of the given key, or the empty slot where the key would be inserted.
+     */
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Associates the given value with the given key, replacing any previous value.
+     *
+     * @param key key, must be positive
+     * @param value value
+     * @throws IllegalArgumentException if the key is not positive
+     */
+    void put(long key, long value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException(String.format("Expected positive key, but got %d.", key));
+        }
+
+        if (2 * (size + 1) > keys.length) {
+            resize();
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == EMPTY_KEY) {
+            keys[slot] = key;
+            ++size;
+        }
+        values[slot] = value;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the value associated with the given key, or the given default value if there is none.
+     */
+    long get(long key, long defaultValue) {
+        if (key <= 0) {
+            return defaultValue;
+        }
+        int slot = slot(keys, key);
+        return keys[slot] == EMPTY_KEY
+            ? defaultValue
+            : values[slot];
+    }
+
+    /**
+     * Removes the entry for the given key, if any.
+     *
+     * @param key key
+     * @return whether an entry was removed
+     */
+    boolean remove(long key) {
+        if (key <= 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int hole = slot(keys, key);
+        if (keys[hole] == EMPTY_KEY) {
+            return false;
+        }
+
+        // Shift subsequent entries of the probe sequence back into the hole, unless that would move an entry before
+        // its home slot.
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY_KEY;
+        values[hole] = 0;
+        --size;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+}
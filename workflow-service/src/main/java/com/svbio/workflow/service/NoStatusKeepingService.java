@@ -1,6 +1,8 @@
 package com.svbio.workflow.service;
 
 import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 
 import java.util.concurrent.CompletableFuture;
@@ -20,4 +22,15 @@ final class NoStatusKeepingService implements StatusKeepingService {
         future.completeExceptionally(new UnknownExecutionIdException(executionId));
         return future;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Since this implementation does not keep any execution statuses, the returned future is completed with an empty
+     * list.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        return CompletableFuture.completedFuture(new ExecutionStatusList());
+    }
 }
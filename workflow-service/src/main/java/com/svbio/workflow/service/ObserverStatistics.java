@@ -0,0 +1,62 @@
+package com.svbio.workflow.service;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the acknowledgement statistics of a blocking {@link ExecutionObserver}.
+ *
+ * <p>The latency of an acknowledgement is the time between sending a {@link StopExecutionEvent} message and receiving
+ * the observer's response. Timeouts are not included in the latency figures.
+ */
+final class ObserverStatistics {
+    private final String observerName;
+    private final long acknowledgedCount;
+    private final long timeoutCount;
+    private final long totalLatencyMillis;
+    private final long maxLatencyMillis;
+
+    ObserverStatistics(String observerName, long acknowledgedCount, long timeoutCount, long totalLatencyMillis,
+            long maxLatencyMillis) {
+        this.observerName = Objects.requireNonNull(observerName);
+        this.acknowledgedCount = acknowledgedCount;
+        this.timeoutCount = timeoutCount;
+        this.totalLatencyMillis = totalLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("statistics of execution observer '%s' (acknowledged = %d, timeouts = %d, "
+            + "mean latency = %.1f ms, max latency = %d ms)", observerName, acknowledgedCount, timeoutCount,
+            getMeanLatencyMillis(), maxLatencyMillis);
+    }
+
+    String getObserverName() {
+        return observerName;
+    }
+
+    long getAcknowledgedCount() {
+        return acknowledgedCount;
+    }
+
+    long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    long getTotalLatencyMillis() {
+        return totalLatencyMillis;
+    }
+
+    long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * Returns the mean acknowledgement latency (in milliseconds), or 0 if there have not been any acknowledgements.
+     */
+    double getMeanLatencyMillis() {
+        return acknowledgedCount == 0
+            ? 0
+            : (double) totalLatencyMillis / acknowledgedCount;
+    }
+}
@@ -0,0 +1,77 @@
+package com.svbio.workflow.service;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter for background I/O.
+ *
+ * <p>Permits are replenished continuously at the configured rate, and at most one second's worth of permits can be
+ * accumulated (so that a short burst after an idle period is possible, but a long idle period does not allow an
+ * arbitrarily large burst). A request for more permits than are available is granted by going into debt: The caller
+ * sleeps until the debt would have been repaid.
+ *
+ * <p>This class is not thread-safe. It is meant to be used by a single background thread.
+ */
+final class RateLimiter {
+    private final Clock clock;
+    private final double permitsPerTimeUnit;
+    private final double maxStoredPermits;
+    private double storedPermits;
+    private long lastUpdate;
+
+    /**
+     * Constructor.
+     *
+     * @param clock clock used for measuring the elapsed time
+     * @param permitsPerSecond number of permits per second, must be positive
+     * @throws IllegalArgumentException if the rate is not positive
+     */
+    RateLimiter(Clock clock, long permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive number of permits per second, but got %d.", permitsPerSecond
+            ));
+        }
+
+        this.clock = Objects.requireNonNull(clock);
+        permitsPerTimeUnit = permitsPerSecond / (double) clock.getTimeUnit().convert(1, TimeUnit.SECONDS);
+        maxStoredPermits = permitsPerSecond;
+        storedPermits = maxStoredPermits;
+        lastUpdate = clock.getCurrentTime();
+    }
+
+    /**
+     * Takes the given number of permits and returns the time (in the time unit of the clock) that the caller has to
+     * wait before proceeding.
+     *
+     * @param permits number of permits, must not be negative
+     * @return the time to wait, 0 if the permits were available
+     */
+    long reserve(int permits) {
+        if (permits < 0) {
+            throw new IllegalArgumentException(String.format("Expected non-negative permits, but got %d.", permits));
+        }
+
+        long currentTime = clock.getCurrentTime();
+        storedPermits = Math.min(maxStoredPermits, storedPermits + (currentTime - lastUpdate) * permitsPerTimeUnit);
+        lastUpdate = currentTime;
+        storedPermits -= permits;
+        return storedPermits >= 0
+            ? 0
+            : (long) Math.ceil(-storedPermits / permitsPerTimeUnit);
+    }
+
+    /**
+     * Takes the given number of permits, sleeping if necessary.
+     *
+     * @param permits number of permits, must not be negative
+     * @throws InterruptedException if the current thread was interrupted while sleeping
+     */
+    void acquire(int permits) throws InterruptedException {
+        long waitTime = reserve(permits);
+        if (waitTime > 0) {
+            clock.getTimeUnit().sleep(waitTime);
+        }
+    }
+}
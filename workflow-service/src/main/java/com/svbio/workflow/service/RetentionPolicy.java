@@ -0,0 +1,142 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionStatus;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable retention settings for persisted execution statuses and logged executions.
+ *
+ * <p>Retention of execution statuses is configured per terminal status (see
+ * {@link ExecutionStatus.Status#isTerminal()}). Execution statuses with a non-terminal status are never removed,
+ * because they may belong to workflow executions that are still running. Executions recorded by the database logger
+ * have a separate limit.
+ *
+ * @see RetentionSweeper
+ */
+final class RetentionPolicy {
+    /**
+     * Policy that retains everything.
+     */
+    static final RetentionPolicy UNLIMITED = new RetentionPolicy(Collections.emptyMap(), Limit.UNLIMITED);
+
+    private final EnumMap<ExecutionStatus.Status, Limit> limits = new EnumMap<>(ExecutionStatus.Status.class);
+    private final Limit executionLogLimit;
+
+    /**
+     * Retention limit for a kind of entries.
+     */
+    static final class Limit {
+        /**
+         * Limit that retains everything.
+         */
+        static final Limit UNLIMITED = new Limit(0, 0);
+
+        private final long maxAgeMillis;
+        private final int maxCount;
+
+        /**
+         * Constructor.
+         *
+         * @param maxAgeMillis age (in milliseconds) above which entries are removed, or 0 if there is no maximum age
+         * @param maxCount number of entries (with the largest execution ids) that are retained, or 0 if there is no
+         *     maximum count
+         * @throws IllegalArgumentException if an argument is negative
+         */
+        Limit(long maxAgeMillis, int maxCount) {
+            if (maxAgeMillis < 0 || maxCount < 0) {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid retention limit (maximum age = %d ms, maximum count = %d).", maxAgeMillis, maxCount
+                ));
+            }
+            this.maxAgeMillis = maxAgeMillis;
+            this.maxCount = maxCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("maximum age = %d ms, maximum count = %d", maxAgeMillis, maxCount);
+        }
+
+        boolean isUnlimited() {
+            return maxAgeMillis == 0 && maxCount == 0;
+        }
+
+        /**
+         * Returns the maximum age in milliseconds, or 0 if there is no maximum age.
+         */
+        long getMaxAgeMillis() {
+            return maxAgeMillis;
+        }
+
+        /**
+         * Returns the maximum number of retained entries, or 0 if there is no maximum count.
+         */
+        int getMaxCount() {
+            return maxCount;
+        }
+
+        /**
+         * Returns whether an entry with the given timestamp has exceeded the maximum age.
+         *
+         * @param timestampMillis time (in milliseconds since the epoch) from which the age of the entry is measured
+         * @param currentTimeMillis current time (in milliseconds since the epoch)
+         * @return whether the entry has exceeded the maximum age; always {@code false} if there is no maximum age
+         */
+        boolean isExpired(long timestampMillis, long currentTimeMillis) {
+            return maxAgeMillis > 0 && currentTimeMillis - timestampMillis > maxAgeMillis;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param limits map from terminal statuses to retention limits; statuses not contained in the map are retained
+     *     without limit
+     * @param executionLogLimit retention limit for the executions recorded by the database logger
+     * @throws IllegalArgumentException if the map contains a non-terminal status
+     */
+    RetentionPolicy(Map<ExecutionStatus.Status, Limit> limits, Limit executionLogLimit) {
+        for (Map.Entry<ExecutionStatus.Status, Limit> entry: limits.entrySet()) {
+            ExecutionStatus.Status status = Objects.requireNonNull(entry.getKey());
+            if (!status.isTerminal()) {
+                throw new IllegalArgumentException(String.format(
+                    "Expected retention limits only for terminal statuses, but got %s.", status
+                ));
+            }
+            this.limits.put(status, Objects.requireNonNull(entry.getValue()));
+        }
+        this.executionLogLimit = Objects.requireNonNull(executionLogLimit);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("retention policy (%s, execution log: %s)", limits, executionLogLimit);
+    }
+
+    /**
+     * Returns whether this policy retains everything.
+     */
+    boolean isUnlimited() {
+        return limits.values().stream().allMatch(Limit::isUnlimited) && executionLogLimit.isUnlimited();
+    }
+
+    /**
+     * Returns the retention limit for the given status, guaranteed not null.
+     */
+    Limit getLimit(ExecutionStatus.Status status) {
+        return limits.getOrDefault(status, Limit.UNLIMITED);
+    }
+
+    /**
+     * Returns the retention limit for the executions recorded by the database logger, guaranteed not null.
+     *
+     * <p>The database logger does not record the status of an execution, so there is a single limit for all of them.
+     */
+    Limit getExecutionLogLimit() {
+        return executionLogLimit;
+    }
+}
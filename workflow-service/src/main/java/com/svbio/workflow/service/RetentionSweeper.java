@@ -0,0 +1,86 @@
+package com.svbio.workflow.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xyz.cloudkeeper.model.util.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background task that applies a {@link RetentionPolicy} to a list of {@link RetentionTarget} instances.
+ *
+ * <p>Each call of {@link #run()} performs one sweep over all targets. The sweeper is meant to be scheduled with a
+ * fixed delay on a dedicated low-priority thread, so that sweeps never overlap and never occupy threads that serve
+ * foreground requests. All targets share a single {@link RateLimiter}, which bounds the I/O rate of the sweeper as a
+ * whole.
+ *
+ * <p>A failure of one target is logged and does not prevent the other targets from being swept. Since every sweep
+ * starts from scratch, a failed or interrupted sweep is simply continued by the next one.
+ */
+final class RetentionSweeper implements Runnable {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ImmutableList<RetentionTarget> targets;
+    private final RetentionPolicy policy;
+    private final Clock clock;
+    private final RateLimiter rateLimiter;
+    private final LongAdder removedCount = new LongAdder();
+    private final LongAdder sweepCount = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param targets retention targets
+     * @param policy retention policy
+     * @param clock wall clock used for determining the age of entries
+     * @param rateLimiter rate limiter shared by all targets
+     */
+    RetentionSweeper(List<RetentionTarget> targets, RetentionPolicy policy, Clock clock, RateLimiter rateLimiter) {
+        this.targets = ImmutableList.copyOf(targets);
+        this.policy = Objects.requireNonNull(policy);
+        this.clock = Objects.requireNonNull(clock);
+        this.rateLimiter = Objects.requireNonNull(rateLimiter);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("retention sweeper (%s, %d targets)", policy, targets.size());
+    }
+
+    @Override
+    public void run() {
+        long currentTimeMillis = clock.getTimeUnit().toMillis(clock.getCurrentTime());
+        for (RetentionTarget target: targets) {
+            try {
+                long removed = target.sweep(policy, currentTimeMillis, rateLimiter);
+                removedCount.add(removed);
+                if (removed > 0) {
+                    log.info("Removed {} entries from {} according to {}.", removed, target, policy);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException exception) {
+                // Must not propagate, because that would suppress all subsequent runs of the scheduled task.
+                log.warn(String.format("Failed to sweep %s.", target), exception);
+            }
+        }
+        sweepCount.increment();
+    }
+
+    /**
+     * Returns the total number of removed entries.
+     */
+    long getNumberOfRemovedEntries() {
+        return removedCount.sum();
+    }
+
+    /**
+     * Returns the number of completed sweeps.
+     */
+    long getNumberOfSweeps() {
+        return sweepCount.sum();
+    }
+}
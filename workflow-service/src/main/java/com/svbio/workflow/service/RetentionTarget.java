@@ -0,0 +1,28 @@
+package com.svbio.workflow.service;
+
+import java.io.IOException;
+
+/**
+ * Store whose entries are subject to a {@link RetentionPolicy}.
+ *
+ * <p>Implementations remove the entries that exceed the retention limits. Sweeping is a background activity that
+ * competes with foreground requests for I/O bandwidth and locks. Implementations are therefore expected to work in
+ * small increments (for instance, short transactions or short lock hold times) and to acquire permits from the given
+ * {@link RateLimiter} for their I/O operations, roughly one permit per entry that is examined or removed.
+ */
+interface RetentionTarget {
+    /**
+     * Removes the entries that exceed the given retention limits.
+     *
+     * <p>This method is only called by the single thread of the {@link RetentionSweeper}. It may block.
+     *
+     * @param policy retention policy
+     * @param currentTimeMillis current time in milliseconds since the epoch
+     * @param rateLimiter rate limiter for I/O operations
+     * @return number of removed entries
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if the current thread was interrupted while waiting for the rate limiter
+     */
+    long sweep(RetentionPolicy policy, long currentTimeMillis, RateLimiter rateLimiter)
+        throws IOException, InterruptedException;
+}
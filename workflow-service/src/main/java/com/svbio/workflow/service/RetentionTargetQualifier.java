@@ -0,0 +1,10 @@
+package com.svbio.workflow.service;
+
+import javax.inject.Qualifier;
+
+/**
+ * Qualifier for the set of {@link RetentionTarget} instances (other than the status-keeping service) that are swept
+ * by the {@link RetentionSweeper}.
+ */
+@Qualifier
+@interface RetentionTargetQualifier { }
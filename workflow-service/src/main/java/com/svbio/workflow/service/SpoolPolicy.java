@@ -0,0 +1,89 @@
+package com.svbio.workflow.service;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+
+/**
+ * Immutable settings of the {@link EventSpool} of a {@link DatabaseLoggingActor}.
+ */
+final class SpoolPolicy {
+    /**
+     * Policy that disables spooling, that is, events are written to the database only.
+     */
+    static final SpoolPolicy DISABLED = new SpoolPolicy(null, 1 << 20, false, 0);
+
+    @Nullable private final Path directory;
+    private final int segmentSize;
+    private final boolean force;
+    private final long retryIntervalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param directory base directory of the spools of all database writers, or {@code null} if spooling is disabled
+     * @param segmentSize size (in bytes) of the segment files, must be within the bounds documented in
+     *     {@link EventSpool#openUnclaimed(Path, int)}
+     * @param force whether the spool is forced to the storage device after each batch of events
+     * @param retryIntervalMillis time (in milliseconds) after which writing spooled events is retried if the database
+     *     is not available
+     * @throws IllegalArgumentException if the segment size is out of bounds or the retry interval is negative
+     */
+    SpoolPolicy(@Nullable Path directory, int segmentSize, boolean force, long retryIntervalMillis) {
+        if (segmentSize < EventSpool.MIN_SEGMENT_SIZE || segmentSize > EventSpool.MAX_SEGMENT_SIZE
+                || retryIntervalMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid spool policy (segment size = %d bytes, retry interval = %d ms).",
+                segmentSize, retryIntervalMillis
+            ));
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.force = force;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return directory == null
+            ? "spool policy (disabled)"
+            : String.format(
+                "spool policy (directory = %s, segment size = %d bytes, force = %s, retry interval = %d ms)",
+                directory, segmentSize, force, retryIntervalMillis
+            );
+    }
+
+    /**
+     * Returns a policy with the same settings, except for the given base directory.
+     */
+    SpoolPolicy withDirectory(Path newDirectory) {
+        return new SpoolPolicy(newDirectory, segmentSize, force, retryIntervalMillis);
+    }
+
+    boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Returns the base directory of the spools.
+     *
+     * @throws IllegalStateException if spooling is disabled
+     */
+    Path getDirectory() {
+        if (directory == null) {
+            throw new IllegalStateException(String.format("%s does not have a directory.", this));
+        }
+        return directory;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    boolean isForce() {
+        return force;
+    }
+
+    long getRetryIntervalMillis() {
+        return retryIntervalMillis;
+    }
+}
@@ -0,0 +1,109 @@
+package com.svbio.workflow.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Background task that logs the statistics of the components of the workflow service.
+ *
+ * <p>Components register a source of statistics (typically, a method reference to a getter that returns an immutable
+ * snapshot) with {@link #addSource(String, Supplier)} or {@link #addWarningSource(String, Supplier)}. Each call of
+ * {@link #run()} logs the string representation of the statistics of each source, unless it is unchanged since the
+ * last time it was logged (or since the source was added). An idle service therefore does not produce any log lines.
+ * Statistics of warning sources (for instance, counters of discarded events) are logged at level warning, all others
+ * at level info.
+ *
+ * <p>The reporter is meant to be scheduled with a fixed delay (see setting {@code com.svbio.workflow.statistics}).
+ *
+ * <p>This class is thread-safe.
+ */
+final class StatisticsReporter implements Runnable {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final CopyOnWriteArrayList<Source> sources = new CopyOnWriteArrayList<>();
+
+    private static final class Source {
+        private final String name;
+        private final Supplier<?> statistics;
+        private final boolean warning;
+        @Nullable private volatile String lastReported;
+
+        private Source(String name, Supplier<?> statistics, boolean warning) {
+            this.name = Objects.requireNonNull(name);
+            this.statistics = Objects.requireNonNull(statistics);
+            this.warning = warning;
+            try {
+                lastReported = String.valueOf(statistics.get());
+            } catch (RuntimeException ignored) {
+                // The failure is logged by the next run.
+                lastReported = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("statistics reporter (%d sources)", sources.size());
+    }
+
+    /**
+     * Adds a source of statistics that are logged at level info.
+     *
+     * @param name name of the source, used as prefix of the log lines
+     * @param statistics supplier of the current statistics, whose string representation is logged
+     */
+    void addSource(String name, Supplier<?> statistics) {
+        sources.add(new Source(name, statistics, false));
+    }
+
+    /**
+     * Adds a source of statistics that are logged at level warning. Such statistics should only change if the service
+     * is degraded.
+     *
+     * @param name name of the source, used as prefix of the log lines
+     * @param statistics supplier of the current statistics, whose string representation is logged
+     */
+    void addWarningSource(String name, Supplier<?> statistics) {
+        sources.add(new Source(name, statistics, true));
+    }
+
+    @Override
+    public void run() {
+        for (Source source: sources) {
+            try {
+                String current = String.valueOf(source.statistics.get());
+                if (!current.equals(source.lastReported)) {
+                    source.lastReported = current;
+                    if (source.warning) {
+                        log.warn("{}: {}", source.name, current);
+                    } else {
+                        log.info("{}: {}", source.name, current);
+                    }
+                }
+            } catch (RuntimeException exception) {
+                // Must not propagate, because that would suppress all subsequent runs of the scheduled task.
+                log.warn(String.format("Failed to obtain statistics of %s.", source.name), exception);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the given source that were last logged (or obtained when the source was added), or
+     * {@code null} if there is no such source or its statistics could not be obtained yet.
+     *
+     * <p>This method only exists for unit-testing purposes and should not be used otherwise.
+     */
+    @Nullable
+    String getLastReported(String name) {
+        for (Source source: sources) {
+            if (source.name.equals(name)) {
+                return source.lastReported;
+            }
+        }
+        return null;
+    }
+}
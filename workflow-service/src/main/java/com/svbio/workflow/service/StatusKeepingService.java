@@ -1,7 +1,13 @@
 package com.svbio.workflow.service;
 
+import com.svbio.workflow.api.ErrorSummary;
 import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import com.svbio.workflow.api.UnknownExecutionIdException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -11,6 +17,10 @@ interface StatusKeepingService {
     /**
      * Persists the given execution status so that it may be retrieved later with {@link #loadExecutionStatus}.
      *
+     * <p>The given instance is an immutable snapshot: The caller guarantees that it is not modified after this method
+     * has been called, and implementations must not modify it either. Implementations may therefore retain a reference
+     * instead of copying it.
+     *
      * @param executionStatus the execution status to be persisted
      * @return future that will be completed with the argument in case of success and an {@link Exception} in case of
      *     failure
@@ -18,6 +28,30 @@ interface StatusKeepingService {
      */
     CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus);
 
+    /**
+     * Persists the given execution statuses as one batch.
+     *
+     * <p>The returned future is completed exceptionally if any of the execution statuses could not be persisted. In
+     * this case, it is unspecified which (if any) of the execution statuses have been persisted.
+     *
+     * <p>This default implementation calls {@link #persistExecutionStatus(ExecutionStatus)} for each execution status
+     * and ignores {@code sync}. Implementations should override this method if they can write a batch more efficiently
+     * than individual execution statuses, or if they support forcing writes to the storage device.
+     *
+     * @param executionStatuses the execution statuses to be persisted, see
+     *     {@link #persistExecutionStatus(ExecutionStatus)} for the immutability guarantees
+     * @param sync whether the execution statuses must be forced to the storage device (if applicable) before the
+     *     returned future is completed
+     * @return future that will be completed with {@code null} in case of success and an {@link Exception} in case of
+     *     failure
+     * @throws IllegalArgumentException if one of the given execution statuses does not have an execution id
+     */
+    default CompletableFuture<Void> persistExecutionStatuses(List<ExecutionStatus> executionStatuses, boolean sync) {
+        return CompletableFuture.allOf(
+            executionStatuses.stream().map(this::persistExecutionStatus).toArray(CompletableFuture<?>[]::new)
+        );
+    }
+
     /**
      * Returns a future that will be completed with the execution status for the given id.
      *
@@ -27,4 +61,89 @@ interface StatusKeepingService {
      *     {@link Exception} in case of any other failure
      */
     CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId);
+
+    /**
+     * Returns a future that will be completed with the execution statuses for the given ids.
+     *
+     * <p>The list in the completed future contains the known execution statuses in the order of the given ids.
+     * Unknown execution ids are omitted, so the list may be shorter than the list of ids.
+     *
+     * <p>This default implementation calls {@link #loadExecutionStatus(long)} for each execution id. Implementations
+     * should override this method if they can load multiple execution statuses more efficiently.
+     *
+     * @param executionIds the CloudKeeper execution ids
+     * @return future that will be completed with the list of known execution statuses in case of success, or an
+     *     {@link Exception} in case of any failure other than an unknown execution id
+     */
+    default CompletableFuture<List<ExecutionStatus>> loadExecutionStatuses(List<Long> executionIds) {
+        ExecutionStatus[] executionStatuses = new ExecutionStatus[executionIds.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[executionIds.size()];
+        for (int i = 0; i < futures.length; ++i) {
+            int index = i;
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            loadExecutionStatus(executionIds.get(i)).whenComplete((executionStatus, throwable) -> {
+                if (throwable == null) {
+                    executionStatuses[index] = executionStatus;
+                    future.complete(null);
+                } else if (throwable instanceof UnknownExecutionIdException) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            });
+            futures[i] = future;
+        }
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            List<ExecutionStatus> list = new ArrayList<>(executionStatuses.length);
+            for (ExecutionStatus executionStatus: executionStatuses) {
+                if (executionStatus != null) {
+                    list.add(executionStatus);
+                }
+            }
+            return list;
+        });
+    }
+
+    /**
+     * Returns a future that will be completed with the persisted execution statuses that match the given query.
+     *
+     * <p>The list in the completed future is ordered by execution id and contains at most
+     * {@link ExecutionStatusQuery#getLimit()} elements (if the limit is non-zero). If there are more matching execution
+     * statuses, {@link ExecutionStatusList#getNextCursor()} is set. The projection of the query is ignored by this
+     * method; that is, the list always contains full execution statuses.
+     *
+     * <p>This default implementation returns a future that is completed exceptionally with an
+     * {@link UnsupportedOperationException}.
+     *
+     * @param query the query
+     * @return future that will be completed with the matching execution statuses in case of success, an
+     *     {@link UnsupportedOperationException} if this status-keeping service does not support queries, or an
+     *     {@link Exception} in case of any other failure
+     */
+    default CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        CompletableFuture<ExecutionStatusList> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException(String.format(
+            "%s does not support queries.", getClass().getSimpleName()
+        )));
+        return future;
+    }
+
+    /**
+     * Returns a future that will be completed with the most frequent failures of the persisted execution statuses.
+     *
+     * <p>This default implementation returns a future that is completed exceptionally with an
+     * {@link UnsupportedOperationException}.
+     *
+     * @param limit maximum number of errors, positive
+     * @return future that will be completed with the list of errors, ordered by decreasing number of occurrences, in
+     *     case of success, an {@link UnsupportedOperationException} if this status-keeping service does not record
+     *     errors, or an {@link Exception} in case of any other failure
+     */
+    default CompletableFuture<List<ErrorSummary>> getTopErrors(int limit) {
+        CompletableFuture<List<ErrorSummary>> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException(String.format(
+            "%s does not record errors.", getClass().getSimpleName()
+        )));
+        return future;
+    }
 }
@@ -4,7 +4,8 @@ package com.svbio.workflow.service;
  * Event to indicate that the execution of a workflow has ended.
  *
  * <p>A response (which can be an arbitrary {@link Object}) is expected to be sent once the receiver of this message
- * has entirely finished handling the execution id represented by this message.
+ * has entirely finished handling the execution id represented by this message. The response is awaited only from
+ * blocking observers; see {@link ExecutionObserver}.
  */
 final class StopExecutionEvent extends ExecutionEvent {
     StopExecutionEvent(long executionId) {
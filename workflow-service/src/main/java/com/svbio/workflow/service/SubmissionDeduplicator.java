@@ -0,0 +1,469 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import xyz.cloudkeeper.model.api.WorkflowExecution;
+import xyz.cloudkeeper.model.runtime.execution.RuntimeAnnotatedExecutionTrace;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed registry of workflow executions that answers identical requests with the same workflow execution.
+ *
+ * <p>Requests are identified by the SHA-256 digest of their XML representation, which covers the module, the
+ * overrides, the bundle identifiers, the prefix, the cleaning flag, and the tenant. The digest is computed once per
+ * submission; neither the request nor its module is retained. A request is answered with an earlier workflow execution
+ * if that execution is still running (or queued), or if it finished successfully no longer than
+ * {@link DeduplicationPolicy#getWindowMillis()} ago. Workflow executions that failed or were cancelled are forgotten as
+ * soon as they finish.
+ *
+ * <p>The inputs are not part of a request: They are read from the staging area, under the prefix of the request. Two
+ * requests that are submitted with different inputs staged under the same prefix are therefore identical. Clients that
+ * replace the staged inputs need to use a new prefix, or the window needs to be 0, so that only running workflow
+ * executions are reused.
+ *
+ * <p>Each request is answered with its own {@link WorkflowExecution} handle. Cancelling a handle only withdraws that
+ * request: The shared workflow execution is cancelled once the handles of all requests that it answers have been
+ * withdrawn, either by {@link WorkflowExecution#cancel()} or by {@link #release(long)}. Until then,
+ * {@link WorkflowExecution#cancel()} returns {@code false}, and the futures of the withdrawn handle still reflect the
+ * shared workflow execution. Each handle is withdrawn at most once.
+ *
+ * <p>If more than {@link DeduplicationPolicy#getMaxSize()} requests are remembered, the least-recently used requests
+ * whose workflow execution has finished are forgotten. Requests whose workflow execution is still running are never
+ * forgotten, because their handles rely on the number of requests sharing the workflow execution. This class is
+ * thread-safe.
+ */
+final class SubmissionDeduplicator {
+    private final DeduplicationPolicy policy;
+    private final Clock clock;
+    private final JAXBContext jaxbContext;
+
+    /**
+     * All remembered requests, by digest. Guarded by the lock of this map.
+     */
+    private final Map<Digest, Entry> entries = new HashMap<>();
+
+    /**
+     * Entries of {@link #entries} whose workflow execution has finished, in access order. Guarded by the lock of
+     * {@link #entries}.
+     */
+    private final LinkedHashMap<Digest, Entry> finishedEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Entries of {@link #entries} whose execution id is known, by execution id. Guarded by the lock of
+     * {@link #entries}.
+     */
+    private final Map<Long, Entry> entriesByExecutionId = new HashMap<>();
+
+    /**
+     * Entries of {@link #entries} with a started workflow execution whose execution id has not been recorded yet.
+     * Guarded by the lock of {@link #entries}.
+     */
+    private final Set<Entry> entriesWithoutExecutionId = new HashSet<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    SubmissionDeduplicator(DeduplicationPolicy policy, Clock clock) {
+        if (!policy.isEnabled()) {
+            throw new IllegalArgumentException(String.format("Expected enabled %s.", policy));
+        }
+
+        this.policy = policy;
+        this.clock = clock;
+        try {
+            jaxbContext = JAXBContext.newInstance(ExecuteWorkflowRequest.class);
+        } catch (JAXBException exception) {
+            throw new IllegalStateException("Failed to create JAXB context.", exception);
+        }
+    }
+
+    /**
+     * SHA-256 digest of the XML representation of a request.
+     */
+    private static final class Digest {
+        private final byte[] bytes;
+
+        private Digest(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object otherObject) {
+            return this == otherObject
+                || (otherObject instanceof Digest && Arrays.equals(bytes, ((Digest) otherObject).bytes));
+        }
+
+        @Override
+        public int hashCode() {
+            // The bytes of a cryptographic hash are uniformly distributed.
+            return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+        }
+    }
+
+    /**
+     * Returns the digest of the given request, or {@code null} if the request cannot be represented as XML.
+     */
+    @Nullable
+    private Digest digest(ExecuteWorkflowRequest request) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is a required algorithm of every Java platform.", exception);
+        }
+        OutputStream nullOutputStream = new OutputStream() {
+            @Override
+            public void write(int value) { }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) { }
+        };
+        try {
+            jaxbContext.createMarshaller().marshal(request, new DigestOutputStream(nullOutputStream, messageDigest));
+        } catch (JAXBException exception) {
+            return null;
+        }
+        return new Digest(messageDigest.digest());
+    }
+
+    private static final class Entry {
+        private final Digest key;
+
+        /**
+         * Future that is completed with the workflow execution once it has been started, or exceptionally if starting
+         * it failed.
+         */
+        private final CompletableFuture<WorkflowExecution> workflowExecution = new CompletableFuture<>();
+
+        /**
+         * Time (in milliseconds) when the workflow execution finished successfully, or {@code null} if it is still
+         * running. Guarded by the lock of {@link #entries}.
+         */
+        @Nullable private Long finishTimeMillis;
+
+        /**
+         * Execution id of the workflow execution, or {@code null} if it is not known yet. Guarded by the lock of
+         * {@link #entries}.
+         */
+        @Nullable private Long executionId;
+
+        /**
+         * Handles of the requests answered with the workflow execution that have not been withdrawn, in the order in
+         * which they were created, or an empty set if the workflow execution has finished. Guarded by the lock of
+         * {@link #entries}.
+         */
+        private final Set<Handle> handles = new LinkedHashSet<>();
+
+        private Entry(Digest key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Removes the given entry, unless it has been replaced (or removed) before. The caller must hold the lock of
+     * {@link #entries}.
+     */
+    private void remove(Entry entry) {
+        if (entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            finishedEntries.remove(entry.key);
+            entriesWithoutExecutionId.remove(entry);
+            if (entry.executionId != null) {
+                entriesByExecutionId.remove(entry.executionId, entry);
+            }
+        }
+    }
+
+    /**
+     * Forgets least-recently used finished entries while more entries are remembered than allowed. The caller must
+     * hold the lock of {@link #entries}.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = finishedEntries.values().iterator();
+        while (entries.size() > policy.getMaxSize() && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            evictionCount.increment();
+            remove(eldest);
+        }
+    }
+
+    /**
+     * Records the execution id of the given entry if it is known. The caller must hold the lock of {@link #entries}.
+     */
+    private void recordExecutionId(Entry entry, WorkflowExecution workflowExecution) {
+        @Nullable Long executionId = workflowExecution.getExecutionId().getNow(null);
+        if (executionId != null && entries.get(entry.key) == entry && entry.executionId == null) {
+            entry.executionId = executionId;
+            entriesByExecutionId.put(executionId, entry);
+            entriesWithoutExecutionId.remove(entry);
+        }
+    }
+
+    /**
+     * Withdraws the request of the given handle, and returns whether the workflow execution needs to be cancelled
+     * because no request is left. The caller must hold the lock of {@link #entries}.
+     *
+     * <p>Withdrawing a handle that has been withdrawn before has no effect and returns {@code false}. Therefore, only
+     * the withdrawal of the last handle returns {@code true}.
+     */
+    private boolean withdraw(Handle handle) {
+        Entry entry = handle.entry;
+        if (!entry.handles.remove(handle) || !entry.handles.isEmpty()) {
+            return false;
+        }
+        // No request may be answered with a workflow execution that is being cancelled.
+        remove(entry);
+        return true;
+    }
+
+    private long currentTimeMillis() {
+        return clock.getTimeUnit().toMillis(clock.getCurrentTime());
+    }
+
+    /**
+     * Returns a new handle of the workflow execution for an identical earlier request if there is one that may be
+     * reused, or otherwise starts a new workflow execution with the given supplier and returns a handle of it.
+     *
+     * <p>The supplier is called without holding a lock. Concurrent identical requests are nonetheless guaranteed to
+     * start only one workflow execution: While the supplier is running, a placeholder is registered for the request,
+     * and identical requests wait until the supplier has returned. If the supplier fails, one of the waiting requests
+     * starts a new workflow execution.
+     *
+     * @param request the request, which must not be modified while this method is running
+     * @param starter supplier that starts a new workflow execution for the request
+     * @return handle of the reused or newly started workflow execution
+     */
+    WorkflowExecution startOrReuse(ExecuteWorkflowRequest request, Supplier<WorkflowExecution> starter) {
+        @Nullable Digest key = digest(request);
+        if (key == null) {
+            missCount.increment();
+            return starter.get();
+        }
+
+        while (true) {
+            Entry entry;
+            Handle handle;
+            boolean reused = false;
+            synchronized (entries) {
+                @Nullable Entry existingEntry = entries.get(key);
+                if (existingEntry != null) {
+                    @Nullable Long finishTimeMillis = existingEntry.finishTimeMillis;
+                    if (finishTimeMillis == null) {
+                        reused = true;
+                    } else if (currentTimeMillis() - finishTimeMillis <= policy.getWindowMillis()) {
+                        // Mark as recently used
+                        finishedEntries.get(key);
+                        reused = true;
+                    } else {
+                        remove(existingEntry);
+                    }
+                }
+
+                if (reused) {
+                    hitCount.increment();
+                    entry = existingEntry;
+                } else {
+                    missCount.increment();
+                    entry = new Entry(key);
+                    entries.put(key, entry);
+                    evict();
+                }
+                handle = new Handle(entry);
+                if (entry.finishTimeMillis == null) {
+                    entry.handles.add(handle);
+                }
+            }
+
+            if (reused) {
+                try {
+                    entry.workflowExecution.join();
+                    return handle;
+                } catch (CompletionException ignored) {
+                    // Starting the workflow execution for the identical request failed, and the placeholder has been
+                    // removed. Try again.
+                    continue;
+                }
+            }
+            return start(entry, handle, starter);
+        }
+    }
+
+    /**
+     * Starts the workflow execution for the given placeholder entry, and returns the given handle of it.
+     */
+    private WorkflowExecution start(Entry entry, Handle handle, Supplier<WorkflowExecution> starter) {
+        WorkflowExecution workflowExecution;
+        try {
+            workflowExecution = starter.get();
+        } catch (RuntimeException | Error exception) {
+            synchronized (entries) {
+                remove(entry);
+            }
+            entry.workflowExecution.completeExceptionally(exception);
+            throw exception;
+        }
+
+        entry.workflowExecution.complete(workflowExecution);
+        synchronized (entries) {
+            if (entries.get(entry.key) == entry) {
+                entriesWithoutExecutionId.add(entry);
+                recordExecutionId(entry, workflowExecution);
+            }
+        }
+        workflowExecution.getExecutionId().thenAccept(executionId -> {
+            synchronized (entries) {
+                recordExecutionId(entry, workflowExecution);
+            }
+        });
+        workflowExecution.toCompletableFuture().whenComplete((ignored, throwable) -> {
+            synchronized (entries) {
+                if (entries.get(entry.key) != entry) {
+                    return;
+                }
+                if (throwable == null && policy.getWindowMillis() > 0) {
+                    entry.finishTimeMillis = currentTimeMillis();
+                    // Handles of a finished workflow execution can no longer be withdrawn.
+                    entry.handles.clear();
+                    finishedEntries.put(entry.key, entry);
+                    evict();
+                } else {
+                    remove(entry);
+                }
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Withdraws one of the requests answered with the running workflow execution with the given execution id, and
+     * returns whether the workflow execution needs to be cancelled.
+     *
+     * <p>This method is meant for stopping a workflow execution by execution id, where it is unknown which of the
+     * requests is withdrawn. It withdraws the eldest handle that has not been withdrawn yet, so that a later
+     * {@link WorkflowExecution#cancel()} of that handle has no effect. Since the entries of running workflow executions
+     * are never evicted, an execution id that is not known to this registry (even after recording the execution ids
+     * that have become available in the meantime) belongs to a workflow execution that was not started through this
+     * registry, or that has been cancelled by withdrawing all of its requests.
+     *
+     * @param executionId execution id
+     * @return whether no other request is answered with the workflow execution (or the workflow execution is not
+     *     known), so that it needs to be cancelled
+     */
+    boolean release(long executionId) {
+        synchronized (entries) {
+            @Nullable Entry entry = entriesByExecutionId.get(executionId);
+            if (entry == null && !entriesWithoutExecutionId.isEmpty()) {
+                // The execution id may have been assigned, but the callback recording it may not have run yet.
+                for (Entry candidate: entriesWithoutExecutionId.toArray(new Entry[entriesWithoutExecutionId.size()])) {
+                    recordExecutionId(candidate, candidate.workflowExecution.getNow(null));
+                }
+                entry = entriesByExecutionId.get(executionId);
+            }
+            // Remembered entries of running workflow executions always have a handle that has not been withdrawn.
+            return entry == null || entry.finishTimeMillis != null || withdraw(entry.handles.iterator().next());
+        }
+    }
+
+    /**
+     * Handle of a workflow execution that was returned for one request.
+     *
+     * <p>All methods delegate to the shared workflow execution, except that {@link #cancel()} only cancels it if no
+     * other request is answered with it.
+     */
+    private final class Handle implements WorkflowExecution {
+        private final Entry entry;
+
+        /**
+         * Constructor for a handle that is only returned once the workflow execution of the given entry has been
+         * started successfully.
+         */
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        private WorkflowExecution delegate() {
+            return entry.workflowExecution.join();
+        }
+
+        @Override
+        public long getStartTimeMillis() {
+            return delegate().getStartTimeMillis();
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (entries) {
+                if (entry.finishTimeMillis != null || !withdraw(this)) {
+                    return false;
+                }
+            }
+            return delegate().cancel();
+        }
+
+        @Override
+        public CompletableFuture<RuntimeAnnotatedExecutionTrace> getTrace() {
+            return delegate().getTrace();
+        }
+
+        @Override
+        public CompletableFuture<Long> getExecutionId() {
+            return delegate().getExecutionId();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return delegate().isRunning();
+        }
+
+        @Override
+        public CompletableFuture<Object> getOutput(String outPortName) {
+            return delegate().getOutput(outPortName);
+        }
+
+        @Override
+        public CompletableFuture<Long> getFinishTimeMillis() {
+            return delegate().getFinishTimeMillis();
+        }
+
+        @Override
+        public CompletableFuture<Void> toCompletableFuture() {
+            return delegate().toCompletableFuture();
+        }
+    }
+
+    /**
+     * Returns the number of currently remembered requests.
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the statistics of this registry. A hit is a request that was answered with an earlier workflow execution.
+     */
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+}
@@ -6,6 +6,24 @@ import java.util.concurrent.TimeUnit;
  * Clock based on the system time.
  */
 enum SystemClock implements Clock {
+    /**
+     * Clock based on {@link System#currentTimeMillis()}, that is, wall-clock time.
+     */
+    MILLIS {
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return System.currentTimeMillis();
+        }
+    },
+
+    /**
+     * Clock based on {@link System#nanoTime()}, which is only suitable for measuring elapsed time.
+     */
     NANO {
         @Override
         public TimeUnit getTimeUnit() {
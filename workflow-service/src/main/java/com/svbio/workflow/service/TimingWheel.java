@@ -0,0 +1,137 @@
+package com.svbio.workflow.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for expiring elements after individual deadlines.
+ *
+ * <p>Time is divided into ticks of equal duration, and each element is added to the bucket of the tick of its
+ * deadline (modulo the number of buckets). {@link #expire(long, Consumer)} only examines the buckets of the ticks that
+ * have passed since the previous call (plus the current tick), so adding and expiring an element takes amortized
+ * constant time, independently of the number of elements in the wheel. Deadlines that are more than one revolution of
+ * the wheel ahead are supported, but such elements are examined once per revolution.
+ *
+ * <p>Times and durations are in arbitrary, but consistent, units (for instance, those of a {@link Clock}).
+ *
+ * <p>This class is not thread-safe. It is meant to be confined to a single actor.
+ *
+ * @param <T> type of the elements
+ */
+final class TimingWheel<T> {
+    private final long tickDuration;
+    private final List<List<Entry<T>>> buckets;
+    private int size = 0;
+
+    /**
+     * Tick of the time most recently passed to {@link #expire(long, Consumer)} (or the constructor). The buckets of all
+     * earlier ticks have been examined.
+     */
+    private long currentTick;
+
+    private static final class Entry<T> {
+        private final T element;
+        private final long deadline;
+
+        private Entry(T element, long deadline) {
+            this.element = element;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tickDuration duration of a tick, must be positive
+     * @param numBuckets number of buckets, must be positive
+     * @param currentTime current time
+     * @throws IllegalArgumentException if the tick duration or number of buckets is not positive
+     */
+    TimingWheel(long tickDuration, int numBuckets, long currentTime) {
+        if (tickDuration <= 0 || numBuckets <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Expected positive tick duration and number of buckets, but got %d and %d.", tickDuration, numBuckets
+            ));
+        }
+
+        this.tickDuration = tickDuration;
+        buckets = new ArrayList<>(numBuckets);
+        for (int i = 0; i < numBuckets; ++i) {
+            buckets.add(new ArrayList<>());
+        }
+        currentTick = tick(currentTime);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("timing wheel (%d elements, %d buckets)", size, buckets.size());
+    }
+
+    private long tick(long time) {
+        return Math.floorDiv(time, tickDuration);
+    }
+
+    private List<Entry<T>> bucket(long tick) {
+        return buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+    }
+
+    /**
+     * Adds the given element, which expires once the current time is past the given deadline.
+     *
+     * <p>The same element may be added more than once, in which case it also expires more than once.
+     */
+    void add(T element, long deadline) {
+        // Elements whose deadline has already passed are added to the bucket of the current tick, which is examined
+        // by the next call of expire().
+        bucket(Math.max(tick(deadline), currentTick)).add(new Entry<>(element, deadline));
+        ++size;
+    }
+
+    /**
+     * Removes all elements whose deadline is before the given current time, and passes them to the given consumer.
+     *
+     * <p>Elements are passed to the consumer in no particular order. The consumer must not modify this timing wheel.
+     *
+     * @param currentTime current time, must not be before the time passed previously to this method or to the
+     *     constructor
+     * @param consumer consumer of the expired elements
+     * @return the number of expired elements
+     */
+    int expire(long currentTime, Consumer<? super T> consumer) {
+        long newTick = tick(currentTime);
+        // The bucket of the current tick is examined again next time, because it may contain elements that expire
+        // later during the current tick.
+        long lastTick = Math.min(newTick, currentTick + buckets.size() - 1);
+        int expired = 0;
+        for (long tick = currentTick; tick <= lastTick; ++tick) {
+            List<Entry<T>> bucket = bucket(tick);
+            int sizeBefore = bucket.size();
+            bucket.removeIf(entry -> {
+                if (entry.deadline < currentTime) {
+                    consumer.accept(entry.element);
+                    return true;
+                }
+                return false;
+            });
+            expired += sizeBefore - bucket.size();
+        }
+        size -= expired;
+        currentTick = newTick;
+        return expired;
+    }
+
+    /**
+     * Returns the number of elements in this timing wheel.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether this timing wheel is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -1,23 +1,22 @@
 package com.svbio.workflow.service;
 
 import akka.actor.ActorRef;
-import akka.dispatch.Futures;
 import akka.dispatch.OnComplete;
-import akka.dispatch.OnFailure;
-import akka.pattern.AskTimeoutException;
 import akka.pattern.Patterns;
+import com.svbio.workflow.api.ErrorSummaryList;
 import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionRejectedException;
 import com.svbio.workflow.api.ExecutionStatus;
 import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusListener;
+import com.svbio.workflow.api.ExecutionStatusQuery;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 import com.svbio.workflow.api.WorkflowService;
 import com.svbio.workflow.util.Throwables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.ExecutionContext;
-import scala.concurrent.Future;
-import scala.concurrent.Promise;
-import scala.util.Failure;
+import xyz.cloudkeeper.model.api.CancellationException;
 import xyz.cloudkeeper.model.api.CloudKeeperEnvironment;
 import xyz.cloudkeeper.model.api.WorkflowExecution;
 import xyz.cloudkeeper.model.api.WorkflowExecutionBuilder;
@@ -31,77 +30,280 @@ import xyz.cloudkeeper.model.util.ImmutableList;
 
 import javax.annotation.Nullable;
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 final class WorkflowServiceImpl implements WorkflowService {
     /**
-     * Timeout (in ms) before which a listener must have replied with an arbitrary {@link Object} as response.
+     * Fraction of the timeout of a blocking execution observer above which an acknowledgement is logged as slow.
      */
-    private static final long OBSERVER_TIMEOUT_MS = 10_000;
+    private static final double SLOW_ACKNOWLEDGEMENT_FRACTION = 0.5;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final CloudKeeperEnvironmentFactory environmentFactory;
-    private final ImmutableList<ActorRef> executionObservers;
+    private final ImmutableList<ObserverState> executionObservers;
     private final StatusKeepingService statusKeepingService;
     private final ExecutionContext executionContext;
-
-    /**
-     * Monitor for synchronized access to {@link #activeExecutionMap} and its contained elements.
-     */
-    private final Object mutex = new Object();
+    private final Clock clock;
+    private final AdmissionController<WorkflowExecutionImpl> admissionController;
+    @Nullable private final SubmissionDeduplicator deduplicator;
 
     /**
      * Mapping from execution ids to active executions.
      *
-     * <p>There are a few places in this code where {@code synchronized} blocks contain more than just a single
-     * {@link Map} method call. Therefore, {@link Collections#synchronizedMap(Map)} is not an equivalent alternative.
-     * For instance, {@link #workflowExecutionFinished} also modifies a value contained in the map. (Unfortunately, in
-     * order to use JAXB, the classes in package {@link xyz.cloudkeeper.model.api} are mutable POJOs. This
-     * requires extra work to ensure memory consistency across threads. At some places, {@code synchronized} is used
-     * also for that reason.)
+     * <p>Lookups are lock-free, and iteration is weakly consistent (and in ascending order of execution ids). The
+     * values are never modified in place: Each {@link ActiveExecution} holds an atomic reference to an immutable
+     * {@link ExecutionStatusSnapshot}, and status transitions replace this reference.
      */
-    private final Map<Long, ActiveExecution> activeExecutionMap = new LinkedHashMap<>();
+    private final ConcurrentNavigableMap<Long, ActiveExecution> activeExecutionMap = new ConcurrentSkipListMap<>();
 
-    WorkflowServiceImpl(CloudKeeperEnvironmentFactory environmentFactory, List<ActorRef> executionObservers,
-            StatusKeepingService statusKeepingService, ExecutionContext executionContext) {
+    WorkflowServiceImpl(CloudKeeperEnvironmentFactory environmentFactory, List<ExecutionObserver> executionObservers,
+            StatusKeepingService statusKeepingService, ExecutionContext executionContext, Clock clock,
+            AdmissionPolicy admissionPolicy, DeduplicationPolicy deduplicationPolicy) {
         this.environmentFactory = environmentFactory;
-        this.executionObservers = ImmutableList.copyOf(executionObservers);
+        this.executionObservers = ImmutableList.copyOf(
+            executionObservers.stream().map(ObserverState::new).collect(Collectors.toList())
+        );
         this.statusKeepingService = statusKeepingService;
         this.executionContext = executionContext;
+        this.clock = clock;
+        admissionController
+            = new AdmissionController<>(admissionPolicy, clock, AdmissionController::currentHeapUsage);
+        deduplicator = deduplicationPolicy.isEnabled()
+            ? new SubmissionDeduplicator(deduplicationPolicy, clock)
+            : null;
+    }
+
+    /**
+     * Execution observer together with its acknowledgement statistics.
+     */
+    private static final class ObserverState {
+        private final ExecutionObserver observer;
+        private final LongAdder acknowledgedCount = new LongAdder();
+        private final LongAdder timeoutCount = new LongAdder();
+        private final LongAdder totalLatencyMillis = new LongAdder();
+        private final LongAccumulator maxLatencyMillis = new LongAccumulator(Math::max, 0);
+
+        private ObserverState(ExecutionObserver observer) {
+            this.observer = observer;
+        }
+
+        private void acknowledged(long latencyMillis) {
+            acknowledgedCount.increment();
+            totalLatencyMillis.add(latencyMillis);
+            maxLatencyMillis.accumulate(latencyMillis);
+        }
+
+        private ObserverStatistics toStatistics() {
+            return new ObserverStatistics(observer.getName(), acknowledgedCount.sum(), timeoutCount.sum(),
+                totalLatencyMillis.sum(), maxLatencyMillis.get());
+        }
+    }
+
+    /**
+     * Registered {@link ExecutionStatusListener}, together with the execution statuses that it still needs to be called
+     * with.
+     *
+     * <p>The listener is never called by the thread that reports a status transition. Instead, notifications are
+     * queued and delivered by a task on {@link #executionContext}, one at a time and in order. A slow listener (for
+     * instance, one that writes to a slow client) therefore only delays its own notifications.
+     */
+    private final class ListenerRegistration {
+        private final ExecutionStatusListener listener;
+
+        /**
+         * Future that is completed once the listener has been called for the first time.
+         */
+        private final CompletableFuture<Void> firstCallFuture = new CompletableFuture<>();
+
+        /**
+         * Execution statuses that the listener has not been called with yet. Guarded by the lock of this instance.
+         */
+        private final ArrayDeque<ExecutionStatusSnapshot> pending = new ArrayDeque<>();
+
+        /**
+         * The last execution status that has been queued. Guarded by the lock of this instance.
+         */
+        @Nullable private ExecutionStatusSnapshot queued;
+
+        /**
+         * Whether a task delivering the {@link #pending} execution statuses has been submitted and is not finished
+         * yet. Guarded by the lock of this instance.
+         */
+        private boolean delivering = false;
+
+        /**
+         * Whether the listener has been removed. Guarded by the lock of this instance.
+         */
+        private boolean removed = false;
+
+        private ListenerRegistration(ExecutionStatusListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Queues a call of the listener with the given execution status, unless the same or a terminal execution
+         * status has been queued before.
+         *
+         * <p>Since the status of an execution only changes from {@link ExecutionStatus.Status#RUNNING} into a terminal
+         * status, a stale notification can only be one that arrives after the terminal one, and it is thus discarded.
+         */
+        private synchronized void deliver(ExecutionStatusSnapshot executionStatus) {
+            if (removed || queued == executionStatus || (queued != null && queued.getStatus().isTerminal())) {
+                return;
+            }
+            queued = executionStatus;
+            pending.add(executionStatus);
+            if (!delivering) {
+                delivering = true;
+                executionContext.execute(this::deliverPending);
+            }
+        }
+
+        /**
+         * Calls the listener with each pending execution status, until there are no more pending execution statuses.
+         */
+        private void deliverPending() {
+            while (true) {
+                ExecutionStatusSnapshot executionStatus;
+                synchronized (this) {
+                    @Nullable ExecutionStatusSnapshot next = pending.poll();
+                    if (next == null) {
+                        delivering = false;
+                        return;
+                    }
+                    executionStatus = next;
+                }
+                try {
+                    listener.executionStatusChanged(executionStatus.toExecutionStatus());
+                } catch (RuntimeException exception) {
+                    log.warn(String.format("Execution-status listener %s failed.", listener), exception);
+                }
+                firstCallFuture.complete(null);
+            }
+        }
+
+        /**
+         * Discards all pending execution statuses. Only a call of the listener that is in progress may still complete.
+         */
+        private synchronized void remove() {
+            removed = true;
+            pending.clear();
+            firstCallFuture.complete(null);
+        }
     }
 
     private static final class ActiveExecution {
         private final WorkflowExecution workflowExecution;
-        private final ExecutionStatus executionStatus;
+        private final AtomicReference<ExecutionStatusSnapshot> executionStatus;
+        private final CopyOnWriteArrayList<ListenerRegistration> listeners = new CopyOnWriteArrayList<>();
 
-        private ActiveExecution(WorkflowExecution workflowExecution, ExecutionStatus executionStatus) {
+        private ActiveExecution(WorkflowExecution workflowExecution, ExecutionStatusSnapshot executionStatus) {
             this.workflowExecution = workflowExecution;
-            this.executionStatus = executionStatus;
+            this.executionStatus = new AtomicReference<>(executionStatus);
+        }
+
+        /**
+         * Atomically transitions this execution from {@link ExecutionStatus.Status#RUNNING} into the given terminal
+         * status.
+         *
+         * @return the new execution status, or {@code null} if this execution was not running any more
+         */
+        @Nullable
+        private ExecutionStatusSnapshot finish(ExecutionStatus.Status status, @Nullable String failureDescription) {
+            while (true) {
+                ExecutionStatusSnapshot current = executionStatus.get();
+                if (current.getStatus() != ExecutionStatus.Status.RUNNING) {
+                    return null;
+                }
+                ExecutionStatusSnapshot finished = current.withStatus(status, failureDescription);
+                if (executionStatus.compareAndSet(current, finished)) {
+                    return finished;
+                }
+            }
+        }
+
+        /**
+         * Registers the given listener and queues a call with the current execution status.
+         *
+         * <p>The listener is registered before the current execution status is read, so that a concurrent status
+         * transition is either observed here or notified by {@link #notifyListeners(ExecutionStatusSnapshot)}.
+         *
+         * @return future that is completed once the listener has been called with the current execution status
+         */
+        private CompletableFuture<Void> addListener(ListenerRegistration registration) {
+            listeners.add(registration);
+            ExecutionStatusSnapshot current = executionStatus.get();
+            registration.deliver(current);
+            if (current.getStatus().isTerminal()) {
+                listeners.remove(registration);
+            }
+            return registration.firstCallFuture;
+        }
+
+        /**
+         * Queues calls of all registered listeners with the given (new) execution status, and removes all listeners if
+         * the status is terminal.
+         */
+        private void notifyListeners(ExecutionStatusSnapshot newExecutionStatus) {
+            for (ListenerRegistration registration: listeners) {
+                registration.deliver(newExecutionStatus);
+            }
+            if (newExecutionStatus.getStatus().isTerminal()) {
+                listeners.clear();
+            }
+        }
+
+        private void removeListener(ExecutionStatusListener listener) {
+            for (ListenerRegistration registration: listeners) {
+                if (registration.listener == listener) {
+                    listeners.remove(registration);
+                    registration.remove();
+                }
+            }
         }
     }
 
     @Override
     public CloudKeeperEnvironment create(String prefix, boolean cleaningRequested) {
         Objects.requireNonNull(prefix);
-        return new CloudKeeperEnvironmentImpl(prefix, cleaningRequested);
+        return new CloudKeeperEnvironmentImpl(prefix, cleaningRequested, null);
     }
 
     private final class CloudKeeperEnvironmentImpl implements CloudKeeperEnvironment {
         private final CloudKeeperEnvironment cloudKeeperEnvironment;
         private final String prefix;
         private final boolean cleaningRequested;
+        @Nullable private final String tenant;
 
-        private CloudKeeperEnvironmentImpl(String prefix, boolean cleaningRequested) {
+        /**
+         * Constructor.
+         *
+         * @param tenant tenant for the purpose of admission control, or {@code null} if the tenant is identified by the
+         *     prefix
+         */
+        private CloudKeeperEnvironmentImpl(String prefix, boolean cleaningRequested, @Nullable String tenant) {
             cloudKeeperEnvironment = environmentFactory.create(prefix, cleaningRequested);
             this.prefix = prefix;
             this.cleaningRequested = cleaningRequested;
+            this.tenant = tenant;
         }
 
         @Override
@@ -147,149 +349,297 @@ final class WorkflowServiceImpl implements WorkflowService {
 
             @Override
             public WorkflowExecution start() {
-                ExecuteWorkflowRequest copiedRequest = new ExecuteWorkflowRequest(request);
-
-                // Promise that will be completed once all actors in executionObservers have responded to the
-                // StopExecutionEvent message (or timed out). This gives each observer some grace period to perform
-                // clean up tasks before the WorkflowExecution instance finishes (as indicated, e.g., by
-                // WorkflowExecution#isRunning()).
-                Promise<Iterable<Object>> observerCompletionPromise = Futures.promise();
-                observerCompletionPromise.future().onFailure(new OnFailure() {
-                    @Override
-                    public void onFailure(Throwable failure) {
-                        if (failure instanceof AskTimeoutException) {
-                            log.warn("Workflow execution finished while at least some execution observers {} did not "
-                                + "shut down in time.", executionObservers);
-                        }
-                    }
-                }, executionContext);
+                // The module has already been copied in the constructor, and it is never modified by this builder.
+                // Likewise, the overrides are copied in setOverrides(). It is therefore sufficient to create a shallow
+                // copy, which then becomes owned by an immutable ExecutionStatusSnapshot.
+                ExecuteWorkflowRequest copiedRequest = new ExecuteWorkflowRequest()
+                    .setModule(request.getModule())
+                    .setBundleIdentifiers(request.getBundleIdentifiers())
+                    .setOverrides(request.getOverrides())
+                    .setPrefix(prefix)
+                    .setCleaningRequested(cleaningRequested)
+                    .setTenant(tenant);
 
-                WorkflowExecution workflowExecution = builder.start();
-                workflowExecution.getExecutionId().whenComplete((executionId, executionIdThrowable) -> {
-                    if (executionIdThrowable != null) {
-                        observerCompletionPromise.complete(new Failure<>(executionIdThrowable));
-                    } else {
-                        assert executionId != null;
-                        workflowExecution.getTrace().whenComplete((rootTrace, throwable) -> {
-                            if (throwable == null) {
-                                assert rootTrace != null;
-                                StartExecutionEvent startExecutionEvent
-                                    = new StartExecutionEvent(executionId, rootTrace, prefix);
-                                executionObservers.forEach(
-                                    observer -> observer.tell(startExecutionEvent, ActorRef.noSender())
-                                );
-                            }
-                        });
-
-                        addActiveExecution(copiedRequest, executionId, workflowExecution);
-                        workflowExecution.toCompletableFuture().whenComplete(
-                            (Void ignored, Throwable finishedThrowable) -> {
-                                workflowExecutionFinished(executionId, finishedThrowable);
-
-                                StopExecutionEvent event = new StopExecutionEvent(executionId);
-                                // Patterns.ask completes the returned future with a AskTimeoutException if the
-                                // actor does not respond within the given timeout
-                                List<Future<Object>> observerResponseFutures = executionObservers.stream()
-                                    .map(observer -> Patterns.ask(observer, event, OBSERVER_TIMEOUT_MS))
-                                    .collect(Collectors.toList());
-                                observerCompletionPromise.completeWith(
-                                    Futures.sequence(observerResponseFutures, executionContext)
-                                );
-                            }
-                        );
-                    }
-                });
+                WorkflowExecutionImpl workflowExecution = new WorkflowExecutionImpl(
+                    tenant == null ? prefix : tenant, copiedRequest, builder);
+                try {
+                    admissionController.submit(workflowExecution);
+                } catch (ExecutionRejectedException exception) {
+                    log.info("Rejecting workflow execution with prefix '{}': {}", prefix, exception.getMessage());
+                    workflowExecution.failBeforeStart(exception);
+                }
+                return workflowExecution;
+            }
+        }
+    }
+
+    private long currentTimeMillis() {
+        return clock.getTimeUnit().toMillis(clock.getCurrentTime());
+    }
 
-                return new WorkflowExecutionImpl(workflowExecution, observerCompletionPromise.future(), executionContext);
+    /**
+     * Returns a future that is completed with the result of the future returned by the given function, or with the
+     * failure of either future.
+     *
+     * <p>{@link CompletableFuture#thenCompose(java.util.function.Function)} wraps failures in a
+     * {@link java.util.concurrent.CompletionException}, which is not acceptable here. Hence, we need to implement the
+     * composition explicitly.
+     */
+    private static <T, U> CompletableFuture<U> compose(CompletableFuture<T> future,
+            Function<? super T, ? extends CompletableFuture<U>> function) {
+        CompletableFuture<U> composedFuture = new CompletableFuture<>();
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                composedFuture.completeExceptionally(failure);
+                return;
             }
 
-            private void addActiveExecution(ExecuteWorkflowRequest request, long executionId,
-                    WorkflowExecution workflowExecution) {
-                // executionStatus will be safely published through the final field ActiveExecution#executionStatus
-                // Also note: No need to copy the request here (it has been copied before).
-                ExecutionStatus executionStatus = new ExecutionStatus()
-                    .setRequest(request)
-                    .setExecutionId(executionId)
-                    .setStatus(ExecutionStatus.Status.RUNNING);
-                synchronized (mutex) {
-                    activeExecutionMap.put(executionId, new ActiveExecution(workflowExecution, executionStatus));
-                }
+            CompletableFuture<U> nextFuture;
+            try {
+                nextFuture = function.apply(result);
+            } catch (RuntimeException exception) {
+                composedFuture.completeExceptionally(exception);
+                return;
             }
-        }
+            nextFuture.whenComplete((nextResult, nextFailure) -> {
+                if (nextFailure != null) {
+                    composedFuture.completeExceptionally(nextFailure);
+                } else {
+                    composedFuture.complete(nextResult);
+                }
+            });
+        });
+        return composedFuture;
     }
 
-    private static final class WorkflowExecutionImpl implements WorkflowExecution {
-        private final WorkflowExecution workflowExecution;
+    /**
+     * Workflow execution that is started by the underlying CloudKeeper environment once it has been admitted by
+     * {@link #admissionController}.
+     *
+     * <p>Until the workflow execution is admitted, all futures returned by this instance are incomplete, and
+     * {@link #isRunning()} returns {@code true}.
+     */
+    private final class WorkflowExecutionImpl extends AdmissionTicket implements WorkflowExecution {
+        private final ExecuteWorkflowRequest request;
+        private final WorkflowExecutionBuilder builder;
+
+        /**
+         * Future that will be completed with the workflow execution returned by the underlying CloudKeeper
+         * environment, or exceptionally if the workflow execution was never started.
+         */
+        private final CompletableFuture<WorkflowExecution> underlyingFuture = new CompletableFuture<>();
 
         /**
          * Future that is guaranteed to be completed normally.
          */
-        private final CompletableFuture<Void> observerResponsesFuture;
+        private final CompletableFuture<Void> observerResponsesFuture = new CompletableFuture<>();
 
-        private WorkflowExecutionImpl(WorkflowExecution workflowExecution,
-                Future<Iterable<Object>> observerResponsesFuture, ExecutionContext executionContext) {
-            this.workflowExecution = workflowExecution;
-            this.observerResponsesFuture = new CompletableFuture<>();
-            observerResponsesFuture.onComplete(new OnComplete<Iterable<Object>>() {
-                @Override
-                public void onComplete(@Nullable Throwable failure, @Nullable Iterable<Object> success) {
-                    WorkflowExecutionImpl.this.observerResponsesFuture.complete(null);
+        private WorkflowExecutionImpl(String tenant, ExecuteWorkflowRequest request, WorkflowExecutionBuilder builder) {
+            super(tenant, currentTimeMillis());
+            this.request = request;
+            this.builder = builder;
+        }
+
+        /**
+         * Completes all futures of this instance exceptionally with the given exception.
+         */
+        private void failBeforeStart(Exception exception) {
+            observerResponsesFuture.complete(null);
+            underlyingFuture.completeExceptionally(exception);
+        }
+
+        @Override
+        void admitted(@Nullable Long queueWaitMillis, @Nullable Integer queueDepth) {
+            String prefix = Objects.requireNonNull(request.getPrefix());
+            WorkflowExecution workflowExecution;
+            try {
+                workflowExecution = builder.start();
+            } catch (RuntimeException exception) {
+                admissionController.release(this);
+                failBeforeStart(exception);
+                return;
+            }
+            workflowExecution.toCompletableFuture().whenComplete(
+                (Void ignored, Throwable throwable) -> admissionController.release(this)
+            );
+
+            workflowExecution.getExecutionId().whenComplete((executionId, executionIdThrowable) -> {
+                if (executionIdThrowable != null) {
+                    observerResponsesFuture.complete(null);
+                } else {
+                    assert executionId != null;
+                    workflowExecution.getTrace().whenComplete((rootTrace, throwable) -> {
+                        if (throwable == null) {
+                            assert rootTrace != null;
+                            StartExecutionEvent startExecutionEvent
+                                = new StartExecutionEvent(executionId, rootTrace, prefix);
+                            executionObservers.forEach(
+                                state -> state.observer.getActor().tell(startExecutionEvent, ActorRef.noSender())
+                            );
+                        }
+                    });
+
+                    // No need to copy the request here (it has been copied before).
+                    activeExecutionMap.put(executionId, new ActiveExecution(workflowExecution,
+                        ExecutionStatusSnapshot.running(
+                            executionId, request, currentTimeMillis(), queueWaitMillis, queueDepth)));
+                    workflowExecution.toCompletableFuture().whenComplete(
+                        (Void ignored, Throwable finishedThrowable) -> {
+                            workflowExecutionFinished(executionId, finishedThrowable);
+                            notifyObserversOfStop(executionId).thenRun(() -> observerResponsesFuture.complete(null));
+                        }
+                    );
                 }
-            }, executionContext);
+            });
+
+            underlyingFuture.complete(workflowExecution);
+        }
+
+        /**
+         * Returns the workflow execution returned by the underlying CloudKeeper environment, or {@code null} if it has
+         * not been started (yet).
+         */
+        @Nullable
+        private WorkflowExecution getUnderlyingNow() {
+            return underlyingFuture.isDone() && !underlyingFuture.isCompletedExceptionally()
+                ? underlyingFuture.join()
+                : null;
+        }
+
+        /**
+         * Returns a snapshot of the status of this workflow execution, which must still be queued.
+         */
+        private ExecutionStatusSnapshot queuedStatus(int queueDepth) {
+            return ExecutionStatusSnapshot.queued(request, currentTimeMillis() - getSubmissionTimeMillis(), queueDepth);
         }
 
         @Override
         public long getStartTimeMillis() {
-            return workflowExecution.getStartTimeMillis();
+            @Nullable WorkflowExecution workflowExecution = getUnderlyingNow();
+            return workflowExecution == null
+                ? getSubmissionTimeMillis()
+                : workflowExecution.getStartTimeMillis();
         }
 
         @Override
         public boolean cancel() {
-            return workflowExecution.cancel();
+            if (admissionController.withdraw(this)) {
+                failBeforeStart(new CancellationException());
+                return true;
+            } else if (!underlyingFuture.isDone()) {
+                // The workflow execution has just been admitted, but it has not been started yet.
+                underlyingFuture.thenAccept(WorkflowExecution::cancel);
+                return true;
+            }
+
+            @Nullable WorkflowExecution workflowExecution = getUnderlyingNow();
+            return workflowExecution != null && workflowExecution.cancel();
         }
 
         @Override
         public CompletableFuture<RuntimeAnnotatedExecutionTrace> getTrace() {
-            return workflowExecution.getTrace();
+            return compose(underlyingFuture, WorkflowExecution::getTrace);
         }
 
         @Override
         public CompletableFuture<Long> getExecutionId() {
-            return workflowExecution.getExecutionId();
+            return compose(underlyingFuture, WorkflowExecution::getExecutionId);
         }
 
         @Override
         public boolean isRunning() {
-            return !observerResponsesFuture.isDone() || workflowExecution.isRunning();
+            if (!observerResponsesFuture.isDone()) {
+                return true;
+            }
+            @Nullable WorkflowExecution workflowExecution = getUnderlyingNow();
+            return workflowExecution != null && workflowExecution.isRunning();
         }
 
         @Override
         public CompletableFuture<Object> getOutput(String outPortName) {
-            return workflowExecution.getOutput(outPortName);
+            return compose(underlyingFuture, workflowExecution -> workflowExecution.getOutput(outPortName));
         }
 
         @Override
         public CompletableFuture<Long> getFinishTimeMillis() {
-            return workflowExecution.getFinishTimeMillis();
+            return compose(underlyingFuture, WorkflowExecution::getFinishTimeMillis);
         }
 
         @Override
         public CompletableFuture<Void> toCompletableFuture() {
-            // CompletableFuture#thenCompose wraps failures in a CompletionException, which is not acceptable here.
-            // Hence, we need to implement the composition explicitly.
-            CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-            observerResponsesFuture.whenComplete((ignoredObserversResult, observersFailure) -> {
-                assert observersFailure == null : "observerResponsesFuture must always be completed normally";
-                workflowExecution.toCompletableFuture().whenComplete((result, failure) -> {
-                    if (failure != null) {
-                        completableFuture.completeExceptionally(failure);
+            return compose(
+                observerResponsesFuture,
+                ignored -> compose(underlyingFuture, WorkflowExecution::toCompletableFuture)
+            );
+        }
+    }
+
+    /**
+     * Sends a {@link StopExecutionEvent} message to all execution observers.
+     *
+     * <p>Blocking observers are given their configured timeout to respond. This gives them some grace period to perform
+     * clean up tasks before the {@link WorkflowExecution} instance finishes (as indicated, e.g., by
+     * {@link WorkflowExecution#isRunning()}). Fire-and-forget observers do not delay the completion.
+     *
+     * @param executionId execution id
+     * @return future that will be completed normally once all blocking observers have responded or timed out
+     */
+    private CompletableFuture<Void> notifyObserversOfStop(long executionId) {
+        StopExecutionEvent event = new StopExecutionEvent(executionId);
+        List<CompletableFuture<Void>> acknowledgementFutures = new ArrayList<>(executionObservers.size());
+        for (ObserverState state: executionObservers) {
+            if (state.observer.isBlocking()) {
+                acknowledgementFutures.add(askObserver(state, event));
+            } else {
+                state.observer.getActor().tell(event, ActorRef.noSender());
+            }
+        }
+        return CompletableFuture.allOf(
+            acknowledgementFutures.toArray(new CompletableFuture<?>[acknowledgementFutures.size()])
+        );
+    }
+
+    private CompletableFuture<Void> askObserver(ObserverState state, StopExecutionEvent event) {
+        CompletableFuture<Void> acknowledgementFuture = new CompletableFuture<>();
+        long startTimeMillis = currentTimeMillis();
+        // Patterns.ask completes the returned future with a AskTimeoutException if the actor does not respond within
+        // the given timeout
+        Patterns.ask(state.observer.getActor(), event, state.observer.getTimeoutMillis()).onComplete(
+            new OnComplete<Object>() {
+                @Override
+                public void onComplete(@Nullable Throwable failure, @Nullable Object response) {
+                    if (failure == null) {
+                        long latencyMillis = currentTimeMillis() - startTimeMillis;
+                        state.acknowledged(latencyMillis);
+                        long timeoutMillis = state.observer.getTimeoutMillis();
+                        if (latencyMillis > SLOW_ACKNOWLEDGEMENT_FRACTION * timeoutMillis) {
+                            log.warn("{} acknowledged the completion of workflow execution {} only after {} ms "
+                                + "(timeout is {} ms).", state.observer, event.getExecutionId(), latencyMillis,
+                                timeoutMillis);
+                        }
                     } else {
-                        completableFuture.complete(result);
+                        state.timeoutCount.increment();
+                        log.warn("Workflow execution {} finished while {} did not respond in time.",
+                            event.getExecutionId(), state.observer);
                     }
-                });
-            });
-            return completableFuture;
-        }
+                    acknowledgementFuture.complete(null);
+                }
+            },
+            executionContext
+        );
+        return acknowledgementFuture;
+    }
+
+    /**
+     * Returns the acknowledgement statistics of all blocking execution observers.
+     *
+     * @return list of statistics, in the order of the observers passed to the constructor
+     */
+    List<ObserverStatistics> getObserverStatistics() {
+        return executionObservers.stream()
+            .filter(state -> state.observer.isBlocking())
+            .map(ObserverState::toStatistics)
+            .collect(Collectors.toList());
     }
 
     private static <T> List<T> emptyListIfNull(@Nullable List<T> list) {
@@ -298,17 +648,27 @@ final class WorkflowServiceImpl implements WorkflowService {
             : list;
     }
 
-    @Override
-    public WorkflowExecution startExecution(ExecuteWorkflowRequest request) {
+    /**
+     * Verifies that the given request has a prefix and a module.
+     *
+     * @throws IllegalArgumentException if the request is lacking prefix or module
+     */
+    private static void requireValidRequest(ExecuteWorkflowRequest request) {
         if (request.getPrefix() == null || request.getModule() == null) {
             throw new IllegalArgumentException("Invalid request is lacking prefix or module.");
         }
+    }
 
-        CloudKeeperEnvironment cloudKeeperEnvironment = create(
+    private CloudKeeperEnvironmentImpl newEnvironment(ExecuteWorkflowRequest request) {
+        return new CloudKeeperEnvironmentImpl(
             request.getPrefix(),
-            request.isCleaningRequested()
+            request.isCleaningRequested(),
+            request.getTenant()
         );
+    }
 
+    private static WorkflowExecution startExecutionInEnvironment(CloudKeeperEnvironment cloudKeeperEnvironment,
+            ExecuteWorkflowRequest request) {
         return cloudKeeperEnvironment
             .newWorkflowExecutionBuilder(request.getModule())
             .setBundleIdentifiers(emptyListIfNull(request.getBundleIdentifiers()))
@@ -316,49 +676,135 @@ final class WorkflowServiceImpl implements WorkflowService {
             .start();
     }
 
+    /**
+     * Returns the workflow execution of an identical earlier request if deduplication is enabled and there is one that
+     * may be reused, or otherwise starts a new workflow execution with the given supplier.
+     *
+     * @see SubmissionDeduplicator
+     */
+    private WorkflowExecution startOrReuse(ExecuteWorkflowRequest request, Supplier<WorkflowExecution> starter) {
+        return deduplicator == null
+            ? starter.get()
+            : deduplicator.startOrReuse(request, starter);
+    }
+
+    /**
+     * Returns the statistics of submission deduplication, or {@code null} if deduplication is disabled.
+     */
     @Nullable
-    private ActiveExecution getActiveExecution(long executionId) {
-        synchronized (mutex) {
-            return activeExecutionMap.get(executionId);
+    CacheStatistics getDeduplicationStatistics() {
+        return deduplicator == null
+            ? null
+            : deduplicator.getStatistics();
+    }
+
+    /**
+     * Requests the execution of a CloudKeeper workflow.
+     *
+     * <p>If deduplication is enabled (see {@link DeduplicationPolicy}), a request that is identical to an earlier
+     * request is answered with a handle of the earlier workflow execution if that workflow execution is still running,
+     * or if it finished successfully within the configured time window. See {@link SubmissionDeduplicator} for what
+     * makes requests identical, and for how cancelling a shared workflow execution works.
+     */
+    @Override
+    public WorkflowExecution startExecution(ExecuteWorkflowRequest request) {
+        requireValidRequest(request);
+        return startOrReuse(request, () -> startExecutionInEnvironment(newEnvironment(request), request));
+    }
+
+    /**
+     * Key that identifies the environment settings of a request.
+     */
+    private static final class EnvironmentKey {
+        private final String prefix;
+        private final boolean cleaningRequested;
+        @Nullable private final String tenant;
+
+        private EnvironmentKey(ExecuteWorkflowRequest request) {
+            prefix = Objects.requireNonNull(request.getPrefix());
+            cleaningRequested = request.isCleaningRequested();
+            tenant = request.getTenant();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object otherObject) {
+            if (this == otherObject) {
+                return true;
+            } else if (otherObject == null || getClass() != otherObject.getClass()) {
+                return false;
+            }
+
+            EnvironmentKey other = (EnvironmentKey) otherObject;
+            return prefix.equals(other.prefix)
+                && cleaningRequested == other.cleaningRequested
+                && Objects.equals(tenant, other.tenant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(prefix, cleaningRequested, tenant);
         }
     }
 
+    /**
+     * Requests the execution of multiple CloudKeeper workflows.
+     *
+     * <p>All requests are validated before any workflow execution is started. Requests with equal environment settings
+     * share a single {@link CloudKeeperEnvironment}, so that the underlying environment (including its staging area) is
+     * created only once per batch and settings. Workflow executions are submitted for admission in list order, so that
+     * requests of the same tenant are also admitted in list order. Each request is subject to deduplication as in
+     * {@link #startExecution(ExecuteWorkflowRequest)}.
+     */
+    @Override
+    public List<WorkflowExecution> startExecutions(List<ExecuteWorkflowRequest> requests) {
+        requests.forEach(WorkflowServiceImpl::requireValidRequest);
+
+        Map<EnvironmentKey, CloudKeeperEnvironmentImpl> environments = new HashMap<>();
+        List<WorkflowExecution> workflowExecutions = new ArrayList<>(requests.size());
+        for (ExecuteWorkflowRequest request: requests) {
+            workflowExecutions.add(startOrReuse(request, () -> startExecutionInEnvironment(
+                environments.computeIfAbsent(new EnvironmentKey(request), key -> newEnvironment(request)), request)));
+        }
+        return workflowExecutions;
+    }
+
     /**
      * Internal method called <em>asynchronously</em> when an execution finishes.
      */
-    private void workflowExecutionFinished(final long executionId, @Nullable Throwable throwable) {
-        final ExecutionStatus executionStatus;
-        synchronized (mutex) {
-            executionStatus = activeExecutionMap.get(executionId).executionStatus;
-
-            // We don't need the "global" mutex (synchronizing on executionStatus would suffice), but no need for
-            // optimization yet.
-            if (throwable != null) {
-                executionStatus.setStatus(ExecutionStatus.Status.FAILED);
-                executionStatus.setFailureDescription(Throwables.executionTraceToString(throwable));
-            } else {
-                executionStatus.setStatus(ExecutionStatus.Status.SUCCESSFUL);
-            }
+    private void workflowExecutionFinished(long executionId, @Nullable Throwable throwable) {
+        @Nullable ActiveExecution activeExecution = activeExecutionMap.get(executionId);
+        assert activeExecution != null : "execution must be active until it has finished";
+
+        @Nullable ExecutionStatusSnapshot executionStatus = throwable != null
+            ? activeExecution.finish(ExecutionStatus.Status.FAILED, Throwables.executionTraceToString(throwable))
+            : activeExecution.finish(ExecutionStatus.Status.SUCCESSFUL, null);
+        if (executionStatus == null) {
+            log.warn("Ignoring completion of execution {} that has finished before.", executionId);
+            return;
         }
 
-        statusKeepingService.persistExecutionStatus(executionStatus).whenComplete(
+        statusKeepingService.persistExecutionStatus(executionStatus.toExecutionStatus()).whenComplete(
             (@Nullable ExecutionStatus ignored, @Nullable Throwable persistenceThrowable) -> {
                 if (persistenceThrowable != null) {
                     log.warn(String.format("Could not persist %s.", executionStatus), persistenceThrowable);
                 }
-
-                synchronized (mutex) {
-                    activeExecutionMap.remove(executionId);
-                }
+                activeExecutionMap.remove(executionId, activeExecution);
             }
         );
+        // Listeners are called asynchronously, so they cannot delay persisting the execution status. They are notified
+        // without waiting for the execution status to be persisted. This is safe: The execution is only removed from
+        // activeExecutionMap once persisting has completed, so getExecutionStatus() returns the terminal status either
+        // way.
+        activeExecution.notifyListeners(executionStatus);
     }
 
     /**
      * Returns the execution status of the given execution id.
      *
-     * <p>The returned {@link ExecutionStatus} instance is not backed by internal state. Workflow-execution updates are
-     * not reflected in the returned instance, or vice versa.
+     * <p>For an active execution, the returned {@link ExecutionStatus} instance is a new view of the current
+     * {@link ExecutionStatusSnapshot}. Workflow-execution updates are not reflected in it. The top-level instance and
+     * its request may be modified by the caller, but the module and the overrides of the request are shared with the
+     * snapshot and other callers, and they must therefore be treated as read-only.
      *
      * @param executionId execution id
      * @return a future that will be completed with the execution status on success, an
@@ -367,13 +813,9 @@ final class WorkflowServiceImpl implements WorkflowService {
      */
     @Override
     public CompletableFuture<ExecutionStatus> getExecutionStatus(long executionId) {
-        @Nullable ActiveExecution activeExecution = getActiveExecution(executionId);
+        @Nullable ActiveExecution activeExecution = activeExecutionMap.get(executionId);
         if (activeExecution != null) {
-            // The synchronization is mostly for memory consistency (to establish a happens-before relationship with any
-            // object modifications in other threads)
-            synchronized (mutex) {
-                return CompletableFuture.completedFuture(new ExecutionStatus(activeExecution.executionStatus));
-            }
+            return CompletableFuture.completedFuture(activeExecution.executionStatus.get().toExecutionStatus());
         } else {
             return statusKeepingService.loadExecutionStatus(executionId);
         }
@@ -382,35 +824,256 @@ final class WorkflowServiceImpl implements WorkflowService {
     /**
      * Stops the execution with the given execution id.
      *
+     * <p>If the workflow execution answers several deduplicated requests, stopping it only withdraws one of them, and
+     * the workflow execution is cancelled once all of them have been withdrawn (see {@link SubmissionDeduplicator}).
+     * Until then, this method returns {@code false}.
+     *
      * @param executionId execution id
+     * @return whether the workflow execution has been cancelled
      * @throws UnknownExecutionIdException if the given execution id does not belong to an active workflow execution
      */
     @Override
-    public void stopExecutionId(long executionId) throws UnknownExecutionIdException {
-        @Nullable ActiveExecution execution = getActiveExecution(executionId);
+    public boolean stopExecutionId(long executionId) throws UnknownExecutionIdException {
+        @Nullable ActiveExecution execution = activeExecutionMap.get(executionId);
         if (execution == null) {
             throw new UnknownExecutionIdException(executionId);
         }
+        if (deduplicator != null && !deduplicator.release(executionId)) {
+            log.info("Withdrew one of the requests answered with workflow execution {}, which keeps running for the "
+                + "others.", executionId);
+            return false;
+        }
         execution.workflowExecution.cancel();
+        return true;
+    }
+
+    /**
+     * Adds a listener that is notified of the status transitions of the given execution.
+     *
+     * <p>If the execution is active, the listener is called asynchronously with the current execution status (and
+     * subsequently with each new execution status), and the returned future is completed once the first call has
+     * returned. Otherwise, the terminal execution status is loaded from the {@link StatusKeepingService}.
+     */
+    @Override
+    public CompletableFuture<Void> addExecutionStatusListener(long executionId, ExecutionStatusListener listener) {
+        Objects.requireNonNull(listener);
+        @Nullable ActiveExecution activeExecution = activeExecutionMap.get(executionId);
+        if (activeExecution != null) {
+            return activeExecution.addListener(new ListenerRegistration(listener));
+        }
+        return compose(statusKeepingService.loadExecutionStatus(executionId), executionStatus -> {
+            listener.executionStatusChanged(executionStatus);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Override
+    public void removeExecutionStatusListener(long executionId, ExecutionStatusListener listener) {
+        @Nullable ActiveExecution activeExecution = activeExecutionMap.get(executionId);
+        if (activeExecution != null) {
+            activeExecution.removeListener(listener);
+        }
     }
 
     /**
      * Returns a list of currently active workflow executions.
      *
-     * <p>The returned object is not backed by internal state. Workflow-execution updates are not reflected in the
-     * returned object, or vice versa.
+     * <p>The returned list is not backed by internal state. However, the list elements are immutable snapshots that are
+     * shared with other callers and therefore must not be modified. Since the internal registry is iterated in a weakly
+     * consistent fashion, the returned list does not necessarily correspond to a single point in time.
+     *
+     * <p>Workflow executions that are waiting for admission are included with status
+     * {@link ExecutionStatus.Status#QUEUED} (and execution id 0), in submission order.
      *
      * @return the list of currently active workflow executions
      */
     @Override
     public ExecutionStatusList getActiveExecutions() {
-        synchronized (mutex) {
-            ExecutionStatusList executionStatusList = new ExecutionStatusList();
+        return getActiveExecutions(new ExecutionStatusQuery());
+    }
+
+    /**
+     * Returns a list of currently active workflow executions that match the given query.
+     *
+     * <p>Only the executions after the cursor are visited. However, since filters are evaluated during iteration, the
+     * cost of this method is proportional to the number of active executions that are skipped because they are not
+     * matched by the query. As with {@link #getActiveExecutions()}, the returned list does not necessarily correspond
+     * to a single point in time.
+     *
+     * <p>Queued workflow executions have execution id 0, and they precede all other executions. In place of the
+     * execution id, a queued workflow execution is identified by its admission sequence number, mapped to the negative
+     * cursor space (see {@link #queuedCursor(AdmissionTicket)}). A page that ends with a queued execution therefore has
+     * a negative next cursor, and the next page continues with the queued executions submitted later.
+     *
+     * @param query the query
+     * @return the list of currently active workflow executions that match the given query
+     */
+    @Override
+    public ExecutionStatusList getActiveExecutions(ExecutionStatusQuery query) {
+        @Nullable Long cursor = query.getCursor();
+        Page page = new Page(query);
+
+        if (cursor == null || cursor < 0) {
+            int queueDepth = 0;
+            for (WorkflowExecutionImpl queuedExecution: admissionController.getQueuedTickets()) {
+                long queuedCursor = queuedCursor(queuedExecution);
+                if ((cursor == null || queuedCursor > cursor)
+                        && !page.addIfMatched(queuedExecution.queuedStatus(queueDepth), queuedCursor)) {
+                    return page.executionStatusList;
+                }
+                ++queueDepth;
+            }
+        }
+
+        Collection<ActiveExecution> activeExecutions = cursor == null
+            ? activeExecutionMap.values()
+            : activeExecutionMap.tailMap(cursor, false).values();
+        for (ActiveExecution activeExecution: activeExecutions) {
+            ExecutionStatusSnapshot snapshot = activeExecution.executionStatus.get();
+            if (!page.addIfMatched(snapshot, snapshot.getExecutionId())) {
+                break;
+            }
+        }
+        return page.executionStatusList;
+    }
+
+    /**
+     * Returns the cursor of the given queued workflow execution.
+     *
+     * <p>Execution ids are positive, so the cursors of queued workflow executions are mapped to the negative numbers,
+     * in the order of the admission sequence numbers. Queued workflow executions thus precede all other workflow
+     * executions, and the cursor of a queued workflow execution remains valid while other workflow executions are
+     * admitted.
+     */
+    private static long queuedCursor(AdmissionTicket ticket) {
+        return Long.MIN_VALUE + ticket.getSequenceNumber();
+    }
+
+    /**
+     * Returns a list of finished workflow executions that match the given query.
+     *
+     * <p>The query is answered by the {@link StatusKeepingService}. If the query requests the summary projection, the
+     * request of each execution status is reduced accordingly.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> getFinishedExecutions(ExecutionStatusQuery query) {
+        boolean summary = query.getProjection() == ExecutionStatusQuery.Projection.SUMMARY;
+        return compose(statusKeepingService.queryExecutionStatuses(query), executionStatusList -> {
+            if (!summary) {
+                return CompletableFuture.completedFuture(executionStatusList);
+            }
+            return CompletableFuture.completedFuture(
+                new ExecutionStatusList()
+                    .setList(
+                        executionStatusList.getList().stream()
+                            .map(ExecutionStatusSnapshot::summarize)
+                            .collect(Collectors.toList())
+                    )
+                    .setNextCursor(executionStatusList.getNextCursor())
+            );
+        });
+    }
+
+    /**
+     * Returns the execution statuses of the given execution ids.
+     *
+     * <p>Execution statuses of active executions are taken from the internal registry. All other execution statuses
+     * are loaded from the {@link StatusKeepingService} with a single call of
+     * {@link StatusKeepingService#loadExecutionStatuses(List)}. The execution statuses of active executions are views
+     * with the same sharing as those returned by {@link #getExecutionStatus(long)}.
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> getExecutionStatuses(List<Long> executionIds) {
+        List<Long> executionIdsCopy = new ArrayList<>(executionIds);
+        Map<Long, ExecutionStatus> executionStatuses = new HashMap<>();
+        List<Long> inactiveIds = new ArrayList<>();
+        for (long executionId: executionIdsCopy) {
+            @Nullable ActiveExecution activeExecution = activeExecutionMap.get(executionId);
+            if (activeExecution != null) {
+                executionStatuses.put(executionId, activeExecution.executionStatus.get().toExecutionStatus());
+            } else {
+                inactiveIds.add(executionId);
+            }
+        }
+        CompletableFuture<List<ExecutionStatus>> loadedFuture = inactiveIds.isEmpty()
+            ? CompletableFuture.completedFuture(Collections.emptyList())
+            : statusKeepingService.loadExecutionStatuses(inactiveIds);
+        return compose(loadedFuture, loadedStatuses -> {
+            for (ExecutionStatus loadedStatus: loadedStatuses) {
+                executionStatuses.putIfAbsent(loadedStatus.getExecutionId(), loadedStatus);
+            }
+            List<ExecutionStatus> list = new ArrayList<>(executionStatuses.size());
+            for (long executionId: executionIdsCopy) {
+                @Nullable ExecutionStatus executionStatus = executionStatuses.get(executionId);
+                if (executionStatus != null) {
+                    list.add(executionStatus);
+                }
+            }
+            return CompletableFuture.completedFuture(new ExecutionStatusList().setList(list));
+        });
+    }
+
+    /**
+     * Returns the most frequent errors of workflow executions.
+     *
+     * <p>The errors are answered by the {@link StatusKeepingService}. Failures of active executions are therefore only
+     * included once the execution has finished.
+     */
+    @Override
+    public CompletableFuture<ErrorSummaryList> getTopErrors(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(String.format("Expected positive limit, but got %d.", limit));
+        }
+
+        return compose(statusKeepingService.getTopErrors(limit),
+            errorSummaries -> CompletableFuture.completedFuture(new ErrorSummaryList().setList(errorSummaries)));
+    }
+
+    /**
+     * Page of the result of {@link #getActiveExecutions(ExecutionStatusQuery)}.
+     */
+    private static final class Page {
+        private final ExecutionStatusQuery query;
+        private final int limit;
+        private final boolean summary;
+        private final ExecutionStatusList executionStatusList = new ExecutionStatusList();
+
+        /**
+         * Cursor of the last snapshot added to this page.
+         */
+        private long lastCursor;
+
+        private Page(ExecutionStatusQuery query) {
+            this.query = query;
+            limit = query.getLimit();
+            summary = query.getProjection() == ExecutionStatusQuery.Projection.SUMMARY;
+        }
+
+        /**
+         * Adds the given snapshot to this page if it is matched by the query.
+         *
+         * @param snapshot snapshot of the execution status
+         * @param cursor cursor of the snapshot, that is, its execution id or, for a queued workflow execution, the
+         *     value returned by {@link #queuedCursor(AdmissionTicket)}
+         * @return {@code false} if the limit had already been reached (in which case the next cursor of the list has
+         *     been set), {@code true} otherwise
+         */
+        private boolean addIfMatched(ExecutionStatusSnapshot snapshot, long cursor) {
+            if (!snapshot.matches(query)) {
+                return true;
+            }
             List<ExecutionStatus> list = executionStatusList.getList();
-            for (ActiveExecution activeExecution: activeExecutionMap.values()) {
-                list.add(new ExecutionStatus(activeExecution.executionStatus));
+            if (limit > 0 && list.size() == limit) {
+                executionStatusList.setNextCursor(lastCursor);
+                return false;
             }
-            return executionStatusList;
+            list.add(
+                summary
+                    ? snapshot.toSummaryExecutionStatus()
+                    : snapshot.toExecutionStatus()
+            );
+            lastCursor = cursor;
+            return true;
         }
     }
 }
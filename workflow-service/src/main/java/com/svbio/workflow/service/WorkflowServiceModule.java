@@ -10,6 +10,10 @@ import com.svbio.workflow.base.LifecycleManager;
 import com.svbio.workflow.base.LifecyclePhase;
 import com.svbio.workflow.base.LifecyclePhaseListener;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValue;
 import dagger.Module;
 import dagger.Provides;
 import scala.concurrent.ExecutionContext;
@@ -31,12 +35,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -67,8 +74,13 @@ import javax.xml.bind.JAXBException;
  *     {@link InterpreterEventsQualifier}. Any subscription will receive CloudKeeper interpreter events of type
  *     {@link xyz.cloudkeeper.interpreter.event.Event}.
  * </li><li>
- *     {@link ActorRef} instances using set-providers annotated with {@link ExecutionEventQualifier}. Any subscribed
- *     actor will receive events of type {@link ExecutionEvent}.
+ *     {@link ExecutionObserver} instances using set-providers annotated with {@link ExecutionEventQualifier}. Any
+ *     subscribed actor will receive events of type {@link ExecutionEvent}. Observers should be created with
+ *     {@link ObserverConfiguration#newExecutionObserver(String, ActorRef)}, so that their protocol is configurable.
+ * </li><li>
+ *     {@link RetentionTarget} instances using set-providers annotated with {@link RetentionTargetQualifier}. These
+ *     are swept by the {@link RetentionSweeper}, in addition to the configured status-keeping service (if it
+ *     implements {@link RetentionTarget}).
  * </li></ul>
  */
 @Module(
@@ -276,6 +288,32 @@ final class WorkflowServiceModule {
         return new FileStatusKeepingService(statusConfiguration.path, shortLivedExecutor, jaxbContext);
     }
 
+    @Provides(type = Provides.Type.MAP)
+    @StatusKeepingServiceQualifier
+    @StatusKeepingServiceKey("log")
+    @WorkflowServiceScope
+    static StatusKeepingService provideLogStatusKeepingService(LogStatusConfiguration statusConfiguration,
+            Executor shortLivedExecutor, JAXBContext jaxbContext, LifecycleManager lifecycleManager) {
+        LogStatusKeepingService statusKeepingService;
+        try {
+            statusKeepingService = LogStatusKeepingService.open(statusConfiguration.path,
+                statusConfiguration.segmentSize, shortLivedExecutor, jaxbContext);
+        } catch (IOException exception) {
+            throw new LifecycleException(String.format(
+                "Failed to open execution-status log in '%s'.", statusConfiguration.path
+            ), exception);
+        }
+        lifecycleManager.addLifecyclePhaseListener(
+            new LifecyclePhaseListener("Execution-Status Log", LifecyclePhase.STARTED) {
+                @Override
+                protected void onStop() throws IOException {
+                    statusKeepingService.close();
+                }
+            }
+        );
+        return statusKeepingService;
+    }
+
     @Provides(type = Provides.Type.MAP)
     @StatusKeepingServiceQualifier
     @StatusKeepingServiceKey("none")
@@ -285,8 +323,107 @@ final class WorkflowServiceModule {
     }
 
     @Provides
-    static StatusKeepingService provideStatusKeepingService(ServiceConfiguration serviceConfiguration,
-            @StatusKeepingServiceQualifier Map<String, Provider<StatusKeepingService>> statusKeepingMap) {
+    @WorkflowServiceScope
+    static WriteBehindPolicy provideWriteBehindPolicy(ServiceConfiguration serviceConfiguration) {
+        try {
+            return new WriteBehindPolicy(serviceConfiguration.writeBehindMaxBatchSize,
+                serviceConfiguration.writeBehindMaxDelayMillis, serviceConfiguration.writeBehindSync);
+        } catch (IllegalArgumentException exception) {
+            throw new LifecycleException("Invalid write-behind settings in configuration.", exception);
+        }
+    }
+
+    @Provides
+    @WorkflowServiceScope
+    static RetentionPolicy provideRetentionPolicy(RetentionConfiguration retentionConfiguration) {
+        try {
+            Map<ExecutionStatus.Status, RetentionPolicy.Limit> limits = new EnumMap<>(ExecutionStatus.Status.class);
+            limits.put(ExecutionStatus.Status.SUCCESSFUL, retentionConfiguration.newLimit("successful"));
+            limits.put(ExecutionStatus.Status.FAILED, retentionConfiguration.newLimit("failed"));
+            return new RetentionPolicy(limits, retentionConfiguration.newLimit("executionlog"));
+        } catch (IllegalArgumentException exception) {
+            throw new LifecycleException("Invalid retention settings in configuration.", exception);
+        }
+    }
+
+    @Provides
+    @WorkflowServiceScope
+    static RetentionSweeper provideRetentionSweeper(ServiceConfiguration serviceConfiguration,
+            @StatusKeepingServiceQualifier Map<String, Provider<StatusKeepingService>> statusKeepingMap,
+            @RetentionTargetQualifier Set<RetentionTarget> retentionTargets, RetentionPolicy retentionPolicy,
+            RetentionConfiguration retentionConfiguration, LifecycleManager lifecycleManager) {
+        List<RetentionTarget> targets = new ArrayList<>();
+        // The provider is scoped, so this is the same instance as in provideStatusKeepingService().
+        StatusKeepingService statusKeepingService = provideRawStatusKeepingService(serviceConfiguration,
+            statusKeepingMap);
+        if (statusKeepingService instanceof RetentionTarget) {
+            targets.add((RetentionTarget) statusKeepingService);
+        }
+        targets.addAll(retentionTargets);
+        RetentionSweeper retentionSweeper = new RetentionSweeper(targets, retentionPolicy, SystemClock.MILLIS,
+            new RateLimiter(SystemClock.NANO, retentionConfiguration.ioRate));
+        if (retentionConfiguration.intervalMillis > 0 && !retentionPolicy.isUnlimited()) {
+            ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "retention-sweeper");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            lifecycleManager.addLifecyclePhaseListener(
+                new LifecyclePhaseListener("Retention Sweeper", LifecyclePhase.INITIALIZED) {
+                    @Override
+                    protected void onStart() {
+                        executorService.scheduleWithFixedDelay(retentionSweeper, retentionConfiguration.intervalMillis,
+                            retentionConfiguration.intervalMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    @Override
+                    protected void onStop() {
+                        executorService.shutdownNow();
+                    }
+                }
+            );
+        }
+        return retentionSweeper;
+    }
+
+    /**
+     * Provides the reporter of service statistics, which is scheduled on a dedicated low-priority thread unless setting
+     * {@code statistics.interval} is 0.
+     */
+    @Provides
+    @WorkflowServiceScope
+    static StatisticsReporter provideStatisticsReporter(ServiceConfiguration serviceConfiguration,
+            LifecycleManager lifecycleManager) {
+        StatisticsReporter statisticsReporter = new StatisticsReporter();
+        long intervalMillis = serviceConfiguration.statisticsIntervalMillis;
+        if (intervalMillis > 0) {
+            ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "statistics-reporter");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            lifecycleManager.addLifecyclePhaseListener(
+                new LifecyclePhaseListener("Statistics Reporter", LifecyclePhase.INITIALIZED) {
+                    @Override
+                    protected void onStart() {
+                        executorService.scheduleWithFixedDelay(statisticsReporter, intervalMillis, intervalMillis,
+                            TimeUnit.MILLISECONDS);
+                    }
+
+                    @Override
+                    protected void onStop() {
+                        executorService.shutdownNow();
+                    }
+                }
+            );
+        }
+        return statisticsReporter;
+    }
+
+    private static StatusKeepingService provideRawStatusKeepingService(ServiceConfiguration serviceConfiguration,
+            Map<String, Provider<StatusKeepingService>> statusKeepingMap) {
         @Nullable Provider<StatusKeepingService> provider = statusKeepingMap.get(serviceConfiguration.statusKeeping);
         if (provider == null) {
             throw new LifecycleException(String.format(
@@ -297,6 +434,51 @@ final class WorkflowServiceModule {
         return provider.get();
     }
 
+    /**
+     * Provides the configured status-keeping service, decorated according to the write-behind and cache settings.
+     *
+     * <p>The {@link RetentionSweeper} is a parameter only so that it is created (and scheduled) together with the
+     * status-keeping service. The statistics of the status cache (if enabled) are reported by the
+     * {@link StatisticsReporter}.
+     *
+     * <p>When the service is stopped, the pending batch of the write-behind decorator is written, and stopping waits
+     * (for at most setting {@code writebehind.shutdowntimeout}) until it has been written. Lifecycle listeners are
+     * stopped in the reverse order of registration, so the underlying status-keeping service, which registered its
+     * listener earlier, is only stopped afterwards.
+     */
+    @Provides
+    @WorkflowServiceScope
+    static StatusKeepingService provideStatusKeepingService(ServiceConfiguration serviceConfiguration,
+            @StatusKeepingServiceQualifier Map<String, Provider<StatusKeepingService>> statusKeepingMap,
+            WriteBehindPolicy writeBehindPolicy, @LongRunningQualifier ScheduledExecutorService executorService,
+            LifecycleManager lifecycleManager, RetentionSweeper retentionSweeper,
+            StatisticsReporter statisticsReporter) {
+        StatusKeepingService statusKeepingService = provideRawStatusKeepingService(serviceConfiguration,
+            statusKeepingMap);
+        if (writeBehindPolicy.isEnabled()) {
+            WriteBehindStatusKeepingService writeBehindStatusKeepingService
+                = new WriteBehindStatusKeepingService(statusKeepingService, executorService, writeBehindPolicy);
+            lifecycleManager.addLifecyclePhaseListener(
+                new LifecyclePhaseListener("Status Write-Behind", LifecyclePhase.STARTED) {
+                    @Override
+                    protected void onStop() throws Exception {
+                        writeBehindStatusKeepingService.flush()
+                            .get(serviceConfiguration.writeBehindShutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+                }
+            );
+            statusKeepingService = writeBehindStatusKeepingService;
+        }
+        if (serviceConfiguration.maxCachedStatuses > 0) {
+            CachingStatusKeepingService cachingStatusKeepingService = new CachingStatusKeepingService(
+                statusKeepingService, SystemClock.NANO, serviceConfiguration.maxCachedStatuses,
+                serviceConfiguration.cachedStatusTimeToLiveMillis);
+            statisticsReporter.addSource("Execution-status cache", cachingStatusKeepingService::getCacheStatistics);
+            statusKeepingService = cachingStatusKeepingService;
+        }
+        return statusKeepingService;
+    }
+
     @Provides
     @WorkflowServiceScope
     static CloudKeeperEnvironmentFactory provideEnvironmentFactory(
@@ -307,21 +489,177 @@ final class WorkflowServiceModule {
             @Named(INSTANCE_PROVIDER_NAME) ActorRef instanceProviderActor,
             InstanceProvider instanceProvider,
             StagingAreaService stagingAreaService,
-            @InterpreterEventsQualifier Set<EventSubscription> interpreterEventSubscriptions) {
-        return new CloudKeeperEnvironmentFactoryImpl(executor, administratorActor, masterInterpreterActor,
-            executorActor, instanceProviderActor, instanceProvider, stagingAreaService,
-            ImmutableList.copyOf(interpreterEventSubscriptions));
+            @InterpreterEventsQualifier Set<EventSubscription> interpreterEventSubscriptions,
+            ServiceConfiguration serviceConfiguration, StatisticsReporter statisticsReporter) {
+        CloudKeeperEnvironmentFactoryImpl environmentFactory = new CloudKeeperEnvironmentFactoryImpl(executor,
+            administratorActor, masterInterpreterActor, executorActor, instanceProviderActor, instanceProvider,
+            stagingAreaService, ImmutableList.copyOf(interpreterEventSubscriptions),
+            serviceConfiguration.maxCachedEnvironments);
+        statisticsReporter.addSource("CloudKeeper environment cache", environmentFactory::getCacheStatistics);
+        return environmentFactory;
     }
 
     @Provides
     @WorkflowServiceScope
     static WorkflowService provideWorkflowService(
             CloudKeeperEnvironmentFactory environmentFactory,
-            @ExecutionEventQualifier Set<ActorRef> executionEventSubscribers,
+            @ExecutionEventQualifier Set<ExecutionObserver> executionEventSubscribers,
             StatusKeepingService statusKeepingService,
-            ExecutionContext executionContext) {
-        return new WorkflowServiceImpl(environmentFactory, ImmutableList.copyOf(executionEventSubscribers),
-            statusKeepingService, executionContext);
+            ExecutionContext executionContext,
+            AdmissionPolicy admissionPolicy,
+            DeduplicationPolicy deduplicationPolicy,
+            StatisticsReporter statisticsReporter) {
+        WorkflowServiceImpl workflowService = new WorkflowServiceImpl(environmentFactory,
+            ImmutableList.copyOf(executionEventSubscribers), statusKeepingService, executionContext, SystemClock.MILLIS,
+            admissionPolicy, deduplicationPolicy);
+        statisticsReporter.addSource("Execution observers", workflowService::getObserverStatistics);
+        if (deduplicationPolicy.isEnabled()) {
+            statisticsReporter.addSource("Submission deduplication", workflowService::getDeduplicationStatistics);
+        }
+        return workflowService;
+    }
+
+    @Provides
+    @WorkflowServiceScope
+    static DeduplicationPolicy provideDeduplicationPolicy(ServiceConfiguration serviceConfiguration) {
+        try {
+            return new DeduplicationPolicy(serviceConfiguration.deduplicationWindowMillis,
+                serviceConfiguration.maxDeduplicatedRequests);
+        } catch (IllegalArgumentException exception) {
+            throw new LifecycleException("Invalid deduplication settings in configuration.", exception);
+        }
+    }
+
+    @Provides
+    @WorkflowServiceScope
+    static AdmissionPolicy provideAdmissionPolicy(AdmissionConfiguration admissionConfiguration) {
+        try {
+            return new AdmissionPolicy(admissionConfiguration.maxConcurrent, admissionConfiguration.queueCapacity,
+                admissionConfiguration.heapHighWaterMark, admissionConfiguration.retryAfterSeconds,
+                admissionConfiguration.defaultTenantPolicy, admissionConfiguration.tenantPolicies);
+        } catch (IllegalArgumentException exception) {
+            throw new LifecycleException("Invalid admission settings in configuration.", exception);
+        }
+    }
+
+    @WorkflowServiceScope
+    static final class AdmissionConfiguration {
+        private final int maxConcurrent;
+        private final int queueCapacity;
+        private final double heapHighWaterMark;
+        private final long retryAfterSeconds;
+        private final AdmissionPolicy.TenantPolicy defaultTenantPolicy;
+        private final Map<String, AdmissionPolicy.TenantPolicy> tenantPolicies;
+
+        @Inject
+        AdmissionConfiguration(Config config) {
+            Config admissionConfig = config.getConfig("com.svbio.workflow.admission");
+            maxConcurrent = admissionConfig.getInt("maxconcurrent");
+            queueCapacity = admissionConfig.getInt("queuecapacity");
+            heapHighWaterMark = admissionConfig.getDouble("heapwatermark");
+            retryAfterSeconds = admissionConfig.getDuration("retryafter", TimeUnit.SECONDS);
+
+            Config tenantDefaultsConfig = admissionConfig.getConfig("tenantdefaults");
+            defaultTenantPolicy = newTenantPolicy(tenantDefaultsConfig);
+            Map<String, AdmissionPolicy.TenantPolicy> newTenantPolicies = new HashMap<>();
+            for (Map.Entry<String, ConfigValue> entry: admissionConfig.getObject("tenants").entrySet()) {
+                if (!(entry.getValue() instanceof ConfigObject)) {
+                    throw new ConfigException.WrongType(entry.getValue().origin(), String.format(
+                        "Expected object as settings for tenant '%s', but got %s.",
+                        entry.getKey(), entry.getValue().valueType()
+                    ));
+                }
+                newTenantPolicies.put(entry.getKey(),
+                    newTenantPolicy(((ConfigObject) entry.getValue()).toConfig().withFallback(tenantDefaultsConfig)));
+            }
+            tenantPolicies = Collections.unmodifiableMap(newTenantPolicies);
+        }
+
+        private static AdmissionPolicy.TenantPolicy newTenantPolicy(Config tenantConfig) {
+            try {
+                return new AdmissionPolicy.TenantPolicy(tenantConfig.getDouble("weight"),
+                    tenantConfig.getInt("maxconcurrent"), tenantConfig.getInt("queuecapacity"));
+            } catch (IllegalArgumentException exception) {
+                throw new LifecycleException("Invalid tenant settings in configuration.", exception);
+            }
+        }
+    }
+
+    @WorkflowServiceScope
+    static final class RetentionConfiguration {
+        private final Config retentionConfig;
+        private final long intervalMillis;
+        private final long ioRate;
+
+        @Inject
+        RetentionConfiguration(Config config) {
+            retentionConfig = config.getConfig("com.svbio.workflow.retention");
+            intervalMillis = retentionConfig.getDuration("interval", TimeUnit.MILLISECONDS);
+            ioRate = retentionConfig.getLong("iorate");
+            if (intervalMillis < 0 || ioRate <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative retention.interval and positive retention.iorate, but got %d ms and %d.",
+                    intervalMillis, ioRate
+                ));
+            }
+        }
+
+        /**
+         * Returns a new {@link RetentionPolicy.Limit} with the settings configured for the given name.
+         *
+         * @throws IllegalArgumentException if the configured settings are invalid
+         */
+        private RetentionPolicy.Limit newLimit(String name) {
+            Config limitConfig = retentionConfig.getConfig(name);
+            return new RetentionPolicy.Limit(limitConfig.getDuration("maxage", TimeUnit.MILLISECONDS),
+                limitConfig.getInt("maxcount"));
+        }
+    }
+
+    @WorkflowServiceScope
+    static final class ObserverConfiguration {
+        private final Config defaultsConfig;
+        private final Config namedConfig;
+
+        @Inject
+        ObserverConfiguration(Config config) {
+            Config observerConfig = config.getConfig("com.svbio.workflow.observers");
+            defaultsConfig = observerConfig.getConfig("defaults");
+            namedConfig = observerConfig.getConfig("named");
+        }
+
+        /**
+         * Returns a new {@link ExecutionObserver} with the settings configured for the given name.
+         *
+         * @param name name of the observer, which is also the key of the observer-specific settings
+         * @param actor actor that is notified of {@link ExecutionEvent} messages
+         * @return the new observer
+         * @throws LifecycleException if the configured settings are invalid
+         */
+        ExecutionObserver newExecutionObserver(String name, ActorRef actor) {
+            String path = ConfigUtil.joinPath(name);
+            Config effectiveConfig = namedConfig.hasPath(path)
+                ? namedConfig.getConfig(path).withFallback(defaultsConfig)
+                : defaultsConfig;
+            String mode = effectiveConfig.getString("mode");
+            try {
+                switch (mode) {
+                    case "blocking":
+                        return ExecutionObserver.blocking(
+                            name, actor, effectiveConfig.getDuration("timeout", TimeUnit.MILLISECONDS));
+                    case "fire-and-forget":
+                        return ExecutionObserver.fireAndForget(name, actor);
+                    default:
+                        throw new LifecycleException(String.format(
+                            "Expected 'blocking' or 'fire-and-forget' as mode of execution observer '%s', but got "
+                                + "'%s'.", name, mode
+                        ));
+                }
+            } catch (IllegalArgumentException exception) {
+                throw new LifecycleException(
+                    String.format("Invalid settings of execution observer '%s' in configuration.", name), exception);
+            }
+        }
     }
 
     @WorkflowServiceScope
@@ -348,6 +686,16 @@ final class WorkflowServiceModule {
         private final int defaultMemory;
         private final String staging;
         private final String statusKeeping;
+        private final int maxCachedEnvironments;
+        private final long deduplicationWindowMillis;
+        private final int maxDeduplicatedRequests;
+        private final int writeBehindMaxBatchSize;
+        private final long writeBehindMaxDelayMillis;
+        private final WriteBehindPolicy.Sync writeBehindSync;
+        private final long writeBehindShutdownTimeoutMillis;
+        private final int maxCachedStatuses;
+        private final long cachedStatusTimeToLiveMillis;
+        private final long statisticsIntervalMillis;
 
         @Inject
         ServiceConfiguration(Config config) {
@@ -357,6 +705,30 @@ final class WorkflowServiceModule {
             defaultMemory = serviceConfig.getInt("requirements.memory");
             staging = serviceConfig.getString("staging");
             statusKeeping = serviceConfig.getString("status");
+            maxCachedEnvironments = serviceConfig.getInt("environmentcache.maxsize");
+            deduplicationWindowMillis = serviceConfig.getDuration("deduplication.window", TimeUnit.MILLISECONDS);
+            maxDeduplicatedRequests = serviceConfig.getInt("deduplication.maxsize");
+            maxCachedStatuses = serviceConfig.getInt("statuscache.maxsize");
+            cachedStatusTimeToLiveMillis = serviceConfig.getDuration("statuscache.ttl", TimeUnit.MILLISECONDS);
+            if (maxCachedStatuses < 0 || cachedStatusTimeToLiveMillis <= 0) {
+                throw new LifecycleException(String.format(
+                    "Expected non-negative statuscache.maxsize and positive statuscache.ttl, but got %d and %d ms.",
+                    maxCachedStatuses, cachedStatusTimeToLiveMillis
+                ));
+            }
+            statisticsIntervalMillis = serviceConfig.getDuration("statistics.interval", TimeUnit.MILLISECONDS);
+            writeBehindMaxBatchSize = serviceConfig.getInt("writebehind.maxbatchsize");
+            writeBehindMaxDelayMillis = serviceConfig.getDuration("writebehind.maxdelay", TimeUnit.MILLISECONDS);
+            writeBehindShutdownTimeoutMillis
+                = serviceConfig.getDuration("writebehind.shutdowntimeout", TimeUnit.MILLISECONDS);
+            String fsync = serviceConfig.getString("writebehind.fsync");
+            switch (fsync) {
+                case "never": writeBehindSync = WriteBehindPolicy.Sync.NEVER; break;
+                case "batch": writeBehindSync = WriteBehindPolicy.Sync.BATCH; break;
+                default: throw new LifecycleException(String.format(
+                    "Expected \"never\" or \"batch\" for setting writebehind.fsync, but got '%s'.", fsync
+                ));
+            }
         }
     }
 
@@ -386,4 +758,23 @@ final class WorkflowServiceModule {
             path = Paths.get(serviceConfig.getString("path"));
         }
     }
+
+    @WorkflowServiceScope
+    static class LogStatusConfiguration {
+        private final Path path;
+        private final long segmentSize;
+
+        @Inject
+        LogStatusConfiguration(Config config) {
+            Config serviceConfig = config.getConfig("com.svbio.workflow.logstatus");
+            path = Paths.get(serviceConfig.getString("path"));
+            segmentSize = serviceConfig.getBytes("segmentsize");
+            if (segmentSize <= 0 || segmentSize > LogStatusKeepingService.MAX_SEGMENT_SIZE) {
+                throw new LifecycleException(String.format(
+                    "Expected segment size between 1 and %d bytes, but got %d.",
+                    LogStatusKeepingService.MAX_SEGMENT_SIZE, segmentSize
+                ));
+            }
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package com.svbio.workflow.service;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings of a {@link WriteBehindStatusKeepingService}.
+ */
+final class WriteBehindPolicy {
+    /**
+     * Policy that disables write-behind batching, that is, every execution status is persisted individually.
+     */
+    static final WriteBehindPolicy DISABLED = new WriteBehindPolicy(0, 0, Sync.NEVER);
+
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final Sync sync;
+
+    /**
+     * Policy for forcing batches of execution statuses to the storage device.
+     */
+    enum Sync {
+        /**
+         * Batches are not forced to the storage device. An execution status is considered durable once the
+         * underlying status-keeping service has written it (for instance, into the page cache of the operating
+         * system).
+         */
+        NEVER,
+
+        /**
+         * Each batch is forced to the storage device before its execution statuses are considered durable.
+         */
+        BATCH
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBatchSize number of execution statuses that causes a batch to be written immediately, or 0 if
+     *     write-behind batching is disabled
+     * @param maxDelayMillis maximum time (in milliseconds) that an execution status waits for other execution statuses
+     *     before its batch is written
+     * @param sync policy for forcing batches to the storage device
+     * @throws IllegalArgumentException if a numeric argument is negative
+     */
+    WriteBehindPolicy(int maxBatchSize, long maxDelayMillis, Sync sync) {
+        Objects.requireNonNull(sync);
+        if (maxBatchSize < 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid write-behind policy (maximum batch size = %d, maximum delay = %d ms).",
+                maxBatchSize, maxDelayMillis
+            ));
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.sync = sync;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("write-behind policy (maximum batch size = %d, maximum delay = %d ms, sync = %s)",
+            maxBatchSize, maxDelayMillis, sync);
+    }
+
+    boolean isEnabled() {
+        return maxBatchSize > 0;
+    }
+
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    Sync getSync() {
+        return sync;
+    }
+}
@@ -0,0 +1,253 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Decorator for a {@link StatusKeepingService} that coalesces persisted execution statuses into batches.
+ *
+ * <p>Execution statuses passed to {@link #persistExecutionStatus(ExecutionStatus)} are collected into a batch. The
+ * batch is passed to {@link StatusKeepingService#persistExecutionStatuses(List, boolean)} of the underlying service
+ * once it contains {@link WriteBehindPolicy#getMaxBatchSize()} execution statuses, or once the first execution status
+ * in the batch has been waiting for {@link WriteBehindPolicy#getMaxDelayMillis()} milliseconds, whichever comes first
+ * (group commit).
+ *
+ * <p>The future returned by {@link #persistExecutionStatus(ExecutionStatus)} is completed only once the batch has been
+ * written (and, depending on {@link WriteBehindPolicy#getSync()}, forced to the storage device). Since
+ * {@link WorkflowServiceImpl} keeps an execution in its registry of active executions until this future is completed,
+ * an execution is never "lost" between its registry and the status-keeping service. Until then, execution statuses are
+ * also returned by {@link #loadExecutionStatus(long)}.
+ */
+final class WriteBehindStatusKeepingService implements StatusKeepingService {
+    private final StatusKeepingService delegate;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final boolean sync;
+
+    /**
+     * Execution statuses that have been passed to {@link #persistExecutionStatus(ExecutionStatus)}, but that have not
+     * yet been written by the underlying status-keeping service.
+     */
+    private final Map<Long, ExecutionStatus> pendingStatuses = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    /**
+     * The batch that is currently being collected. Guarded by {@link #lock}.
+     */
+    private List<PendingWrite> currentBatch = new ArrayList<>();
+
+    /**
+     * Timer that triggers writing {@link #currentBatch} after the maximum delay. Guarded by {@link #lock}.
+     */
+    @Nullable private ScheduledFuture<?> flushTimer;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate underlying status-keeping service
+     * @param scheduledExecutorService scheduler for the timer that triggers writing incomplete batches
+     * @param policy write-behind policy, must be enabled
+     * @throws IllegalArgumentException if the given policy is not enabled
+     */
+    WriteBehindStatusKeepingService(StatusKeepingService delegate, ScheduledExecutorService scheduledExecutorService,
+            WriteBehindPolicy policy) {
+        if (!policy.isEnabled()) {
+            throw new IllegalArgumentException(String.format("Expected enabled policy, but got %s.", policy));
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.scheduledExecutorService = Objects.requireNonNull(scheduledExecutorService);
+        maxBatchSize = policy.getMaxBatchSize();
+        maxDelayMillis = policy.getMaxDelayMillis();
+        sync = policy.getSync() == WriteBehindPolicy.Sync.BATCH;
+    }
+
+    private static final class PendingWrite {
+        private final ExecutionStatus executionStatus;
+        private final CompletableFuture<ExecutionStatus> future = new CompletableFuture<>();
+
+        private PendingWrite(ExecutionStatus executionStatus) {
+            this.executionStatus = executionStatus;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+        long executionId = executionStatus.getExecutionId();
+        if (executionId <= 0) {
+            throw new IllegalArgumentException(String.format("Expected execution id, but got %d.", executionId));
+        }
+
+        // No need to copy executionStatus: The contract of StatusKeepingService guarantees that it is not modified.
+        PendingWrite pendingWrite = new PendingWrite(executionStatus);
+        pendingStatuses.put(executionId, executionStatus);
+        @Nullable List<PendingWrite> fullBatch = null;
+        synchronized (lock) {
+            currentBatch.add(pendingWrite);
+            if (currentBatch.size() >= maxBatchSize) {
+                fullBatch = takeCurrentBatch();
+            } else if (flushTimer == null) {
+                flushTimer = scheduledExecutorService.schedule(
+                    () -> { flush(); }, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            write(fullBatch);
+        }
+        return pendingWrite.future;
+    }
+
+    /**
+     * Returns the current batch and starts a new one. Must be called while holding {@link #lock}.
+     */
+    private List<PendingWrite> takeCurrentBatch() {
+        assert Thread.holdsLock(lock);
+        List<PendingWrite> batch = currentBatch;
+        currentBatch = new ArrayList<>();
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Writes the current batch (if non-empty) without waiting for the maximum delay.
+     *
+     * <p>This method is called when the maximum delay has elapsed, and when the service is stopped. In the latter case,
+     * the caller needs to wait for the returned future before stopping the underlying service, because the underlying
+     * service may write the batch asynchronously.
+     *
+     * @return future that will be completed once the current batch has been written (normally or exceptionally)
+     */
+    CompletableFuture<Void> flush() {
+        List<PendingWrite> batch;
+        synchronized (lock) {
+            batch = takeCurrentBatch();
+        }
+        return batch.isEmpty()
+            ? CompletableFuture.completedFuture(null)
+            : write(batch);
+    }
+
+    private CompletableFuture<Void> write(List<PendingWrite> batch) {
+        CompletableFuture<Void> batchFuture;
+        try {
+            batchFuture = delegate.persistExecutionStatuses(
+                batch.stream().map(pendingWrite -> pendingWrite.executionStatus).collect(Collectors.toList()),
+                sync
+            );
+        } catch (RuntimeException exception) {
+            batchFuture = new CompletableFuture<>();
+            batchFuture.completeExceptionally(exception);
+        }
+        return batchFuture.whenComplete((@Nullable Void ignored, @Nullable Throwable throwable) -> {
+            for (PendingWrite pendingWrite: batch) {
+                ExecutionStatus executionStatus = pendingWrite.executionStatus;
+                pendingStatuses.remove(executionStatus.getExecutionId(), executionStatus);
+                if (throwable == null) {
+                    pendingWrite.future.complete(executionStatus);
+                } else {
+                    pendingWrite.future.completeExceptionally(throwable);
+                }
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+        @Nullable ExecutionStatus pendingStatus = pendingStatuses.get(executionId);
+        return pendingStatus != null
+            ? CompletableFuture.completedFuture(pendingStatus)
+            : delegate.loadExecutionStatus(executionId);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Pending execution statuses take precedence over the execution statuses loaded from the underlying service.
+     */
+    @Override
+    public CompletableFuture<List<ExecutionStatus>> loadExecutionStatuses(List<Long> executionIds) {
+        List<Long> executionIdsCopy = new ArrayList<>(executionIds);
+        Map<Long, ExecutionStatus> snapshot = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (long executionId: executionIdsCopy) {
+            @Nullable ExecutionStatus pendingStatus = pendingStatuses.get(executionId);
+            if (pendingStatus != null) {
+                snapshot.put(executionId, pendingStatus);
+            } else {
+                missingIds.add(executionId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                executionIdsCopy.stream().map(snapshot::get).collect(Collectors.toList())
+            );
+        }
+        CompletableFuture<List<ExecutionStatus>> future = new CompletableFuture<>();
+        delegate.loadExecutionStatuses(missingIds).whenComplete(
+            (@Nullable List<ExecutionStatus> loadedStatuses, @Nullable Throwable throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                    return;
+                }
+
+                assert loadedStatuses != null;
+                for (ExecutionStatus loadedStatus: loadedStatuses) {
+                    snapshot.putIfAbsent(loadedStatus.getExecutionId(), loadedStatus);
+                }
+                future.complete(
+                    executionIdsCopy.stream()
+                        .map(snapshot::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList())
+                );
+            }
+        );
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Queries are passed to the underlying service. Execution statuses that are still pending are therefore not
+     * included in the result (or included with their previously written status). This is acceptable for queries of
+     * historical executions, because an execution status is pending for at most the maximum delay (plus the time it
+     * takes the underlying service to write a batch).
+     */
+    @Override
+    public CompletableFuture<ExecutionStatusList> queryExecutionStatuses(ExecutionStatusQuery query) {
+        return delegate.queryExecutionStatuses(query);
+    }
+
+    @Override
+    public CompletableFuture<List<ErrorSummary>> getTopErrors(int limit) {
+        return delegate.getTopErrors(limit);
+    }
+
+    /**
+     * Returns the number of execution statuses that have not yet been written by the underlying status-keeping
+     * service.
+     */
+    int getNumberOfPendingStatuses() {
+        return pendingStatuses.size();
+    }
+}
@@ -0,0 +1,206 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionRejectedException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdmissionControllerTest {
+    private static final String TENANT = "tenant";
+
+    private static final class MutableClock implements Clock {
+        private final AtomicLong currentTimeMillis = new AtomicLong(0);
+
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return currentTimeMillis.get();
+        }
+    }
+
+    private static final class Ticket extends AdmissionTicket {
+        private final String name;
+        private final List<Ticket> admittedTickets;
+        @Nullable private Long queueWaitMillis;
+        @Nullable private Integer queueDepth;
+
+        private Ticket(String tenant, String name, Clock clock, List<Ticket> admittedTickets) {
+            super(tenant, clock.getCurrentTime());
+            this.name = name;
+            this.admittedTickets = admittedTickets;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        @Override
+        void admitted(@Nullable Long newQueueWaitMillis, @Nullable Integer newQueueDepth) {
+            queueWaitMillis = newQueueWaitMillis;
+            queueDepth = newQueueDepth;
+            admittedTickets.add(this);
+        }
+    }
+
+    private static List<String> names(List<Ticket> tickets) {
+        List<String> names = new ArrayList<>(tickets.size());
+        for (Ticket ticket: tickets) {
+            names.add(ticket.name);
+        }
+        return names;
+    }
+
+    @Test
+    public void maxConcurrent() throws ExecutionRejectedException {
+        MutableClock clock = new MutableClock();
+        AdmissionController<Ticket> controller
+            = new AdmissionController<>(new AdmissionPolicy(2, 2, 0, 10), clock, () -> 0.0);
+        List<Ticket> admitted = new ArrayList<>();
+
+        Ticket a = new Ticket(TENANT, "a", clock, admitted);
+        controller.submit(a);
+        controller.submit(new Ticket(TENANT, "b", clock, admitted));
+        Ticket c = new Ticket(TENANT, "c", clock, admitted);
+        controller.submit(c);
+        Ticket d = new Ticket(TENANT, "d", clock, admitted);
+        controller.submit(d);
+        Assert.assertEquals(names(admitted), Arrays.asList("a", "b"));
+        Assert.assertEquals(controller.getQueuedTickets(), Arrays.asList(c, d));
+        try {
+            controller.submit(new Ticket(TENANT, "e", clock, admitted));
+            Assert.fail();
+        } catch (ExecutionRejectedException exception) {
+            Assert.assertEquals(exception.getReason(), ExecutionRejectedException.Reason.SERVICE_AT_CAPACITY);
+            Assert.assertEquals(exception.getRetryAfterSeconds(), 10);
+        }
+
+        clock.currentTimeMillis.set(5);
+        controller.release(a);
+        Assert.assertEquals(names(admitted), Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(c.queueWaitMillis, Long.valueOf(5));
+        Assert.assertEquals(c.queueDepth, Integer.valueOf(0));
+        Assert.assertEquals(controller.getRunning(), 2);
+
+        Assert.assertTrue(controller.withdraw(d));
+        Assert.assertFalse(controller.withdraw(d));
+        controller.release(c);
+        Assert.assertEquals(names(admitted), Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(controller.getRunning(), 1);
+        Assert.assertEquals(controller.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void heapHighWaterMark() throws ExecutionRejectedException {
+        MutableClock clock = new MutableClock();
+        double[] heapUsage = { 0.9 };
+        AdmissionController<Ticket> controller
+            = new AdmissionController<>(new AdmissionPolicy(0, 1, 0.8, 10), clock, () -> heapUsage[0]);
+        List<Ticket> admitted = new ArrayList<>();
+
+        // The first ticket is admitted regardless of the heap usage, in order to guarantee progress
+        Ticket a = new Ticket(TENANT, "a", clock, admitted);
+        controller.submit(a);
+        controller.submit(new Ticket(TENANT, "b", clock, admitted));
+        Assert.assertEquals(names(admitted), Collections.singletonList("a"));
+
+        heapUsage[0] = 0.5;
+        controller.release(a);
+        Assert.assertEquals(names(admitted), Arrays.asList("a", "b"));
+        controller.submit(new Ticket(TENANT, "c", clock, admitted));
+        Assert.assertEquals(names(admitted), Arrays.asList("a", "b", "c"));
+
+        heapUsage[0] = 0.9;
+        controller.submit(new Ticket(TENANT, "d", clock, admitted));
+        Assert.assertEquals(controller.getQueueDepth(), 1);
+    }
+
+    /**
+     * Verifies that a tenant with few queued tickets is not starved by a tenant with many queued tickets, and that
+     * admissions are proportional to the weights of the tenants.
+     */
+    @Test
+    public void weightedFairQueuing() throws ExecutionRejectedException {
+        MutableClock clock = new MutableClock();
+        Map<String, AdmissionPolicy.TenantPolicy> tenantPolicies = new HashMap<>();
+        tenantPolicies.put("heavy", new AdmissionPolicy.TenantPolicy(2, 0, 0));
+        AdmissionController<Ticket> controller = new AdmissionController<>(
+            new AdmissionPolicy(1, 1000, 0, 10, AdmissionPolicy.TenantPolicy.DEFAULT, tenantPolicies),
+            clock,
+            () -> 0.0
+        );
+        List<Ticket> admitted = new ArrayList<>();
+
+        for (int i = 0; i < 100; ++i) {
+            controller.submit(new Ticket("bulk", "bulk" + i, clock, admitted));
+        }
+        for (int i = 0; i < 100; ++i) {
+            controller.submit(new Ticket("heavy", "heavy" + i, clock, admitted));
+        }
+        controller.submit(new Ticket("small", "small", clock, admitted));
+        Assert.assertEquals(names(admitted), Collections.singletonList("bulk0"));
+
+        // Admit 40 further tickets
+        for (int i = 0; i < 40; ++i) {
+            controller.release(admitted.get(admitted.size() - 1));
+        }
+        List<String> names = names(admitted.subList(1, admitted.size()));
+        Assert.assertTrue(names.indexOf("small") >= 0 && names.indexOf("small") < 4, names.toString());
+        long heavy = names.stream().filter(name -> name.startsWith("heavy")).count();
+        long bulk = names.stream().filter(name -> name.startsWith("bulk")).count();
+        Assert.assertTrue(Math.abs(heavy - 2 * bulk) <= 3, names.toString());
+    }
+
+    @Test
+    public void tenantLimits() throws ExecutionRejectedException {
+        MutableClock clock = new MutableClock();
+        AdmissionController<Ticket> controller = new AdmissionController<>(
+            new AdmissionPolicy(0, 10, 0, 10, new AdmissionPolicy.TenantPolicy(1, 1, 1), Collections.emptyMap()),
+            clock,
+            () -> 0.0
+        );
+        List<Ticket> admitted = new ArrayList<>();
+
+        Ticket a1 = new Ticket("a", "a1", clock, admitted);
+        controller.submit(a1);
+        controller.submit(new Ticket("a", "a2", clock, admitted));
+        try {
+            controller.submit(new Ticket("a", "a3", clock, admitted));
+            Assert.fail();
+        } catch (ExecutionRejectedException exception) {
+            Assert.assertEquals(exception.getReason(), ExecutionRejectedException.Reason.TENANT_AT_CAPACITY);
+        }
+        controller.submit(new Ticket("b", "b1", clock, admitted));
+        Assert.assertEquals(names(admitted), Arrays.asList("a1", "b1"));
+
+        controller.release(a1);
+        Assert.assertEquals(names(admitted), Arrays.asList("a1", "b1", "a2"));
+    }
+
+    @Test
+    public void unlimited() throws ExecutionRejectedException {
+        MutableClock clock = new MutableClock();
+        AdmissionController<Ticket> controller
+            = new AdmissionController<>(AdmissionPolicy.UNLIMITED, clock, () -> 1.0);
+        List<Ticket> admitted = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            controller.submit(new Ticket(TENANT, String.valueOf(i), clock, admitted));
+        }
+        Assert.assertEquals(admitted.size(), 100);
+        Assert.assertEquals(controller.getRunning(), 100);
+        Assert.assertTrue(controller.getQueuedTickets().isEmpty());
+    }
+}
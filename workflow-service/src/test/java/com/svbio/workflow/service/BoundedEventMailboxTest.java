@@ -0,0 +1,147 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MessageQueue;
+import akka.testkit.JavaTestKit;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import scala.Option;
+import xyz.cloudkeeper.interpreter.event.BeginExecutionTraceEvent;
+import xyz.cloudkeeper.interpreter.event.EndExecutionTraceEvent;
+import xyz.cloudkeeper.model.immutable.execution.ExecutionTrace;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BoundedEventMailboxTest {
+    @Nullable private ActorSystem actorSystem;
+
+    @BeforeClass
+    public void setup() {
+        actorSystem = ActorSystem.create(getClass().getSimpleName());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        assert actorSystem != null;
+        JavaTestKit.shutdownActorSystem(actorSystem);
+    }
+
+    private MessageQueue newQueue(BoundedEventMailbox.OverflowPolicy overflowPolicy) {
+        assert actorSystem != null;
+        return new BoundedEventMailbox(2, overflowPolicy)
+            .create(Option.<ActorRef>empty(), Option.apply(actorSystem));
+    }
+
+    private void enqueue(MessageQueue queue, Object... messages) {
+        assert actorSystem != null;
+        for (Object message: messages) {
+            queue.enqueue(actorSystem.deadLetters(), Envelope.apply(message, ActorRef.noSender(), actorSystem));
+        }
+    }
+
+    private static List<Object> dequeueAll(MessageQueue queue) {
+        List<Object> messages = new ArrayList<>();
+        @Nullable Envelope envelope = queue.dequeue();
+        while (envelope != null) {
+            messages.add(envelope.message());
+            envelope = queue.dequeue();
+        }
+        Assert.assertFalse(queue.hasMessages());
+        return messages;
+    }
+
+    private static BeginExecutionTraceEvent begin(String trace) {
+        return BeginExecutionTraceEvent.of(1, 0, ExecutionTrace.valueOf(trace));
+    }
+
+    private static EndExecutionTraceEvent end(String trace) {
+        return EndExecutionTraceEvent.of(1, 0, ExecutionTrace.valueOf(trace), true);
+    }
+
+    @Test
+    public void dropOldest() {
+        assert actorSystem != null;
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        long droppedCount = overflowCounters.getDroppedCount();
+        MessageQueue queue = newQueue(BoundedEventMailbox.OverflowPolicy.DROP_OLDEST);
+        BeginExecutionTraceEvent first = begin("/a");
+        BeginExecutionTraceEvent second = begin("/b");
+        BeginExecutionTraceEvent third = begin("/c");
+
+        // Messages other than interpreter events neither count towards the capacity nor are dropped.
+        enqueue(queue, "control", first, second, third);
+        Assert.assertEquals(queue.numberOfMessages(), 3);
+        Assert.assertEquals(dequeueAll(queue), Arrays.asList("control", second, third));
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount + 1);
+    }
+
+    @Test
+    public void dropNewest() {
+        assert actorSystem != null;
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        long droppedCount = overflowCounters.getDroppedCount();
+        MessageQueue queue = newQueue(BoundedEventMailbox.OverflowPolicy.DROP_NEWEST);
+        BeginExecutionTraceEvent first = begin("/a");
+        BeginExecutionTraceEvent second = begin("/b");
+        EndExecutionTraceEvent rootEnd = end("");
+
+        // The end event of the root execution trace is never dropped.
+        enqueue(queue, first, second, begin("/c"), rootEnd, "control");
+        Assert.assertEquals(dequeueAll(queue), Arrays.asList(first, second, rootEnd, "control"));
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount + 1);
+    }
+
+    @Test
+    public void coalesce() {
+        assert actorSystem != null;
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        long droppedCount = overflowCounters.getDroppedCount();
+        long coalescedCount = overflowCounters.getCoalescedCount();
+        MessageQueue queue = newQueue(BoundedEventMailbox.OverflowPolicy.COALESCE);
+        BeginExecutionTraceEvent beginA = begin("/a");
+        BeginExecutionTraceEvent beginB = begin("/b");
+        EndExecutionTraceEvent endA = end("/a");
+
+        enqueue(queue, beginA, beginB, endA);
+        Assert.assertEquals(queue.numberOfMessages(), 2);
+        Assert.assertEquals(overflowCounters.getCoalescedCount(), coalescedCount + 1);
+
+        // There is no begin event for "/c" in the queue, so its end event is dropped.
+        enqueue(queue, end("/c"));
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount + 1);
+
+        List<Object> messages = dequeueAll(queue);
+        Assert.assertEquals(messages.size(), 2);
+        Assert.assertSame(messages.get(0), beginB);
+        BoundedEventMailbox.CoalescedEvents coalescedEvents = (BoundedEventMailbox.CoalescedEvents) messages.get(1);
+        Assert.assertSame(coalescedEvents.getBeginEvent(), beginA);
+        Assert.assertSame(coalescedEvents.getEndEvent(), endA);
+    }
+
+    @Test
+    public void invalidSettings() {
+        try {
+            new BoundedEventMailbox(0, BoundedEventMailbox.OverflowPolicy.DROP_NEWEST);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+
+        try {
+            BoundedEventMailbox.OverflowPolicy.fromConfigValue("block");
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+
+        try {
+            new BoundedEventMailbox(2, BoundedEventMailbox.OverflowPolicy.SPILL);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+        Assert.assertSame(BoundedEventMailbox.OverflowPolicy.fromConfigValue("drop-oldest"),
+            BoundedEventMailbox.OverflowPolicy.DROP_OLDEST);
+    }
+}
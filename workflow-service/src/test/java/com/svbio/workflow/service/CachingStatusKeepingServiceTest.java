@@ -0,0 +1,146 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class CachingStatusKeepingServiceTest {
+    private static final long TIME_TO_LIVE_MILLIS = 1_000;
+
+    private static final class MutableClock implements Clock {
+        private long currentTimeMillis = 0;
+
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return currentTimeMillis;
+        }
+    }
+
+    /**
+     * In-memory status-keeping service that counts loads.
+     */
+    private static final class MapStatusKeepingService implements StatusKeepingService {
+        private final Map<Long, ExecutionStatus> map = new HashMap<>();
+        private int loadCount = 0;
+
+        @Override
+        public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+            map.put(executionStatus.getExecutionId(), executionStatus);
+            return CompletableFuture.completedFuture(executionStatus);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+            ++loadCount;
+            @Nullable ExecutionStatus executionStatus = map.get(executionId);
+            if (executionStatus == null) {
+                CompletableFuture<ExecutionStatus> future = new CompletableFuture<>();
+                future.completeExceptionally(new UnknownExecutionIdException(executionId));
+                return future;
+            }
+            return CompletableFuture.completedFuture(new ExecutionStatus(executionStatus));
+        }
+    }
+
+    private static ExecutionStatus executionStatus(long executionId, ExecutionStatus.Status status) {
+        return new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(status);
+    }
+
+    @Test
+    public void readThroughAndWriteThrough() throws Exception {
+        MapStatusKeepingService delegate = new MapStatusKeepingService();
+        MutableClock clock = new MutableClock();
+        CachingStatusKeepingService service = new CachingStatusKeepingService(delegate, clock, 10, TIME_TO_LIVE_MILLIS);
+
+        // Write-through: no load from the underlying service
+        ExecutionStatus first = executionStatus(1, ExecutionStatus.Status.SUCCESSFUL);
+        service.persistExecutionStatus(first).get();
+        Assert.assertSame(service.loadExecutionStatus(1).get(), first);
+        Assert.assertEquals(delegate.loadCount, 0);
+
+        // Read-through: only the first load hits the underlying service
+        delegate.persistExecutionStatus(executionStatus(2, ExecutionStatus.Status.FAILED));
+        ExecutionStatus loaded = service.loadExecutionStatus(2).get();
+        Assert.assertEquals(loaded, executionStatus(2, ExecutionStatus.Status.FAILED));
+        Assert.assertSame(service.loadExecutionStatus(2).get(), loaded);
+        Assert.assertEquals(delegate.loadCount, 1);
+
+        // Non-terminal statuses are not cached
+        delegate.persistExecutionStatus(executionStatus(3, ExecutionStatus.Status.RUNNING));
+        service.loadExecutionStatus(3).get();
+        service.loadExecutionStatus(3).get();
+        Assert.assertEquals(delegate.loadCount, 3);
+
+        // Unknown execution ids are passed through
+        try {
+            service.loadExecutionStatus(4).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof UnknownExecutionIdException);
+        }
+
+        CacheStatistics statistics = service.getCacheStatistics();
+        Assert.assertEquals(statistics.getHitCount(), 2);
+        Assert.assertEquals(statistics.getMissCount(), 4);
+        Assert.assertEquals(service.getCacheSize(), 2);
+    }
+
+    @Test
+    public void expiration() throws Exception {
+        MutableClock clock = new MutableClock();
+        CachingStatusKeepingService service
+            = new CachingStatusKeepingService(new NoStatusKeepingService(), clock, 10, TIME_TO_LIVE_MILLIS);
+
+        // With "none" status keeping, the cache provides short-term visibility
+        ExecutionStatus executionStatus = executionStatus(1, ExecutionStatus.Status.SUCCESSFUL);
+        service.persistExecutionStatus(executionStatus).get();
+        clock.currentTimeMillis = TIME_TO_LIVE_MILLIS - 1;
+        Assert.assertSame(service.loadExecutionStatus(1).get(), executionStatus);
+
+        clock.currentTimeMillis = TIME_TO_LIVE_MILLIS;
+        try {
+            service.loadExecutionStatus(1).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof UnknownExecutionIdException);
+        }
+        Assert.assertEquals(service.getCacheSize(), 0);
+        Assert.assertEquals(service.getCacheStatistics().getEvictionCount(), 1);
+    }
+
+    @Test
+    public void sizeBound() throws Exception {
+        MutableClock clock = new MutableClock();
+        CachingStatusKeepingService service
+            = new CachingStatusKeepingService(new NoStatusKeepingService(), clock, 2, TIME_TO_LIVE_MILLIS);
+        for (long executionId = 1; executionId <= 3; ++executionId) {
+            service.persistExecutionStatus(executionStatus(executionId, ExecutionStatus.Status.SUCCESSFUL)).get();
+        }
+        Assert.assertEquals(service.getCacheSize(), 2);
+        Assert.assertEquals(service.getCacheStatistics().getEvictionCount(), 1);
+
+        // The eldest entry has been evicted
+        try {
+            service.loadExecutionStatus(1).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof UnknownExecutionIdException);
+        }
+        Assert.assertEquals(service.loadExecutionStatus(3).get().getExecutionId(), 3);
+    }
+}
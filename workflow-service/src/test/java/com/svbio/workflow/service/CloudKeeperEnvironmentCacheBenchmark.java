@@ -0,0 +1,92 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micro-benchmark that measures the throughput of {@link CloudKeeperEnvironmentFactoryImpl#create(String, boolean)}
+ * with and without the environment cache.
+ *
+ * <p>This class is not a test and is not run as part of the build. It is meant to be run manually with
+ * {@link #main(String[])}, for instance from the IDE. Each thread repeatedly obtains an environment for one of
+ * {@link #NUM_PREFIXES} prefixes. Starting an actual workflow execution would require the CloudKeeper interpreter
+ * actors, so only the acquisition of the environment is measured.
+ */
+final class CloudKeeperEnvironmentCacheBenchmark {
+    private static final int NUM_PREFIXES = 16;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASUREMENT_MILLIS = 5_000;
+    private static final int[] THREADS = { 1, 4, 16 };
+    private static final int[] MAX_CACHED_ENVIRONMENTS = { 0, 100 };
+
+    private CloudKeeperEnvironmentCacheBenchmark() {
+        throw new AssertionError(String.format("No %s instances for you!", getClass().getName()));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ActorSystem actorSystem = ActorSystem.create(CloudKeeperEnvironmentCacheBenchmark.class.getSimpleName());
+        try {
+            System.out.println("max cached\tthreads\tenvironments/s\thit ratio");
+            for (int maxCachedEnvironments: MAX_CACHED_ENVIRONMENTS) {
+                for (int numThreads: THREADS) {
+                    run(actorSystem, maxCachedEnvironments, numThreads, WARMUP_MILLIS);
+                    CloudKeeperEnvironmentFactoryImpl factory = CloudKeeperEnvironmentFactoryImplTest.newFactory(
+                        actorSystem, maxCachedEnvironments);
+                    double throughput = run(factory, numThreads, MEASUREMENT_MILLIS);
+                    System.out.printf("%d\t%d\t%.0f\t%.3f%n", maxCachedEnvironments, numThreads, throughput,
+                        factory.getCacheStatistics().getHitRatio());
+                }
+            }
+        } finally {
+            JavaTestKit.shutdownActorSystem(actorSystem);
+        }
+    }
+
+    private static void run(ActorSystem actorSystem, int maxCachedEnvironments, int numThreads, long durationMillis)
+            throws InterruptedException {
+        run(CloudKeeperEnvironmentFactoryImplTest.newFactory(actorSystem, maxCachedEnvironments), numThreads,
+            durationMillis);
+    }
+
+    private static double run(CloudKeeperEnvironmentFactoryImpl factory, int numThreads, long durationMillis)
+            throws InterruptedException {
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        LongAdder environments = new LongAdder();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; ++i) {
+            threads.add(new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException exception) {
+                    throw new AssertionError(exception);
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (!stopped.get()) {
+                    factory.create("prefix-" + random.nextInt(NUM_PREFIXES), random.nextBoolean());
+                    ++count;
+                }
+                environments.add(count);
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        long startNanos = System.nanoTime();
+        startLatch.countDown();
+        Thread.sleep(durationMillis);
+        stopped.set(true);
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return environments.sum() * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -0,0 +1,74 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestProbe;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import xyz.cloudkeeper.model.api.CloudKeeperEnvironment;
+import xyz.cloudkeeper.model.api.staging.InstanceProvider;
+import xyz.cloudkeeper.model.api.staging.StagingAreaProvider;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+
+public class CloudKeeperEnvironmentFactoryImplTest {
+    @Nullable private ActorSystem actorSystem;
+
+    @BeforeClass
+    public void setup() {
+        actorSystem = ActorSystem.create(getClass().getSimpleName());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        assert actorSystem != null;
+        JavaTestKit.shutdownActorSystem(actorSystem);
+    }
+
+    static CloudKeeperEnvironmentFactoryImpl newFactory(ActorSystem actorSystem, int maxCachedEnvironments) {
+        ActorRef actorRef = new TestProbe(actorSystem).ref();
+        StagingAreaProvider stagingAreaProvider = Mockito.mock(StagingAreaProvider.class);
+        return new CloudKeeperEnvironmentFactoryImpl(Runnable::run, actorRef, actorRef, actorRef, actorRef,
+            Mockito.mock(InstanceProvider.class), prefix -> stagingAreaProvider, Collections.emptyList(),
+            maxCachedEnvironments);
+    }
+
+    @Test
+    public void cache() {
+        assert actorSystem != null;
+        CloudKeeperEnvironmentFactoryImpl factory = newFactory(actorSystem, 2);
+
+        CloudKeeperEnvironment foo = factory.create("foo", true);
+        Assert.assertSame(factory.create("foo", true), foo);
+        CloudKeeperEnvironment fooNoCleaning = factory.create("foo", false);
+        Assert.assertNotSame(fooNoCleaning, foo);
+        Assert.assertEquals(factory.getCacheSize(), 2);
+
+        // The least-recently used environment is evicted
+        Assert.assertSame(factory.create("foo", true), foo);
+        factory.create("bar", true);
+        Assert.assertEquals(factory.getCacheSize(), 2);
+        Assert.assertSame(factory.create("foo", true), foo);
+        Assert.assertNotSame(factory.create("foo", false), fooNoCleaning);
+
+        CacheStatistics statistics = factory.getCacheStatistics();
+        Assert.assertEquals(statistics.getHitCount(), 3);
+        Assert.assertEquals(statistics.getMissCount(), 4);
+        Assert.assertEquals(statistics.getEvictionCount(), 2);
+    }
+
+    @Test
+    public void noCache() {
+        assert actorSystem != null;
+        CloudKeeperEnvironmentFactoryImpl factory = newFactory(actorSystem, 0);
+
+        Assert.assertNotSame(factory.create("foo", true), factory.create("foo", true));
+        Assert.assertEquals(factory.getCacheSize(), 0);
+        Assert.assertEquals(factory.getCacheStatistics().getMissCount(), 2);
+    }
+}
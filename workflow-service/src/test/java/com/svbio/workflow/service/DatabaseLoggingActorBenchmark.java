@@ -0,0 +1,175 @@
+package com.svbio.workflow.service;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestActorRef;
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.util.SLF4JSessionLog;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.config.TargetServer;
+import org.eclipse.persistence.logging.SessionLog;
+import org.h2.Driver;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+import xyz.cloudkeeper.examples.modules.Fibonacci;
+import xyz.cloudkeeper.examples.repositories.FibonacciRepository;
+import xyz.cloudkeeper.examples.repositories.SimpleRepository;
+import xyz.cloudkeeper.interpreter.event.BeginExecutionTraceEvent;
+import xyz.cloudkeeper.interpreter.event.EndExecutionTraceEvent;
+import xyz.cloudkeeper.linker.Linker;
+import xyz.cloudkeeper.linker.LinkerOptions;
+import xyz.cloudkeeper.model.LinkerException;
+import xyz.cloudkeeper.model.bare.execution.BareOverride;
+import xyz.cloudkeeper.model.beans.element.module.MutableProxyModule;
+import xyz.cloudkeeper.model.immutable.execution.ExecutionTrace;
+import xyz.cloudkeeper.model.runtime.element.RuntimeRepository;
+import xyz.cloudkeeper.model.runtime.execution.RuntimeAnnotatedExecutionTrace;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark that measures the throughput of {@link DatabaseLoggingActor} with the JPA backend (with and without
+ * the {@link ExecutionLogCache}) and with the JDBC backend, using an in-memory H2 database.
+ *
+ * <p>This class is not a test and is not run as part of the build. It is meant to be run manually with
+ * {@link #main(String[])}, for instance from the IDE. Each simulated execution of the Fibonacci example consists of
+ * {@link #NUM_ITERATIONS} loop iterations with one child module each, so every execution frame receives a begin and an
+ * end event. The actor is driven synchronously through a {@link TestActorRef}, and the scheduler is a
+ * {@link MockScheduler} whose time never advances; batches are therefore written only once they are full or once an
+ * execution is stopped.
+ */
+final class DatabaseLoggingActorBenchmark {
+    private static final int NUM_ITERATIONS = 20;
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long MEASUREMENT_MILLIS = 10_000;
+    private static final int[] BATCH_SIZES = { 1, 100 };
+    private static final int[] MAX_CACHED_EXECUTIONS = { 0, 1000 };
+    private static final DatabaseLoggingActor.Backend[] BACKENDS = DatabaseLoggingActor.Backend.values();
+    private static final int MAX_CACHED_TRACES = 10_000;
+    private static final int MAX_QUEUED_EVENTS = 10_000;
+    private static final FiniteDuration LONG_DURATION = Duration.create(1, TimeUnit.HOURS);
+
+    private DatabaseLoggingActorBenchmark() {
+        throw new AssertionError(String.format("No %s instances for you!", getClass().getName()));
+    }
+
+    public static void main(String[] args) throws LinkerException {
+        Config config = ConfigFactory
+            .parseMap(Collections.singletonMap(
+                "akka.scheduler.implementation", MockScheduler.class.getName()
+            ))
+            .withFallback(ConfigFactory.load());
+        ActorSystem actorSystem = ActorSystem.create(DatabaseLoggingActorBenchmark.class.getSimpleName(), config);
+        MockScheduler scheduler = (MockScheduler) actorSystem.scheduler();
+
+        Map<String, String> javaPersistenceProperties = new LinkedHashMap<>();
+        javaPersistenceProperties.put("javax.persistence.jdbc.driver", Driver.class.getName());
+        javaPersistenceProperties.put("javax.persistence.jdbc.url",
+            "jdbc:h2:mem:" + DatabaseLoggingActorBenchmark.class.getSimpleName());
+        javaPersistenceProperties.put("javax.persistence.schema-generation.database.action", "create");
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LEVEL, SessionLog.WARNING_LABEL);
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LOGGER, SLF4JSessionLog.class.getName());
+        javaPersistenceProperties.put(PersistenceUnitProperties.TARGET_SERVER, TargetServer.None);
+        EntityManagerFactory entityManagerFactory
+            = Persistence.createEntityManagerFactory(Execution.class.getPackage().getName(), javaPersistenceProperties);
+
+        try {
+            LinkerOptions linkerOptions = LinkerOptions.nonExecutable();
+            RuntimeRepository repository = Linker.createRepository(
+                Arrays.asList(new FibonacciRepository().get(), new SimpleRepository().get()), linkerOptions
+            );
+            RuntimeAnnotatedExecutionTrace rootTrace = Linker.createAnnotatedExecutionTrace(
+                ExecutionTrace.empty(),
+                new MutableProxyModule().setDeclaration(Fibonacci.class.getName()),
+                Collections.<BareOverride>emptyList(),
+                repository,
+                linkerOptions
+            );
+            ErrorTraceStore errorTraceStore = new ErrorTraceStore(entityManagerFactory, 10);
+            Benchmark benchmark = new Benchmark(rootTrace);
+
+            System.out.println("backend\tbatch size\tmax cached\tevents/s\thit ratio");
+            for (DatabaseLoggingActor.Backend backend: BACKENDS) {
+                for (int batchSize: BATCH_SIZES) {
+                    for (int maxCachedExecutions: MAX_CACHED_EXECUTIONS) {
+                        if (backend == DatabaseLoggingActor.Backend.JDBC && maxCachedExecutions > 0) {
+                            // The JDBC backend does not use the cache.
+                            continue;
+                        }
+                        Props props = Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory,
+                            errorTraceStore, scheduler, LONG_DURATION, batchSize, LONG_DURATION, maxCachedExecutions,
+                            MAX_CACHED_TRACES, MAX_QUEUED_EVENTS, SpoolPolicy.DISABLED, backend));
+                        benchmark.run(TestActorRef.create(actorSystem, props), WARMUP_MILLIS);
+                        TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(actorSystem, props);
+                        double throughput = benchmark.run(actorRef, MEASUREMENT_MILLIS);
+                        System.out.printf("%s\t%d\t%d\t%.0f\t%.3f%n", backend, batchSize, maxCachedExecutions,
+                            throughput, actorRef.underlyingActor().getExecutionLogCacheStatistics().getHitRatio());
+                    }
+                }
+            }
+        } finally {
+            entityManagerFactory.close();
+            JavaTestKit.shutdownActorSystem(actorSystem);
+        }
+    }
+
+    private static final class Benchmark {
+        private final RuntimeAnnotatedExecutionTrace rootTrace;
+        private long executionId = 0;
+
+        private Benchmark(RuntimeAnnotatedExecutionTrace rootTrace) {
+            this.rootTrace = rootTrace;
+        }
+
+        /**
+         * Logs simulated executions until the given duration has elapsed, stops the actor, and returns the number of
+         * events per second.
+         */
+        private double run(TestActorRef<? extends UntypedActor> actorRef, long durationMillis) {
+            long events = 0;
+            long startNanos = System.nanoTime();
+            long endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            while (System.nanoTime() < endNanos) {
+                events += logExecution(actorRef, ++executionId);
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            actorRef.stop();
+            return events * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        private int logExecution(ActorRef actorRef, long id) {
+            long time = System.currentTimeMillis();
+            int events = 0;
+            actorRef.tell(new StartExecutionEvent(id, rootTrace, "benchmark"), ActorRef.noSender());
+            actorRef.tell(BeginExecutionTraceEvent.of(id, time, ExecutionTrace.empty()), ActorRef.noSender());
+            actorRef.tell(BeginExecutionTraceEvent.of(id, time, ExecutionTrace.valueOf("/loop")), ActorRef.noSender());
+            events += 2;
+            for (int i = 1; i <= NUM_ITERATIONS; ++i) {
+                ExecutionTrace iteration = ExecutionTrace.valueOf("/loop/" + i);
+                ExecutionTrace sum = ExecutionTrace.valueOf("/loop/" + i + "/sum");
+                actorRef.tell(BeginExecutionTraceEvent.of(id, time, iteration), ActorRef.noSender());
+                actorRef.tell(BeginExecutionTraceEvent.of(id, time, sum), ActorRef.noSender());
+                actorRef.tell(EndExecutionTraceEvent.of(id, time, sum, true), ActorRef.noSender());
+                actorRef.tell(EndExecutionTraceEvent.of(id, time, iteration, true), ActorRef.noSender());
+                events += 4;
+            }
+            actorRef.tell(EndExecutionTraceEvent.of(id, time, ExecutionTrace.valueOf("/loop"), true),
+                ActorRef.noSender());
+            actorRef.tell(EndExecutionTraceEvent.of(id, time, ExecutionTrace.empty(), true), ActorRef.noSender());
+            actorRef.tell(new StopExecutionEvent(id), ActorRef.noSender());
+            events += 2;
+            return events;
+        }
+    }
+}
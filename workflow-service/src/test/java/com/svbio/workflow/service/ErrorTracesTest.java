@@ -0,0 +1,83 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.ErrorTrace;
+import com.svbio.workflow.util.Throwables;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class ErrorTracesTest {
+    private static final String TRACE = "java.lang.IllegalStateException: Execution 42 failed (lock@1b6d3586).\n"
+        + "\tat foo.Bar$$Lambda$12/1234567.run(Unknown Source)\n"
+        + "\tat sun.reflect.GeneratedMethodAccessor17.invoke(Unknown Source)\n"
+        + "\tat foo.Bar.baz(Bar.java:12)\n"
+        + "Caused by: java.io.IOException: Timeout after 300 ms.\n"
+        + "\t... 3 more\n";
+
+    @Test
+    public void normalize() {
+        Assert.assertEquals(
+            ErrorTraces.normalize(TRACE),
+            "java.lang.IllegalStateException: Execution # failed (lock@).\n"
+                + "\tat foo.Bar$$Lambda.run(Unknown Source)\n"
+                + "\tat sun.reflect.GeneratedMethodAccessor.invoke(Unknown Source)\n"
+                + "\tat foo.Bar.baz(Bar.java:12)\n"
+                + "Caused by: java.io.IOException: Timeout after # ms.\n"
+                + "\t... 3 more\n"
+        );
+    }
+
+    @Test
+    public void fingerprint() {
+        String fingerprint = ErrorTraces.fingerprint(TRACE);
+        Assert.assertEquals(fingerprint.length(), ErrorTrace.FINGERPRINT_LENGTH);
+        Assert.assertTrue(fingerprint.matches("[0-9a-f]+"));
+
+        // Differences in line separators, trailing whitespace, numbers in messages, and hash codes are irrelevant
+        String variant = TRACE
+            .replace("42", "43")
+            .replace("1b6d3586", "4554617c")
+            .replace("$$Lambda$12/1234567", "$$Lambda$13/7654321")
+            .replace("\n", "  \r\n");
+        Assert.assertEquals(ErrorTraces.fingerprint(variant), fingerprint);
+
+        // Line numbers in stack frames are relevant
+        Assert.assertNotEquals(ErrorTraces.fingerprint(TRACE.replace("Bar.java:12", "Bar.java:13")), fingerprint);
+        Assert.assertNotEquals(ErrorTraces.fingerprint(TRACE.replace("IOException", "EOFException")), fingerprint);
+    }
+
+    @Test
+    public void summary() {
+        Assert.assertEquals(
+            ErrorTraces.summary(TRACE), "java.lang.IllegalStateException: Execution 42 failed (lock@1b6d3586).");
+        String longMessage = String.join("", Collections.nCopies(ErrorTrace.SUMMARY_LENGTH + 1, "x"));
+        Assert.assertEquals(ErrorTraces.summary(longMessage).length(), ErrorTrace.SUMMARY_LENGTH);
+    }
+
+    @Test
+    public void compressDecompress() throws Exception {
+        String trace = Throwables.executionTraceToString(new IllegalStateException("Umlaut \u00fc"));
+        byte[] compressed = ErrorTraces.compress(trace);
+        Assert.assertTrue(compressed.length < trace.length());
+        Assert.assertEquals(ErrorTraces.decompress(compressed), trace);
+    }
+
+    @Test
+    public void compressWithDictionary() throws Exception {
+        String variant = TRACE.replace("Execution 42", "Execution 43");
+        Assert.assertEquals(ErrorTraces.fingerprint(variant), ErrorTraces.fingerprint(TRACE));
+        byte[] compressed = ErrorTraces.compress(variant, TRACE);
+        Assert.assertTrue(compressed.length < ErrorTraces.compress(variant).length);
+        Assert.assertEquals(ErrorTraces.decompress(compressed, TRACE), variant);
+
+        try {
+            ErrorTraces.decompress(compressed);
+            Assert.fail("Expected exception.");
+        } catch (IOException ignored) { }
+
+        // The dictionary is ignored if the compressed bytes do not need one
+        Assert.assertEquals(ErrorTraces.decompress(ErrorTraces.compress(variant), TRACE), variant);
+    }
+}
@@ -0,0 +1,99 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ExecutionLogCacheTest {
+    private static final long LOOP = FrameTraceDictionary.id("/loop");
+    private static final long SUM = FrameTraceDictionary.id("/sum");
+
+    private static Execution execution(long executionId) {
+        return new Execution().setId(executionId).setKeyPrefix("prefix");
+    }
+
+    private static ExecutionFrame frame(Execution execution, String frame) {
+        return new ExecutionFrame().setExecution(execution).setTrace(FrameTraceDictionary.newFrameTrace(frame));
+    }
+
+    @Test
+    public void createdExecution() {
+        ExecutionLogCache cache = new ExecutionLogCache(10);
+        Assert.assertNull(cache.getExecution(1));
+        Execution execution = execution(1);
+        cache.putExecution(execution, true);
+        Assert.assertSame(cache.getExecution(1), execution);
+
+        // All frames of an execution created by the owner of the cache are known
+        Assert.assertTrue(cache.isKnownToBeNew(1, LOOP));
+        Assert.assertNull(cache.getFrame(1, LOOP));
+        ExecutionFrame executionFrame = frame(execution, "/loop");
+        cache.putFrame(1, executionFrame);
+        Assert.assertFalse(cache.isKnownToBeNew(1, LOOP));
+        Assert.assertSame(cache.getFrame(1, LOOP), executionFrame);
+
+        CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(statistics.getHitCount(), 3);
+        Assert.assertEquals(statistics.getMissCount(), 1);
+
+        cache.evict(1);
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertFalse(cache.isKnownToBeNew(1, LOOP));
+        Assert.assertEquals(cache.getStatistics().getEvictionCount(), 1);
+    }
+
+    @Test
+    public void foundExecution() {
+        ExecutionLogCache cache = new ExecutionLogCache(10);
+        Execution execution = execution(1);
+        cache.putExecution(execution, false);
+
+        // Frames of an execution found in the database may exist without being cached
+        Assert.assertFalse(cache.isKnownToBeNew(1, LOOP));
+        Assert.assertNull(cache.getFrame(1, LOOP));
+        Assert.assertEquals(cache.getStatistics().getMissCount(), 1);
+
+        // Replacing the execution does not affect its frames
+        ExecutionFrame executionFrame = frame(execution, "/loop");
+        cache.putFrame(1, executionFrame);
+        Execution replacement = execution(1);
+        cache.putExecution(replacement, true);
+        Assert.assertSame(cache.getExecution(1), replacement);
+        Assert.assertSame(cache.getFrame(1, LOOP), executionFrame);
+        Assert.assertFalse(cache.isKnownToBeNew(1, SUM));
+    }
+
+    @Test
+    public void bounded() {
+        ExecutionLogCache cache = new ExecutionLogCache(2);
+        cache.putExecution(execution(1), true);
+        cache.putExecution(execution(2), true);
+        Assert.assertNotNull(cache.getExecution(1));
+        cache.putExecution(execution(3), true);
+
+        // The least recently used execution is evicted
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertNull(cache.getExecution(2));
+        Assert.assertNotNull(cache.getExecution(1));
+        Assert.assertEquals(cache.getStatistics().getEvictionCount(), 1);
+
+        // Frames of executions that are not cached are ignored
+        cache.putFrame(2, frame(execution(2), "/loop"));
+        Assert.assertNull(cache.getFrame(2, LOOP));
+    }
+
+    @Test
+    public void disabled() {
+        ExecutionLogCache cache = new ExecutionLogCache(0);
+        cache.putExecution(execution(1), true);
+        Assert.assertNull(cache.getExecution(1));
+        Assert.assertFalse(cache.isKnownToBeNew(1, LOOP));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void negativeMaximum() {
+        new ExecutionLogCache(-1);
+    }
+}
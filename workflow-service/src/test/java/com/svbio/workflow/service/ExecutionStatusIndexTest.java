@@ -0,0 +1,82 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+public class ExecutionStatusIndexTest {
+    private static ExecutionStatusIndex newIndex() {
+        ExecutionStatusIndex index = new ExecutionStatusIndex();
+        index.put(1, "a", ExecutionStatus.Status.SUCCESSFUL, 100L);
+        index.put(2, "b", ExecutionStatus.Status.FAILED, 200L);
+        index.put(3, "a", ExecutionStatus.Status.FAILED, 300L);
+        index.put(4, null, ExecutionStatus.Status.RUNNING, null);
+        index.put(5, "a", ExecutionStatus.Status.SUCCESSFUL, 200L);
+        return index;
+    }
+
+    @Test
+    public void query() {
+        ExecutionStatusIndex index = newIndex();
+        Assert.assertEquals(index.size(), 5);
+        Assert.assertEquals(index.query(new ExecutionStatusQuery(), 0), Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setPrefix("a"), 0), Arrays.asList(1L, 3L, 5L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setPrefix("c"), 0), Collections.emptyList());
+        Assert.assertEquals(
+            index.query(
+                new ExecutionStatusQuery().setPrefix("a").setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED)), 0),
+            Collections.singletonList(3L)
+        );
+        Assert.assertEquals(
+            index.query(new ExecutionStatusQuery().setStatuses(
+                EnumSet.of(ExecutionStatus.Status.FAILED, ExecutionStatus.Status.RUNNING)), 0),
+            Arrays.asList(2L, 3L, 4L)
+        );
+        Assert.assertEquals(
+            index.query(new ExecutionStatusQuery().setStartedAfterMillis(200L).setStartedBeforeMillis(300L), 0),
+            Arrays.asList(2L, 5L)
+        );
+    }
+
+    @Test
+    public void cursorAndMaxResults() {
+        ExecutionStatusIndex index = newIndex();
+        Assert.assertEquals(index.query(new ExecutionStatusQuery(), 2), Arrays.asList(1L, 2L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setCursor(2L), 2), Arrays.asList(3L, 4L));
+        Assert.assertEquals(
+            index.query(new ExecutionStatusQuery().setCursor(1L).setStatuses(
+                EnumSet.of(ExecutionStatus.Status.SUCCESSFUL, ExecutionStatus.Status.FAILED)), 2),
+            Arrays.asList(2L, 3L)
+        );
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setCursor(3L).setPrefix("a"), 1),
+            Collections.singletonList(5L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setCursor(1L).setStartedAfterMillis(0L), 1),
+            Collections.singletonList(2L));
+    }
+
+    /**
+     * Verifies that replacing an entry removes the execution id from the secondary indexes of the old entry.
+     */
+    @Test
+    public void replace() {
+        ExecutionStatusIndex index = newIndex();
+        index.put(4, "b", ExecutionStatus.Status.SUCCESSFUL, 400L);
+        Assert.assertEquals(index.size(), 5);
+        Assert.assertEquals(
+            index.query(new ExecutionStatusQuery().setStatuses(EnumSet.of(ExecutionStatus.Status.RUNNING)), 0),
+            Collections.emptyList()
+        );
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setPrefix("b"), 0), Arrays.asList(2L, 4L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setStartedAfterMillis(400L), 0),
+            Collections.singletonList(4L));
+
+        index.put(2, "a", ExecutionStatus.Status.FAILED, 200L);
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setPrefix("b"), 0), Collections.singletonList(4L));
+        Assert.assertEquals(index.query(new ExecutionStatusQuery().setPrefix("a"), 0), Arrays.asList(1L, 2L, 3L, 5L));
+    }
+}
@@ -3,12 +3,15 @@ package com.svbio.workflow.service;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.dispatch.Envelope;
+import akka.dispatch.MessageQueue;
 import akka.testkit.JavaTestKit;
 import akka.testkit.TestActorRef;
 import com.svbio.workflow.entities.DRMAAProperties;
 import com.svbio.workflow.entities.Execution;
 import com.svbio.workflow.entities.ExecutionFrame;
 import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.FrameTrace;
 import com.svbio.workflow.entities.ProcessLauncherProperties;
 import com.svbio.workflow.entities.SimpleProperties;
 import com.svbio.workflow.service.DatabaseLoggingActor.QueuedEvent;
@@ -24,6 +27,7 @@ import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import scala.Option;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 import xyz.cloudkeeper.drm.DrmaaSimpleModuleExecutor;
@@ -44,6 +48,7 @@ import xyz.cloudkeeper.model.LinkerException;
 import xyz.cloudkeeper.model.api.ExecutionException;
 import xyz.cloudkeeper.model.api.executor.SimpleModuleExecutor;
 import xyz.cloudkeeper.model.api.executor.SimpleModuleExecutorResult;
+import xyz.cloudkeeper.model.api.util.RecursiveDeleteVisitor;
 import xyz.cloudkeeper.model.bare.execution.BareOverride;
 import xyz.cloudkeeper.model.beans.element.module.MutableProxyModule;
 import xyz.cloudkeeper.model.immutable.element.Name;
@@ -53,8 +58,15 @@ import xyz.cloudkeeper.model.runtime.execution.RuntimeAnnotatedExecutionTrace;
 import xyz.cloudkeeper.simple.LocalSimpleModuleExecutor;
 
 import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -65,15 +77,25 @@ import java.util.concurrent.TimeUnit;
 
 public class ITDatabaseLoggingActor {
     private static final FiniteDuration EVICTION_DURATION = Duration.create(100, TimeUnit.MILLISECONDS);
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final FiniteDuration FLUSH_INTERVAL = Duration.create(10, TimeUnit.MILLISECONDS);
+    private static final int MAX_CACHED_EXECUTIONS = 100;
+    private static final int MAX_CACHED_TRACES = 100;
+    private static final int MAX_QUEUED_EVENTS = 100;
+    private static final int SPOOL_SEGMENT_SIZE = 64 * 1024;
+    private static final long SPOOL_RETRY_INTERVAL_MILLIS = 1000;
 
     @Nullable private ActorSystem actorSystem;
     @Nullable private MockScheduler scheduler;
     @Nullable private EntityManagerFactory entityManagerFactory;
+    @Nullable private ErrorTraceStore errorTraceStore;
     @Nullable private LinkerOptions linkerOptions;
     @Nullable private RuntimeRepository repository;
+    @Nullable private Map<String, String> javaPersistenceProperties;
+    @Nullable private Path tempDir;
 
     @BeforeClass
-    public void setup() throws ClassNotFoundException, LinkerException {
+    public void setup() throws ClassNotFoundException, IOException, LinkerException {
         Config config = ConfigFactory
             .parseMap(Collections.singletonMap(
                 "akka.scheduler.implementation", MockScheduler.class.getName()
@@ -82,7 +104,7 @@ public class ITDatabaseLoggingActor {
         actorSystem = ActorSystem.create(getClass().getSimpleName(), config);
         scheduler = (MockScheduler) actorSystem.scheduler();
 
-        Map<String, String> javaPersistenceProperties = new LinkedHashMap<>();
+        javaPersistenceProperties = new LinkedHashMap<>();
         javaPersistenceProperties.put("javax.persistence.jdbc.driver", Driver.class.getName());
         javaPersistenceProperties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + getClass().getSimpleName());
         javaPersistenceProperties.put("javax.persistence.schema-generation.database.action", "create");
@@ -92,6 +114,8 @@ public class ITDatabaseLoggingActor {
         javaPersistenceProperties.put(PersistenceUnitProperties.TARGET_SERVER, TargetServer.None);
         entityManagerFactory
             = Persistence.createEntityManagerFactory(Execution.class.getPackage().getName(), javaPersistenceProperties);
+        errorTraceStore = new ErrorTraceStore(entityManagerFactory, 10);
+        tempDir = Files.createTempDirectory(getClass().getSimpleName());
 
         linkerOptions = LinkerOptions.nonExecutable();
         repository = Linker.createRepository(
@@ -100,23 +124,25 @@ public class ITDatabaseLoggingActor {
     }
 
     @AfterClass
-    public void tearDown() {
-        assert entityManagerFactory != null && actorSystem != null;
+    public void tearDown() throws IOException {
+        assert entityManagerFactory != null && actorSystem != null && tempDir != null;
         entityManagerFactory.close();
         JavaTestKit.shutdownActorSystem(actorSystem);
+        Files.walkFileTree(tempDir, RecursiveDeleteVisitor.getInstance());
     }
 
     @Test
     public void testEviction() throws InterruptedException, LinkerException {
         assert actorSystem != null && entityManagerFactory != null && scheduler != null && repository != null
-            && linkerOptions != null;
+            && linkerOptions != null && errorTraceStore != null;
         TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(
             actorSystem,
-            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, scheduler, EVICTION_DURATION)),
+            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, MAX_BATCH_SIZE, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES,
+                MAX_QUEUED_EVENTS, SpoolPolicy.DISABLED, DatabaseLoggingActor.Backend.JPA)),
             "testEviction database logger"
         );
         DatabaseLoggingActor actor = actorRef.underlyingActor();
-        List<QueuedEvent> queuedEvents = actor.getQueuedEvents();
         Map<Long, StartExecutionEvent> executionMap = actor.getStartExecutionEventMap();
 
         RuntimeAnnotatedExecutionTrace fibonacciRootTrace = Linker.createAnnotatedExecutionTrace(
@@ -135,28 +161,29 @@ public class ITDatabaseLoggingActor {
 
         actorRef.tell(beginFibonacciEvent, ActorRef.noSender());
         actorRef.tell(beginLoopEvent, ActorRef.noSender());
+        List<QueuedEvent> queuedEvents = actor.getQueuedEvents();
         Assert.assertEquals(queuedEvents.size(), 2);
         Assert.assertSame(queuedEvents.get(0).getEvent(), beginFibonacciEvent);
         Assert.assertSame(queuedEvents.get(1).getEvent(), beginLoopEvent);
         Assert.assertEquals(executionMap, Collections.emptyMap());
         scheduler.advanceTime(EVICTION_DURATION.toMillis());
-        Assert.assertEquals(queuedEvents.size(), 2);
+        Assert.assertEquals(actor.getQueuedEvents().size(), 2);
         scheduler.advanceTime(1);
-        Assert.assertEquals(queuedEvents, Collections.emptyList());
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
         Assert.assertEquals(executionMap, Collections.emptyMap());
 
         StartExecutionEvent startExecutionEvent = new StartExecutionEvent(0, fibonacciRootTrace, "testEviction");
         actorRef.tell(startExecutionEvent, ActorRef.noSender());
-        Assert.assertEquals(queuedEvents, Collections.emptyList());
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
         Assert.assertEquals(executionMap, Collections.singletonMap(0L, startExecutionEvent));
 
         actorRef.tell(BeginExecutionTraceEvent.of(0, baseTime + 2, ExecutionTrace.valueOf("/loop/0")),
             ActorRef.noSender());
-        Assert.assertEquals(queuedEvents, Collections.emptyList());
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
         Assert.assertEquals(executionMap, Collections.singletonMap(0L, startExecutionEvent));
 
         actorRef.tell(new StopExecutionEvent(0), ActorRef.noSender());
-        Assert.assertEquals(queuedEvents, Collections.emptyList());
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
         Assert.assertEquals(executionMap, Collections.singletonMap(0L, startExecutionEvent));
         // The execution is removed only after a grace period.
         scheduler.advanceTime(EVICTION_DURATION.toMillis() + 1);
@@ -165,15 +192,54 @@ public class ITDatabaseLoggingActor {
         EndExecutionTraceEvent endLoopIteration0Event
             = EndExecutionTraceEvent.of(0, baseTime + 2, ExecutionTrace.valueOf("/loop/0"), true);
         actorRef.tell(endLoopIteration0Event, ActorRef.noSender());
+        queuedEvents = actor.getQueuedEvents();
         Assert.assertEquals(queuedEvents.size(), 1);
         Assert.assertSame(queuedEvents.get(0).getEvent(), endLoopIteration0Event);
         Assert.assertEquals(executionMap, Collections.emptyMap());
 
         scheduler.advanceTime(EVICTION_DURATION.toMillis() + 1);
-        Assert.assertEquals(queuedEvents, Collections.emptyList());
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
         Assert.assertEquals(executionMap, Collections.emptyMap());
     }
 
+    @Test
+    public void testQueueCapacity() {
+        assert actorSystem != null && entityManagerFactory != null && scheduler != null && errorTraceStore != null;
+        TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(
+            actorSystem,
+            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, MAX_BATCH_SIZE, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES, 2,
+                SpoolPolicy.DISABLED, DatabaseLoggingActor.Backend.JPA)),
+            "testQueueCapacity database logger"
+        );
+        DatabaseLoggingActor actor = actorRef.underlyingActor();
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        long droppedCount = overflowCounters.getDroppedCount();
+
+        long baseTime = System.currentTimeMillis();
+        BeginExecutionTraceEvent firstEvent = BeginExecutionTraceEvent.of(5, baseTime, ExecutionTrace.empty());
+        BeginExecutionTraceEvent secondEvent
+            = BeginExecutionTraceEvent.of(6, baseTime + 1, ExecutionTrace.valueOf("/loop"));
+        actorRef.tell(firstEvent, ActorRef.noSender());
+        actorRef.tell(secondEvent, ActorRef.noSender());
+        actorRef.tell(BeginExecutionTraceEvent.of(5, baseTime + 2, ExecutionTrace.valueOf("/loop")),
+            ActorRef.noSender());
+
+        List<QueuedEvent> queuedEvents = actor.getQueuedEvents();
+        Assert.assertEquals(queuedEvents.size(), 2);
+        Assert.assertSame(queuedEvents.get(0).getEvent(), firstEvent);
+        Assert.assertSame(queuedEvents.get(1).getEvent(), secondEvent);
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount + 1);
+
+        // Once the queued events are evicted, there is room again.
+        scheduler.advanceTime(EVICTION_DURATION.toMillis() + 1);
+        Assert.assertEquals(actor.getQueuedEvents(), Collections.emptyList());
+        actorRef.tell(BeginExecutionTraceEvent.of(5, baseTime + 3, ExecutionTrace.valueOf("/loop")),
+            ActorRef.noSender());
+        Assert.assertEquals(actor.getQueuedEvents().size(), 1);
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount + 1);
+    }
+
     /**
      * Delta (in ms) to the timestamp of the corresponding {@link BeginExecutionTraceEvent}.
      */
@@ -273,19 +339,51 @@ public class ITDatabaseLoggingActor {
         return simpleProperties;
     }
 
+    @Test
+    public void testExecutionIdHashMapper() {
+        DatabaseLoggingActor.ExecutionIdHashMapper hashMapper = DatabaseLoggingActor.ExecutionIdHashMapper.INSTANCE;
+        Object hashKey = hashMapper.hashKey(new StopExecutionEvent(7));
+        Assert.assertEquals(hashMapper.hashKey(BeginExecutionTraceEvent.of(7, 0, ExecutionTrace.empty())), hashKey);
+        Assert.assertEquals(hashMapper.hashKey(new StopExecutionEvent(7)), hashKey);
+        Assert.assertNotEquals(hashMapper.hashKey(new StopExecutionEvent(8)), hashKey);
+    }
+
     private static void sendTo(ActorRef actor, Object message) {
         actor.tell(message, ActorRef.noSender());
     }
 
     @Test
     public void testLogging() throws Exception {
-        assert entityManagerFactory != null && scheduler != null && repository != null && linkerOptions != null;
-        long executionId = 1;
+        testLogging(1, "testLogging", DatabaseLoggingActor.Backend.JPA);
+    }
+
+    @Test
+    public void testJdbcLogging() throws Exception {
+        testLogging(4, "testJdbcLogging", DatabaseLoggingActor.Backend.JDBC);
+    }
+
+    private void testLogging(long executionId, String prefix, DatabaseLoggingActor.Backend backend) throws Exception {
+        assert entityManagerFactory != null && errorTraceStore != null && scheduler != null && repository != null
+            && linkerOptions != null;
         TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(
             actorSystem,
-            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, scheduler, EVICTION_DURATION)),
-            "testLogging database logger"
+            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, MAX_BATCH_SIZE, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES,
+                MAX_QUEUED_EVENTS, SpoolPolicy.DISABLED, backend)),
+            prefix + " database logger"
         );
+        long baseTime = System.currentTimeMillis();
+        InterpreterException interpreterException = sendLoggingEvents(actorRef, executionId, prefix, baseTime);
+        assertLoggingTablesContent(executionId, prefix, baseTime, interpreterException);
+    }
+
+    /**
+     * Sends the events of a fabricated execution to the given database logger, and returns the exception contained in
+     * the {@link FailedExecutionTraceEvent}.
+     */
+    private InterpreterException sendLoggingEvents(ActorRef actorRef, long executionId, String prefix, long baseTime)
+            throws LinkerException {
+        assert repository != null && linkerOptions != null;
         RuntimeAnnotatedExecutionTrace fibonacciRootTrace = Linker.createAnnotatedExecutionTrace(
             ExecutionTrace.empty(),
             new MutableProxyModule().setDeclaration(Fibonacci.class.getName()),
@@ -294,7 +392,6 @@ public class ITDatabaseLoggingActor {
             linkerOptions
         );
 
-        long baseTime = System.currentTimeMillis();
         sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime, ExecutionTrace.empty()));
         sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime + 100, ExecutionTrace.valueOf("/loop")));
         sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime + 200, ExecutionTrace.valueOf("/loop/1")));
@@ -320,9 +417,19 @@ public class ITDatabaseLoggingActor {
         sendTo(actorRef, FailedExecutionTraceEvent.of(executionId, baseTime + 500, decrExecutionTrace,
             interpreterException));
 
-        sendTo(actorRef, new StartExecutionEvent(executionId, fibonacciRootTrace, "testLogging"));
+        sendTo(actorRef, new StartExecutionEvent(executionId, fibonacciRootTrace, prefix));
         sendTo(actorRef, new StopExecutionEvent(executionId));
+        return interpreterException;
+    }
 
+    /**
+     * Verifies that the events sent by {@link #sendLoggingEvents(ActorRef, long, String, long)} have been written.
+     */
+    private void assertLoggingTablesContent(long executionId, String prefix, long baseTime,
+            InterpreterException interpreterException) {
+        assert entityManagerFactory != null;
+        ExecutionTrace sumExecutionTrace = ExecutionTrace.valueOf("/loop/1/sum");
+        ExecutionTrace decrExecutionTrace = ExecutionTrace.valueOf("/loop/1/decr");
         Entities.TablesContent tablesContent = Entities.getTablesContent(executionId, entityManagerFactory);
         Assert.assertEquals(
             tablesContent.getExecution(),
@@ -330,18 +437,18 @@ public class ITDatabaseLoggingActor {
                 .setId(executionId)
                 .setStartTime(new Date(baseTime))
                 .setFinishTime(new Date(baseTime + 500))
-                .setKeyPrefix("testLogging")
+                .setKeyPrefix(prefix)
         );
         ExecutionFrame expectedSumExecutionFrame = new ExecutionFrame()
             .setExecution(tablesContent.getExecution())
-            .setFrame(sumExecutionTrace.toString())
+            .setTrace(FrameTraceDictionary.newFrameTrace(sumExecutionTrace.toString()))
             .setStartTime(new Date(baseTime + 300))
             .setFinishTime(new Date(baseTime + 300 + END_EVENT_DELTA))
             .setModuleKind(ExecutionFrame.ModuleKind.SIMPLE)
             .setSuccessful(true);
         ExecutionFrame expectedDecrExecutionFrame = new ExecutionFrame()
             .setExecution(tablesContent.getExecution())
-            .setFrame(decrExecutionTrace.toString())
+            .setTrace(FrameTraceDictionary.newFrameTrace(decrExecutionTrace.toString()))
             .setStartTime(new Date(baseTime + 400))
             .setFinishTime(new Date(baseTime + 400 + END_EVENT_DELTA))
             .setModuleKind(ExecutionFrame.ModuleKind.SIMPLE)
@@ -351,19 +458,19 @@ public class ITDatabaseLoggingActor {
             Arrays.asList(
                 new ExecutionFrame()
                     .setExecution(tablesContent.getExecution())
-                    .setFrame("")
+                    .setTrace(FrameTraceDictionary.newFrameTrace(""))
                     .setStartTime(new Date(baseTime))
                     .setFinishTime(new Date(baseTime + 500))
                     .setModuleKind(ExecutionFrame.ModuleKind.COMPOSITE)
                     .setSuccessful(false),
                 new ExecutionFrame()
                     .setExecution(tablesContent.getExecution())
-                    .setFrame("/loop")
+                    .setTrace(FrameTraceDictionary.newFrameTrace("/loop"))
                     .setStartTime(new Date(baseTime + 100))
                     .setModuleKind(ExecutionFrame.ModuleKind.LOOP),
                 new ExecutionFrame()
                     .setExecution(tablesContent.getExecution())
-                    .setFrame("/loop/1")
+                    .setTrace(FrameTraceDictionary.newFrameTrace("/loop/1"))
                     .setStartTime(new Date(baseTime + 200))
                     .setModuleKind(ExecutionFrame.ModuleKind.LOOP),
                 expectedDecrExecutionFrame,
@@ -382,22 +489,184 @@ public class ITDatabaseLoggingActor {
             Collections.singletonList(
                 new ExecutionFrameError()
                     .setExecutionFrame(expectedDecrExecutionFrame)
-                    .setErrorMessage(Throwables.executionTraceToString(interpreterException))
+                    .setErrorFingerprint(
+                        ErrorTraces.fingerprint(Throwables.executionTraceToString(interpreterException)))
             )
         );
     }
 
+    @Test
+    public void testSpoolReplay() throws Exception {
+        testSpoolReplay(8, "testSpoolReplay", DatabaseLoggingActor.Backend.JPA);
+    }
+
+    @Test
+    public void testJdbcSpoolReplay() throws Exception {
+        testSpoolReplay(9, "testJdbcSpoolReplay", DatabaseLoggingActor.Backend.JDBC);
+    }
+
+    /**
+     * Verifies that an execution trace whose id is taken by a different execution trace is stored with the next free
+     * id, and that every dictionary resolves it to that id.
+     */
+    @Test
+    public void testFrameTraceCollision() {
+        assert entityManagerFactory != null;
+        String trace = "/testFrameTraceCollision";
+        long preferredId = FrameTraceDictionary.id(trace);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            entityManager.persist(new FrameTrace().setId(preferredId).setTrace("/colliding"));
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+
+        FrameTrace expected = new FrameTrace().setId(FrameTraceDictionary.nextId(preferredId)).setTrace(trace);
+        FrameTraceDictionary dictionary = new FrameTraceDictionary(entityManagerFactory, MAX_CACHED_TRACES);
+        Assert.assertEquals(dictionary.resolve(Collections.singletonList(trace)).get(trace), expected);
+        FrameTraceDictionary otherDictionary = new FrameTraceDictionary(entityManagerFactory, MAX_CACHED_TRACES);
+        Assert.assertEquals(otherDictionary.resolve(Collections.singletonList(trace)).get(trace), expected);
+    }
+
+    private static void copySpool(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+            for (Path path: stream) {
+                Files.copy(path, target.resolve(path.getFileName()));
+            }
+        }
+    }
+
+    private TestActorRef<DatabaseLoggingActor> createSpoolingActor(EntityManagerFactory currentEntityManagerFactory,
+            Path spoolDirectory, DatabaseLoggingActor.Backend backend, String name) {
+        assert errorTraceStore != null && scheduler != null;
+        SpoolPolicy spoolPolicy
+            = new SpoolPolicy(spoolDirectory, SPOOL_SEGMENT_SIZE, false, SPOOL_RETRY_INTERVAL_MILLIS);
+        return TestActorRef.create(
+            actorSystem,
+            Props.create(new DatabaseLoggingActor.Factory(currentEntityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, MAX_BATCH_SIZE, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES,
+                MAX_QUEUED_EVENTS, spoolPolicy, backend)),
+            name
+        );
+    }
+
+    private void stop(ActorRef actorRef) {
+        assert actorSystem != null;
+        JavaTestKit probe = new JavaTestKit(actorSystem);
+        probe.watch(actorRef);
+        actorSystem.stop(actorRef);
+        probe.expectTerminated(actorRef);
+    }
+
+    /**
+     * Verifies that events are kept in the spool while the database is not available, and that replaying the spool
+     * (once or twice) writes the same content as {@link #testLogging(long, String, DatabaseLoggingActor.Backend)}.
+     */
+    private void testSpoolReplay(long executionId, String prefix, DatabaseLoggingActor.Backend backend)
+            throws Exception {
+        assert entityManagerFactory != null && javaPersistenceProperties != null && tempDir != null;
+        Path spoolDirectory = tempDir.resolve(prefix);
+        Path copiedSpoolDirectory = tempDir.resolve(prefix + "-copy");
+
+        // A closed entity manager factory fails to create entity managers, just like a database that is not available
+        EntityManagerFactory unavailableEntityManagerFactory = Persistence.createEntityManagerFactory(
+            Execution.class.getPackage().getName(), javaPersistenceProperties);
+        unavailableEntityManagerFactory.close();
+        TestActorRef<DatabaseLoggingActor> failingActorRef = createSpoolingActor(
+            unavailableEntityManagerFactory, spoolDirectory, backend, prefix + " failing database logger");
+        long baseTime = System.currentTimeMillis();
+        InterpreterException interpreterException
+            = sendLoggingEvents(failingActorRef, executionId, prefix, baseTime);
+        Assert.assertEquals(failingActorRef.underlyingActor().getSpooledEventCount(), 9);
+        stop(failingActorRef);
+        copySpool(spoolDirectory.resolve("writer-0"), copiedSpoolDirectory.resolve("writer-0"));
+
+        TestActorRef<DatabaseLoggingActor> replayingActorRef = createSpoolingActor(
+            entityManagerFactory, spoolDirectory, backend, prefix + " replaying database logger");
+        Assert.assertEquals(replayingActorRef.underlyingActor().getSpooledEventCount(), 0);
+        assertLoggingTablesContent(executionId, prefix, baseTime, interpreterException);
+        stop(replayingActorRef);
+
+        // Replaying the same events again does not change the database.
+        TestActorRef<DatabaseLoggingActor> secondReplayingActorRef = createSpoolingActor(
+            entityManagerFactory, copiedSpoolDirectory, backend, prefix + " second replaying database logger");
+        Assert.assertEquals(secondReplayingActorRef.underlyingActor().getSpooledEventCount(), 0);
+        assertLoggingTablesContent(executionId, prefix, baseTime, interpreterException);
+        stop(secondReplayingActorRef);
+    }
+
+    /**
+     * Verifies that a spooled event that cannot be written although the database is available is discarded, and that
+     * it does not block the events behind it.
+     */
+    @Test
+    public void testSpoolReplayWithBadEvent() throws Exception {
+        assert entityManagerFactory != null && javaPersistenceProperties != null && tempDir != null
+            && repository != null && linkerOptions != null;
+        String prefix = "testSpoolReplayWithBadEvent";
+        Path spoolDirectory = tempDir.resolve(prefix);
+        long badExecutionId = 10;
+        long executionId = 11;
+
+        EntityManagerFactory unavailableEntityManagerFactory = Persistence.createEntityManagerFactory(
+            Execution.class.getPackage().getName(), javaPersistenceProperties);
+        unavailableEntityManagerFactory.close();
+        TestActorRef<DatabaseLoggingActor> failingActorRef = createSpoolingActor(unavailableEntityManagerFactory,
+            spoolDirectory, DatabaseLoggingActor.Backend.JPA, prefix + " failing database logger");
+        RuntimeAnnotatedExecutionTrace fibonacciRootTrace = Linker.createAnnotatedExecutionTrace(
+            ExecutionTrace.empty(),
+            new MutableProxyModule().setDeclaration(Fibonacci.class.getName()),
+            Collections.<BareOverride>emptyList(),
+            repository,
+            linkerOptions
+        );
+        // The key prefix exceeds the length of its column, so the execution can never be written.
+        String badPrefix = String.join("", Collections.nCopies(300, "x"));
+        long baseTime = System.currentTimeMillis();
+        sendTo(failingActorRef, new StartExecutionEvent(badExecutionId, fibonacciRootTrace, badPrefix));
+        sendTo(failingActorRef, BeginExecutionTraceEvent.of(badExecutionId, baseTime, ExecutionTrace.empty()));
+        sendTo(failingActorRef, new StopExecutionEvent(badExecutionId));
+        Assert.assertEquals(failingActorRef.underlyingActor().getSpooledEventCount(), 1);
+        stop(failingActorRef);
+
+        TestActorRef<DatabaseLoggingActor> replayingActorRef = createSpoolingActor(entityManagerFactory,
+            spoolDirectory, DatabaseLoggingActor.Backend.JPA, prefix + " replaying database logger");
+        Assert.assertEquals(replayingActorRef.underlyingActor().getSpooledEventCount(), 0);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Assert.assertNull(entityManager.find(Execution.class, badExecutionId));
+        } finally {
+            entityManager.close();
+        }
+
+        InterpreterException interpreterException
+            = sendLoggingEvents(replayingActorRef, executionId, prefix, baseTime);
+        Assert.assertEquals(replayingActorRef.underlyingActor().getSpooledEventCount(), 0);
+        assertLoggingTablesContent(executionId, prefix, baseTime, interpreterException);
+        stop(replayingActorRef);
+    }
+
     /**
      * Tests logging if the executor is {@link ForkingExecutor}, whereas {@link #testLogging()} used
      * {@link DrmaaSimpleModuleExecutor}.
      */
     @Test
     public void testForkingExecutorLogging() throws Exception {
-        assert entityManagerFactory != null && scheduler != null && repository != null && linkerOptions != null;
+        assert entityManagerFactory != null && errorTraceStore != null && scheduler != null && repository != null
+            && linkerOptions != null;
         long executionId = 2;
         TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(
             actorSystem,
-            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, scheduler, EVICTION_DURATION)),
+            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, MAX_BATCH_SIZE, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES,
+                MAX_QUEUED_EVENTS, SpoolPolicy.DISABLED, DatabaseLoggingActor.Backend.JPA)),
             "testForkingExecutorLogging database logger"
         );
         RuntimeAnnotatedExecutionTrace binarySumRootTrace = Linker.createAnnotatedExecutionTrace(
@@ -433,7 +702,7 @@ public class ITDatabaseLoggingActor {
         );
         ExecutionFrame expectedExecutionFrame = new ExecutionFrame()
             .setExecution(tablesContent.getExecution())
-            .setFrame("")
+            .setTrace(FrameTraceDictionary.newFrameTrace(""))
             .setStartTime(new Date(baseTime))
             .setFinishTime(new Date(baseTime + END_EVENT_DELTA))
             .setModuleKind(ExecutionFrame.ModuleKind.SIMPLE)
@@ -448,8 +717,140 @@ public class ITDatabaseLoggingActor {
             Collections.singletonList(
                 new ExecutionFrameError()
                     .setExecutionFrame(expectedExecutionFrame)
-                    .setErrorMessage(Throwables.executionTraceToString(interpreterException))
+                    .setErrorFingerprint(
+                        ErrorTraces.fingerprint(Throwables.executionTraceToString(interpreterException)))
             )
         );
     }
+
+    /**
+     * Verifies that events are written in batches, and that a batch that cannot be written is written one event at a
+     * time.
+     */
+    @Test
+    public void testBatching() throws Exception {
+        assert entityManagerFactory != null && errorTraceStore != null && scheduler != null && repository != null
+            && linkerOptions != null;
+        long executionId = 3;
+        TestActorRef<DatabaseLoggingActor> actorRef = TestActorRef.create(
+            actorSystem,
+            Props.create(new DatabaseLoggingActor.Factory(entityManagerFactory, errorTraceStore, scheduler,
+                EVICTION_DURATION, 3, FLUSH_INTERVAL, MAX_CACHED_EXECUTIONS, MAX_CACHED_TRACES,
+                MAX_QUEUED_EVENTS, SpoolPolicy.DISABLED, DatabaseLoggingActor.Backend.JPA)),
+            "testBatching database logger"
+        );
+        DatabaseLoggingActor actor = actorRef.underlyingActor();
+        RuntimeAnnotatedExecutionTrace fibonacciRootTrace = Linker.createAnnotatedExecutionTrace(
+            ExecutionTrace.empty(),
+            new MutableProxyModule().setDeclaration(Fibonacci.class.getName()),
+            Collections.<BareOverride>emptyList(),
+            repository,
+            linkerOptions
+        );
+
+        long baseTime = System.currentTimeMillis();
+        sendTo(actorRef, new StartExecutionEvent(executionId, fibonacciRootTrace, "testBatching"));
+        sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime, ExecutionTrace.empty()));
+        sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime + 100, ExecutionTrace.valueOf("/loop")));
+        Assert.assertEquals(actor.getBatchSize(), 2);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Assert.assertNull(entityManager.find(Execution.class, executionId));
+        } finally {
+            entityManager.close();
+        }
+
+        // The flush interval elapses before the batch is full
+        scheduler.advanceTime(FLUSH_INTERVAL.toMillis() + 1);
+        Assert.assertEquals(actor.getBatchSize(), 0);
+        Assert.assertEquals(
+            Entities.getTablesContent(executionId, entityManagerFactory).getExecutionFrames().size(), 2);
+
+        // Only the execution had to be looked up. Its frames were known to be new, so they were inserted directly.
+        CacheStatistics cacheStatistics = actor.getExecutionLogCacheStatistics();
+        Assert.assertEquals(cacheStatistics.getHitCount(), 3);
+        Assert.assertEquals(cacheStatistics.getMissCount(), 1);
+
+        // The second error for the same execution frame violates the primary key. The batch is full after the third
+        // event, so it is written without waiting for the flush interval.
+        InterpreterException firstException = new InterpreterException(
+            ExecutionTrace.valueOf("/loop"), "First exception.", new ExecutionException("Lorem ipsum"));
+        InterpreterException secondException = new InterpreterException(
+            ExecutionTrace.valueOf("/loop"), "Second exception.", new ExecutionException("Lorem ipsum"));
+        sendTo(actorRef, FailedExecutionTraceEvent.of(executionId, baseTime + 200, ExecutionTrace.valueOf("/loop"),
+            firstException));
+        sendTo(actorRef, FailedExecutionTraceEvent.of(executionId, baseTime + 300, ExecutionTrace.valueOf("/loop"),
+            secondException));
+        sendTo(actorRef, BeginExecutionTraceEvent.of(executionId, baseTime + 400, ExecutionTrace.valueOf("/loop/1")));
+        Assert.assertEquals(actor.getBatchSize(), 0);
+
+        Entities.TablesContent tablesContent = Entities.getTablesContent(executionId, entityManagerFactory);
+        Assert.assertEquals(tablesContent.getExecutionFrames().size(), 3);
+        Assert.assertEquals(tablesContent.getExecutionFrameErrors().size(), 1);
+        Assert.assertEquals(
+            tablesContent.getExecutionFrameErrors().get(0).getErrorFingerprint(),
+            ErrorTraces.fingerprint(Throwables.executionTraceToString(firstException))
+        );
+
+        // Acknowledging the end of an execution writes the current batch
+        sendTo(actorRef, EndExecutionTraceEvent.of(executionId, baseTime + 500, ExecutionTrace.empty(), false));
+        Assert.assertEquals(actor.getBatchSize(), 1);
+        sendTo(actorRef, new StopExecutionEvent(executionId));
+        Assert.assertEquals(actor.getBatchSize(), 0);
+        Assert.assertEquals(
+            Entities.getTablesContent(executionId, entityManagerFactory).getExecution().getFinishTime(),
+            new Date(baseTime + 500)
+        );
+
+        // Each of the three distinct execution traces was resolved once. The batch of three events (two distinct
+        // execution traces) and the three events written individually were then resolved from the cache, as was the
+        // last event.
+        CacheStatistics frameTraceStatistics = actor.getFrameTraceCacheStatistics();
+        Assert.assertEquals(frameTraceStatistics.getMissCount(), 3);
+        Assert.assertEquals(frameTraceStatistics.getHitCount(), 5);
+    }
+
+    /**
+     * Verifies that a {@link BoundedEventMailbox} with overflow policy {@code spill} appends the events that do not fit
+     * to its spill spool (including the end event of the root execution trace while spilling, to keep events in order),
+     * and delivers them once there is room again.
+     */
+    @Test
+    public void mailboxSpill() {
+        assert actorSystem != null && tempDir != null;
+        EventOverflowCounters overflowCounters = EventOverflowCounters.get(actorSystem);
+        long droppedCount = overflowCounters.getDroppedCount();
+        long spilledCount = overflowCounters.getSpilledCount();
+        MessageQueue queue = new BoundedEventMailbox(2, BoundedEventMailbox.OverflowPolicy.SPILL,
+                tempDir.resolve("mailboxSpill"), SPOOL_SEGMENT_SIZE)
+            .create(Option.<ActorRef>empty(), Option.apply(actorSystem));
+        List<Object> messages = Arrays.asList(
+            BeginExecutionTraceEvent.of(1, 0, ExecutionTrace.valueOf("/a")),
+            BeginExecutionTraceEvent.of(1, 1, ExecutionTrace.valueOf("/b")),
+            BeginExecutionTraceEvent.of(1, 2, ExecutionTrace.valueOf("/c")),
+            "control",
+            EndExecutionTraceEvent.of(1, 3, ExecutionTrace.empty(), true)
+        );
+        for (Object message: messages) {
+            queue.enqueue(actorSystem.deadLetters(), Envelope.apply(message, ActorRef.noSender(), actorSystem));
+        }
+        Assert.assertEquals(queue.numberOfMessages(), 3);
+        Assert.assertEquals(overflowCounters.getSpilledCount(), spilledCount + 2);
+
+        List<String> dequeued = new ArrayList<>();
+        @Nullable Envelope envelope = queue.dequeue();
+        while (envelope != null) {
+            dequeued.add(envelope.message().toString());
+            envelope = queue.dequeue();
+        }
+        Assert.assertEquals(dequeued, Arrays.asList(
+            messages.get(0).toString(),
+            messages.get(1).toString(),
+            "control",
+            messages.get(2).toString(),
+            messages.get(4).toString()
+        ));
+        Assert.assertEquals(overflowCounters.getDroppedCount(), droppedCount);
+        queue.cleanUp(actorSystem.deadLetters(), queue);
+    }
 }
@@ -0,0 +1,307 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.util.SLF4JSessionLog;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.config.TargetServer;
+import org.eclipse.persistence.logging.SessionLog;
+import org.h2.Driver;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import xyz.cloudkeeper.model.beans.element.module.MutableProxyModule;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.xml.bind.JAXBContext;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ITDatabaseStatusKeepingService {
+    private static final long FIXED_TIME_MILLIS = 1_000_000;
+    private static final Clock FIXED_CLOCK = new Clock() {
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return FIXED_TIME_MILLIS;
+        }
+    };
+
+    @Nullable private EntityManagerFactory entityManagerFactory;
+    @Nullable private JAXBContext jaxbContext;
+    @Nullable private ErrorTraceStore errorTraceStore;
+
+    private static EntityManagerFactory newEntityManagerFactory(String databaseName) {
+        Map<String, String> javaPersistenceProperties = new LinkedHashMap<>();
+        javaPersistenceProperties.put("javax.persistence.jdbc.driver", Driver.class.getName());
+        javaPersistenceProperties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + databaseName);
+        javaPersistenceProperties.put("javax.persistence.schema-generation.database.action", "create");
+        // EclipseLink properties
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LEVEL, SessionLog.ALL_LABEL);
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LOGGER, SLF4JSessionLog.class.getName());
+        javaPersistenceProperties.put(PersistenceUnitProperties.TARGET_SERVER, TargetServer.None);
+        return Persistence.createEntityManagerFactory(
+            Execution.class.getPackage().getName(), javaPersistenceProperties);
+    }
+
+    @BeforeClass
+    public void setup() throws Exception {
+        entityManagerFactory = newEntityManagerFactory(getClass().getSimpleName());
+        jaxbContext = JAXBContext.newInstance(ExecutionStatus.class);
+        errorTraceStore = new ErrorTraceStore(entityManagerFactory, 10);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        assert entityManagerFactory != null;
+        entityManagerFactory.close();
+    }
+
+    private static ExecutionStatus executionStatus(long executionId, ExecutionStatus.Status status) {
+        return executionStatus(executionId, status, "prefix", 1234L);
+    }
+
+    private static ExecutionStatus executionStatus(long executionId, ExecutionStatus.Status status, String prefix,
+            long startTimeMillis) {
+        return new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(status)
+            .setRequest(
+                new ExecuteWorkflowRequest()
+                    .setBundleIdentifiers(Collections.singletonList(URI.create("x-test:foo")))
+                    .setCleaningRequested(true)
+                    .setPrefix(prefix)
+                    .setModule(
+                        new MutableProxyModule()
+                            .setDeclaration("foo.bar")
+                    )
+            )
+            .setFailureDescription("foo")
+            .setStartTimeMillis(startTimeMillis)
+            .setQueueWaitMillis(5L)
+            .setQueueDepth(2);
+    }
+
+    @Test
+    public void persistLoad() throws Exception {
+        assert entityManagerFactory != null && jaxbContext != null && errorTraceStore != null;
+        DatabaseStatusKeepingService statusKeepingService
+            = new DatabaseStatusKeepingService(entityManagerFactory, errorTraceStore, SystemClock.MILLIS, Runnable::run,
+                jaxbContext, 10);
+
+        ExecutionStatus executionStatus = executionStatus(2, ExecutionStatus.Status.FAILED);
+        ExecutionStatus persistResult = statusKeepingService.persistExecutionStatus(executionStatus).get();
+        Assert.assertSame(persistResult, executionStatus);
+
+        ExecutionStatus loadedStatus = statusKeepingService.loadExecutionStatus(2).get();
+        Assert.assertNotSame(loadedStatus, executionStatus);
+        Assert.assertEquals(loadedStatus, executionStatus);
+
+        // Persisting the same execution id again replaces the previous row
+        ExecutionStatus successfulStatus = executionStatus(2, ExecutionStatus.Status.SUCCESSFUL)
+            .setFailureDescription(null);
+        statusKeepingService.persistExecutionStatus(successfulStatus).get();
+        Assert.assertEquals(statusKeepingService.loadExecutionStatus(2).get(), successfulStatus);
+
+        try {
+            statusKeepingService.loadExecutionStatus(123).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            @Nullable Throwable cause = exception.getCause();
+            Assert.assertTrue(cause instanceof UnknownExecutionIdException);
+            Assert.assertTrue(cause.getMessage().contains("123"));
+        }
+    }
+
+    @Test
+    public void batching() throws Exception {
+        assert entityManagerFactory != null && jaxbContext != null && errorTraceStore != null;
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        DatabaseStatusKeepingService statusKeepingService
+            = new DatabaseStatusKeepingService(entityManagerFactory, errorTraceStore, SystemClock.MILLIS, tasks::add,
+                jaxbContext, 2);
+
+        CompletableFuture<ExecutionStatus> first
+            = statusKeepingService.persistExecutionStatus(executionStatus(11, ExecutionStatus.Status.SUCCESSFUL));
+        CompletableFuture<ExecutionStatus> second
+            = statusKeepingService.persistExecutionStatus(executionStatus(12, ExecutionStatus.Status.SUCCESSFUL));
+        CompletableFuture<ExecutionStatus> third
+            = statusKeepingService.persistExecutionStatus(executionStatus(13, ExecutionStatus.Status.FAILED));
+        // A single flush task for all three execution statuses
+        Assert.assertEquals(tasks.size(), 1);
+
+        // The first batch contains two execution statuses, and the flush task reschedules itself for the rest
+        tasks.remove().run();
+        Assert.assertTrue(first.isDone() && second.isDone());
+        Assert.assertFalse(third.isDone());
+        Assert.assertEquals(tasks.size(), 1);
+
+        tasks.remove().run();
+        Assert.assertTrue(third.isDone());
+        Assert.assertTrue(tasks.isEmpty());
+
+        CompletableFuture<ExecutionStatus> loaded = statusKeepingService.loadExecutionStatus(13);
+        tasks.remove().run();
+        Assert.assertEquals(loaded.get(), executionStatus(13, ExecutionStatus.Status.FAILED));
+    }
+
+    @Test
+    public void queryAndBulkLoad() throws Exception {
+        assert entityManagerFactory != null && jaxbContext != null && errorTraceStore != null;
+        DatabaseStatusKeepingService statusKeepingService
+            = new DatabaseStatusKeepingService(entityManagerFactory, errorTraceStore, SystemClock.MILLIS, Runnable::run,
+                jaxbContext, 10);
+
+        List<ExecutionStatus> executionStatuses = Arrays.asList(
+            executionStatus(101, ExecutionStatus.Status.SUCCESSFUL, "query", 1000L),
+            executionStatus(102, ExecutionStatus.Status.FAILED, "query", 2000L),
+            executionStatus(103, ExecutionStatus.Status.SUCCESSFUL, "other", 3000L),
+            executionStatus(104, ExecutionStatus.Status.FAILED, "query", 4000L)
+        );
+        statusKeepingService.persistExecutionStatuses(executionStatuses, false).get();
+
+        // Paging through all execution statuses with the given prefix
+        ExecutionStatusQuery query = new ExecutionStatusQuery().setPrefix("query").setLimit(2);
+        ExecutionStatusList firstPage = statusKeepingService.queryExecutionStatuses(query).get();
+        Assert.assertEquals(firstPage.getList(), executionStatuses.subList(0, 2));
+        Assert.assertEquals(firstPage.getNextCursor(), Long.valueOf(102));
+        ExecutionStatusList secondPage
+            = statusKeepingService.queryExecutionStatuses(query.setCursor(firstPage.getNextCursor())).get();
+        Assert.assertEquals(secondPage.getList(), Collections.singletonList(executionStatuses.get(3)));
+        Assert.assertNull(secondPage.getNextCursor());
+
+        // Status and start-time filters
+        ExecutionStatusList failed = statusKeepingService.queryExecutionStatuses(
+            new ExecutionStatusQuery()
+                .setCursor(100L)
+                .setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED))
+                .setStartedAfterMillis(2000L)
+                .setStartedBeforeMillis(5000L)
+        ).get();
+        Assert.assertEquals(failed.getList(), Arrays.asList(executionStatuses.get(1), executionStatuses.get(3)));
+
+        // Bulk load keeps the order of the execution ids and omits unknown ids
+        List<ExecutionStatus> loaded
+            = statusKeepingService.loadExecutionStatuses(Arrays.asList(104L, 999L, 101L)).get();
+        Assert.assertEquals(loaded, Arrays.asList(executionStatuses.get(3), executionStatuses.get(0)));
+    }
+
+    @Test
+    public void retention() throws Exception {
+        assert jaxbContext != null;
+        // Separate database, because sweeping would otherwise interfere with the other tests.
+        EntityManagerFactory retentionEntityManagerFactory
+            = newEntityManagerFactory(getClass().getSimpleName() + "-retention");
+        try {
+            DatabaseStatusKeepingService statusKeepingService
+                = new DatabaseStatusKeepingService(retentionEntityManagerFactory,
+                    new ErrorTraceStore(retentionEntityManagerFactory, 10), SystemClock.MILLIS, Runnable::run,
+                    jaxbContext, 2);
+            long currentTimeMillis = System.currentTimeMillis();
+            List<ExecutionStatus> executionStatuses = Arrays.asList(
+                executionStatus(1, ExecutionStatus.Status.SUCCESSFUL, "retention", currentTimeMillis),
+                executionStatus(2, ExecutionStatus.Status.SUCCESSFUL, "retention", currentTimeMillis),
+                executionStatus(3, ExecutionStatus.Status.SUCCESSFUL, "retention", currentTimeMillis),
+                executionStatus(4, ExecutionStatus.Status.SUCCESSFUL, "retention", currentTimeMillis),
+                executionStatus(5, ExecutionStatus.Status.FAILED, "retention", 1000L),
+                executionStatus(6, ExecutionStatus.Status.FAILED, "retention", currentTimeMillis),
+                executionStatus(7, ExecutionStatus.Status.RUNNING, "retention", 1000L)
+            );
+            statusKeepingService.persistExecutionStatuses(executionStatuses, false).get();
+
+            Map<ExecutionStatus.Status, RetentionPolicy.Limit> limits = new EnumMap<>(ExecutionStatus.Status.class);
+            limits.put(ExecutionStatus.Status.SUCCESSFUL, new RetentionPolicy.Limit(0, 1));
+            limits.put(ExecutionStatus.Status.FAILED, new RetentionPolicy.Limit(60_000, 0));
+            long removed = statusKeepingService.sweep(new RetentionPolicy(limits, RetentionPolicy.Limit.UNLIMITED),
+                currentTimeMillis, new RateLimiter(SystemClock.NANO, 1_000_000));
+            Assert.assertEquals(removed, 4);
+            Assert.assertEquals(
+                statusKeepingService.loadExecutionStatuses(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L)).get(),
+                Arrays.asList(executionStatuses.get(3), executionStatuses.get(5), executionStatuses.get(6))
+            );
+        } finally {
+            retentionEntityManagerFactory.close();
+        }
+    }
+
+    @Test
+    public void topErrors() throws Exception {
+        assert jaxbContext != null;
+        // Separate database, because the occurrence counts would otherwise depend on the other tests.
+        EntityManagerFactory errorsEntityManagerFactory
+            = newEntityManagerFactory(getClass().getSimpleName() + "-errors");
+        try {
+            ErrorTraceStore store = new ErrorTraceStore(errorsEntityManagerFactory, 10);
+            DatabaseStatusKeepingService statusKeepingService
+                = new DatabaseStatusKeepingService(errorsEntityManagerFactory, store, FIXED_CLOCK, Runnable::run,
+                    jaxbContext, 10);
+            String firstTrace
+                = "java.lang.IllegalStateException: Execution 1 failed.\n\tat foo.Bar.baz(Bar.java:12)\n";
+            String secondTrace
+                = "java.lang.IllegalStateException: Execution 2 failed.\n\tat foo.Bar.baz(Bar.java:12)\n";
+            String otherTrace = "java.io.IOException: Disk full.\n\tat foo.Bar.qux(Bar.java:34)\n";
+            List<ExecutionStatus> executionStatuses = Arrays.asList(
+                executionStatus(1, ExecutionStatus.Status.FAILED).setFailureDescription(firstTrace),
+                executionStatus(2, ExecutionStatus.Status.FAILED).setFailureDescription(secondTrace),
+                executionStatus(3, ExecutionStatus.Status.FAILED).setFailureDescription(firstTrace),
+                executionStatus(4, ExecutionStatus.Status.FAILED).setFailureDescription(otherTrace),
+                executionStatus(5, ExecutionStatus.Status.SUCCESSFUL).setFailureDescription(null)
+            );
+            statusKeepingService.persistExecutionStatuses(executionStatuses, false).get();
+
+            // Failure descriptions that differ only in normalized parts are still loaded exactly
+            Assert.assertEquals(
+                statusKeepingService.loadExecutionStatuses(Arrays.asList(1L, 2L, 3L, 4L, 5L)).get(),
+                executionStatuses
+            );
+
+            List<ErrorSummary> topErrors = statusKeepingService.getTopErrors(10).get();
+            Assert.assertEquals(topErrors.size(), 2);
+            Assert.assertEquals(topErrors.get(0).getFingerprint(), ErrorTraces.fingerprint(firstTrace));
+            Assert.assertEquals(topErrors.get(0).getFingerprint(), ErrorTraces.fingerprint(secondTrace));
+            Assert.assertEquals(topErrors.get(0).getOccurrences(), 3);
+            Assert.assertEquals(topErrors.get(0).getSummary(), "java.lang.IllegalStateException: Execution 1 failed.");
+            Assert.assertEquals(topErrors.get(0).getFirstSeenMillis(), Long.valueOf(FIXED_TIME_MILLIS));
+            Assert.assertEquals(topErrors.get(0).getLastSeenMillis(), Long.valueOf(FIXED_TIME_MILLIS));
+            Assert.assertEquals(topErrors.get(1).getFingerprint(), ErrorTraces.fingerprint(otherTrace));
+            Assert.assertEquals(topErrors.get(1).getOccurrences(), 1);
+            Assert.assertEquals(statusKeepingService.getTopErrors(1).get(), topErrors.subList(0, 1));
+
+            // Persisting the same execution statuses again (as when a write is retried) does not change the counts
+            statusKeepingService.persistExecutionStatuses(executionStatuses, false).get();
+            Assert.assertEquals(statusKeepingService.getTopErrors(10).get(), topErrors);
+
+            // A new store (with an empty cache) loads the execution traces from the database
+            Assert.assertEquals(
+                new ErrorTraceStore(errorsEntityManagerFactory, 0)
+                    .load(Arrays.asList(ErrorTraces.fingerprint(otherTrace), "unknown")),
+                Collections.singletonMap(ErrorTraces.fingerprint(otherTrace), otherTrace)
+            );
+        } finally {
+            errorsEntityManagerFactory.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.svbio.workflow.service;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import xyz.cloudkeeper.model.api.util.RecursiveDeleteVisitor;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ITEventSpool {
+    private static final int LARGE_SEGMENT_SIZE = 1024 * 1024;
+    private static final int SMALL_SEGMENT_SIZE = 64;
+
+    @Nullable private Path tempDir;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory(getClass().getSimpleName());
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        assert tempDir != null;
+        Files.walkFileTree(tempDir, RecursiveDeleteVisitor.getInstance());
+    }
+
+    private EventSpool open(String directoryName, int segmentSize) throws IOException {
+        assert tempDir != null;
+        return EventSpool.openUnclaimed(tempDir.resolve(directoryName), segmentSize);
+    }
+
+    private static byte[] payload(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> payloads) {
+        List<String> strings = new ArrayList<>(payloads.size());
+        for (byte[] payload: payloads) {
+            strings.add(new String(payload, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.spool")) {
+            for (Path path: stream) {
+                segmentFiles.add(path);
+            }
+        }
+        segmentFiles.sort(null);
+        return segmentFiles;
+    }
+
+    @Test
+    public void appendPeekConsume() throws IOException {
+        try (EventSpool spool = open("appendPeekConsume", LARGE_SEGMENT_SIZE)) {
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertTrue(spool.peek(10).isEmpty());
+
+            spool.append(payload("a"));
+            spool.append(payload("bb"));
+            spool.append(payload("ccc"));
+            Assert.assertEquals(spool.size(), 3);
+            Assert.assertEquals(strings(spool.peek(2)), Arrays.asList("a", "bb"));
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("a", "bb", "ccc"));
+
+            spool.consume(2);
+            Assert.assertEquals(spool.size(), 1);
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("ccc"));
+
+            try {
+                spool.consume(2);
+                Assert.fail();
+            } catch (IllegalArgumentException ignored) { }
+
+            try {
+                spool.append(new byte[0]);
+                Assert.fail();
+            } catch (IllegalArgumentException ignored) { }
+        }
+    }
+
+    @Test
+    public void rotation() throws IOException {
+        assert tempDir != null;
+        Path directory = tempDir.resolve("rotation").resolve("writer-0");
+        try (EventSpool spool = open("rotation", SMALL_SEGMENT_SIZE)) {
+            // A segment of 64 bytes fits two records of 10 bytes, but not three.
+            for (int i = 0; i < 5; ++i) {
+                spool.append(payload("record-" + i + "xx"));
+            }
+            Assert.assertEquals(segmentFiles(directory).size(), 3);
+
+            // A record that does not fit into a segment of the configured size gets a larger segment.
+            spool.append(new byte[SMALL_SEGMENT_SIZE]);
+            Assert.assertEquals(segmentFiles(directory).size(), 4);
+            Assert.assertEquals(spool.size(), 6);
+
+            spool.consume(4);
+            Assert.assertEquals(segmentFiles(directory).size(), 2);
+            Assert.assertEquals(strings(spool.peek(1)), Arrays.asList("record-4xx"));
+            spool.consume(2);
+            Assert.assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    public void recovery() throws IOException {
+        try (EventSpool spool = open("recovery", SMALL_SEGMENT_SIZE)) {
+            for (int i = 0; i < 5; ++i) {
+                spool.append(payload("record-" + i + "xx"));
+            }
+            spool.consume(3);
+        }
+
+        try (EventSpool spool = open("recovery", SMALL_SEGMENT_SIZE)) {
+            Assert.assertEquals(spool.size(), 2);
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("record-3xx", "record-4xx"));
+            spool.append(payload("record-5xx"));
+            spool.consume(2);
+        }
+
+        try (EventSpool spool = open("recovery", SMALL_SEGMENT_SIZE)) {
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("record-5xx"));
+            spool.consume(1);
+        }
+
+        try (EventSpool spool = open("recovery", SMALL_SEGMENT_SIZE)) {
+            Assert.assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    public void tornRecord() throws IOException {
+        assert tempDir != null;
+        try (EventSpool spool = open("tornRecord", LARGE_SEGMENT_SIZE)) {
+            for (int i = 0; i < 3; ++i) {
+                spool.append(payload("record-" + i));
+            }
+        }
+
+        // Corrupt the last byte of the third record. Records consist of length, checksum, and payload.
+        Path segmentFile = segmentFiles(tempDir.resolve("tornRecord").resolve("writer-0")).get(0);
+        int position = 16 + 3 * (8 + "record-0".length()) - 1;
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0 }), position);
+        }
+
+        try (EventSpool spool = open("tornRecord", LARGE_SEGMENT_SIZE)) {
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("record-0", "record-1"));
+        }
+    }
+
+    @Test
+    public void claim() throws IOException {
+        assert tempDir != null;
+        Path baseDirectory = tempDir.resolve("claim");
+        try (EventSpool first = open("claim", LARGE_SEGMENT_SIZE)) {
+            first.append(payload("first"));
+            try (EventSpool second = open("claim", LARGE_SEGMENT_SIZE)) {
+                Assert.assertTrue(second.isEmpty());
+                Assert.assertTrue(Files.isDirectory(baseDirectory.resolve("writer-1")));
+            }
+        }
+
+        // The first spool directory is released on close, so its records are recovered by the next spool.
+        try (EventSpool spool = open("claim", LARGE_SEGMENT_SIZE)) {
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("first"));
+        }
+
+        try {
+            open("claim", EventSpool.MIN_SEGMENT_SIZE - 1);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+    }
+
+    @Test
+    public void moveUnclaimed() throws IOException {
+        assert tempDir != null;
+        Path baseDirectory = tempDir.resolve("moveUnclaimed");
+        Path recoveryDirectory = baseDirectory.resolve("recovery");
+        try (EventSpool first = open("moveUnclaimed", SMALL_SEGMENT_SIZE)) {
+            try (EventSpool second = open("moveUnclaimed", SMALL_SEGMENT_SIZE)) {
+                for (int i = 0; i < 3; ++i) {
+                    second.append(payload("second-" + i + "xx"));
+                }
+                second.consume(1);
+            }
+            first.append(payload("first"));
+
+            // The first spool directory is claimed, so its records are not moved.
+            Assert.assertTrue(EventSpool.moveUnclaimed(baseDirectory, recoveryDirectory) > 0);
+        }
+        Assert.assertEquals(EventSpool.moveUnclaimed(baseDirectory, recoveryDirectory), 3);
+
+        try (EventSpool spool = EventSpool.openUnclaimed(recoveryDirectory, SMALL_SEGMENT_SIZE)) {
+            Assert.assertEquals(strings(spool.peek(10)), Arrays.asList("second-1xx", "second-2xx", "first"));
+        }
+        try (EventSpool spool = open("moveUnclaimed", SMALL_SEGMENT_SIZE)) {
+            Assert.assertTrue(spool.isEmpty());
+        }
+    }
+}
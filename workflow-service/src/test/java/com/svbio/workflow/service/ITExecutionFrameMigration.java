@@ -0,0 +1,186 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.entities.Execution;
+import com.svbio.workflow.entities.ExecutionFrame;
+import com.svbio.workflow.entities.ExecutionFrameError;
+import com.svbio.workflow.entities.ExecutionFrameProperties;
+import com.svbio.workflow.entities.FrameTrace;
+import com.svbio.workflow.entities.SimpleProperties;
+import com.svbio.workflow.util.SLF4JSessionLog;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.config.TargetServer;
+import org.eclipse.persistence.logging.SessionLog;
+import org.h2.Driver;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ITExecutionFrameMigration {
+    private static final long EXECUTION_ID = 1;
+
+    @Nullable private EntityManagerFactory entityManagerFactory;
+
+    @BeforeClass
+    public void setup() {
+        Map<String, String> javaPersistenceProperties = new LinkedHashMap<>();
+        javaPersistenceProperties.put("javax.persistence.jdbc.driver", Driver.class.getName());
+        javaPersistenceProperties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + getClass().getSimpleName());
+        javaPersistenceProperties.put("javax.persistence.schema-generation.database.action", "create");
+        // EclipseLink properties
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LEVEL, SessionLog.ALL_LABEL);
+        javaPersistenceProperties.put(PersistenceUnitProperties.LOGGING_LOGGER, SLF4JSessionLog.class.getName());
+        javaPersistenceProperties.put(PersistenceUnitProperties.TARGET_SERVER, TargetServer.None);
+        entityManagerFactory
+            = Persistence.createEntityManagerFactory(Execution.class.getPackage().getName(), javaPersistenceProperties);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        assert entityManagerFactory != null;
+        entityManagerFactory.close();
+    }
+
+    private void persistExecution() {
+        assert entityManagerFactory != null;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            Execution execution = new Execution().setId(EXECUTION_ID).setKeyPrefix("prefix");
+            entityManager.persist(execution);
+            ExecutionFrame rootFrame = new ExecutionFrame()
+                .setExecution(execution)
+                .setTrace(entityManager.merge(FrameTraceDictionary.newFrameTrace("")))
+                .setModuleKind(ExecutionFrame.ModuleKind.COMPOSITE)
+                .setStartTime(new Date(1000));
+            entityManager.persist(rootFrame);
+            ExecutionFrame sumFrame = new ExecutionFrame()
+                .setExecution(execution)
+                .setTrace(entityManager.merge(FrameTraceDictionary.newFrameTrace("/sum")))
+                .setModuleKind(ExecutionFrame.ModuleKind.SIMPLE)
+                .setStartTime(new Date(1100))
+                .setFinishTime(new Date(1200))
+                .setSuccessful(false);
+            entityManager.persist(sumFrame);
+            entityManager.persist(
+                new SimpleProperties()
+                    .setExecutionFrame(sumFrame)
+                    .setWorkerName("worker")
+                    .setCommandLine("java -jar sum.jar")
+                    .setExitStatus(1)
+            );
+            entityManager.persist(
+                new ExecutionFrameError()
+                    .setExecutionFrame(sumFrame)
+                    .setErrorFingerprint("fingerprint")
+                    .setErrorMessage("Lorem ipsum")
+            );
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Moves all execution frames from the current tables into newly created legacy tables, which have the same
+     * columns, except that execution-trace ids are replaced by the string representation of the execution trace.
+     */
+    private void moveToLegacyTables() throws SQLException {
+        assert entityManagerFactory != null;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+            try (Statement statement = connection.createStatement()) {
+                createLegacyTable(statement, ExecutionFrame.LEGACY_TABLE_NAME, ExecutionFrame.TABLE_NAME, "");
+                createLegacyTable(statement, ExecutionFrameProperties.LEGACY_TABLE_NAME,
+                    ExecutionFrameProperties.TABLE_NAME, "EXECUTIONFRAME_");
+                createLegacyTable(statement, ExecutionFrameError.LEGACY_TABLE_NAME, ExecutionFrameError.TABLE_NAME,
+                    "EXECUTIONFRAME_");
+                statement.executeUpdate("DELETE FROM " + ExecutionFrameError.TABLE_NAME);
+                statement.executeUpdate("DELETE FROM " + ExecutionFrameProperties.TABLE_NAME);
+                statement.executeUpdate("DELETE FROM " + ExecutionFrame.TABLE_NAME);
+                statement.executeUpdate("DELETE FROM FRAMETRACE");
+            }
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    private static void createLegacyTable(Statement statement, String legacyTable, String table, String columnPrefix)
+            throws SQLException {
+        String legacyColumn = columnPrefix + "FRAME";
+        statement.executeUpdate(String.format("CREATE TABLE %s AS SELECT * FROM %s", legacyTable, table));
+        statement.executeUpdate(String.format(
+            "ALTER TABLE %s ALTER COLUMN %sTRACE_ID RENAME TO %s", legacyTable, columnPrefix, legacyColumn));
+        statement.executeUpdate(String.format(
+            "ALTER TABLE %s ALTER COLUMN %s VARCHAR(%d)", legacyTable, legacyColumn, FrameTrace.TRACE_LENGTH));
+        statement.executeUpdate(String.format(
+            "UPDATE %1$s SET %2$s = (SELECT TRACE FROM FRAMETRACE WHERE ID = CAST(%2$s AS BIGINT))",
+            legacyTable, legacyColumn
+        ));
+    }
+
+    @Test
+    public void migrate() throws SQLException {
+        assert entityManagerFactory != null;
+
+        // Without legacy tables, there is nothing to migrate
+        Assert.assertEquals(ExecutionFrameMigration.migrate(entityManagerFactory), 0);
+
+        persistExecution();
+        Entities.TablesContent expected = Entities.getTablesContent(EXECUTION_ID, entityManagerFactory);
+        Assert.assertEquals(expected.getExecutionFrames().size(), 2);
+        Assert.assertEquals(expected.getExecutionFrameProperties().size(), 1);
+        Assert.assertEquals(expected.getExecutionFrameErrors().size(), 1);
+
+        moveToLegacyTables();
+        Assert.assertTrue(
+            Entities.getTablesContent(EXECUTION_ID, entityManagerFactory).getExecutionFrames().isEmpty());
+
+        Assert.assertEquals(ExecutionFrameMigration.migrate(entityManagerFactory), 2);
+        Entities.TablesContent actual = Entities.getTablesContent(EXECUTION_ID, entityManagerFactory);
+        Assert.assertEquals(actual.getExecutionFrames(), expected.getExecutionFrames());
+        Assert.assertEquals(actual.getExecutionFrameProperties(), expected.getExecutionFrameProperties());
+        Assert.assertEquals(actual.getExecutionFrameErrors(), expected.getExecutionFrameErrors());
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Assert.assertEquals(
+                entityManager.find(FrameTrace.class, FrameTraceDictionary.id("/sum")),
+                FrameTraceDictionary.newFrameTrace("/sum")
+            );
+        } finally {
+            entityManager.close();
+        }
+
+        // The legacy tables are now empty, so migrating again is a no-op
+        Assert.assertEquals(ExecutionFrameMigration.migrate(entityManagerFactory), 0);
+        Assert.assertEquals(
+            Entities.getTablesContent(EXECUTION_ID, entityManagerFactory).getExecutionFrames(),
+            expected.getExecutionFrames()
+        );
+    }
+}
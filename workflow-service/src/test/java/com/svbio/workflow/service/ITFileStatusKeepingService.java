@@ -16,7 +16,10 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -73,4 +76,48 @@ public class ITFileStatusKeepingService {
             Assert.assertTrue(cause.getMessage().contains("123"));
         }
     }
+
+    @Test
+    public void retention() throws Exception {
+        assert executorService != null && tempDir != null;
+        Path directory = Files.createDirectory(tempDir.resolve("retention"));
+        JAXBContext jaxbContext = JAXBContext.newInstance(ExecutionStatus.class);
+        FileStatusKeepingService statusKeepingService
+            = new FileStatusKeepingService(directory, executorService, jaxbContext);
+        for (long executionId = 1; executionId <= 5; ++executionId) {
+            statusKeepingService.persistExecutionStatus(
+                new ExecutionStatus().setExecutionId(executionId).setStatus(ExecutionStatus.Status.SUCCESSFUL)).get();
+        }
+        statusKeepingService.persistExecutionStatus(
+            new ExecutionStatus().setExecutionId(6).setStatus(ExecutionStatus.Status.FAILED)).get();
+        statusKeepingService.persistExecutionStatus(
+            new ExecutionStatus().setExecutionId(7).setStatus(ExecutionStatus.Status.FAILED)).get();
+        statusKeepingService.persistExecutionStatus(
+            new ExecutionStatus().setExecutionId(8).setStatus(ExecutionStatus.Status.RUNNING)).get();
+        Files.setLastModifiedTime(directory.resolve("6.xml"), FileTime.fromMillis(0));
+        Files.setLastModifiedTime(directory.resolve("8.xml"), FileTime.fromMillis(0));
+
+        Map<ExecutionStatus.Status, RetentionPolicy.Limit> limits = new EnumMap<>(ExecutionStatus.Status.class);
+        limits.put(ExecutionStatus.Status.SUCCESSFUL, new RetentionPolicy.Limit(0, 2));
+        limits.put(ExecutionStatus.Status.FAILED, new RetentionPolicy.Limit(60_000, 0));
+        RetentionPolicy policy = new RetentionPolicy(limits, RetentionPolicy.Limit.UNLIMITED);
+
+        // A new instance does not know any statuses yet, so it has to read the files.
+        FileStatusKeepingService sweepingService
+            = new FileStatusKeepingService(directory, executorService, jaxbContext);
+        long removed = sweepingService.sweep(policy, System.currentTimeMillis(),
+            new RateLimiter(SystemClock.NANO, 1_000_000));
+        Assert.assertEquals(removed, 4);
+        for (long executionId: new long[] { 1, 2, 3, 6 }) {
+            Assert.assertFalse(Files.exists(directory.resolve(executionId + ".xml")));
+        }
+        // Non-terminal execution statuses are never removed, regardless of their age.
+        for (long executionId: new long[] { 4, 5, 7, 8 }) {
+            Assert.assertTrue(Files.exists(directory.resolve(executionId + ".xml")));
+        }
+
+        // The instance that persisted the execution statuses knows them, and sweeping again removes nothing.
+        Assert.assertEquals(statusKeepingService.sweep(policy, System.currentTimeMillis(),
+            new RateLimiter(SystemClock.NANO, 1_000_000)), 0);
+    }
 }
@@ -0,0 +1,311 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import xyz.cloudkeeper.model.api.util.RecursiveDeleteVisitor;
+import xyz.cloudkeeper.model.beans.element.module.MutableProxyModule;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.JAXBContext;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ITLogStatusKeepingService {
+    private static final long LARGE_SEGMENT_SIZE = 1024 * 1024;
+    private static final long SMALL_SEGMENT_SIZE = 1024;
+
+    @Nullable private Path tempDir;
+    @Nullable private ExecutorService executorService;
+    @Nullable private JAXBContext jaxbContext;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        tempDir = Files.createTempDirectory(getClass().getSimpleName());
+        executorService = Executors.newCachedThreadPool();
+        jaxbContext = JAXBContext.newInstance(ExecutionStatus.class);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        assert executorService != null && tempDir != null;
+        executorService.shutdownNow();
+        Files.walkFileTree(tempDir, RecursiveDeleteVisitor.getInstance());
+    }
+
+    private LogStatusKeepingService open(String directoryName, long segmentSize) throws IOException {
+        assert executorService != null && tempDir != null && jaxbContext != null;
+        return LogStatusKeepingService.open(tempDir.resolve(directoryName), segmentSize, executorService, jaxbContext);
+    }
+
+    private static ExecutionStatus executionStatus(long executionId, ExecutionStatus.Status status) {
+        return new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(status)
+            .setRequest(
+                new ExecuteWorkflowRequest()
+                    .setBundleIdentifiers(Collections.singletonList(URI.create("x-test:foo")))
+                    .setCleaningRequested(true)
+                    .setModule(
+                        new MutableProxyModule()
+                            .setDeclaration("foo.bar")
+                    )
+            )
+            .setFailureDescription("foo");
+    }
+
+    private static void assertUnknown(LogStatusKeepingService statusKeepingService, long executionId)
+            throws InterruptedException {
+        try {
+            statusKeepingService.loadExecutionStatus(executionId).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            @Nullable Throwable cause = exception.getCause();
+            Assert.assertTrue(cause instanceof UnknownExecutionIdException);
+            Assert.assertTrue(cause.getMessage().contains(String.valueOf(executionId)));
+        }
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    @Test
+    public void persistLoad() throws Exception {
+        LogStatusKeepingService statusKeepingService = open("persistLoad", LARGE_SEGMENT_SIZE);
+
+        ExecutionStatus executionStatus = executionStatus(2, ExecutionStatus.Status.RUNNING);
+        ExecutionStatus persistResult = statusKeepingService.persistExecutionStatus(executionStatus).get();
+        Assert.assertSame(persistResult, executionStatus);
+
+        ExecutionStatus loadedStatus = statusKeepingService.loadExecutionStatus(2).get();
+        Assert.assertNotSame(loadedStatus, executionStatus);
+        Assert.assertEquals(loadedStatus, executionStatus);
+
+        // The last record for an execution id wins
+        ExecutionStatus finishedStatus = executionStatus(2, ExecutionStatus.Status.SUCCESSFUL);
+        statusKeepingService.persistExecutionStatus(finishedStatus).get();
+        Assert.assertEquals(statusKeepingService.loadExecutionStatus(2).get(), finishedStatus);
+        Assert.assertEquals(statusKeepingService.size(), 1);
+
+        assertUnknown(statusKeepingService, 123);
+        statusKeepingService.close();
+    }
+
+    @Test
+    public void rotateAndReopen() throws Exception {
+        int numExecutions = 50;
+        LogStatusKeepingService statusKeepingService = open("rotateAndReopen", SMALL_SEGMENT_SIZE);
+        for (long executionId = 1; executionId <= numExecutions; ++executionId) {
+            statusKeepingService.persistExecutionStatus(executionStatus(executionId, ExecutionStatus.Status.FAILED))
+                .get();
+        }
+        Assert.assertTrue(statusKeepingService.getNumberOfSealedSegments() > 1);
+        for (long executionId = 1; executionId <= numExecutions; ++executionId) {
+            Assert.assertEquals(statusKeepingService.loadExecutionStatus(executionId).get(),
+                executionStatus(executionId, ExecutionStatus.Status.FAILED));
+        }
+        int numSealedSegments = statusKeepingService.getNumberOfSealedSegments();
+        statusKeepingService.close();
+
+        // The index is rebuilt from the footers of the sealed segments and by scanning the active segment
+        LogStatusKeepingService reopened = open("rotateAndReopen", SMALL_SEGMENT_SIZE);
+        Assert.assertEquals(reopened.getNumberOfSealedSegments(), numSealedSegments);
+        Assert.assertEquals(reopened.size(), numExecutions);
+        for (long executionId = 1; executionId <= numExecutions; ++executionId) {
+            Assert.assertEquals(reopened.loadExecutionStatus(executionId).get(),
+                executionStatus(executionId, ExecutionStatus.Status.FAILED));
+        }
+        assertUnknown(reopened, numExecutions + 1);
+        reopened.close();
+    }
+
+    @Test
+    public void tornTail() throws Exception {
+        assert tempDir != null;
+        LogStatusKeepingService statusKeepingService = open("tornTail", LARGE_SEGMENT_SIZE);
+        statusKeepingService.persistExecutionStatus(executionStatus(1, ExecutionStatus.Status.SUCCESSFUL)).get();
+        statusKeepingService.persistExecutionStatus(executionStatus(2, ExecutionStatus.Status.FAILED)).get();
+        statusKeepingService.close();
+
+        // Simulate a crash in the middle of writing the second record
+        List<Path> segments = segments(tempDir.resolve("tornTail"));
+        Assert.assertEquals(segments.size(), 1);
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        LogStatusKeepingService reopened = open("tornTail", LARGE_SEGMENT_SIZE);
+        Assert.assertEquals(reopened.size(), 1);
+        Assert.assertEquals(reopened.loadExecutionStatus(1).get(),
+            executionStatus(1, ExecutionStatus.Status.SUCCESSFUL));
+        assertUnknown(reopened, 2);
+
+        // Appending after the torn record has been discarded works as usual
+        reopened.persistExecutionStatus(executionStatus(3, ExecutionStatus.Status.RUNNING)).get();
+        Assert.assertEquals(reopened.loadExecutionStatus(3).get(), executionStatus(3, ExecutionStatus.Status.RUNNING));
+        reopened.close();
+    }
+
+    /**
+     * Verifies that record summaries store the fixed code of a status (which is part of the file format), and not
+     * its position in {@link ExecutionStatus.Status}.
+     */
+    @Test
+    public void statusCodes() throws Exception {
+        assert tempDir != null;
+        LogStatusKeepingService statusKeepingService = open("statusCodes", LARGE_SEGMENT_SIZE);
+        statusKeepingService.persistExecutionStatus(executionStatus(1, ExecutionStatus.Status.FAILED)).get();
+        statusKeepingService.close();
+
+        List<Path> segments = segments(tempDir.resolve("statusCodes"));
+        Assert.assertEquals(segments.size(), 1);
+        byte[] segment = Files.readAllBytes(segments.get(0));
+        // The summary starts right after the record header (body length, checksum, and execution id)
+        Assert.assertEquals(segment[16], 3);
+
+        LogStatusKeepingService reopened = open("statusCodes", LARGE_SEGMENT_SIZE);
+        ExecutionStatusList failed = reopened.queryExecutionStatuses(
+            new ExecutionStatusQuery().setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED))
+        ).get();
+        Assert.assertEquals(failed.getList(), Collections.singletonList(
+            executionStatus(1, ExecutionStatus.Status.FAILED)));
+        reopened.close();
+    }
+
+    /**
+     * Verifies queries and bulk loads, including after the secondary indexes have been rebuilt from the segment
+     * footers and the record summaries of the active segment.
+     */
+    @Test
+    public void queryAndReopen() throws Exception {
+        int numExecutions = 30;
+        LogStatusKeepingService statusKeepingService = open("queryAndReopen", SMALL_SEGMENT_SIZE);
+        List<ExecutionStatus> executionStatuses = new ArrayList<>();
+        for (long executionId = 1; executionId <= numExecutions; ++executionId) {
+            ExecutionStatus executionStatus = executionStatus(
+                executionId,
+                executionId % 3 == 0
+                    ? ExecutionStatus.Status.FAILED
+                    : ExecutionStatus.Status.SUCCESSFUL
+            );
+            assert executionStatus.getRequest() != null;
+            executionStatus.getRequest().setPrefix(executionId % 2 == 0 ? "even" : "odd");
+            executionStatus.setStartTimeMillis(executionId * 1000);
+            executionStatuses.add(executionStatus);
+        }
+        statusKeepingService.persistExecutionStatuses(executionStatuses, false).get();
+        // Replacing an execution status updates the secondary indexes
+        executionStatuses.set(0, executionStatus(1, ExecutionStatus.Status.FAILED));
+        statusKeepingService.persistExecutionStatus(executionStatuses.get(0)).get();
+        Assert.assertTrue(statusKeepingService.getNumberOfSealedSegments() > 1);
+        assertQueries(statusKeepingService, executionStatuses);
+        statusKeepingService.close();
+
+        LogStatusKeepingService reopened = open("queryAndReopen", SMALL_SEGMENT_SIZE);
+        assertQueries(reopened, executionStatuses);
+        reopened.close();
+    }
+
+    /**
+     * Verifies that compaction removes expired execution statuses and superseded records, and that removed execution
+     * statuses are not resurrected when the index is rebuilt.
+     */
+    @Test
+    public void compactAndReopen() throws Exception {
+        assert tempDir != null;
+        int numExecutions = 40;
+        int maxCount = 10;
+        LogStatusKeepingService statusKeepingService = open("compactAndReopen", SMALL_SEGMENT_SIZE);
+        for (long executionId = 1; executionId <= maxCount; ++executionId) {
+            statusKeepingService.persistExecutionStatus(executionStatus(executionId, ExecutionStatus.Status.RUNNING))
+                .get();
+        }
+        for (long executionId = 1; executionId <= numExecutions; ++executionId) {
+            statusKeepingService.persistExecutionStatus(
+                executionStatus(executionId, ExecutionStatus.Status.SUCCESSFUL)).get();
+        }
+        int numSegments = segments(tempDir.resolve("compactAndReopen")).size();
+
+        Map<ExecutionStatus.Status, RetentionPolicy.Limit> limits = new EnumMap<>(ExecutionStatus.Status.class);
+        limits.put(ExecutionStatus.Status.SUCCESSFUL, new RetentionPolicy.Limit(0, maxCount));
+        long removed = statusKeepingService.sweep(new RetentionPolicy(limits, RetentionPolicy.Limit.UNLIMITED),
+            System.currentTimeMillis(), new RateLimiter(SystemClock.NANO, 1_000_000));
+        Assert.assertEquals(removed, numExecutions - maxCount);
+        Assert.assertEquals(statusKeepingService.size(), maxCount);
+        Assert.assertTrue(segments(tempDir.resolve("compactAndReopen")).size() < numSegments);
+        assertUnknown(statusKeepingService, 1);
+        Assert.assertEquals(statusKeepingService.loadExecutionStatus(numExecutions).get(),
+            executionStatus(numExecutions, ExecutionStatus.Status.SUCCESSFUL));
+        statusKeepingService.close();
+
+        LogStatusKeepingService reopened = open("compactAndReopen", SMALL_SEGMENT_SIZE);
+        Assert.assertEquals(reopened.size(), maxCount);
+        for (long executionId = 1; executionId <= numExecutions - maxCount; ++executionId) {
+            assertUnknown(reopened, executionId);
+        }
+        for (long executionId = numExecutions - maxCount + 1; executionId <= numExecutions; ++executionId) {
+            Assert.assertEquals(reopened.loadExecutionStatus(executionId).get(),
+                executionStatus(executionId, ExecutionStatus.Status.SUCCESSFUL));
+        }
+        reopened.close();
+    }
+
+    private static void assertQueries(LogStatusKeepingService statusKeepingService,
+            List<ExecutionStatus> executionStatuses) throws Exception {
+        // Paging with prefix filter
+        ExecutionStatusQuery query = new ExecutionStatusQuery().setPrefix("even").setLimit(10);
+        ExecutionStatusList firstPage = statusKeepingService.queryExecutionStatuses(query).get();
+        Assert.assertEquals(firstPage.getList().size(), 10);
+        Assert.assertEquals(firstPage.getList().get(0), executionStatuses.get(1));
+        Assert.assertEquals(firstPage.getNextCursor(), Long.valueOf(20));
+        ExecutionStatusList secondPage
+            = statusKeepingService.queryExecutionStatuses(query.setCursor(firstPage.getNextCursor())).get();
+        Assert.assertEquals(secondPage.getList().size(), 5);
+        Assert.assertNull(secondPage.getNextCursor());
+
+        // Status filter: execution 1 was replaced with a failed execution status
+        ExecutionStatusList failed = statusKeepingService.queryExecutionStatuses(
+            new ExecutionStatusQuery().setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED)).setLimit(3)
+        ).get();
+        Assert.assertEquals(failed.getList(), Arrays.asList(
+            executionStatuses.get(0), executionStatuses.get(2), executionStatuses.get(5)));
+
+        // Start-time filter
+        ExecutionStatusList started = statusKeepingService.queryExecutionStatuses(
+            new ExecutionStatusQuery().setStartedAfterMillis(28000L)
+        ).get();
+        Assert.assertEquals(started.getList(), executionStatuses.subList(27, 30));
+
+        // Bulk load
+        List<ExecutionStatus> loaded
+            = statusKeepingService.loadExecutionStatuses(Arrays.asList(30L, 123L, 1L)).get();
+        Assert.assertEquals(loaded, Arrays.asList(executionStatuses.get(29), executionStatuses.get(0)));
+    }
+}
@@ -57,6 +57,7 @@ import xyz.cloudkeeper.model.immutable.execution.ExecutionTrace;
 import javax.annotation.Nullable;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -197,6 +198,22 @@ public class ITWorkflowServiceComponent {
         );
     }
 
+    /**
+     * Returns the execution trace of the given error, as stored in the error-trace store and the delta of the error.
+     */
+    private String errorTrace(ExecutionFrameError executionFrameError) throws IOException {
+        assert entityManagerFactory != null;
+        @Nullable String fingerprint = executionFrameError.getErrorFingerprint();
+        Assert.assertNotNull(fingerprint);
+        ErrorTraceStore errorTraceStore = new ErrorTraceStore(entityManagerFactory, 0);
+        @Nullable String storedTrace = errorTraceStore.load(Collections.singletonList(fingerprint)).get(fingerprint);
+        Assert.assertNotNull(storedTrace);
+        @Nullable byte[] delta = executionFrameError.getErrorMessageDelta();
+        return delta == null
+            ? storedTrace
+            : ErrorTraces.decompress(delta, storedTrace);
+    }
+
     @Test
     public void testSchema() {
         assert entityManagerFactory != null;
@@ -354,9 +371,7 @@ public class ITWorkflowServiceComponent {
         Assert.assertEquals(executionFrameErrors.size(), 1);
         ExecutionFrameError executionFrameError = executionFrameErrors.get(0);
         Assert.assertSame(executionFrameError.getExecutionFrame(), second);
-        Assert.assertNotNull(executionFrameError.getErrorMessage());
-        Assert.assertTrue(
-            executionFrameError.getErrorMessage().contains(ThrowingModule.ExpectedException.class.getName()));
+        Assert.assertTrue(errorTrace(executionFrameError).contains(ThrowingModule.ExpectedException.class.getName()));
 
         List<ExecutionFrameProperties<?>> executionFrameProperties = tablesContent.getExecutionFrameProperties();
         Assert.assertEquals(executionFrameProperties.size(), 1);
@@ -422,9 +437,7 @@ public class ITWorkflowServiceComponent {
         Assert.assertEquals(executionFrameErrors.size(), 1);
         ExecutionFrameError executionFrameError = executionFrameErrors.get(0);
         Assert.assertSame(executionFrameError.getExecutionFrame(), executionFrame);
-        Assert.assertNotNull(executionFrameError.getErrorMessage());
-        Assert.assertTrue(
-            executionFrameError.getErrorMessage().contains(CancellationException.class.getName()));
+        Assert.assertTrue(errorTrace(executionFrameError).contains(CancellationException.class.getName()));
 
         // Since the workflow execution was cancelled, no simple-module execution result is available
         Assert.assertTrue(tablesContent.getExecutionFrameProperties().isEmpty());
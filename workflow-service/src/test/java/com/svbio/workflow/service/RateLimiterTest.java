@@ -0,0 +1,55 @@
+package com.svbio.workflow.service;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+    private static final class MutableClock implements Clock {
+        private long currentTimeMillis = 0;
+
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return currentTimeMillis;
+        }
+    }
+
+    @Test
+    public void reserve() {
+        MutableClock clock = new MutableClock();
+        RateLimiter rateLimiter = new RateLimiter(clock, 1000);
+
+        // Initially, one second's worth of permits is available
+        Assert.assertEquals(rateLimiter.reserve(1000), 0);
+
+        // Going into debt requires waiting until the debt would have been repaid
+        Assert.assertEquals(rateLimiter.reserve(500), 500);
+        clock.currentTimeMillis += 500;
+        Assert.assertEquals(rateLimiter.reserve(0), 0);
+
+        // A long idle period does not allow more than one second's worth of permits
+        clock.currentTimeMillis += 10_000;
+        Assert.assertEquals(rateLimiter.reserve(1000), 0);
+        Assert.assertEquals(rateLimiter.reserve(1), 1);
+    }
+
+    @Test
+    public void invalidArguments() {
+        MutableClock clock = new MutableClock();
+        try {
+            new RateLimiter(clock, 0);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+
+        try {
+            new RateLimiter(clock, 1).reserve(-1);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) { }
+    }
+}
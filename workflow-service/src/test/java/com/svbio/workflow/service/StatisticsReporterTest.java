@@ -0,0 +1,30 @@
+package com.svbio.workflow.service;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StatisticsReporterTest {
+    @Test
+    public void reportChanges() {
+        AtomicLong counter = new AtomicLong(0);
+        StatisticsReporter statisticsReporter = new StatisticsReporter();
+        statisticsReporter.addWarningSource("counter", () -> "count = " + counter.get());
+        statisticsReporter.addSource("failing", () -> {
+            throw new IllegalStateException();
+        });
+
+        // The statistics at the time the source is added serve as baseline
+        Assert.assertEquals(statisticsReporter.getLastReported("counter"), "count = 0");
+        statisticsReporter.run();
+        Assert.assertEquals(statisticsReporter.getLastReported("counter"), "count = 0");
+
+        // A failing source does not prevent the other sources from being reported
+        counter.incrementAndGet();
+        statisticsReporter.run();
+        Assert.assertEquals(statisticsReporter.getLastReported("counter"), "count = 1");
+        Assert.assertNull(statisticsReporter.getLastReported("failing"));
+        Assert.assertNull(statisticsReporter.getLastReported("unknown"));
+    }
+}
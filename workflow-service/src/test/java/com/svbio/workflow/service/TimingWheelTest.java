@@ -0,0 +1,72 @@
+package com.svbio.workflow.service;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TimingWheelTest {
+    private static List<String> expire(TimingWheel<String> timingWheel, long currentTime) {
+        List<String> expired = new ArrayList<>();
+        Assert.assertEquals(timingWheel.expire(currentTime, expired::add), expired.size());
+        Collections.sort(expired);
+        return expired;
+    }
+
+    @Test
+    public void expire() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(10, 4, 0);
+        timingWheel.add("a", 15);
+        timingWheel.add("b", 15);
+        timingWheel.add("c", 25);
+        Assert.assertEquals(timingWheel.size(), 3);
+
+        // Deadlines are exclusive: An element expires once the current time is past its deadline.
+        Assert.assertEquals(expire(timingWheel, 15), Collections.emptyList());
+        Assert.assertEquals(expire(timingWheel, 16), Arrays.asList("a", "b"));
+        Assert.assertEquals(expire(timingWheel, 25), Collections.emptyList());
+        Assert.assertEquals(expire(timingWheel, 26), Collections.singletonList("c"));
+        Assert.assertTrue(timingWheel.isEmpty());
+    }
+
+    @Test
+    public void multipleRevolutions() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(10, 4, 0);
+        // One revolution is 40 time units, so "b" shares the bucket of "a"
+        timingWheel.add("a", 5);
+        timingWheel.add("b", 85);
+        Assert.assertEquals(expire(timingWheel, 10), Collections.singletonList("a"));
+        Assert.assertEquals(expire(timingWheel, 50), Collections.emptyList());
+        Assert.assertEquals(timingWheel.size(), 1);
+
+        // Skipping more than one revolution examines every bucket once
+        timingWheel.add("c", 100);
+        Assert.assertEquals(expire(timingWheel, 1000), Arrays.asList("b", "c"));
+        Assert.assertTrue(timingWheel.isEmpty());
+    }
+
+    @Test
+    public void pastDeadline() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(10, 4, 0);
+        Assert.assertEquals(expire(timingWheel, 35), Collections.emptyList());
+        timingWheel.add("a", 5);
+        Assert.assertEquals(expire(timingWheel, 36), Collections.singletonList("a"));
+    }
+
+    @Test
+    public void negativeTimes() {
+        // System.nanoTime() may be negative
+        TimingWheel<String> timingWheel = new TimingWheel<>(10, 4, -100);
+        timingWheel.add("a", -75);
+        Assert.assertEquals(expire(timingWheel, -80), Collections.emptyList());
+        Assert.assertEquals(expire(timingWheel, -70), Collections.singletonList("a"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidTickDuration() {
+        new TimingWheel<String>(0, 4, 0);
+    }
+}
@@ -0,0 +1,223 @@
+package com.svbio.workflow.service;
+
+import akka.dispatch.ExecutionContexts;
+import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import xyz.cloudkeeper.model.api.CancellationException;
+import xyz.cloudkeeper.model.api.WorkflowExecution;
+import xyz.cloudkeeper.model.api.WorkflowExecutionBuilder;
+import xyz.cloudkeeper.model.bare.execution.BareOverride;
+import xyz.cloudkeeper.model.beans.element.module.MutableProxyModule;
+import xyz.cloudkeeper.model.immutable.element.SimpleName;
+import xyz.cloudkeeper.model.runtime.execution.RuntimeAnnotatedExecutionTrace;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micro-benchmark that measures how the throughput of status queries against {@link WorkflowServiceImpl} scales with
+ * the number of polling threads.
+ *
+ * <p>This class is not a test and is not run as part of the build. It is meant to be run manually with
+ * {@link #main(String[])}, for instance from the IDE. While the polling threads call
+ * {@link WorkflowServiceImpl#getExecutionStatus(long)} (and, occasionally,
+ * {@link WorkflowServiceImpl#getActiveExecutions()}), one additional thread continuously starts and finishes
+ * executions so that the registry of active executions is also modified concurrently.
+ */
+final class WorkflowServiceImplContentionBenchmark {
+    private static final int ACTIVE_EXECUTIONS = 1_000;
+    private static final int LIST_EVERY_NTH_QUERY = 1_000;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASUREMENT_MILLIS = 5_000;
+    private static final int[] POLLING_THREADS = { 1, 2, 4, 8, 16, 32 };
+
+    private WorkflowServiceImplContentionBenchmark() {
+        throw new AssertionError(String.format("No %s instances for you!", getClass().getName()));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("threads\tqueries/s\tqueries/s per thread");
+        for (int numThreads: POLLING_THREADS) {
+            run(numThreads, WARMUP_MILLIS, true);
+            double throughput = run(numThreads, MEASUREMENT_MILLIS, false);
+            System.out.printf("%d\t%.0f\t%.0f%n", numThreads, throughput, throughput / numThreads);
+        }
+    }
+
+    private static double run(int numThreads, long durationMillis, boolean warmup) throws InterruptedException {
+        AtomicLong nextExecutionId = new AtomicLong(1);
+        ConcurrentLinkedQueue<BenchmarkWorkflowExecution> running = new ConcurrentLinkedQueue<>();
+        WorkflowServiceImpl workflowService = new WorkflowServiceImpl(
+            (prefix, cleaningRequested) -> module -> new BenchmarkWorkflowExecutionBuilder(nextExecutionId, running),
+            Collections.emptyList(),
+            new NoStatusKeepingService(),
+            ExecutionContexts.fromExecutor(Runnable::run),
+            SystemClock.MILLIS,
+            AdmissionPolicy.UNLIMITED,
+            DeduplicationPolicy.DISABLED
+        );
+        ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+            .setModule(new MutableProxyModule().setDeclaration("foo.Module"))
+            .setPrefix("prefix");
+        for (int i = 0; i < ACTIVE_EXECUTIONS; ++i) {
+            workflowService.startExecution(request);
+        }
+
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        LongAdder queries = new LongAdder();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(numThreads + 1);
+        for (int i = 0; i < numThreads; ++i) {
+            threads.add(new Thread(() -> {
+                awaitUninterruptibly(startLatch);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (!stopped.get()) {
+                    ++count;
+                    if (count % LIST_EVERY_NTH_QUERY == 0) {
+                        workflowService.getActiveExecutions();
+                    } else {
+                        long latest = nextExecutionId.get() - 1;
+                        long executionId = latest - random.nextLong(Math.min(latest, ACTIVE_EXECUTIONS));
+                        try {
+                            workflowService.getExecutionStatus(executionId).get();
+                        } catch (ExecutionException exception) {
+                            if (!(exception.getCause() instanceof UnknownExecutionIdException)) {
+                                throw new AssertionError(exception);
+                            }
+                        } catch (InterruptedException exception) {
+                            throw new AssertionError(exception);
+                        }
+                    }
+                }
+                queries.add(count);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            awaitUninterruptibly(startLatch);
+            while (!stopped.get()) {
+                workflowService.startExecution(request);
+                running.remove().finish();
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        long startNanos = System.nanoTime();
+        startLatch.countDown();
+        Thread.sleep(durationMillis);
+        stopped.set(true);
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return warmup
+            ? 0
+            : queries.sum() * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static final class BenchmarkWorkflowExecutionBuilder implements WorkflowExecutionBuilder {
+        private final AtomicLong nextExecutionId;
+        private final ConcurrentLinkedQueue<BenchmarkWorkflowExecution> running;
+
+        private BenchmarkWorkflowExecutionBuilder(AtomicLong nextExecutionId,
+                ConcurrentLinkedQueue<BenchmarkWorkflowExecution> running) {
+            this.nextExecutionId = nextExecutionId;
+            this.running = running;
+        }
+
+        @Override
+        public WorkflowExecutionBuilder setBundleIdentifiers(List<URI> bundleIdentifiers) {
+            return this;
+        }
+
+        @Override
+        public WorkflowExecutionBuilder setOverrides(List<? extends BareOverride> overrides) {
+            return this;
+        }
+
+        @Override
+        public WorkflowExecutionBuilder setInputs(Map<SimpleName, Object> inputValues) {
+            return this;
+        }
+
+        @Override
+        public WorkflowExecution start() {
+            BenchmarkWorkflowExecution workflowExecution
+                = new BenchmarkWorkflowExecution(nextExecutionId.getAndIncrement());
+            running.add(workflowExecution);
+            return workflowExecution;
+        }
+    }
+
+    private static final class BenchmarkWorkflowExecution implements WorkflowExecution {
+        private final CompletableFuture<Long> executionIdFuture;
+        private final CompletableFuture<Void> executionFuture = new CompletableFuture<>();
+
+        private BenchmarkWorkflowExecution(long executionId) {
+            executionIdFuture = CompletableFuture.completedFuture(executionId);
+        }
+
+        private void finish() {
+            executionFuture.complete(null);
+        }
+
+        @Override
+        public long getStartTimeMillis() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean cancel() {
+            return executionFuture.completeExceptionally(new CancellationException());
+        }
+
+        @Override
+        public CompletableFuture<RuntimeAnnotatedExecutionTrace> getTrace() {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public CompletableFuture<Long> getExecutionId() {
+            return executionIdFuture;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return !executionFuture.isDone();
+        }
+
+        @Override
+        public CompletableFuture<Object> getOutput(String outPortName) {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public CompletableFuture<Long> getFinishTimeMillis() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> toCompletableFuture() {
+            return executionFuture;
+        }
+    }
+}
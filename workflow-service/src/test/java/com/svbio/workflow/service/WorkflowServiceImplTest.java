@@ -6,7 +6,11 @@ import akka.testkit.JavaTestKit;
 import akka.testkit.TestProbe;
 import cloudkeeper.annotations.CloudKeeperSerialization;
 import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecutionRejectedException;
 import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusListener;
+import com.svbio.workflow.api.ExecutionStatusQuery;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 import com.svbio.workflow.api.WorkflowService;
 import com.svbio.workflow.util.Throwables;
@@ -31,14 +35,19 @@ import xyz.cloudkeeper.model.runtime.execution.RuntimeAnnotatedExecutionTrace;
 
 import javax.annotation.Nullable;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class WorkflowServiceImplTest {
@@ -50,24 +59,55 @@ public class WorkflowServiceImplTest {
     private static final String IN_PORT_ARG = "qux";
     private static final String OUT_PORT = "foo";
     private static final String OUT_PORT_RESULT = "bar";
+    private static final long START_TIME_MILLIS = 1234;
+    private static final long OBSERVER_TIMEOUT_MILLIS = 10_000;
+    private static final long AWAIT_TIMEOUT_MILLIS = 5_000;
+
+    private static final Clock FIXED_CLOCK = new Clock() {
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.MILLISECONDS;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return START_TIME_MILLIS;
+        }
+    };
 
     private static class TestCase implements AutoCloseable {
         private final MockCloudKeeperEnvironmentFactory factory = new MockCloudKeeperEnvironmentFactory();
         private final ActorSystem actorSystem;
         private final TestProbe eventListener;
+        private final TestProbe fireAndForgetListener;
         private final MockStatusKeepingService statusKeepingService = new MockStatusKeepingService();
         private final WorkflowServiceImpl environmentFactory;
         private final CallingThreadExecutor executor = new CallingThreadExecutor();
         private final ExecutionContext executionContext = ExecutionContexts.fromExecutor(executor);
 
         private TestCase(String name) {
+            this(name, AdmissionPolicy.UNLIMITED);
+        }
+
+        private TestCase(String name, AdmissionPolicy admissionPolicy) {
+            this(name, admissionPolicy, DeduplicationPolicy.DISABLED);
+        }
+
+        private TestCase(String name, AdmissionPolicy admissionPolicy, DeduplicationPolicy deduplicationPolicy) {
             actorSystem = ActorSystem.create(name);
             eventListener = new TestProbe(actorSystem);
+            fireAndForgetListener = new TestProbe(actorSystem);
             environmentFactory = new WorkflowServiceImpl(
                 factory,
-                Collections.singletonList(eventListener.ref()),
+                Arrays.asList(
+                    ExecutionObserver.blocking("blocking", eventListener.ref(), OBSERVER_TIMEOUT_MILLIS),
+                    ExecutionObserver.fireAndForget("fire-and-forget", fireAndForgetListener.ref())
+                ),
                 statusKeepingService,
-                executionContext
+                executionContext,
+                FIXED_CLOCK,
+                admissionPolicy,
+                deduplicationPolicy
             );
         }
 
@@ -201,18 +241,31 @@ public class WorkflowServiceImplTest {
             ExecutionStatus expectedExecutionStatus = new ExecutionStatus()
                 .setStatus(ExecutionStatus.Status.RUNNING)
                 .setExecutionId(EXECUTION_ID)
-                .setRequest(executeWorkflowRequest);
+                .setRequest(executeWorkflowRequest)
+                .setStartTimeMillis(START_TIME_MILLIS);
             Assert.assertEquals(environmentFactory.getExecutionStatus(EXECUTION_ID).get(), expectedExecutionStatus);
             Assert.assertEquals(
                 environmentFactory.getActiveExecutions().getList(), Collections.singletonList(expectedExecutionStatus));
 
+            // Verify that polling the status of an active execution does not copy the module, that the snapshot does
+            // not share state with the original request, and that modifying a view does not affect other views
+            ExecutionStatus executionStatus = environmentFactory.getExecutionStatus(EXECUTION_ID).get();
+            ExecutionStatus otherExecutionStatus = environmentFactory.getActiveExecutions().getList().get(0);
+            Assert.assertNotSame(otherExecutionStatus, executionStatus);
+            Assert.assertSame(otherExecutionStatus.getRequest().getModule(), executionStatus.getRequest().getModule());
+            Assert.assertNotSame(executionStatus.getRequest(), executeWorkflowRequest);
+            Assert.assertNotSame(executionStatus.getRequest().getModule(), executeWorkflowRequest.getModule());
+            executionStatus.setStatus(ExecutionStatus.Status.FAILED);
+            executionStatus.getRequest().setPrefix("modified").getBundleIdentifiers().clear();
+            Assert.assertEquals(environmentFactory.getExecutionStatus(EXECUTION_ID).get(), expectedExecutionStatus);
+
             // Stop the execution and verify that it is no longer active. Also verify that the workflow execution was
             // completed exceptionally
             AtomicReference<Throwable> failure = new AtomicReference<>();
             workflowExecution.toCompletableFuture().whenComplete((voidResult, throwable) -> failure.set(throwable));
             Assert.assertNull(failure.get());
 
-            environmentFactory.stopExecutionId(EXECUTION_ID);
+            Assert.assertTrue(environmentFactory.stopExecutionId(EXECUTION_ID));
             // Verify that StatusKeepingService was informed immediately
             @Nullable ExecutionStatus status = testCase.statusKeepingService.executionStatusMap.get(EXECUTION_ID);
             Assert.assertNotNull(status);
@@ -240,6 +293,457 @@ public class WorkflowServiceImplTest {
         }
     }
 
+    /**
+     * Verifies that {@link WorkflowService#getActiveExecutions(ExecutionStatusQuery)} applies filters, pagination, and
+     * projections.
+     */
+    @Test
+    public void getActiveExecutionsQuery() throws Exception {
+        try (TestCase testCase = new TestCase("getActiveExecutionsQuery")) {
+            WorkflowService workflowService = testCase.environmentFactory;
+            for (long executionId = 1; executionId <= 3; ++executionId) {
+                workflowService.startExecution(
+                    new ExecuteWorkflowRequest()
+                        .setModule(newModule())
+                        .setOverrides(newOverrides())
+                        .setPrefix(executionId == 2 ? "other" : PREFIX)
+                );
+                @Nullable MockWorkflowExecution mockWorkflowExecution = testCase.factory.mockWorkflowExecution;
+                Assert.assertNotNull(mockWorkflowExecution);
+                mockWorkflowExecution.setExecutionId(executionId);
+            }
+
+            ExecutionStatusList firstPage = workflowService.getActiveExecutions(new ExecutionStatusQuery().setLimit(2));
+            Assert.assertEquals(
+                firstPage.getList().stream().map(ExecutionStatus::getExecutionId).collect(Collectors.toList()),
+                Arrays.asList(1L, 2L)
+            );
+            Assert.assertEquals(firstPage.getNextCursor(), Long.valueOf(2));
+            ExecutionStatusList secondPage = workflowService.getActiveExecutions(
+                new ExecutionStatusQuery().setLimit(2).setCursor(firstPage.getNextCursor()));
+            Assert.assertEquals(secondPage.getList().size(), 1);
+            Assert.assertEquals(secondPage.getList().get(0).getExecutionId(), 3);
+            Assert.assertNull(secondPage.getNextCursor());
+
+            ExecutionStatusList filtered = workflowService.getActiveExecutions(
+                new ExecutionStatusQuery()
+                    .setPrefix(PREFIX)
+                    .setStatuses(EnumSet.of(ExecutionStatus.Status.RUNNING))
+                    .setStartedAfterMillis(START_TIME_MILLIS)
+                    .setProjection(ExecutionStatusQuery.Projection.SUMMARY)
+            );
+            Assert.assertEquals(filtered.getList().size(), 2);
+            for (ExecutionStatus executionStatus: filtered.getList()) {
+                @Nullable ExecuteWorkflowRequest request = executionStatus.getRequest();
+                Assert.assertNotNull(request);
+                Assert.assertEquals(request.getPrefix(), PREFIX);
+                Assert.assertNull(request.getModule());
+                Assert.assertTrue(request.getOverrides().isEmpty());
+            }
+
+            Assert.assertTrue(workflowService.getActiveExecutions(
+                new ExecutionStatusQuery().setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED))).getList().isEmpty());
+            Assert.assertTrue(workflowService.getActiveExecutions(
+                new ExecutionStatusQuery().setStartedBeforeMillis(START_TIME_MILLIS)).getList().isEmpty());
+        }
+    }
+
+    /**
+     * Verifies that workflow executions are queued (and eventually rejected) if the maximum number of concurrent
+     * executions is reached, and that queued executions are started in submission order.
+     */
+    @Test
+    public void admission() throws Exception {
+        try (TestCase testCase = new TestCase("admission", new AdmissionPolicy(1, 2, 0, 30))) {
+            WorkflowService workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setPrefix(PREFIX);
+
+            workflowService.startExecution(request);
+            @Nullable MockWorkflowExecution first = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(first);
+            first.setExecutionId(1);
+
+            // The second and third executions are queued, the fourth is rejected
+            WorkflowExecution second = workflowService.startExecution(request);
+            WorkflowExecution third = workflowService.startExecution(request);
+            WorkflowExecution fourth = workflowService.startExecution(request);
+            Assert.assertSame(testCase.factory.mockWorkflowExecution, first);
+            Assert.assertTrue(second.isRunning());
+            Assert.assertFalse(second.getExecutionId().isDone());
+            Assert.assertFalse(fourth.isRunning());
+            try {
+                fourth.getExecutionId().get();
+                Assert.fail();
+            } catch (ExecutionException exception) {
+                Assert.assertTrue(exception.getCause() instanceof ExecutionRejectedException);
+                Assert.assertEquals(((ExecutionRejectedException) exception.getCause()).getRetryAfterSeconds(), 30);
+            }
+
+            List<ExecutionStatus> activeExecutions = workflowService.getActiveExecutions().getList();
+            Assert.assertEquals(
+                activeExecutions.stream().map(ExecutionStatus::getStatus).collect(Collectors.toList()),
+                Arrays.asList(ExecutionStatus.Status.QUEUED, ExecutionStatus.Status.QUEUED,
+                    ExecutionStatus.Status.RUNNING)
+            );
+            Assert.assertEquals(activeExecutions.get(1).getExecutionId(), 0);
+            Assert.assertEquals(activeExecutions.get(1).getQueueDepth(), Integer.valueOf(1));
+            Assert.assertEquals(activeExecutions.get(1).getQueueWaitMillis(), Long.valueOf(0));
+            ExecutionStatusList firstPage = workflowService.getActiveExecutions(new ExecutionStatusQuery().setLimit(2));
+            @Nullable Long nextCursor = firstPage.getNextCursor();
+            Assert.assertNotNull(nextCursor);
+            Assert.assertTrue(nextCursor < 0);
+            Assert.assertEquals(
+                workflowService.getActiveExecutions(new ExecutionStatusQuery().setCursor(nextCursor)).getList(),
+                Collections.singletonList(activeExecutions.get(2))
+            );
+
+            // Cancelling a queued execution removes it from the queue
+            Assert.assertTrue(third.cancel());
+            try {
+                third.toCompletableFuture().get();
+                Assert.fail();
+            } catch (ExecutionException exception) {
+                Assert.assertTrue(exception.getCause() instanceof CancellationException);
+            }
+
+            // Once the first execution finishes, the second is started
+            first.setSuccess();
+            @Nullable MockWorkflowExecution secondMock = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(secondMock);
+            Assert.assertNotSame(secondMock, first);
+            secondMock.setExecutionId(2);
+            Assert.assertEquals(second.getExecutionId().get(), Long.valueOf(2));
+            ExecutionStatus secondStatus = workflowService.getExecutionStatus(2).get();
+            Assert.assertEquals(secondStatus.getStatus(), ExecutionStatus.Status.RUNNING);
+            Assert.assertEquals(secondStatus.getQueueDepth(), Integer.valueOf(0));
+            Assert.assertEquals(secondStatus.getQueueWaitMillis(), Long.valueOf(0));
+            Assert.assertTrue(workflowService.getActiveExecutions().getList().stream()
+                .noneMatch(executionStatus -> executionStatus.getStatus() == ExecutionStatus.Status.QUEUED));
+        }
+    }
+
+    /**
+     * Verifies that paging through the active workflow executions returns each queued workflow execution exactly once,
+     * even if there are more queued workflow executions than fit on a page.
+     */
+    @Test
+    public void pagingQueuedExecutions() {
+        try (TestCase testCase = new TestCase("pagingQueuedExecutions", new AdmissionPolicy(1, 5, 0, 30))) {
+            WorkflowService workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setPrefix(PREFIX);
+
+            workflowService.startExecution(request);
+            @Nullable MockWorkflowExecution first = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(first);
+            first.setExecutionId(1);
+            for (int i = 0; i < 5; ++i) {
+                workflowService.startExecution(request);
+            }
+
+            List<ExecutionStatus> executionStatuses = new ArrayList<>();
+            @Nullable Long cursor = null;
+            int numPages = 0;
+            do {
+                ExecutionStatusList page = workflowService.getActiveExecutions(
+                    new ExecutionStatusQuery().setLimit(2).setCursor(cursor));
+                Assert.assertTrue(page.getList().size() <= 2);
+                executionStatuses.addAll(page.getList());
+                cursor = page.getNextCursor();
+                ++numPages;
+            } while (cursor != null);
+
+            Assert.assertEquals(numPages, 3);
+            Assert.assertEquals(
+                executionStatuses.stream().map(ExecutionStatus::getQueueDepth).collect(Collectors.toList()),
+                Arrays.asList(0, 1, 2, 3, 4, null)
+            );
+            Assert.assertEquals(executionStatuses.get(5).getExecutionId(), 1);
+            Assert.assertEquals(executionStatuses.get(5).getStatus(), ExecutionStatus.Status.RUNNING);
+        }
+    }
+
+    /**
+     * Verifies that {@link WorkflowService#startExecutions(List)} validates all requests before starting any workflow
+     * execution, and that requests with equal environment settings share a CloudKeeper environment.
+     */
+    @Test
+    public void startExecutions() {
+        try (TestCase testCase = new TestCase("startExecutions")) {
+            WorkflowService workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setPrefix(PREFIX);
+
+            try {
+                workflowService.startExecutions(Arrays.asList(request, new ExecuteWorkflowRequest().setPrefix(PREFIX)));
+                Assert.fail();
+            } catch (IllegalArgumentException ignored) { }
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 0);
+
+            List<WorkflowExecution> workflowExecutions = workflowService.startExecutions(Arrays.asList(
+                request,
+                new ExecuteWorkflowRequest(request),
+                new ExecuteWorkflowRequest(request).setTenant("tenant"),
+                new ExecuteWorkflowRequest(request).setPrefix("other")
+            ));
+            Assert.assertEquals(workflowExecutions.size(), 4);
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 3);
+        }
+    }
+
+    /**
+     * Waits until the given workflow execution is no longer running, which requires that the blocking observer has
+     * responded to the {@link StopExecutionEvent} message.
+     */
+    private static void awaitFinished(TestCase testCase, WorkflowExecution workflowExecution)
+            throws InterruptedException {
+        long deadlineMillis = System.currentTimeMillis() + AWAIT_TIMEOUT_MILLIS;
+        while (workflowExecution.isRunning() && System.currentTimeMillis() < deadlineMillis) {
+            Thread.sleep(10);
+            testCase.executor.executeAll();
+        }
+        Assert.assertFalse(workflowExecution.isRunning());
+    }
+
+    /**
+     * Verifies that a workflow execution finishes only once all blocking observers have acknowledged its end, that
+     * fire-and-forget observers are notified without being waited for, and that acknowledgements are recorded.
+     */
+    @Test
+    public void observers() throws Exception {
+        try (TestCase testCase = new TestCase("observers")) {
+            WorkflowExecution workflowExecution = testCase.environmentFactory.startExecution(
+                new ExecuteWorkflowRequest()
+                    .setModule(newModule())
+                    .setPrefix(PREFIX)
+            );
+            @Nullable MockWorkflowExecution mockWorkflowExecution = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(mockWorkflowExecution);
+            mockWorkflowExecution.setExecutionId(EXECUTION_ID);
+            mockWorkflowExecution.setExecutionTrace(Mockito.mock(RuntimeAnnotatedExecutionTrace.class));
+            mockWorkflowExecution.setSuccess();
+
+            testCase.fireAndForgetListener.expectMsgClass(StartExecutionEvent.class);
+            testCase.fireAndForgetListener.expectMsg(new StopExecutionEvent(EXECUTION_ID));
+            testCase.eventListener.expectMsgClass(StartExecutionEvent.class);
+            testCase.eventListener.expectMsg(new StopExecutionEvent(EXECUTION_ID));
+
+            // The blocking observer has not yet responded
+            testCase.executor.executeAll();
+            Assert.assertTrue(workflowExecution.isRunning());
+            Assert.assertEquals(testCase.environmentFactory.getObserverStatistics().get(0).getAcknowledgedCount(), 0);
+
+            testCase.eventListener.reply(EXECUTION_ID);
+            awaitFinished(testCase, workflowExecution);
+            workflowExecution.toCompletableFuture().get();
+
+            List<ObserverStatistics> statistics = testCase.environmentFactory.getObserverStatistics();
+            Assert.assertEquals(statistics.size(), 1);
+            Assert.assertEquals(statistics.get(0).getObserverName(), "blocking");
+            Assert.assertEquals(statistics.get(0).getAcknowledgedCount(), 1);
+            Assert.assertEquals(statistics.get(0).getTimeoutCount(), 0);
+            Assert.assertEquals(statistics.get(0).getMaxLatencyMillis(), 0);
+        }
+    }
+
+    /**
+     * Verifies that identical requests are answered with the same workflow execution while it is running and after it
+     * finished successfully, but not after it failed.
+     */
+    @Test
+    public void deduplication() throws Exception {
+        try (TestCase testCase
+                = new TestCase("deduplication", AdmissionPolicy.UNLIMITED, new DeduplicationPolicy(60_000, 10))) {
+            WorkflowServiceImpl workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setOverrides(newOverrides())
+                .setPrefix(PREFIX);
+
+            WorkflowExecution first = workflowService.startExecution(request);
+            WorkflowExecution second = workflowService.startExecution(new ExecuteWorkflowRequest(request));
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 1);
+            @Nullable MockWorkflowExecution firstMock = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(firstMock);
+            firstMock.setExecutionId(1);
+            Assert.assertEquals(second.getExecutionId().get().longValue(), 1);
+
+            // Cancelling one of the handles only withdraws its request
+            Assert.assertFalse(second.cancel());
+            Assert.assertTrue(firstMock.isRunning());
+
+            // Successfully finished workflow executions are reused within the time window
+            firstMock.setSuccess();
+            testCase.eventListener.expectMsg(new StopExecutionEvent(1));
+            testCase.eventListener.reply(1L);
+            awaitFinished(testCase, first);
+            Assert.assertEquals(
+                workflowService.startExecution(new ExecuteWorkflowRequest(request)).getExecutionId().get().longValue(),
+                1
+            );
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 1);
+
+            // Requests that differ in any property are not identical
+            WorkflowExecution other
+                = workflowService.startExecution(new ExecuteWorkflowRequest(request).setTenant("a"));
+            Assert.assertNotSame(other, first);
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 2);
+
+            // Failed workflow executions are forgotten
+            @Nullable MockWorkflowExecution otherMock = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(otherMock);
+            otherMock.setExecutionId(2);
+            otherMock.setFailure(new IllegalStateException());
+            testCase.eventListener.expectMsg(new StopExecutionEvent(2));
+            testCase.eventListener.reply(2L);
+            awaitFinished(testCase, other);
+            Assert.assertNotSame(
+                workflowService.startExecution(new ExecuteWorkflowRequest(request).setTenant("a")), other);
+
+            CacheStatistics statistics = workflowService.getDeduplicationStatistics();
+            Assert.assertNotNull(statistics);
+            Assert.assertEquals(statistics.getHitCount(), 2);
+            Assert.assertEquals(statistics.getMissCount(), 3);
+        }
+    }
+
+    /**
+     * Verifies that a workflow execution shared by deduplicated requests is only cancelled once all requests have been
+     * withdrawn, whether by cancelling a handle or by stopping the execution id.
+     */
+    @Test
+    public void deduplicationCancel() throws Exception {
+        try (TestCase testCase = new TestCase(
+                "deduplicationCancel", AdmissionPolicy.UNLIMITED, new DeduplicationPolicy(60_000, 10))) {
+            WorkflowServiceImpl workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setPrefix(PREFIX);
+
+            WorkflowExecution first = workflowService.startExecution(request);
+            WorkflowExecution second = workflowService.startExecution(new ExecuteWorkflowRequest(request));
+            WorkflowExecution third = workflowService.startExecution(new ExecuteWorkflowRequest(request));
+            @Nullable MockWorkflowExecution mock = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(mock);
+            mock.setExecutionId(EXECUTION_ID);
+
+            Assert.assertFalse(first.cancel());
+            // Cancelling the same handle again has no effect
+            Assert.assertFalse(first.cancel());
+            // Stopping by execution id withdraws the eldest remaining handle, and it reports that the workflow
+            // execution keeps running
+            Assert.assertFalse(workflowService.stopExecutionId(EXECUTION_ID));
+            Assert.assertTrue(mock.isRunning());
+            // The handle withdrawn by stopping is not withdrawn a second time
+            Assert.assertFalse(second.cancel());
+            Assert.assertTrue(mock.isRunning());
+
+            Assert.assertTrue(third.cancel());
+            Assert.assertFalse(mock.isRunning());
+
+            // The cancelled workflow execution is not reused
+            workflowService.startExecution(new ExecuteWorkflowRequest(request));
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 2);
+        }
+    }
+
+    /**
+     * Verifies that requests whose workflow execution is still running are not forgotten when more requests are
+     * submitted than are remembered, so that stopping a shared workflow execution still only withdraws one request.
+     */
+    @Test
+    public void deduplicationEviction() throws Exception {
+        try (TestCase testCase = new TestCase(
+                "deduplicationEviction", AdmissionPolicy.UNLIMITED, new DeduplicationPolicy(60_000, 1))) {
+            WorkflowServiceImpl workflowService = testCase.environmentFactory;
+            ExecuteWorkflowRequest request = new ExecuteWorkflowRequest()
+                .setModule(newModule())
+                .setPrefix(PREFIX);
+
+            workflowService.startExecution(request);
+            WorkflowExecution second = workflowService.startExecution(new ExecuteWorkflowRequest(request));
+            @Nullable MockWorkflowExecution mock = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(mock);
+            mock.setExecutionId(EXECUTION_ID);
+
+            // A different request exceeds the maximum size, but the running workflow execution is not forgotten
+            workflowService.startExecution(new ExecuteWorkflowRequest(request).setTenant("a"));
+            Assert.assertEquals(testCase.factory.numCreatedEnvironments, 2);
+            Assert.assertFalse(workflowService.stopExecutionId(EXECUTION_ID));
+            Assert.assertTrue(mock.isRunning());
+            Assert.assertTrue(second.cancel());
+            Assert.assertFalse(mock.isRunning());
+
+            CacheStatistics statistics = workflowService.getDeduplicationStatistics();
+            Assert.assertNotNull(statistics);
+            Assert.assertEquals(statistics.getEvictionCount(), 0);
+        }
+    }
+
+    /**
+     * Verifies that execution-status listeners are called with the current status and with each status transition,
+     * and that listeners added after the execution finished are called once with the persisted status.
+     */
+    @Test
+    public void executionStatusListener() throws Exception {
+        try (TestCase testCase = new TestCase("executionStatusListener")) {
+            WorkflowServiceImpl workflowService = testCase.environmentFactory;
+            workflowService.startExecution(
+                new ExecuteWorkflowRequest()
+                    .setModule(newModule())
+                    .setPrefix(PREFIX)
+            );
+            @Nullable MockWorkflowExecution mockWorkflowExecution = testCase.factory.mockWorkflowExecution;
+            Assert.assertNotNull(mockWorkflowExecution);
+            mockWorkflowExecution.setExecutionId(EXECUTION_ID);
+
+            // Listeners are called by tasks submitted to the execution context
+            List<ExecutionStatus.Status> statuses = new ArrayList<>();
+            List<ExecutionStatus.Status> removedListenerStatuses = new ArrayList<>();
+            CompletableFuture<Void> addedFuture
+                = workflowService.addExecutionStatusListener(EXECUTION_ID, status -> statuses.add(status.getStatus()));
+            Assert.assertFalse(addedFuture.isDone());
+            Assert.assertTrue(statuses.isEmpty());
+            testCase.executor.executeAll();
+            addedFuture.get();
+            ExecutionStatusListener removedListener = status -> removedListenerStatuses.add(status.getStatus());
+            CompletableFuture<Void> removedAddedFuture
+                = workflowService.addExecutionStatusListener(EXECUTION_ID, removedListener);
+            testCase.executor.executeAll();
+            removedAddedFuture.get();
+            workflowService.removeExecutionStatusListener(EXECUTION_ID, removedListener);
+            Assert.assertEquals(statuses, Collections.singletonList(ExecutionStatus.Status.RUNNING));
+
+            // Listeners are only called once the execution context runs their tasks, but the terminal status is
+            // visible right away
+            mockWorkflowExecution.setSuccess();
+            Assert.assertEquals(statuses, Collections.singletonList(ExecutionStatus.Status.RUNNING));
+            Assert.assertEquals(
+                workflowService.getExecutionStatus(EXECUTION_ID).get().getStatus(), ExecutionStatus.Status.SUCCESSFUL);
+            testCase.executor.executeAll();
+            Assert.assertEquals(statuses,
+                Arrays.asList(ExecutionStatus.Status.RUNNING, ExecutionStatus.Status.SUCCESSFUL));
+            Assert.assertEquals(removedListenerStatuses, Collections.singletonList(ExecutionStatus.Status.RUNNING));
+
+            // The execution is no longer active, so its status is loaded from the status-keeping service
+            List<ExecutionStatus.Status> lateStatuses = new ArrayList<>();
+            workflowService.addExecutionStatusListener(EXECUTION_ID, status -> lateStatuses.add(status.getStatus()))
+                .get();
+            Assert.assertEquals(lateStatuses, Collections.singletonList(ExecutionStatus.Status.SUCCESSFUL));
+
+            try {
+                workflowService.addExecutionStatusListener(EXECUTION_ID + 1, status -> Assert.fail()).get();
+                Assert.fail();
+            } catch (ExecutionException exception) {
+                Assert.assertTrue(exception.getCause() instanceof UnknownExecutionIdException);
+            }
+        }
+    }
+
     @Test
     public void startExecutionIllegalArguments() {
         try (TestCase testCase = new TestCase("startExecutionIllegalArguments")) {
@@ -268,9 +772,11 @@ public class WorkflowServiceImplTest {
         @Nullable private MockCloudKeeperEnvironment lastCloudKeeperEnvironment;
         @Nullable private MockWorkflowExecutionBuilder lastWorkflowBuilder;
         @Nullable private MockWorkflowExecution mockWorkflowExecution;
+        private int numCreatedEnvironments = 0;
 
         @Override
         public CloudKeeperEnvironment create(String prefix, boolean cleaningRequested) {
+            ++numCreatedEnvironments;
             lastCloudKeeperEnvironment = new MockCloudKeeperEnvironment(this, prefix, cleaningRequested);
             return lastCloudKeeperEnvironment;
         }
@@ -0,0 +1,166 @@
+package com.svbio.workflow.service;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.UnknownExecutionIdException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindStatusKeepingServiceTest {
+    private static final long LONG_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Nullable private ScheduledExecutorService scheduledExecutorService;
+
+    @BeforeClass
+    public void setup() {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        assert scheduledExecutorService != null;
+        scheduledExecutorService.shutdownNow();
+    }
+
+    /**
+     * Status-keeping service that records all batches and completes them only when told to.
+     */
+    private static final class RecordingStatusKeepingService implements StatusKeepingService {
+        private final List<List<ExecutionStatus>> batches = new ArrayList<>();
+        private final List<Boolean> syncFlags = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<ExecutionStatus> persistExecutionStatus(ExecutionStatus executionStatus) {
+            throw new UnsupportedOperationException("Expected batches only.");
+        }
+
+        @Override
+        public CompletableFuture<ExecutionStatus> loadExecutionStatus(long executionId) {
+            return new NoStatusKeepingService().loadExecutionStatus(executionId);
+        }
+
+        @Override
+        public synchronized CompletableFuture<Void> persistExecutionStatuses(List<ExecutionStatus> executionStatuses,
+                boolean sync) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            batches.add(executionStatuses);
+            syncFlags.add(sync);
+            futures.add(future);
+            return future;
+        }
+    }
+
+    private static ExecutionStatus executionStatus(long executionId) {
+        return new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(ExecutionStatus.Status.SUCCESSFUL);
+    }
+
+    private WriteBehindStatusKeepingService newService(StatusKeepingService delegate, int maxBatchSize,
+            long maxDelayMillis, WriteBehindPolicy.Sync sync) {
+        assert scheduledExecutorService != null;
+        return new WriteBehindStatusKeepingService(delegate, scheduledExecutorService,
+            new WriteBehindPolicy(maxBatchSize, maxDelayMillis, sync));
+    }
+
+    @Test
+    public void batchBySize() throws Exception {
+        RecordingStatusKeepingService delegate = new RecordingStatusKeepingService();
+        WriteBehindStatusKeepingService service
+            = newService(delegate, 2, LONG_DELAY_MILLIS, WriteBehindPolicy.Sync.BATCH);
+
+        ExecutionStatus first = executionStatus(1);
+        CompletableFuture<ExecutionStatus> firstFuture = service.persistExecutionStatus(first);
+        Assert.assertTrue(delegate.batches.isEmpty());
+        Assert.assertFalse(firstFuture.isDone());
+
+        // Pending execution statuses are visible to readers
+        Assert.assertSame(service.loadExecutionStatus(1).get(), first);
+
+        ExecutionStatus second = executionStatus(2);
+        CompletableFuture<ExecutionStatus> secondFuture = service.persistExecutionStatus(second);
+        Assert.assertEquals(delegate.batches, Arrays.asList(Arrays.asList(first, second)));
+        Assert.assertEquals(delegate.syncFlags, Arrays.asList(true));
+
+        // Not durable until the underlying service has completed the batch
+        Assert.assertFalse(firstFuture.isDone() || secondFuture.isDone());
+        Assert.assertEquals(service.getNumberOfPendingStatuses(), 2);
+        Assert.assertSame(service.loadExecutionStatus(2).get(), second);
+
+        delegate.futures.get(0).complete(null);
+        Assert.assertSame(firstFuture.get(), first);
+        Assert.assertSame(secondFuture.get(), second);
+        Assert.assertEquals(service.getNumberOfPendingStatuses(), 0);
+        try {
+            service.loadExecutionStatus(1).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof UnknownExecutionIdException);
+        }
+    }
+
+    @Test
+    public void flushAndFailure() throws Exception {
+        RecordingStatusKeepingService delegate = new RecordingStatusKeepingService();
+        WriteBehindStatusKeepingService service
+            = newService(delegate, 10, LONG_DELAY_MILLIS, WriteBehindPolicy.Sync.NEVER);
+
+        ExecutionStatus executionStatus = executionStatus(3);
+        CompletableFuture<ExecutionStatus> future = service.persistExecutionStatus(executionStatus);
+        CompletableFuture<Void> flushFuture = service.flush();
+        Assert.assertEquals(delegate.batches, Arrays.asList(Arrays.asList(executionStatus)));
+        Assert.assertEquals(delegate.syncFlags, Arrays.asList(false));
+
+        // Flushing an empty batch is a no-op
+        Assert.assertTrue(service.flush().isDone());
+        Assert.assertEquals(delegate.batches.size(), 1);
+
+        // The future returned by flush() is completed only once the batch has been written
+        Assert.assertFalse(flushFuture.isDone());
+
+        IllegalStateException failure = new IllegalStateException();
+        delegate.futures.get(0).completeExceptionally(failure);
+        Assert.assertTrue(flushFuture.isCompletedExceptionally());
+        try {
+            future.get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertSame(exception.getCause(), failure);
+        }
+        Assert.assertEquals(service.getNumberOfPendingStatuses(), 0);
+    }
+
+    @Test
+    public void batchByTime() throws Exception {
+        RecordingStatusKeepingService delegate = new RecordingStatusKeepingService();
+        WriteBehindStatusKeepingService service = newService(delegate, 10, 10, WriteBehindPolicy.Sync.BATCH);
+
+        ExecutionStatus executionStatus = executionStatus(4);
+        CompletableFuture<ExecutionStatus> future = service.persistExecutionStatus(executionStatus);
+        long deadlineMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (true) {
+            synchronized (delegate) {
+                if (!delegate.futures.isEmpty()) {
+                    Assert.assertEquals(delegate.batches, Arrays.asList(Arrays.asList(executionStatus)));
+                    delegate.futures.get(0).complete(null);
+                    break;
+                }
+            }
+            Assert.assertTrue(System.currentTimeMillis() < deadlineMillis, "timer did not trigger batch");
+            Thread.sleep(5);
+        }
+        Assert.assertSame(future.get(), executionStatus);
+    }
+}
@@ -0,0 +1,35 @@
+package com.svbio.workflow.servlet;
+
+import com.svbio.workflow.api.ExecutionRejectedException;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * JAX-RS exception mapper for rejected workflow executions.
+ *
+ * <p>Rejections because the service as a whole is at capacity are mapped to status 503 (Service Unavailable).
+ * Rejections because a single tenant is at capacity are mapped to status 429 (Too Many Requests, see RFC 6585, §4).
+ * In both cases, the response contains a {@code Retry-After} header as suggested by RFC 7231, §6.6.4.
+ */
+final class ExecutionRejectedExceptionMapper implements ExceptionMapper<ExecutionRejectedException> {
+    /**
+     * HTTP status code 429 (Too Many Requests), which is not contained in {@link Response.Status} as of JAX-RS 2.0.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Override
+    public Response toResponse(ExecutionRejectedException exception) {
+        Response.ResponseBuilder responseBuilder
+            = exception.getReason() == ExecutionRejectedException.Reason.TENANT_AT_CAPACITY
+                ? Response.status(TOO_MANY_REQUESTS)
+                : Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        return responseBuilder
+            .header(HttpHeaders.RETRY_AFTER, exception.getRetryAfterSeconds())
+            .type(MediaType.TEXT_PLAIN_TYPE)
+            .entity(exception.getMessage())
+            .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.svbio.workflow.servlet;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusListener;
+import com.svbio.workflow.api.WorkflowService;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+
+/**
+ * Execution-status listener that writes each execution status as server-sent event to an {@link EventOutput}.
+ *
+ * <p>Each event has name {@link #EVENT_NAME}, the execution status as (JSON) data, and the status (as in
+ * {@link ExecutionStatus.Status}) as id. The event stream is closed after the terminal execution status has been
+ * written. If the client disconnects, this listener removes itself from the {@link WorkflowService}.
+ */
+final class ExecutionStatusEventWriter implements ExecutionStatusListener {
+    static final String EVENT_NAME = "status";
+
+    private final WorkflowService workflowService;
+    private final long executionId;
+    private final EventOutput eventOutput;
+
+    ExecutionStatusEventWriter(WorkflowService workflowService, long executionId, EventOutput eventOutput) {
+        this.workflowService = workflowService;
+        this.executionId = executionId;
+        this.eventOutput = eventOutput;
+    }
+
+    @Override
+    public void executionStatusChanged(ExecutionStatus executionStatus) {
+        try {
+            eventOutput.write(
+                new OutboundEvent.Builder()
+                    .name(EVENT_NAME)
+                    .id(executionStatus.getStatus().name())
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(ExecutionStatus.class, executionStatus)
+                    .build()
+            );
+            if (executionStatus.getStatus().isTerminal()) {
+                eventOutput.close();
+            }
+        } catch (IOException ignored) {
+            // The client has disconnected.
+            workflowService.removeExecutionStatusListener(executionId, this);
+            close();
+        }
+    }
+
+    /**
+     * Closes the event stream, ignoring any exceptions (which would only indicate that the client has disconnected).
+     */
+    void close() {
+        try {
+            eventOutput.close();
+        } catch (IOException ignored) { }
+    }
+}
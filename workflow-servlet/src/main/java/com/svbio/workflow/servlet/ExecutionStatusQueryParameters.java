@@ -0,0 +1,68 @@
+package com.svbio.workflow.servlet;
+
+import com.svbio.workflow.api.ExecutionStatus;
+import com.svbio.workflow.api.ExecutionStatusQuery;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * JAX-RS parameter aggregator (see JAX-RS 2.0, §3.2) for the query parameters that constitute an
+ * {@link ExecutionStatusQuery}.
+ *
+ * <p>Example: {@code ?prefix=foo&status=RUNNING&status=FAILED&limit=100&projection=SUMMARY}. The query parameter
+ * {@code cursor} is to be set to the next cursor returned with the previous page.
+ */
+final class ExecutionStatusQueryParameters {
+    @QueryParam("cursor")
+    @Nullable private Long cursor;
+
+    @QueryParam("limit")
+    @DefaultValue("0")
+    private int limit;
+
+    @QueryParam("prefix")
+    @Nullable private String prefix;
+
+    @QueryParam("status")
+    @Nullable private List<ExecutionStatus.Status> statuses;
+
+    @QueryParam("startedAfter")
+    @Nullable private Long startedAfterMillis;
+
+    @QueryParam("startedBefore")
+    @Nullable private Long startedBeforeMillis;
+
+    @QueryParam("projection")
+    @DefaultValue("FULL")
+    @Nullable private ExecutionStatusQuery.Projection projection;
+
+    /**
+     * Returns a new {@link ExecutionStatusQuery} corresponding to the query parameters.
+     *
+     * @throws BadRequestException if the query parameters are invalid
+     */
+    ExecutionStatusQuery toQuery() {
+        if (limit < 0) {
+            throw new BadRequestException(String.format("Expected non-negative limit, but got %d.", limit));
+        }
+
+        ExecutionStatusQuery query = new ExecutionStatusQuery()
+            .setCursor(cursor)
+            .setLimit(limit)
+            .setPrefix(prefix)
+            .setStartedAfterMillis(startedAfterMillis)
+            .setStartedBeforeMillis(startedBeforeMillis);
+        if (statuses != null && !statuses.isEmpty()) {
+            query.setStatuses(EnumSet.copyOf(statuses));
+        }
+        if (projection != null) {
+            query.setProjection(projection);
+        }
+        return query;
+    }
+}
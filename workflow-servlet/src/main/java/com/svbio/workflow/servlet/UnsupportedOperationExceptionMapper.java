@@ -0,0 +1,16 @@
+package com.svbio.workflow.servlet;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * JAX-RS exception mapper for operations that are not supported by the current configuration.
+ *
+ * <p>For instance, queries of finished workflow executions are not supported by all status-keeping services.
+ */
+final class UnsupportedOperationExceptionMapper implements ExceptionMapper<UnsupportedOperationException> {
+    @Override
+    public Response toResponse(UnsupportedOperationException exception) {
+        return Response.status(Response.Status.NOT_IMPLEMENTED).build();
+    }
+}
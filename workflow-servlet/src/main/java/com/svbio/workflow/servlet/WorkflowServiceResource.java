@@ -1,20 +1,29 @@
 package com.svbio.workflow.servlet;
 
+import com.svbio.workflow.api.ErrorSummaryList;
 import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecuteWorkflowRequestList;
 import com.svbio.workflow.api.ExecutionStatus;
 import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusListener;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 import com.svbio.workflow.api.WorkflowService;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 import xyz.cloudkeeper.model.api.WorkflowExecution;
 
 import javax.annotation.Nullable;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
@@ -22,7 +31,13 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.ext.Providers;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * JAX-RS resource that provides a RESTful interface for {@link WorkflowService}.
@@ -34,6 +49,10 @@ public final class WorkflowServiceResource {
     static final String EXECUTION_ID = "eid";
     private static final String EXECUTIONS_TEMPLATE = "executions";
     private static final String EXECUTION_ID_TEMPLATE = EXECUTIONS_TEMPLATE + "/{" + EXECUTION_ID + ": [0-9]+}";
+    static final String WAIT_FOR_TERMINAL = "terminal";
+    static final long MAX_TIMEOUT_SECONDS = 300;
+    static final int MAX_LOOKUP_IDS = 1000;
+    static final int MAX_TOP_ERRORS = 1000;
 
     private final WorkflowService workflowService;
 
@@ -52,31 +71,156 @@ public final class WorkflowServiceResource {
         Objects.requireNonNull(workflowService);
     }
 
-    @Path(EXECUTION_ID_TEMPLATE)
-    @GET
-    public void getExecutionStatus(@Suspended final AsyncResponse asyncResponse,
-            @PathParam(EXECUTION_ID) long executionID) {
-        workflowService.getExecutionStatus(executionID).whenComplete(
-            (@Nullable ExecutionStatus executionStatus, @Nullable Throwable throwable) -> {
+    /**
+     * Verifies that the given timeout is between 1 and {@link #MAX_TIMEOUT_SECONDS}.
+     *
+     * @throws BadRequestException if the timeout is out of range
+     */
+    private static void requireValidTimeout(long timeoutSeconds) {
+        if (timeoutSeconds <= 0 || timeoutSeconds > MAX_TIMEOUT_SECONDS) {
+            throw new BadRequestException(String.format(
+                "Expected timeout between 1 and %d seconds, but got %d.", MAX_TIMEOUT_SECONDS, timeoutSeconds));
+        }
+    }
+
+    /**
+     * Returns the location of the list of queued workflow executions with the given staging-area prefix.
+     */
+    private static URI queuedExecutionsLocation(@Nullable String prefix) {
+        UriBuilder uriBuilder = UriBuilder.fromResource(WorkflowServiceResource.class)
+            .path(WorkflowServiceResource.class, "getListOfActiveWorkflows")
+            .queryParam("status", ExecutionStatus.Status.QUEUED);
+        if (prefix != null) {
+            uriBuilder.queryParam("prefix", prefix);
+        }
+        return uriBuilder.build();
+    }
+
+    private static void resume(AsyncResponse asyncResponse, CompletableFuture<?> future) {
+        future.whenComplete(
+            (@Nullable Object result, @Nullable Throwable throwable) -> {
                 if (throwable != null) {
                     asyncResponse.resume(throwable);
                 } else {
-                    asyncResponse.resume(executionStatus);
+                    asyncResponse.resume(result);
                 }
             }
         );
     }
 
+    /**
+     * Returns the status of a workflow execution, optionally waiting until the workflow execution has finished.
+     *
+     * <p>Without query parameter {@code waitFor}, the current execution status is returned immediately. With
+     * {@code ?waitFor=terminal&timeout=<seconds>} (long polling), the response is deferred until the workflow execution
+     * has finished, but at most for the given timeout. If the timeout expires, the then-current (non-terminal)
+     * execution status is returned. Clients can therefore simply repeat the request until the returned status is
+     * terminal.
+     *
+     * @param waitFor either {@code null} or {@link #WAIT_FOR_TERMINAL}
+     * @param timeoutSeconds maximum time (in seconds) to wait, between 1 and {@link #MAX_TIMEOUT_SECONDS}; only
+     *     relevant if {@code waitFor} is non-null
+     */
+    @Path(EXECUTION_ID_TEMPLATE)
+    @GET
+    public void getExecutionStatus(@Suspended final AsyncResponse asyncResponse,
+            @PathParam(EXECUTION_ID) long executionID, @QueryParam("waitFor") @Nullable String waitFor,
+            @QueryParam("timeout") @DefaultValue("30") long timeoutSeconds) {
+        if (waitFor == null) {
+            resume(asyncResponse, workflowService.getExecutionStatus(executionID));
+            return;
+        } else if (!WAIT_FOR_TERMINAL.equals(waitFor)) {
+            throw new BadRequestException(
+                String.format("Expected '%s' as value of waitFor, but got '%s'.", WAIT_FOR_TERMINAL, waitFor));
+        }
+        requireValidTimeout(timeoutSeconds);
+
+        ExecutionStatusListener listener = executionStatus -> {
+            if (executionStatus.getStatus().isTerminal()) {
+                asyncResponse.resume(executionStatus);
+            }
+        };
+        asyncResponse.setTimeoutHandler(timedOutResponse -> {
+            workflowService.removeExecutionStatusListener(executionID, listener);
+            resume(timedOutResponse, workflowService.getExecutionStatus(executionID));
+        });
+        asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        workflowService.addExecutionStatusListener(executionID, listener).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                asyncResponse.resume(throwable);
+            }
+        });
+    }
+
+    /**
+     * Streams the status transitions of a workflow execution as server-sent events.
+     *
+     * <p>The first event contains the current execution status, and each subsequent event contains a new execution
+     * status. The stream is closed after the terminal execution status has been sent. See
+     * {@link ExecutionStatusEventWriter} for the format of the events. If the execution id is unknown, the response
+     * has status 404.
+     */
+    @Path(EXECUTION_ID_TEMPLATE + "/events")
+    @GET
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    public void streamExecutionStatus(@Suspended final AsyncResponse asyncResponse,
+            @PathParam(EXECUTION_ID) long executionID) {
+        // Events written before the EventOutput is returned to the JAX-RS runtime are queued by the EventOutput.
+        EventOutput eventOutput = new EventOutput();
+        ExecutionStatusEventWriter eventWriter
+            = new ExecutionStatusEventWriter(workflowService, executionID, eventOutput);
+        workflowService.addExecutionStatusListener(executionID, eventWriter).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                eventWriter.close();
+                asyncResponse.resume(throwable);
+            } else {
+                asyncResponse.resume(eventOutput);
+            }
+        });
+    }
+
+    /**
+     * Stops a workflow execution.
+     *
+     * <p>The response has status 204 (No Content) if the workflow execution has been cancelled. If the workflow
+     * execution also answers other identical requests that have not been withdrawn, only one request is withdrawn, the
+     * workflow execution keeps running, and the response has status 202 (Accepted). If the execution id is unknown,
+     * the response has status 404.
+     */
     @Path(EXECUTION_ID_TEMPLATE)
     @DELETE
-    public void stopExecutionID(@PathParam(EXECUTION_ID) long executionID) throws UnknownExecutionIdException {
-        workflowService.stopExecutionId(executionID);
+    public Response stopExecutionID(@PathParam(EXECUTION_ID) long executionID) throws UnknownExecutionIdException {
+        return workflowService.stopExecutionId(executionID)
+            ? Response.noContent().build()
+            : Response.accepted().build();
     }
 
+    /**
+     * Starts a new workflow execution and redirects to its status once an execution id has been assigned.
+     *
+     * <p>If the workflow execution is queued for admission, the response is deferred until it has been admitted, but
+     * at most for the given timeout. If the timeout expires, the response has status 202 (Accepted), its entity is an
+     * {@link ExecutionStatus} with status {@link ExecutionStatus.Status#QUEUED}, and its location is the list of
+     * queued workflow executions with the prefix of the request. The workflow execution remains queued, and clients can
+     * poll that list (or the list of all active workflow executions with the prefix) to obtain the execution id once it
+     * has been admitted. If the workflow execution is rejected, the response has status 503 or 429 (see
+     * {@link ExecutionRejectedExceptionMapper}).
+     *
+     * @param timeoutSeconds maximum time (in seconds) to wait for admission, between 1 and {@link #MAX_TIMEOUT_SECONDS}
+     */
     @Path(EXECUTIONS_TEMPLATE)
     @POST
     public void executeWorkflow(@Suspended final AsyncResponse asyncResponse,
+            @QueryParam("timeout") @DefaultValue("30") long timeoutSeconds,
             ExecuteWorkflowRequest executeWorkflowRequest) {
+        requireValidTimeout(timeoutSeconds);
+        @Nullable String prefix = executeWorkflowRequest.getPrefix();
+        asyncResponse.setTimeoutHandler(timedOutResponse -> timedOutResponse.resume(
+            Response.accepted(new ExecutionStatus().setStatus(ExecutionStatus.Status.QUEUED))
+                .location(queuedExecutionsLocation(prefix))
+                .build()
+        ));
+        asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
         WorkflowExecution workflowExecution = workflowService.startExecution(executeWorkflowRequest);
         workflowExecution.getExecutionId().whenComplete((executionId, throwable) -> {
             if (throwable != null) {
@@ -97,9 +241,133 @@ public final class WorkflowServiceResource {
         });
     }
 
+    /**
+     * Starts a batch of new workflow executions and responds with the list of their execution ids.
+     *
+     * <p>The response is sent once an execution id has been assigned to each workflow execution of the batch (or each
+     * workflow execution has failed). The response is an {@link ExecutionStatusList} that contains one element per
+     * request, in request order. Each element has either status {@link ExecutionStatus.Status#RUNNING} and the
+     * execution id, or status {@link ExecutionStatus.Status#FAILED} and a failure description (for instance, if the
+     * workflow execution was rejected by admission control). The requests are not repeated in the response.
+     *
+     * <p>As with {@link #executeWorkflow(AsyncResponse, long, ExecuteWorkflowRequest)}, the response is deferred at
+     * most for the given timeout. If the timeout expires, the response has status 202 (Accepted), and each element for
+     * a workflow execution that has not been admitted yet has status {@link ExecutionStatus.Status#QUEUED}. These
+     * workflow executions remain queued.
+     *
+     * @param timeoutSeconds maximum time (in seconds) to wait for admission, between 1 and {@link #MAX_TIMEOUT_SECONDS}
+     */
+    @Path(EXECUTIONS_TEMPLATE + ":batch")
+    @POST
+    public void executeWorkflows(@Suspended final AsyncResponse asyncResponse,
+            @QueryParam("timeout") @DefaultValue("30") long timeoutSeconds,
+            ExecuteWorkflowRequestList executeWorkflowRequestList) {
+        requireValidTimeout(timeoutSeconds);
+        int size = executeWorkflowRequestList.getList().size();
+        // Elements are set by the threads completing the execution-id futures, and read by the timeout handler.
+        AtomicReferenceArray<ExecutionStatus> executionStatuses = new AtomicReferenceArray<>(size);
+        asyncResponse.setTimeoutHandler(timedOutResponse -> {
+            List<ExecutionStatus> list = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                @Nullable ExecutionStatus executionStatus = executionStatuses.get(i);
+                list.add(
+                    executionStatus == null
+                        ? new ExecutionStatus().setStatus(ExecutionStatus.Status.QUEUED)
+                        : executionStatus
+                );
+            }
+            timedOutResponse.resume(Response.accepted(new ExecutionStatusList().setList(list)).build());
+        });
+        asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+
+        List<WorkflowExecution> workflowExecutions
+            = workflowService.startExecutions(executeWorkflowRequestList.getList());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workflowExecutions.size()];
+        for (int i = 0; i < futures.length; ++i) {
+            int index = i;
+            futures[i] = workflowExecutions.get(i).getExecutionId().handle((executionId, throwable) -> {
+                executionStatuses.set(index, throwable == null
+                    ? new ExecutionStatus()
+                        .setStatus(ExecutionStatus.Status.RUNNING)
+                        .setExecutionId(executionId)
+                    : new ExecutionStatus()
+                        .setStatus(ExecutionStatus.Status.FAILED)
+                        .setFailureDescription(throwable.getMessage()));
+                return null;
+            });
+        }
+        CompletableFuture.allOf(futures).whenComplete((ignored, throwable) -> {
+            List<ExecutionStatus> list = new ArrayList<>(futures.length);
+            for (int i = 0; i < futures.length; ++i) {
+                list.add(executionStatuses.get(i));
+            }
+            asyncResponse.resume(new ExecutionStatusList().setList(list));
+        });
+    }
+
+    /**
+     * Returns the (possibly paged, filtered, and projected) list of active workflow executions.
+     *
+     * @param queryParameters query parameters, see {@link ExecutionStatusQueryParameters}
+     * @return the list of active workflow executions matching the query parameters
+     */
     @GET
     @Path(EXECUTIONS_TEMPLATE)
-    public ExecutionStatusList getListOfActiveWorkflows() {
-        return workflowService.getActiveExecutions();
+    public ExecutionStatusList getListOfActiveWorkflows(@BeanParam ExecutionStatusQueryParameters queryParameters) {
+        return workflowService.getActiveExecutions(queryParameters.toQuery());
+    }
+
+    /**
+     * Returns the (possibly paged, filtered, and projected) list of finished workflow executions.
+     *
+     * <p>If the configured status-keeping service does not support queries, the response has status 501 (see
+     * {@link UnsupportedOperationExceptionMapper}).
+     *
+     * @param queryParameters query parameters, see {@link ExecutionStatusQueryParameters}
+     */
+    @GET
+    @Path(EXECUTIONS_TEMPLATE + "/history")
+    public void getListOfFinishedWorkflows(@Suspended final AsyncResponse asyncResponse,
+            @BeanParam ExecutionStatusQueryParameters queryParameters) {
+        resume(asyncResponse, workflowService.getFinishedExecutions(queryParameters.toQuery()));
+    }
+
+    /**
+     * Returns the execution statuses of multiple workflow executions, which may be active or finished.
+     *
+     * <p>Example: {@code executions:lookup?id=1&id=2&id=3}. The response is an {@link ExecutionStatusList} that
+     * contains the known execution statuses in the order of the query parameters. Unknown execution ids are omitted.
+     *
+     * @param executionIds execution ids, at most {@link #MAX_LOOKUP_IDS}
+     */
+    @GET
+    @Path(EXECUTIONS_TEMPLATE + ":lookup")
+    public void lookupExecutionStatuses(@Suspended final AsyncResponse asyncResponse,
+            @QueryParam("id") List<Long> executionIds) {
+        if (executionIds.size() > MAX_LOOKUP_IDS) {
+            throw new BadRequestException(String.format(
+                "Expected at most %d execution ids, but got %d.", MAX_LOOKUP_IDS, executionIds.size()));
+        }
+        resume(asyncResponse, workflowService.getExecutionStatuses(executionIds));
+    }
+
+    /**
+     * Returns the most frequent errors of workflow executions.
+     *
+     * <p>Example: {@code executions/errors?limit=10}. The response is an {@link ErrorSummaryList} ordered by decreasing
+     * number of occurrences. If the configured status-keeping service does not record errors, the response has status
+     * 501 (see {@link UnsupportedOperationExceptionMapper}).
+     *
+     * @param limit maximum number of errors, between 1 and {@link #MAX_TOP_ERRORS}
+     */
+    @GET
+    @Path(EXECUTIONS_TEMPLATE + "/errors")
+    public void getTopErrors(@Suspended final AsyncResponse asyncResponse,
+            @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (limit <= 0 || limit > MAX_TOP_ERRORS) {
+            throw new BadRequestException(String.format(
+                "Expected limit between 1 and %d, but got %d.", MAX_TOP_ERRORS, limit));
+        }
+        resume(asyncResponse, workflowService.getTopErrors(limit));
     }
 }
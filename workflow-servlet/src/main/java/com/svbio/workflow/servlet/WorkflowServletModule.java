@@ -4,6 +4,7 @@ import dagger.Module;
 import dagger.Provides;
 import org.eclipse.persistence.jaxb.MarshallerProperties;
 import org.glassfish.jersey.CommonProperties;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.moxy.json.MoxyJsonConfig;
 import org.glassfish.jersey.moxy.json.MoxyJsonFeature;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -38,8 +39,11 @@ final class WorkflowServletModule {
         resourceConfig.property(CommonProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true);
 
         // Exception mappers, resources, features
+        resourceConfig.register(ExecutionRejectedExceptionMapper.class);
         resourceConfig.register(UnknownExecutionIdExceptionMapper.class);
+        resourceConfig.register(UnsupportedOperationExceptionMapper.class);
         resourceConfig.register(MoxyJsonFeature.class);
+        resourceConfig.register(SseFeature.class);
         resourceConfig.register(WorkflowServiceResource.class);
 
         // Singletons (such as providers instantiated outside of JAX-RS)
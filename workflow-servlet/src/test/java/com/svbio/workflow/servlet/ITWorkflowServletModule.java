@@ -1,9 +1,14 @@
 package com.svbio.workflow.servlet;
 
 import cloudkeeper.annotations.CloudKeeperSerialization;
+import com.svbio.workflow.api.ErrorSummary;
+import com.svbio.workflow.api.ErrorSummaryList;
 import com.svbio.workflow.api.ExecuteWorkflowRequest;
+import com.svbio.workflow.api.ExecuteWorkflowRequestList;
 import com.svbio.workflow.api.ExecutionStatus;
 import com.svbio.workflow.api.ExecutionStatusList;
+import com.svbio.workflow.api.ExecutionStatusListener;
+import com.svbio.workflow.api.ExecutionStatusQuery;
 import com.svbio.workflow.api.UnknownExecutionIdException;
 import com.svbio.workflow.api.WorkflowService;
 import com.svbio.workflow.service.WorkflowServiceComponent;
@@ -13,6 +18,9 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.glassfish.jersey.CommonProperties;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.media.sse.EventInput;
+import org.glassfish.jersey.media.sse.InboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.moxy.json.MoxyJsonConfig;
 import org.glassfish.jersey.moxy.json.MoxyJsonFeature;
 import org.testng.Assert;
@@ -39,9 +47,13 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public class ITWorkflowServletModule {
     private static final List<URI> BUNDLE_IDENTIFIERS = Collections.singletonList(URI.create("x-test:foo"));
@@ -74,6 +86,7 @@ public class ITWorkflowServletModule {
             new ClientConfig()
                 .property(CommonProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true)
                 .register(MoxyJsonFeature.class)
+                .register(SseFeature.class)
                 .register(new MoxyJsonConfig().setIncludeRoot(false))
         );
     }
@@ -130,19 +143,24 @@ public class ITWorkflowServletModule {
         }
     }
 
+    private static UriBuilder executeWorkflowUriBuilder() {
+        return uriBuilder("executeWorkflow", AsyncResponse.class, long.class, ExecuteWorkflowRequest.class);
+    }
+
     /**
      * Verifies that the REST resources
-     * {@link WorkflowServiceResource#executeWorkflow(AsyncResponse, ExecuteWorkflowRequest)} and
-     * {@link WorkflowServiceResource#getExecutionStatus(AsyncResponse, long)} are correctly mapped to the underlying
-     * {@link WorkflowService}.
+     * {@link WorkflowServiceResource#executeWorkflow(AsyncResponse, long, ExecuteWorkflowRequest)} and
+     * {@link WorkflowServiceResource#getExecutionStatus(AsyncResponse, long, String, long)} are correctly mapped to
+     * the underlying {@link WorkflowService}.
      */
     @Test
     public void executeWorkflow() throws NoSuchMethodException {
         assert jaxrsClient != null;
 
         // First try to start a workflow knowing that the MockWorkflowService will report an error. This should fail.
+        mockWorkflowService.nextExecutionId = 0;
         ExecuteWorkflowRequest request = newExecuteWorkflowRequest();
-        URI target = uriBuilder("executeWorkflow", AsyncResponse.class, ExecuteWorkflowRequest.class).build();
+        URI target = executeWorkflowUriBuilder().build();
         Response failedExecuteResponse = jaxrsClient
             .target(target)
             .request()
@@ -154,7 +172,7 @@ public class ITWorkflowServletModule {
         long executionId = 3;
         mockWorkflowService.nextExecutionId = executionId;
         Response executeResponse = jaxrsClient
-            .target(uriBuilder("executeWorkflow", AsyncResponse.class, ExecuteWorkflowRequest.class).build())
+            .target(target)
             .request()
             .buildPost(Entity.entity(request, MediaType.APPLICATION_XML_TYPE))
             .property(ClientProperties.FOLLOW_REDIRECTS, false)
@@ -164,7 +182,7 @@ public class ITWorkflowServletModule {
         // The HTTP server should have replied with a redirect
         @Nullable String location = executeResponse.getHeaderString("Location");
         Assert.assertNotNull(location, "Expected HTTP redirection after submitting workflow execution request.");
-        URI redirect = uriBuilder("getExecutionStatus", AsyncResponse.class, long.class)
+        URI redirect = uriBuilder("getExecutionStatus", AsyncResponse.class, long.class, String.class, long.class)
             .resolveTemplate(WorkflowServiceResource.EXECUTION_ID, executionId)
             .build();
         Assert.assertTrue(location.endsWith(redirect.toString()));
@@ -189,6 +207,169 @@ public class ITWorkflowServletModule {
         Assert.assertEquals(failedStatusResponse.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
     }
 
+    /**
+     * Verifies that {@link WorkflowServiceResource#executeWorkflow(AsyncResponse, long, ExecuteWorkflowRequest)}
+     * responds with status 202 (Accepted) if the workflow execution is not admitted before the timeout expires.
+     */
+    @Test
+    public void executeWorkflowTimeout() {
+        assert jaxrsClient != null;
+
+        // A negative execution id means that the workflow execution is never admitted
+        mockWorkflowService.nextExecutionId = -1;
+        URI target = executeWorkflowUriBuilder()
+            .queryParam("timeout", 1)
+            .build();
+        Response response = jaxrsClient
+            .target(target)
+            .request()
+            .buildPost(Entity.entity(newExecuteWorkflowRequest(), MediaType.APPLICATION_XML_TYPE))
+            .property(ClientProperties.FOLLOW_REDIRECTS, false)
+            .invoke();
+        Assert.assertEquals(response.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+        Assert.assertEquals(response.readEntity(ExecutionStatus.class).getStatus(), ExecutionStatus.Status.QUEUED);
+        @Nullable String location = response.getHeaderString("Location");
+        Assert.assertNotNull(location);
+        Assert.assertTrue(location.contains("status=QUEUED"));
+        Assert.assertTrue(location.contains("prefix=" + PREFIX));
+
+        Response invalidTimeoutResponse = jaxrsClient
+            .target(executeWorkflowUriBuilder()
+                .queryParam("timeout", WorkflowServiceResource.MAX_TIMEOUT_SECONDS + 1)
+                .build())
+            .request()
+            .buildPost(Entity.entity(newExecuteWorkflowRequest(), MediaType.APPLICATION_XML_TYPE))
+            .invoke();
+        Assert.assertEquals(invalidTimeoutResponse.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    /**
+     * Verifies that {@link WorkflowServiceResource#executeWorkflows(AsyncResponse, long, ExecuteWorkflowRequestList)}
+     * is correctly mapped to the underlying {@link WorkflowService}, and that the response contains one element per
+     * request.
+     */
+    @Test
+    public void executeWorkflows() {
+        assert jaxrsClient != null;
+
+        ExecuteWorkflowRequestList requestList = new ExecuteWorkflowRequestList()
+            .setList(Arrays.asList(newExecuteWorkflowRequest(), newExecuteWorkflowRequest().setTenant("tenant")));
+        mockWorkflowService.nextExecutionIds = Arrays.asList(5L, 0L);
+        URI target
+            = uriBuilder("executeWorkflows", AsyncResponse.class, long.class, ExecuteWorkflowRequestList.class).build();
+        ExecutionStatusList executionStatusList = jaxrsClient
+            .target(target)
+            .request()
+            .buildPost(Entity.entity(requestList, MediaType.APPLICATION_XML_TYPE))
+            .invoke(ExecutionStatusList.class);
+        Assert.assertEquals(mockWorkflowService.lastStartExecutions, requestList.getList());
+
+        List<ExecutionStatus> list = executionStatusList.getList();
+        Assert.assertEquals(list.size(), 2);
+        Assert.assertEquals(list.get(0).getStatus(), ExecutionStatus.Status.RUNNING);
+        Assert.assertEquals(list.get(0).getExecutionId(), 5);
+        Assert.assertEquals(list.get(1).getStatus(), ExecutionStatus.Status.FAILED);
+
+        // If a workflow execution is not admitted before the timeout expires, the response has status 202
+        mockWorkflowService.nextExecutionIds = Arrays.asList(5L, -1L);
+        Response timedOutResponse = jaxrsClient
+            .target(UriBuilder.fromUri(target).queryParam("timeout", 1).build())
+            .request()
+            .buildPost(Entity.entity(requestList, MediaType.APPLICATION_XML_TYPE))
+            .invoke();
+        Assert.assertEquals(timedOutResponse.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+        List<ExecutionStatus> timedOutList = timedOutResponse.readEntity(ExecutionStatusList.class).getList();
+        Assert.assertEquals(
+            timedOutList.stream().map(ExecutionStatus::getStatus).collect(Collectors.toList()),
+            Arrays.asList(ExecutionStatus.Status.RUNNING, ExecutionStatus.Status.QUEUED)
+        );
+        Assert.assertEquals(timedOutList.get(0).getExecutionId(), 5);
+    }
+
+    /**
+     * Verifies long polling with {@link WorkflowServiceResource#getExecutionStatus(AsyncResponse, long, String, long)}.
+     */
+    @Test
+    public void waitForExecutionStatus() {
+        assert jaxrsClient != null;
+
+        long executionId = 6;
+        URI target = uriBuilder("getExecutionStatus", AsyncResponse.class, long.class, String.class, long.class)
+            .resolveTemplate(WorkflowServiceResource.EXECUTION_ID, executionId)
+            .build();
+
+        // If the execution does not finish in time, the current status is returned once the timeout expires
+        mockWorkflowService.executionStatus = new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(ExecutionStatus.Status.RUNNING);
+        ExecutionStatus timedOutStatus = jaxrsClient.target(target)
+            .queryParam("waitFor", WorkflowServiceResource.WAIT_FOR_TERMINAL)
+            .queryParam("timeout", 1)
+            .request()
+            .buildGet()
+            .invoke(ExecutionStatus.class);
+        Assert.assertEquals(timedOutStatus, mockWorkflowService.executionStatus);
+        Assert.assertNotNull(mockWorkflowService.lastListener);
+        Assert.assertSame(mockWorkflowService.lastRemovedListener, mockWorkflowService.lastListener);
+
+        // A terminal status is returned immediately
+        mockWorkflowService.executionStatus = new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(ExecutionStatus.Status.SUCCESSFUL);
+        ExecutionStatus terminalStatus = jaxrsClient.target(target)
+            .queryParam("waitFor", WorkflowServiceResource.WAIT_FOR_TERMINAL)
+            .request()
+            .buildGet()
+            .invoke(ExecutionStatus.class);
+        Assert.assertEquals(terminalStatus, mockWorkflowService.executionStatus);
+
+        // Verify that invalid query parameters are rejected
+        Response badRequestResponse = jaxrsClient.target(target)
+            .queryParam("waitFor", "foo")
+            .request()
+            .get();
+        Assert.assertEquals(badRequestResponse.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    /**
+     * Verifies {@link WorkflowServiceResource#streamExecutionStatus(AsyncResponse, long)}.
+     */
+    @Test
+    public void streamExecutionStatus() {
+        assert jaxrsClient != null;
+
+        long executionId = 7;
+        URI target = uriBuilder("streamExecutionStatus", AsyncResponse.class, long.class)
+            .resolveTemplate(WorkflowServiceResource.EXECUTION_ID, executionId)
+            .build();
+        mockWorkflowService.executionStatus = new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(ExecutionStatus.Status.FAILED)
+            .setFailureDescription("foo");
+        EventInput eventInput = jaxrsClient.target(target)
+            .request(SseFeature.SERVER_SENT_EVENTS_TYPE)
+            .get(EventInput.class);
+        try {
+            @Nullable InboundEvent event = eventInput.read();
+            Assert.assertNotNull(event);
+            Assert.assertEquals(event.getName(), ExecutionStatusEventWriter.EVENT_NAME);
+            Assert.assertEquals(event.readData(ExecutionStatus.class, MediaType.APPLICATION_JSON_TYPE),
+                mockWorkflowService.executionStatus);
+
+            // The stream is closed after the terminal status
+            Assert.assertNull(eventInput.read());
+        } finally {
+            eventInput.close();
+        }
+
+        // Verify case where MockWorkflowService is not aware of execution ID
+        mockWorkflowService.executionStatus = null;
+        Response failedResponse = jaxrsClient.target(target)
+            .request(SseFeature.SERVER_SENT_EVENTS_TYPE)
+            .get();
+        Assert.assertEquals(failedResponse.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
     /**
      * Verifies {@link WorkflowServiceResource#stopExecutionID(long)}.
      */
@@ -209,6 +390,15 @@ public class ITWorkflowServletModule {
         Assert.assertEquals(successResponse.getStatus(), Response.Status.NO_CONTENT.getStatusCode());
         Assert.assertEquals(mockWorkflowService.lastStoppedExecutionId, executionId);
 
+        // Verify that a stop that leaves the workflow execution running (because it answers other requests) is reported
+        mockWorkflowService.stopCancels = false;
+        Response acceptedResponse = jaxrsClient
+            .target(target)
+            .request()
+            .delete();
+        Assert.assertEquals(acceptedResponse.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+        mockWorkflowService.stopCancels = true;
+
         // Verify exception in case the execution id is unknown
         mockWorkflowService.executionStatus = null;
         Response failedResponse = jaxrsClient
@@ -219,7 +409,7 @@ public class ITWorkflowServletModule {
     }
 
     /**
-     * Verifies {@link WorkflowServiceResource#getListOfActiveWorkflows()}.
+     * Verifies {@link WorkflowServiceResource#getListOfActiveWorkflows(ExecutionStatusQueryParameters)}.
      */
     @Test
     public void getListOfActiveWorkflows() throws NoSuchMethodException {
@@ -231,12 +421,157 @@ public class ITWorkflowServletModule {
                     .setExecutionId(4)
                     .setStatus(ExecutionStatus.Status.FAILED)
                     .setFailureDescription("foo")
-            ));
-        ExecutionStatusList executionStatusList = jaxrsClient.target(uriBuilder("getListOfActiveWorkflows").build())
+            ))
+            .setNextCursor(4L);
+        URI target = uriBuilder("getListOfActiveWorkflows", ExecutionStatusQueryParameters.class).build();
+        ExecutionStatusList executionStatusList = jaxrsClient.target(target)
+            .request()
+            .buildGet()
+            .invoke(ExecutionStatusList.class);
+        Assert.assertEquals(executionStatusList, mockWorkflowService.executionStatusList);
+        Assert.assertEquals(mockWorkflowService.lastQuery, new ExecutionStatusQuery());
+
+        // Verify that query parameters are passed on to the WorkflowService
+        jaxrsClient.target(target)
+            .queryParam("cursor", 2)
+            .queryParam("limit", 1)
+            .queryParam("prefix", PREFIX)
+            .queryParam("status", ExecutionStatus.Status.FAILED, ExecutionStatus.Status.SUCCESSFUL)
+            .queryParam("startedAfter", 10)
+            .queryParam("startedBefore", 20)
+            .queryParam("projection", ExecutionStatusQuery.Projection.SUMMARY)
+            .request()
+            .buildGet()
+            .invoke(ExecutionStatusList.class);
+        Assert.assertEquals(
+            mockWorkflowService.lastQuery,
+            new ExecutionStatusQuery()
+                .setCursor(2L)
+                .setLimit(1)
+                .setPrefix(PREFIX)
+                .setStatuses(EnumSet.of(ExecutionStatus.Status.FAILED, ExecutionStatus.Status.SUCCESSFUL))
+                .setStartedAfterMillis(10L)
+                .setStartedBeforeMillis(20L)
+                .setProjection(ExecutionStatusQuery.Projection.SUMMARY)
+        );
+
+        // Verify that invalid query parameters are rejected
+        Response badRequestResponse = jaxrsClient.target(target)
+            .queryParam("limit", -1)
+            .request()
+            .get();
+        Assert.assertEquals(badRequestResponse.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    /**
+     * Verifies
+     * {@link WorkflowServiceResource#getListOfFinishedWorkflows(AsyncResponse, ExecutionStatusQueryParameters)}.
+     */
+    @Test
+    public void getListOfFinishedWorkflows() {
+        assert jaxrsClient != null;
+
+        mockWorkflowService.executionStatusList = new ExecutionStatusList()
+            .setList(Collections.singletonList(
+                new ExecutionStatus()
+                    .setExecutionId(8)
+                    .setStatus(ExecutionStatus.Status.SUCCESSFUL)
+            ))
+            .setNextCursor(8L);
+        mockWorkflowService.historySupported = true;
+        URI target = uriBuilder("getListOfFinishedWorkflows", AsyncResponse.class,
+            ExecutionStatusQueryParameters.class).build();
+        ExecutionStatusList executionStatusList = jaxrsClient.target(target)
+            .queryParam("prefix", PREFIX)
+            .queryParam("limit", 1)
             .request()
             .buildGet()
             .invoke(ExecutionStatusList.class);
         Assert.assertEquals(executionStatusList, mockWorkflowService.executionStatusList);
+        Assert.assertEquals(
+            mockWorkflowService.lastFinishedQuery,
+            new ExecutionStatusQuery().setPrefix(PREFIX).setLimit(1)
+        );
+
+        // Verify case where the status-keeping service does not support queries
+        mockWorkflowService.historySupported = false;
+        Response unsupportedResponse = jaxrsClient.target(target)
+            .request()
+            .get();
+        Assert.assertEquals(unsupportedResponse.getStatus(), Response.Status.NOT_IMPLEMENTED.getStatusCode());
+    }
+
+    /**
+     * Verifies {@link WorkflowServiceResource#lookupExecutionStatuses(AsyncResponse, List)}.
+     */
+    @Test
+    public void lookupExecutionStatuses() {
+        assert jaxrsClient != null;
+
+        long executionId = 9;
+        mockWorkflowService.executionStatus = new ExecutionStatus()
+            .setExecutionId(executionId)
+            .setStatus(ExecutionStatus.Status.SUCCESSFUL);
+        URI target = uriBuilder("lookupExecutionStatuses", AsyncResponse.class, List.class).build();
+        ExecutionStatusList executionStatusList = jaxrsClient.target(target)
+            .queryParam("id", 1, executionId, 2)
+            .request()
+            .buildGet()
+            .invoke(ExecutionStatusList.class);
+        Assert.assertEquals(
+            executionStatusList.getList(),
+            Collections.singletonList(mockWorkflowService.executionStatus)
+        );
+        Assert.assertEquals(mockWorkflowService.lastLookupIds, Arrays.asList(1L, executionId, 2L));
+
+        // Verify that too many execution ids are rejected
+        Object[] tooManyIds = new Object[WorkflowServiceResource.MAX_LOOKUP_IDS + 1];
+        Arrays.fill(tooManyIds, 1L);
+        Response badRequestResponse = jaxrsClient.target(target)
+            .queryParam("id", tooManyIds)
+            .request()
+            .get();
+        Assert.assertEquals(badRequestResponse.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    /**
+     * Verifies {@link WorkflowServiceResource#getTopErrors(AsyncResponse, int)}.
+     */
+    @Test
+    public void getTopErrors() {
+        assert jaxrsClient != null;
+
+        mockWorkflowService.errorSummaryList = new ErrorSummaryList()
+            .setList(Collections.singletonList(
+                new ErrorSummary()
+                    .setFingerprint("0123456789abcdef")
+                    .setSummary("java.lang.IllegalStateException: Failure #")
+                    .setOccurrences(3)
+                    .setFirstSeenMillis(1L)
+                    .setLastSeenMillis(2L)
+            ));
+        URI target = uriBuilder("getTopErrors", AsyncResponse.class, int.class).build();
+        ErrorSummaryList errorSummaryList = jaxrsClient.target(target)
+            .queryParam("limit", 5)
+            .request()
+            .buildGet()
+            .invoke(ErrorSummaryList.class);
+        Assert.assertEquals(errorSummaryList, mockWorkflowService.errorSummaryList);
+        Assert.assertEquals(mockWorkflowService.lastTopErrorsLimit, 5);
+
+        // Verify that an invalid limit is rejected
+        Response badRequestResponse = jaxrsClient.target(target)
+            .queryParam("limit", WorkflowServiceResource.MAX_TOP_ERRORS + 1)
+            .request()
+            .get();
+        Assert.assertEquals(badRequestResponse.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+
+        // Verify case where the status-keeping service does not record errors
+        mockWorkflowService.errorSummaryList = null;
+        Response unsupportedResponse = jaxrsClient.target(target)
+            .request()
+            .get();
+        Assert.assertEquals(unsupportedResponse.getStatus(), Response.Status.NOT_IMPLEMENTED.getStatusCode());
     }
 
     static UnsupportedOperationException newUnsupportedOperationException() {
@@ -259,9 +594,20 @@ public class ITWorkflowServletModule {
     private static final class MockWorkflowService implements WorkflowService {
         private long nextExecutionId;
         @Nullable private ExecuteWorkflowRequest lastStartExecution;
+        private List<Long> nextExecutionIds = Collections.emptyList();
+        @Nullable private List<ExecuteWorkflowRequest> lastStartExecutions;
         private long lastStoppedExecutionId;
+        private boolean stopCancels = true;
         @Nullable private ExecutionStatus executionStatus;
         @Nullable private ExecutionStatusList executionStatusList;
+        @Nullable private ExecutionStatusQuery lastQuery;
+        @Nullable private ExecutionStatusQuery lastFinishedQuery;
+        private boolean historySupported;
+        @Nullable private List<Long> lastLookupIds;
+        @Nullable private ErrorSummaryList errorSummaryList;
+        private int lastTopErrorsLimit;
+        @Nullable private ExecutionStatusListener lastListener;
+        @Nullable private ExecutionStatusListener lastRemovedListener;
 
         @Override
         public CloudKeeperEnvironment create(String prefix, boolean cleaningRequested) {
@@ -274,6 +620,16 @@ public class ITWorkflowServletModule {
             return new MockWorkflowExecution(nextExecutionId);
         }
 
+        @Override
+        public List<WorkflowExecution> startExecutions(List<ExecuteWorkflowRequest> requests) {
+            lastStartExecutions = new ArrayList<>(requests);
+            List<WorkflowExecution> workflowExecutions = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); ++i) {
+                workflowExecutions.add(new MockWorkflowExecution(nextExecutionIds.get(i)));
+            }
+            return workflowExecutions;
+        }
+
         @Override
         public CompletableFuture<ExecutionStatus> getExecutionStatus(long executionId) {
             if (executionStatus != null && executionStatus.getExecutionId() == executionId) {
@@ -286,19 +642,82 @@ public class ITWorkflowServletModule {
         }
 
         @Override
-        public void stopExecutionId(long executionId) throws UnknownExecutionIdException {
+        public boolean stopExecutionId(long executionId) throws UnknownExecutionIdException {
             if (executionStatus != null && executionStatus.getExecutionId() == executionId) {
                 lastStoppedExecutionId = executionId;
+                return stopCancels;
             } else {
                 throw new UnknownExecutionIdException(executionId);
             }
         }
 
+        @Override
+        public CompletableFuture<Void> addExecutionStatusListener(long executionId,
+                ExecutionStatusListener listener) {
+            lastListener = listener;
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            getExecutionStatus(executionId).whenComplete((executionStatus, throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    listener.executionStatusChanged(executionStatus);
+                    future.complete(null);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void removeExecutionStatusListener(long executionId, ExecutionStatusListener listener) {
+            lastRemovedListener = listener;
+        }
+
         @Override
         public ExecutionStatusList getActiveExecutions() {
             assert executionStatusList != null;
             return executionStatusList;
         }
+
+        @Override
+        public ExecutionStatusList getActiveExecutions(ExecutionStatusQuery query) {
+            lastQuery = query;
+            return getActiveExecutions();
+        }
+
+        @Override
+        public CompletableFuture<ExecutionStatusList> getFinishedExecutions(ExecutionStatusQuery query) {
+            lastFinishedQuery = query;
+            if (!historySupported) {
+                CompletableFuture<ExecutionStatusList> future = new CompletableFuture<>();
+                future.completeExceptionally(newUnsupportedOperationException());
+                return future;
+            }
+            assert executionStatusList != null;
+            return CompletableFuture.completedFuture(executionStatusList);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionStatusList> getExecutionStatuses(List<Long> executionIds) {
+            lastLookupIds = new ArrayList<>(executionIds);
+            List<ExecutionStatus> list = new ArrayList<>();
+            for (long executionId: executionIds) {
+                if (executionStatus != null && executionStatus.getExecutionId() == executionId) {
+                    list.add(executionStatus);
+                }
+            }
+            return CompletableFuture.completedFuture(new ExecutionStatusList().setList(list));
+        }
+
+        @Override
+        public CompletableFuture<ErrorSummaryList> getTopErrors(int limit) {
+            lastTopErrorsLimit = limit;
+            if (errorSummaryList == null) {
+                CompletableFuture<ErrorSummaryList> future = new CompletableFuture<>();
+                future.completeExceptionally(newUnsupportedOperationException());
+                return future;
+            }
+            return CompletableFuture.completedFuture(errorSummaryList);
+        }
     }
 
     private static final class MockWorkflowExecution implements WorkflowExecution {
@@ -327,6 +746,8 @@ public class ITWorkflowServletModule {
         public CompletableFuture<Long> getExecutionId() {
             if (executionId > 0) {
                 return CompletableFuture.completedFuture(executionId);
+            } else if (executionId < 0) {
+                return new CompletableFuture<>();
             } else {
                 CompletableFuture<Long> future = new CompletableFuture<>();
                 future.completeExceptionally(new ExpectedException());